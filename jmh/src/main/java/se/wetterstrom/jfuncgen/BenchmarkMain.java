@@ -0,0 +1,40 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the JMH command line options, always with the
+ * GC profiler so that the allocation rate is reported next to the throughput.
+ */
+public class BenchmarkMain {
+
+	private BenchmarkMain() {
+	}
+
+	/**
+	 * Main
+	 * @param args JMH command line options
+	 * @throws CommandLineOptionException on invalid options
+	 * @throws RunnerException on benchmark failures
+	 * @throws IOException on output errors
+	 */
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+		var cmd = new CommandLineOptions(args);
+		if (cmd.shouldHelp() || cmd.shouldList() || cmd.shouldListProfilers() || cmd.shouldListResultFormats()) {
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+		var options = new OptionsBuilder().parent(cmd);
+		if (cmd.getProfilers().stream().noneMatch(p -> p.getKlass().equals("gc") || p.getKlass().equals(GCProfiler.class.getName()))) {
+			options.addProfiler(GCProfiler.class);
+		}
+		new Runner(options.build()).run();
+	}
+}
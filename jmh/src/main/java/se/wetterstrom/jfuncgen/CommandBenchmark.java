@@ -0,0 +1,121 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Command formatting and reply parsing of the drivers, without a transport.
+ * Formatting captures the bytes a setter would write, parsing runs a getter
+ * against the canned reply of {@link FakeDevice}, including the formatting
+ * of the request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandBenchmark {
+
+	/** the device type */
+	@Param({ "MHS5200", "FY6900" })
+	public String device;
+
+	/** the driver formatting commands */
+	private AbstractSerialCom formatter;
+	/** the driver parsing canned replies */
+	private AbstractSerialCom parser;
+	/** the wave type to set */
+	private WaveType waveType;
+	/** the frequency to set */
+	private double frequency = 1000.0;
+
+	/** Create the drivers */
+	@Setup
+	public void setUp() {
+		if ("MHS5200".equals(device)) {
+			formatter = new SerialCom5200();
+			parser = new SerialCom5200() {
+				@Override
+				public String requestReply(String req) {
+					return FakeDevice.mhs5200(req.trim());
+				}
+			};
+		} else {
+			formatter = new SerialCom6900();
+			parser = new SerialCom6900() {
+				@Override
+				public String requestReply(String req) {
+					return FakeDevice.fy6900(req.trim());
+				}
+			};
+		}
+		waveType = formatter.getWaveTypes(1).get(1);
+	}
+
+	/**
+	 * Format a frequency command
+	 * @return the command
+	 */
+	@Benchmark
+	public byte[] formatFrequency() {
+		frequency = frequency < 1e6 ? frequency * 1.01 : 1000.0;
+		return formatter.capture(() -> formatter.setFrequency(1, frequency));
+	}
+
+	/**
+	 * Format an amplitude command
+	 * @return the command
+	 */
+	@Benchmark
+	public byte[] formatAmplitude() {
+		return formatter.capture(() -> formatter.setAmplitude(1, 2.5));
+	}
+
+	/**
+	 * Format a wave form command
+	 * @return the command
+	 */
+	@Benchmark
+	public byte[] formatWaveForm() {
+		return formatter.capture(() -> formatter.setWaveForm(1, waveType));
+	}
+
+	/**
+	 * Parse a frequency reply
+	 * @return the frequency
+	 */
+	@Benchmark
+	public double parseFrequency() {
+		return parser.getFrequency(1);
+	}
+
+	/**
+	 * Parse an amplitude reply
+	 * @return the amplitude
+	 */
+	@Benchmark
+	public double parseAmplitude() {
+		return parser.getAmplitude(1);
+	}
+
+	/**
+	 * Parse a wave form reply
+	 * @return the wave form
+	 */
+	@Benchmark
+	public int parseWaveForm() {
+		return parser.getWaveForm(1);
+	}
+}
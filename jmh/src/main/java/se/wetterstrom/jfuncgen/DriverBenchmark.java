@@ -0,0 +1,120 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Getter and setter round trips through the drivers against a
+ * {@link FakeDevice}. Setters measure command formatting, the write path
+ * and taking the acknowledge, so no replies pile up in the listener,
+ * getters also the listener and reply parsing. See
+ * {@link CommandBenchmark} for formatting and parsing alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DriverBenchmark {
+
+	/** the device type */
+	@Param({ "MHS5200", "FY6900" })
+	public String device;
+
+	/** the driver */
+	private AbstractSerialCom com;
+	/** the wave type to set */
+	private WaveType waveType;
+	/** the frequency to set */
+	private double frequency = 1000.0;
+
+	/** Connect the driver to a fake device */
+	@Setup
+	public void setUp() {
+		if ("MHS5200".equals(device)) {
+			com = new SerialCom5200();
+			FakeDevice.connect(com, FakeDevice::mhs5200);
+		} else {
+			com = new SerialCom6900();
+			FakeDevice.connect(com, FakeDevice::fy6900);
+		}
+		waveType = com.getWaveTypes(1).get(1);
+	}
+
+	/** Disconnect */
+	@TearDown
+	public void tearDown() {
+		com.disconnect();
+	}
+
+	/**
+	 * Set frequency
+	 * @return true if acknowledged
+	 */
+	@Benchmark
+	public boolean setFrequency() {
+		frequency = frequency < 1e6 ? frequency * 1.01 : 1000.0;
+		com.setFrequency(1, frequency);
+		return com.awaitAck();
+	}
+
+	/**
+	 * Set amplitude
+	 * @return true if acknowledged
+	 */
+	@Benchmark
+	public boolean setAmplitude() {
+		com.setAmplitude(1, 2.5);
+		return com.awaitAck();
+	}
+
+	/**
+	 * Set wave form
+	 * @return true if acknowledged
+	 */
+	@Benchmark
+	public boolean setWaveForm() {
+		com.setWaveForm(1, waveType);
+		return com.awaitAck();
+	}
+
+	/**
+	 * Get frequency
+	 * @return the frequency
+	 */
+	@Benchmark
+	public double getFrequency() {
+		return com.getFrequency(1);
+	}
+
+	/**
+	 * Get amplitude
+	 * @return the amplitude
+	 */
+	@Benchmark
+	public double getAmplitude() {
+		return com.getAmplitude(1);
+	}
+
+	/**
+	 * Get wave form
+	 * @return the wave form
+	 */
+	@Benchmark
+	public int getWaveForm() {
+		return com.getWaveForm(1);
+	}
+}
@@ -0,0 +1,87 @@
+package se.wetterstrom.jfuncgen;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.UnaryOperator;
+
+/**
+ * A device answering each command line with a canned reply, on the far end
+ * of a loopback pair. Replies are written on the thread writing the command,
+ * so a driver round trip runs without any thread hand-over and measures the
+ * driver and the listener only.
+ */
+class FakeDevice {
+
+	/** the device end */
+	private final LoopbackTransport end;
+	/** maps a command, without line break, to the reply or null for none */
+	private final UnaryOperator<String> replies;
+	/** the receive buffer */
+	private final ByteBuffer in = ByteBuffer.allocate(LoopbackTransport.DEFAULT_CAPACITY);
+	/** the incomplete command */
+	private final StringBuilder line = new StringBuilder();
+
+	/**
+	 * Constructor
+	 * @param end the device end of the pair
+	 * @param replies maps a command to the reply
+	 */
+	FakeDevice(LoopbackTransport end, UnaryOperator<String> replies) {
+		this.end = end;
+		this.replies = replies;
+		end.setDataListener(this::received);
+		end.open(null);
+	}
+
+	/**
+	 * Create a connected driver and device
+	 * @param com the driver
+	 * @param replies maps a command to the reply
+	 * @return the device
+	 */
+	static FakeDevice connect(AbstractSerialCom com, UnaryOperator<String> replies) {
+		var pair = LoopbackTransport.createPair("jmh");
+		var device = new FakeDevice(pair[1], replies);
+		com.setStatusConsumer((status, msg) -> {
+		});
+		com.setTransport(pair[0]);
+		return device;
+	}
+
+	/**
+	 * MHS5200 replies: reads echo the command followed by a value, sets are acknowledged
+	 * @param cmd the command
+	 * @return the reply
+	 */
+	static String mhs5200(String cmd) {
+		return cmd.startsWith(":r") ? cmd + "1000" : ":ok";
+	}
+
+	/**
+	 * FY6900 replies: reads return a value, sets an empty line
+	 * @param cmd the command
+	 * @return the reply
+	 */
+	static String fy6900(String cmd) {
+		return cmd.startsWith("R") ? "1000" : "";
+	}
+
+	/** Read the commands and reply */
+	private void received() {
+		int n;
+		while ((n = end.read(in.clear())) > 0) {
+			for (int i = 0; i < n; i++) {
+				char c = (char) (in.get(i) & 0xff);
+				if (c == '\n') {
+					var reply = replies.apply(line.toString());
+					line.setLength(0);
+					if (reply != null) {
+						end.write(ByteBuffer.wrap((reply + "\n").getBytes(StandardCharsets.ISO_8859_1)));
+					}
+				} else {
+					line.append(c);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Arbitrary wave form encoding and decoding and the hexdump of written bytes.
+ * Each operation handles a full wave form.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolBenchmark {
+
+	/** MHS5200 wave form */
+	private final int[] mhs5200Data = new int[SerialCom5200.SLICE_COUNT * SerialCom5200.SAMPLES_PER_SLICE];
+	/** MHS5200 read replies, one per slice */
+	private final String[] mhs5200Replies = new String[SerialCom5200.SLICE_COUNT];
+	/** MHS5200 decoded wave form */
+	private final int[] mhs5200Decoded = new int[mhs5200Data.length];
+	/** FY6900 wave form */
+	private final int[] fy6900Data = new int[8192];
+	/** FY6900 upload bytes */
+	private byte[] fy6900Bytes;
+
+	/** Create a sine wave form in both formats */
+	@Setup
+	public void setUp() {
+		for (int i = 0; i < mhs5200Data.length; i++) {
+			mhs5200Data[i] = 2048 + (int) (2047 * Math.sin(2 * Math.PI * i / mhs5200Data.length));
+		}
+		for (int slice = 0; slice < SerialCom5200.SLICE_COUNT; slice++) {
+			var cmd = SerialCom5200.encodeArbSlice(3, slice, mhs5200Data);
+			mhs5200Replies[slice] = ":b" + cmd.substring(2).trim();
+		}
+		for (int i = 0; i < fy6900Data.length; i++) {
+			fy6900Data[i] = 8192 + (int) (8191 * Math.sin(2 * Math.PI * i / fy6900Data.length));
+		}
+		fy6900Bytes = SerialCom6900.encodeArbData(fy6900Data, 0, 16383);
+	}
+
+	/**
+	 * Encode the MHS5200 slice write commands
+	 * @param bh the black hole
+	 */
+	@Benchmark
+	public void mhs5200EncodeArb(Blackhole bh) {
+		for (int slice = 0; slice < SerialCom5200.SLICE_COUNT; slice++) {
+			bh.consume(SerialCom5200.encodeArbSlice(3, slice, mhs5200Data));
+		}
+	}
+
+	/**
+	 * Decode the MHS5200 slice read replies
+	 * @return the decoded wave form
+	 */
+	@Benchmark
+	public int[] mhs5200DecodeArb() {
+		for (int slice = 0; slice < SerialCom5200.SLICE_COUNT; slice++) {
+			SerialCom5200.decodeArbSlice(mhs5200Replies[slice], slice, mhs5200Decoded);
+		}
+		return mhs5200Decoded;
+	}
+
+	/**
+	 * Encode the FY6900 upload
+	 * @return the bytes
+	 */
+	@Benchmark
+	public byte[] fy6900EncodeArb() {
+		return SerialCom6900.encodeArbData(fy6900Data, 0, 16383);
+	}
+
+	/**
+	 * Hexdump of the FY6900 upload, limited to the default limit of the output consumers
+	 * @return the hexdump
+	 */
+	@Benchmark
+	public String hexDumpLimited() {
+		return Utils.hexDump(fy6900Bytes, 1024);
+	}
+
+	/**
+	 * Full hexdump of the FY6900 upload
+	 * @return the hexdump
+	 */
+	@Benchmark
+	public String hexDumpFull() {
+		return Utils.hexDump(fy6900Bytes);
+	}
+}
@@ -0,0 +1,77 @@
+package se.wetterstrom.jfuncgen;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Headless rendering of {@link DataGraphComponent} into an image, as when
+ * the arbitrary wave form editor repaints. The height is a quarter of the width.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true" })
+public class RenderBenchmark {
+
+	/** Maximum sample value, as FY6900 */
+	private static final int MAX = 16383;
+
+	/** the number of samples */
+	@Param({ "2048", "8192", "1048576" })
+	public int size;
+
+	/** the component width in pixels */
+	@Param({ "400", "1600" })
+	public int width;
+
+	/** the component */
+	private DataGraphComponent dgc;
+	/** the image */
+	private BufferedImage image;
+	/** the image graphics */
+	private Graphics2D g;
+
+	/** Create a sine wave form and the image */
+	@Setup
+	public void setUp() {
+		dgc = new DataGraphComponent();
+		dgc.initData(MAX, 0, size);
+		dgc.plot(x -> (int) ((Math.sin((((double) x) / size) * 2 * Math.PI) + 1.0) * MAX / 2));
+		int height = width / 4;
+		dgc.setSize(width, height);
+		image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		g = image.createGraphics();
+	}
+
+	/** Dispose the graphics */
+	@TearDown
+	public void tearDown() {
+		g.dispose();
+	}
+
+	/**
+	 * Paint
+	 * @return the image
+	 */
+	@Benchmark
+	public BufferedImage paint() {
+		dgc.paintComponent(g);
+		return image;
+	}
+}
@@ -0,0 +1,82 @@
+package se.wetterstrom.jfuncgen;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Line assembly in {@link SerialListener} with the input split into chunks
+ * of a given size, as delivered by a serial port. The score is in lines.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerialListenerBenchmark {
+
+	/** Number of lines per invocation */
+	private static final int LINES = 256;
+
+	/** the chunk size in bytes */
+	@Param({ "1", "8", "64", "4096" })
+	public int chunkSize;
+
+	/** the listener */
+	private SerialListener listener;
+	/** the input */
+	private byte[] input;
+
+	/** Create the input, typical replies of both devices */
+	@Setup
+	public void setUp() {
+		var sb = new StringBuilder();
+		for (int i = 0; i < LINES; i++) {
+			sb.append(switch (i % 4) {
+				case 0 -> ":r1f0000088000\n";
+				case 1 -> ":ok\n";
+				case 2 -> "12345678.000000\n";
+				default -> "FY6900-60M\n";
+			});
+		}
+		input = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+		listener = new SerialListener();
+	}
+
+	/** Stop the listener */
+	@TearDown
+	public void tearDown() {
+		listener.stop();
+	}
+
+	/**
+	 * Receive the input and poll all lines
+	 * @return number of lines
+	 */
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public int receive() {
+		for (int off = 0; off < input.length; off += chunkSize) {
+			listener.received(input, off, Math.min(chunkSize, input.length - off));
+		}
+		int count = 0;
+		while (listener.poll(0) != null) {
+			count++;
+		}
+		return count;
+	}
+}
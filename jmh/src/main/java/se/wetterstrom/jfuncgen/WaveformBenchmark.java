@@ -0,0 +1,178 @@
+package se.wetterstrom.jfuncgen;
+
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.objecthunter.exp4j.Expression;
+import net.objecthunter.exp4j.ExpressionBuilder;
+
+/**
+ * Wave form generation, transforms and CSV conversion of the arbitrary wave
+ * form editor. Bulk operations include storing the undo level, as in the
+ * editor; the functions are those of the {@link ArbitraryPanel} buttons.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g", "-Djava.awt.headless=true" })
+public class WaveformBenchmark {
+
+	/** Maximum sample value, as FY6900 */
+	private static final int MAX = 16383;
+
+	/** the number of samples */
+	@Param({ "2048", "8192", "1048576" })
+	public int size;
+
+	/** the component */
+	private DataGraphComponent dgc;
+	/** random generator, as in the editor */
+	private final Random random = new SecureRandom();
+	/** a polynomial expression */
+	private Expression polynomial;
+	/** a trigonometric expression */
+	private Expression trigonometric;
+	/** the wave form as CSV */
+	private String csv;
+	/** move direction */
+	private int dist = 10;
+
+	/** Create a sine wave form */
+	@Setup
+	public void setUp() {
+		dgc = new DataGraphComponent();
+		dgc.initData(MAX, 0, size);
+		sin();
+		csv = dgc.getCSV();
+		polynomial = new ExpressionBuilder("x^3-2*x^2+x").variables("x").build();
+		trigonometric = new ExpressionBuilder("abs(sin(x*x))").variables("x").build();
+	}
+
+	/**
+	 * Sine wave
+	 * @return the data
+	 */
+	@Benchmark
+	public int[] sin() {
+		dgc.plot(x -> (int) ((Math.sin((((double) x) / size) * 2 * Math.PI) + 1.0) * MAX / 2));
+		return dgc.getData();
+	}
+
+	/**
+	 * Random data
+	 * @return the data
+	 */
+	@Benchmark
+	public int[] random() {
+		dgc.plot(x -> random.nextInt(MAX));
+		return dgc.getData();
+	}
+
+	/**
+	 * Polynomial expression
+	 * @return the data
+	 */
+	@Benchmark
+	public int[] expressionPolynomial() {
+		dgc.setData(ArbitraryPanel.fx(polynomial, -1.0, 2.0, size, 0, MAX));
+		return dgc.getData();
+	}
+
+	/**
+	 * Trigonometric expression
+	 * @return the data
+	 */
+	@Benchmark
+	public int[] expressionTrigonometric() {
+		dgc.setData(ArbitraryPanel.fx(trigonometric, 0.0, 2 * Math.PI, size, 0, MAX));
+		return dgc.getData();
+	}
+
+	/**
+	 * Gain
+	 * @return the data
+	 */
+	@Benchmark
+	public int[] gain() {
+		dgc.gain();
+		return dgc.getData();
+	}
+
+	/**
+	 * Move up and down
+	 * @return the data
+	 */
+	@Benchmark
+	public int[] move() {
+		dist = -dist;
+		dgc.move(dist);
+		return dgc.getData();
+	}
+
+	/**
+	 * Absolute value around the middle
+	 * @return the data
+	 */
+	@Benchmark
+	public int[] abs() {
+		dgc.plot((x, y) -> Math.abs(y - MAX / 2) + MAX / 2);
+		return dgc.getData();
+	}
+
+	/**
+	 * Invert
+	 * @return the data
+	 */
+	@Benchmark
+	public int[] invert() {
+		dgc.plot((x, y) -> ((MAX / 2) + MAX / 2) - y);
+		return dgc.getData();
+	}
+
+	/**
+	 * Triangle drawn with two lines
+	 * @return the data
+	 */
+	@Benchmark
+	public int[] drawLine() {
+		dist = -dist;
+		int top = MAX - 1 + Math.min(dist, 0);
+		dgc.drawDataLine(0, top, (size / 2) - 1, 0);
+		dgc.drawDataLine(size / 2, 0, size - 1, top);
+		dgc.commit();
+		return dgc.getData();
+	}
+
+	/**
+	 * Format as CSV
+	 * @return the CSV
+	 */
+	@Benchmark
+	public String formatCsv() {
+		return dgc.getCSV();
+	}
+
+	/**
+	 * Parse CSV
+	 * @return number of values
+	 */
+	@Benchmark
+	public int parseCsv() {
+		return dgc.parseCSV(csv);
+	}
+}
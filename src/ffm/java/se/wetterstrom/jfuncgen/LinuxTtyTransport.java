@@ -0,0 +1,543 @@
+package se.wetterstrom.jfuncgen;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Locale;
+
+import com.fazecast.jSerialComm.SerialPort;
+
+/**
+ * Serial port transport for Linux ttys using the foreign function and memory
+ * API, without a native library of its own.
+ * <p>
+ * The tty is opened non-blocking and set to raw mode with termios. VMIN and
+ * VTIME are zero, so the line discipline hands over every byte at once, and
+ * the driver low latency flag is set where the driver supports it. A virtual
+ * thread waits on epoll and calls the data listener when bytes can be read.
+ * Reads and writes go through off-heap buffers, or straight to the caller's
+ * buffer if it is direct.
+ * <p>
+ * The constants are those of the generic Linux ABI used on x86-64 and AArch64.
+ */
+public class LinuxTtyTransport implements SerialTransport {
+
+	/** Off-heap buffer size */
+	private static final int BUFFER_SIZE = 4096;
+	/** Max epoll events per wait */
+	private static final int MAX_EVENTS = 4;
+
+	// fcntl.h
+	private static final int O_RDWR = 02;
+	private static final int O_NOCTTY = 0400;
+	private static final int O_NONBLOCK = 04000;
+	private static final int O_CLOEXEC = 02000000;
+	// errno.h
+	private static final int EINTR = 4;
+	private static final int EAGAIN = 11;
+	// termios.h, struct termios of glibc
+	private static final int TERMIOS_SIZE = 60;
+	private static final int C_IFLAG = 0;
+	private static final int C_CFLAG = 8;
+	private static final int C_CC = 17;
+	private static final int VTIME = 5;
+	private static final int VMIN = 6;
+	private static final int IXON = 02000;
+	private static final int IXOFF = 010000;
+	private static final int IXANY = 04000;
+	private static final int CSIZE = 060;
+	private static final int CSTOPB = 0100;
+	private static final int CREAD = 0200;
+	private static final int PARENB = 0400;
+	private static final int PARODD = 01000;
+	private static final int CLOCAL = 04000;
+	private static final int CMSPAR = 010000000000;
+	private static final int CRTSCTS = 020000000000;
+	private static final int TCSANOW = 0;
+	private static final int TCIOFLUSH = 2;
+	// ioctls
+	private static final long TIOCEXCL = 0x540C;
+	private static final long TIOCGSERIAL = 0x541E;
+	private static final long TIOCSSERIAL = 0x541F;
+	/** struct serial_struct, rounded up */
+	private static final int SERIAL_STRUCT_SIZE = 128;
+	/** offset of flags in struct serial_struct */
+	private static final int SERIAL_FLAGS = 16;
+	private static final int ASYNC_LOW_LATENCY = 1 << 13;
+	// epoll.h, eventfd.h
+	private static final int EPOLL_CLOEXEC = O_CLOEXEC;
+	private static final int EPOLL_CTL_ADD = 1;
+	private static final int EPOLLIN = 0x001;
+	private static final int EPOLLERR = 0x008;
+	private static final int EPOLLHUP = 0x010;
+	private static final int EFD_CLOEXEC = O_CLOEXEC;
+	private static final int EFD_NONBLOCK = O_NONBLOCK;
+	/** struct epoll_event is packed on x86-64 only */
+	private static final boolean EPOLL_PACKED = "amd64".equals(System.getProperty("os.arch"));
+	private static final int EVENT_SIZE = EPOLL_PACKED ? 12 : 16;
+	private static final int EVENT_DATA = EPOLL_PACKED ? 4 : 8;
+
+	/** Standard baud rates and their speed_t constants */
+	private static final int[][] SPEEDS = {
+			{ 1200, 0011 }, { 2400, 0013 }, { 4800, 0014 }, { 9600, 0015 }, { 19200, 0016 }, { 38400, 0017 },
+			{ 57600, 010001 }, { 115200, 010002 }, { 230400, 010003 }, { 460800, 010004 }, { 500000, 010005 },
+			{ 576000, 010006 }, { 921600, 010007 }, { 1000000, 010010 } };
+
+	private static final Linker LINKER = Linker.nativeLinker();
+	/** layout of the captured errno */
+	private static final MemoryLayout ERRNO_LAYOUT = Linker.Option.captureStateLayout();
+	private static final long ERRNO = ERRNO_LAYOUT.byteOffset(MemoryLayout.PathElement.groupElement("errno"));
+	private static final Linker.Option CAPTURE_ERRNO = Linker.Option.captureCallState("errno");
+
+	private static final MethodHandle OPEN = downcall("open",
+			FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_INT), CAPTURE_ERRNO);
+	private static final MethodHandle CLOSE = downcall("close",
+			FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT));
+	private static final MethodHandle READ = downcall("read",
+			FunctionDescriptor.of(ValueLayout.JAVA_LONG, ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_LONG), CAPTURE_ERRNO);
+	private static final MethodHandle WRITE = downcall("write",
+			FunctionDescriptor.of(ValueLayout.JAVA_LONG, ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_LONG), CAPTURE_ERRNO);
+	private static final MethodHandle IOCTL = downcall("ioctl",
+			FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.JAVA_LONG, ValueLayout.ADDRESS),
+			Linker.Option.firstVariadicArg(2));
+	private static final MethodHandle TCGETATTR = downcall("tcgetattr",
+			FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.ADDRESS));
+	private static final MethodHandle TCSETATTR = downcall("tcsetattr",
+			FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.ADDRESS));
+	private static final MethodHandle TCFLUSH = downcall("tcflush",
+			FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.JAVA_INT));
+	private static final MethodHandle CFMAKERAW = downcall("cfmakeraw",
+			FunctionDescriptor.ofVoid(ValueLayout.ADDRESS));
+	private static final MethodHandle CFSETSPEED = downcall("cfsetspeed",
+			FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_INT));
+	private static final MethodHandle EPOLL_CREATE1 = downcall("epoll_create1",
+			FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT));
+	private static final MethodHandle EPOLL_CTL = downcall("epoll_ctl",
+			FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.ADDRESS));
+	private static final MethodHandle EPOLL_WAIT = downcall("epoll_wait",
+			FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_INT, ValueLayout.JAVA_INT), CAPTURE_ERRNO);
+	private static final MethodHandle EVENTFD = downcall("eventfd",
+			FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.JAVA_INT));
+
+	/** the device path */
+	private final String path;
+	/** the description */
+	private final String description;
+	/** lock for reads and the read buffer */
+	private final Object readLock = new Object();
+	/** lock for writes and the write buffer */
+	private final Object writeLock = new Object();
+	/** the tty file descriptor, -1 if closed */
+	private volatile int fd = -1;
+	/** the eventfd waking up the epoll thread */
+	private int wakeFd = -1;
+	/** arena of the off-heap buffers, open while the tty is open */
+	private Arena arena;
+	/** off-heap read buffer */
+	private MemorySegment readBuffer;
+	/** off-heap write buffer */
+	private MemorySegment writeBuffer;
+	/** errno of reads */
+	private MemorySegment readErrno;
+	/** errno of writes */
+	private MemorySegment writeErrno;
+	/** the data listener */
+	private volatile Runnable listener;
+
+	/**
+	 * Constructor
+	 * @param path the device path, e.g. /dev/ttyUSB0
+	 */
+	public LinuxTtyTransport(String path) {
+		this(path, null);
+	}
+
+	/**
+	 * Constructor
+	 * @param path the device path, e.g. /dev/ttyUSB0
+	 * @param description the port description, or null
+	 */
+	public LinuxTtyTransport(String path, String description) {
+		this.path = path;
+		this.description = description;
+	}
+
+	/**
+	 * Check if the platform is supported
+	 * @return true on Linux x86-64 and AArch64
+	 */
+	public static boolean isSupported() {
+		var arch = System.getProperty("os.arch");
+		return System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("linux")
+				&& ("amd64".equals(arch) || "aarch64".equals(arch));
+	}
+
+	/**
+	 * Get the device path
+	 * @return the path
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	@Override
+	public boolean open(PortSettings settings) {
+		synchronized (readLock) {
+			synchronized (writeLock) {
+				close();
+				var a = Arena.ofShared();
+				int tty = -1;
+				int epfd = -1;
+				int efd = -1;
+				try {
+					var errno = a.allocate(ERRNO_LAYOUT);
+					tty = (int) OPEN.invokeExact(errno, cString(a, path), O_RDWR | O_NOCTTY | O_NONBLOCK | O_CLOEXEC);
+					if (tty < 0 || !configure(a, tty, settings)) {
+						throw new IllegalStateException(path);
+					}
+					epfd = (int) EPOLL_CREATE1.invokeExact(EPOLL_CLOEXEC);
+					efd = (int) EVENTFD.invokeExact(0, EFD_CLOEXEC | EFD_NONBLOCK);
+					if (epfd < 0 || efd < 0 || !register(a, epfd, tty, EPOLLIN) || !register(a, epfd, efd, EPOLLIN)) {
+						throw new IllegalStateException(path);
+					}
+				} catch (Throwable e) {
+					closeFd(tty);
+					closeFd(epfd);
+					closeFd(efd);
+					a.close();
+					return false;
+				}
+				arena = a;
+				readBuffer = a.allocate(BUFFER_SIZE, 8);
+				writeBuffer = a.allocate(BUFFER_SIZE, 8);
+				readErrno = a.allocate(ERRNO_LAYOUT);
+				writeErrno = a.allocate(ERRNO_LAYOUT);
+				wakeFd = efd;
+				fd = tty;
+				int ep = epfd;
+				int wake = efd;
+				Thread.ofVirtual().name("tty-" + getName()).start(() -> poll(ep, wake));
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Configure the tty
+	 * @param a the arena
+	 * @param tty the file descriptor
+	 * @param settings the port settings, or null to keep the line settings
+	 * @return true if successful
+	 * @throws Throwable on invocation errors
+	 */
+	private static boolean configure(Arena a, int tty, PortSettings settings) throws Throwable {
+		// exclusive access and low latency, both optional
+		int ignored = (int) IOCTL.invokeExact(tty, TIOCEXCL, MemorySegment.NULL);
+		var serial = a.allocate(SERIAL_STRUCT_SIZE, 8);
+		if ((int) IOCTL.invokeExact(tty, TIOCGSERIAL, serial) == 0) {
+			serial.set(ValueLayout.JAVA_INT, SERIAL_FLAGS, serial.get(ValueLayout.JAVA_INT, SERIAL_FLAGS) | ASYNC_LOW_LATENCY);
+			ignored = (int) IOCTL.invokeExact(tty, TIOCSSERIAL, serial);
+		}
+
+		var t = a.allocate(TERMIOS_SIZE, 8);
+		if ((int) TCGETATTR.invokeExact(tty, t) != 0) {
+			return false;
+		}
+		CFMAKERAW.invokeExact(t);
+		int iflag = t.get(ValueLayout.JAVA_INT, C_IFLAG) & ~(IXON | IXOFF | IXANY);
+		int cflag = t.get(ValueLayout.JAVA_INT, C_CFLAG) | CLOCAL | CREAD;
+		if (settings != null) {
+			cflag &= ~(CSIZE | CSTOPB | PARENB | PARODD | CMSPAR | CRTSCTS);
+			cflag |= (Math.clamp(settings.dataBits, 5, 8) - 5) << 4;
+			if (settings.stopBits != SerialPort.ONE_STOP_BIT) {
+				cflag |= CSTOPB;
+			}
+			cflag |= switch (settings.parity) {
+				case ODD -> PARENB | PARODD;
+				case EVEN -> PARENB;
+				case MARK -> PARENB | PARODD | CMSPAR;
+				case SPACE -> PARENB | CMSPAR;
+				default -> 0;
+			};
+			if ((settings.flowCtrl & (SerialPort.FLOW_CONTROL_RTS_ENABLED | SerialPort.FLOW_CONTROL_CTS_ENABLED)) != 0) {
+				cflag |= CRTSCTS;
+			}
+			if ((settings.flowCtrl & SerialPort.FLOW_CONTROL_XONXOFF_IN_ENABLED) != 0) {
+				iflag |= IXOFF;
+			}
+			if ((settings.flowCtrl & SerialPort.FLOW_CONTROL_XONXOFF_OUT_ENABLED) != 0) {
+				iflag |= IXON;
+			}
+			int speed = speed(settings.baudRate);
+			if (speed < 0 || (int) CFSETSPEED.invokeExact(t, speed) != 0) {
+				return false;
+			}
+		}
+		t.set(ValueLayout.JAVA_INT, C_IFLAG, iflag);
+		t.set(ValueLayout.JAVA_INT, C_CFLAG, cflag);
+		t.set(ValueLayout.JAVA_BYTE, C_CC + VMIN, (byte) 0);
+		t.set(ValueLayout.JAVA_BYTE, C_CC + VTIME, (byte) 0);
+		if ((int) TCSETATTR.invokeExact(tty, TCSANOW, t) != 0) {
+			return false;
+		}
+		ignored = (int) TCFLUSH.invokeExact(tty, TCIOFLUSH);
+		return true;
+	}
+
+	/**
+	 * Get the speed_t constant of a baud rate
+	 * @param baudRate the baud rate
+	 * @return the constant, or -1 if not a standard rate
+	 */
+	static int speed(int baudRate) {
+		for (var s : SPEEDS) {
+			if (s[0] == baudRate) {
+				return s[1];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Add a file descriptor to an epoll set
+	 * @param a the arena
+	 * @param epfd the epoll file descriptor
+	 * @param target the file descriptor to add
+	 * @param events the events
+	 * @return true if successful
+	 * @throws Throwable on invocation errors
+	 */
+	private static boolean register(Arena a, int epfd, int target, int events) throws Throwable {
+		var ev = a.allocate(EVENT_SIZE, 8);
+		ev.set(ValueLayout.JAVA_INT, 0, events);
+		ev.set(ValueLayout.JAVA_INT, EVENT_DATA, target);
+		return (int) EPOLL_CTL.invokeExact(epfd, EPOLL_CTL_ADD, target, ev) == 0;
+	}
+
+	/**
+	 * Wait for data and notify the listener until closed. The epoll and
+	 * event file descriptors are owned by this loop.
+	 * @param epfd the epoll file descriptor
+	 * @param efd the eventfd
+	 */
+	private void poll(int epfd, int efd) {
+		try (var a = Arena.ofConfined()) {
+			var events = a.allocate((long) EVENT_SIZE * MAX_EVENTS, 8);
+			var errno = a.allocate(ERRNO_LAYOUT);
+			while (fd >= 0) {
+				int n = (int) EPOLL_WAIT.invokeExact(errno, epfd, events, MAX_EVENTS, -1);
+				if (n < 0 && errno.get(ValueLayout.JAVA_INT, ERRNO) != EINTR) {
+					break;
+				}
+				for (int i = 0; i < n && fd >= 0; i++) {
+					int ev = events.get(ValueLayout.JAVA_INT, (long) i * EVENT_SIZE);
+					int source = events.get(ValueLayout.JAVA_INT, (long) i * EVENT_SIZE + EVENT_DATA);
+					if (source != efd) {
+						dataAvailable(ev);
+					}
+				}
+			}
+		} catch (Throwable e) {
+			close();
+		} finally {
+			closeFd(epfd);
+			closeFd(efd);
+		}
+	}
+
+	/**
+	 * Handle an event on the tty
+	 * @param ev the epoll events
+	 * @throws InterruptedException if interrupted
+	 */
+	private void dataAvailable(int ev) throws InterruptedException {
+		var l = listener;
+		if (l != null) {
+			l.run();
+		} else {
+			Thread.sleep(10);
+		}
+		if ((ev & (EPOLLHUP | EPOLLERR)) != 0) {
+			// the device is gone
+			close();
+		}
+	}
+
+	@Override
+	public void close() {
+		synchronized (readLock) {
+			synchronized (writeLock) {
+				int tty = fd;
+				if (tty < 0) {
+					return;
+				}
+				// wake up the epoll thread before it can see the closed fd
+				readBuffer.set(ValueLayout.JAVA_LONG, 0, 1L);
+				try {
+					long ignored = (long) WRITE.invokeExact(readErrno, wakeFd, readBuffer, 8L);
+				} catch (Throwable e) {
+					// the loop ends on the next event
+				}
+				fd = -1;
+				wakeFd = -1;
+				closeFd(tty);
+				arena.close();
+				arena = null;
+			}
+		}
+	}
+
+	/**
+	 * Close a file descriptor
+	 * @param target the file descriptor, ignored if negative
+	 */
+	private static void closeFd(int target) {
+		if (target >= 0) {
+			try {
+				int ignored = (int) CLOSE.invokeExact(target);
+			} catch (Throwable e) {
+				// ignore
+			}
+		}
+	}
+
+	@Override
+	public boolean isOpen() {
+		return fd >= 0;
+	}
+
+	@Override
+	public int read(ByteBuffer dst) {
+		synchronized (readLock) {
+			int tty = fd;
+			if (tty < 0) {
+				return -1;
+			}
+			if (!dst.hasRemaining()) {
+				return 0;
+			}
+			try {
+				long n;
+				if (dst.isDirect()) {
+					n = (long) READ.invokeExact(readErrno, tty, MemorySegment.ofBuffer(dst), (long) dst.remaining());
+				} else {
+					n = (long) READ.invokeExact(readErrno, tty, readBuffer, (long) Math.min(dst.remaining(), BUFFER_SIZE));
+					if (n > 0) {
+						MemorySegment.copy(readBuffer, 0, MemorySegment.ofBuffer(dst), 0, n);
+					}
+				}
+				if (n > 0) {
+					dst.position(dst.position() + (int) n);
+					return (int) n;
+				}
+				// with VMIN and VTIME zero a read without data returns 0
+				if (n == 0 || isRetry(readErrno)) {
+					return 0;
+				}
+			} catch (Throwable e) {
+				// closed below
+			}
+			// error, e.g. EIO when the device was unplugged
+			close();
+			return -1;
+		}
+	}
+
+	@Override
+	public int write(ByteBuffer src) {
+		synchronized (writeLock) {
+			int tty = fd;
+			if (tty < 0) {
+				return -1;
+			}
+			if (!src.hasRemaining()) {
+				return 0;
+			}
+			try {
+				long n;
+				if (src.isDirect()) {
+					n = (long) WRITE.invokeExact(writeErrno, tty, MemorySegment.ofBuffer(src), (long) src.remaining());
+				} else {
+					int count = Math.min(src.remaining(), BUFFER_SIZE);
+					MemorySegment.copy(MemorySegment.ofBuffer(src), 0, writeBuffer, 0, count);
+					n = (long) WRITE.invokeExact(writeErrno, tty, writeBuffer, (long) count);
+				}
+				if (n >= 0) {
+					src.position(src.position() + (int) n);
+					return (int) n;
+				}
+				return isRetry(writeErrno) ? 0 : -1;
+			} catch (Throwable e) {
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Check if a failed call can be retried
+	 * @param errno the captured errno
+	 * @return true if it would block or was interrupted
+	 */
+	private static boolean isRetry(MemorySegment errno) {
+		int e = errno.get(ValueLayout.JAVA_INT, ERRNO);
+		return e == EAGAIN || e == EINTR;
+	}
+
+	@Override
+	public void setDataListener(Runnable listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public String getName() {
+		return Path.of(path).getFileName().toString();
+	}
+
+	@Override
+	public String getDescription() {
+		return getName() + " - " + (description != null ? description : path) + " (native)";
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof LinuxTtyTransport t && path.equals(t.path);
+	}
+
+	@Override
+	public int hashCode() {
+		return path.hashCode();
+	}
+
+	/**
+	 * Allocate a NUL terminated string
+	 * @param a the arena
+	 * @param str the string
+	 * @return the segment
+	 */
+	static MemorySegment cString(Arena a, String str) {
+		var bytes = str.getBytes(StandardCharsets.UTF_8);
+		var seg = a.allocate(bytes.length + 1L, 1);
+		MemorySegment.copy(bytes, 0, seg, ValueLayout.JAVA_BYTE, 0, bytes.length);
+		seg.set(ValueLayout.JAVA_BYTE, bytes.length, (byte) 0);
+		return seg;
+	}
+
+	/**
+	 * Look up a libc function
+	 * @param name the function name
+	 * @param function the function descriptor
+	 * @param options the linker options
+	 * @return the method handle
+	 */
+	private static MethodHandle downcall(String name, FunctionDescriptor function, Linker.Option... options) {
+		var symbol = LINKER.defaultLookup().find(name).orElseThrow(() -> new UnsatisfiedLinkError(name));
+		return LINKER.downcallHandle(symbol, function, options);
+	}
+}
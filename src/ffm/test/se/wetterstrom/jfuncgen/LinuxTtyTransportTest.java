@@ -0,0 +1,201 @@
+package se.wetterstrom.jfuncgen;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fazecast.jSerialComm.SerialPort;
+
+/**
+ * End to end tests of {@link LinuxTtyTransport} on a pseudo terminal pair.
+ * The test plays the device on the master side.
+ */
+public class LinuxTtyTransportTest {
+
+	private static final Linker LINKER = Linker.nativeLinker();
+
+	private Arena arena;
+	private MethodHandle read;
+	private MethodHandle write;
+	private MethodHandle close;
+	private int master = -1;
+	private int slave = -1;
+	private String slaveName;
+	private LinuxTtyTransport tty;
+
+	@Before
+	public void setUp() throws Throwable {
+		Assume.assumeTrue("Linux only", LinuxTtyTransport.isSupported());
+		arena = Arena.ofShared();
+		var libc = LINKER.defaultLookup();
+		// openpty moved from libutil to libc in glibc 2.34
+		var openpty = libc.find("openpty")
+				.or(() -> SymbolLookup.libraryLookup("libutil.so.1", arena).find("openpty")).orElseThrow();
+		var openptyHandle = LINKER.downcallHandle(openpty, FunctionDescriptor.of(ValueLayout.JAVA_INT,
+				ValueLayout.ADDRESS, ValueLayout.ADDRESS, ValueLayout.ADDRESS, ValueLayout.ADDRESS, ValueLayout.ADDRESS));
+		read = LINKER.downcallHandle(libc.find("read").orElseThrow(),
+				FunctionDescriptor.of(ValueLayout.JAVA_LONG, ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_LONG));
+		write = LINKER.downcallHandle(libc.find("write").orElseThrow(),
+				FunctionDescriptor.of(ValueLayout.JAVA_LONG, ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.JAVA_LONG));
+		close = LINKER.downcallHandle(libc.find("close").orElseThrow(),
+				FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT));
+
+		var fds = arena.allocate(8, 4);
+		var name = arena.allocate(256, 1);
+		int rc = (int) openptyHandle.invokeExact(fds, fds.asSlice(4), name, MemorySegment.NULL, MemorySegment.NULL);
+		Assume.assumeTrue("openpty", rc == 0);
+		master = fds.get(ValueLayout.JAVA_INT, 0);
+		slave = fds.get(ValueLayout.JAVA_INT, 4);
+		int len = 0;
+		while (name.get(ValueLayout.JAVA_BYTE, len) != 0) {
+			len++;
+		}
+		slaveName = new String(name.asSlice(0, len).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8);
+		tty = new LinuxTtyTransport(slaveName);
+	}
+
+	@After
+	public void tearDown() throws Throwable {
+		if (tty != null) {
+			tty.close();
+		}
+		closeFd(master);
+		closeFd(slave);
+		if (arena != null) {
+			arena.close();
+		}
+	}
+
+	private void closeFd(int fd) throws Throwable {
+		if (fd >= 0) {
+			int rc = (int) close.invokeExact(fd);
+		}
+	}
+
+	/** Write to the master side */
+	private void deviceWrite(String str) throws Throwable {
+		var bytes = str.getBytes(StandardCharsets.ISO_8859_1);
+		var seg = arena.allocate(bytes.length, 1);
+		seg.copyFrom(MemorySegment.ofArray(bytes));
+		Assert.assertEquals("written", bytes.length, (long) write.invokeExact(master, seg, (long) bytes.length));
+	}
+
+	/** Blocking read of a line on the master side */
+	private String deviceReadLine(MemorySegment buf) throws Throwable {
+		var sb = new StringBuilder();
+		while (sb.isEmpty() || sb.charAt(sb.length() - 1) != '\n') {
+			long n = (long) read.invokeExact(master, buf, 1L);
+			if (n <= 0) {
+				return null;
+			}
+			sb.append((char) buf.get(ValueLayout.JAVA_BYTE, 0));
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testRawMode() throws Throwable {
+		// a pty always has 8 data bits, no parity and its own baud rate
+		var settings = new PortSettings(slaveName, 115200, 8, Parity.NONE, SerialPort.TWO_STOP_BITS, SerialPort.FLOW_CONTROL_DISABLED);
+		Assert.assertTrue("open", tty.open(settings));
+		Assert.assertTrue("open", tty.isOpen());
+
+		var tcgetattr = LINKER.downcallHandle(LINKER.defaultLookup().find("tcgetattr").orElseThrow(),
+				FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.ADDRESS));
+		var t = arena.allocate(60, 8);
+		Assert.assertEquals("tcgetattr", 0, (int) tcgetattr.invokeExact(slave, t));
+		int cflag = t.get(ValueLayout.JAVA_INT, 8);
+		int lflag = t.get(ValueLayout.JAVA_INT, 12);
+		Assert.assertEquals("CS8", 060, cflag & 060);
+		Assert.assertEquals("PARENB", 0, cflag & 0400);
+		Assert.assertEquals("CSTOPB", 0100, cflag & 0100);
+		Assert.assertEquals("ICANON ECHO", 0, lflag & 012);
+		Assert.assertEquals("VMIN", 0, t.get(ValueLayout.JAVA_BYTE, 17 + 6));
+		Assert.assertEquals("VTIME", 0, t.get(ValueLayout.JAVA_BYTE, 17 + 5));
+		Assert.assertEquals("B115200", 010002, LinuxTtyTransport.speed(115200));
+
+		Assert.assertFalse("nonstandard speed", new LinuxTtyTransport(slaveName)
+				.open(new PortSettings(slaveName, 12345, 8, Parity.NONE, SerialPort.ONE_STOP_BIT, 0)));
+		Assert.assertFalse("no such device", new LinuxTtyTransport("/dev/nonexistent").open(settings));
+	}
+
+	@Test
+	public void testReadWrite() throws Throwable {
+		var received = new StringBuffer();
+		var done = new CountDownLatch(1);
+		var heap = ByteBuffer.allocate(3);
+		var direct = ByteBuffer.allocateDirect(64);
+		tty.setDataListener(() -> {
+			// alternate between heap and direct buffers
+			int n;
+			while ((n = tty.read(heap.clear())) > 0 || (n = tty.read(direct.clear())) > 0) {
+				var b = heap.position() > 0 ? heap.flip() : direct.flip();
+				while (b.hasRemaining()) {
+					received.append((char) b.get());
+				}
+			}
+			if (received.indexOf("\n") >= 0) {
+				done.countDown();
+			}
+		});
+		Assert.assertTrue("open", tty.open(null));
+		deviceWrite("hello world\n");
+		Assert.assertTrue("received", done.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals("data", "hello world\n", received.toString());
+
+		var src = ByteBuffer.wrap("to device\n".getBytes(StandardCharsets.ISO_8859_1));
+		Assert.assertEquals("written", 10, tty.write(src));
+		Assert.assertFalse("consumed", src.hasRemaining());
+		var directSrc = ByteBuffer.allocateDirect(16).put("direct\n".getBytes(StandardCharsets.ISO_8859_1)).flip();
+		Assert.assertEquals("written", 7, tty.write(directSrc));
+		var buf = arena.allocate(1, 1);
+		Assert.assertEquals("line", "to device\n", deviceReadLine(buf));
+		Assert.assertEquals("line", "direct\n", deviceReadLine(buf));
+	}
+
+	@Test
+	public void testDriver() throws Throwable {
+		var device = Thread.ofPlatform().daemon().start(() -> {
+			try (var a = Arena.ofConfined()) {
+				var buf = a.allocate(1, 1);
+				String line;
+				while ((line = deviceReadLine(buf)) != null) {
+					if (line.startsWith("UMO")) {
+						deviceWrite("FY6900-60M\n");
+						return;
+					}
+				}
+			} catch (Throwable e) {
+				// master closed
+			}
+		});
+		var com = new SerialCom6900();
+		com.setTransport(tty);
+		Assert.assertTrue("online", com.isOnline());
+		Assert.assertEquals("model", "FY6900-60M", com.getModel());
+
+		// hang up, the transport closes itself
+		device.join(5000);
+		closeFd(master);
+		master = -1;
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (tty.isOpen() && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		Assert.assertFalse("closed on hangup", tty.isOpen());
+	}
+}
@@ -1,15 +1,18 @@
 package se.wetterstrom.jfuncgen;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
-
-import javax.swing.ProgressMonitor;
+import java.util.function.Supplier;
 
 import com.fazecast.jSerialComm.SerialPort;
 
@@ -40,18 +43,45 @@ import se.wetterstrom.jfuncgen.AdvancedPanel.SweepSource;
  */
 public abstract class AbstractSerialCom {
 
+	/** Size of the receive buffer */
+	private static final int READ_BUFFER_SIZE = 4096;
+	/** Max time to wait for a transport that can not take more bytes, in milliseconds */
+	private static final long WRITE_TIMEOUT = 1000;
+
+	/** System property selecting the serial port transport, "native" for the Linux tty transport */
+	public static final String TTY_PROPERTY = "jfuncgen.tty";
+	/** the flight recorder of all devices, or null if not recording */
+	private static volatile FlightRecorder flightRecorder;
 	/** port settings */
 	private final PortSettings portSettings;
 	/** the listener */
 	protected SerialListener serialListener = new SerialListener();
 	/** output consumers */
-	private final Set<Consumer<String>> outputConsumers = new HashSet<>();
-	/** port */
-	private Optional<SerialPort> port = Optional.empty();
-	/** the consumer */
-	protected BiConsumer<StatusBar.Status, String> statusConsumer = (a, b) -> System.out.println(a + ":" + b);
+	private final EventBus<CharSequence> outputBus = new EventBus<>("serial-output");
+	/** status consumers */
+	private final EventBus<Pair<StatusBar.Status, String>> statusBus = new EventBus<>("serial-status");
+	/** the current status consumer subscription */
+	private EventBus.Subscription<Pair<StatusBar.Status, String>> statusSubscription;
+	/** the transport, or null if none */
+	private volatile SerialTransport transport = null;
+	/** the receive buffer */
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+	/** the consumer, publishing status to the status consumers */
+	protected final BiConsumer<StatusBar.Status, String> statusConsumer = (a, b) -> statusBus.publish(new Pair<>(a, b));
 	/** device type */
 	private DeviceType deviceType;
+	/** the clock of delays and timeouts */
+	private volatile Clock clock = Clock.system();
+	/** the time to wait for a reply in milliseconds, 0 for the default of 10 seconds */
+	private volatile long replyTimeout;
+	/** the number of writes to the device, requests not counted */
+	private final AtomicLong writes = new AtomicLong();
+	/** the port lock, held by each write and request, granted in arrival order */
+	private final ReentrantLock lock = new ReentrantLock(true);
+	/** the command written after the next request of {@link #pipelined(Supplier, String)}, per thread */
+	private final ThreadLocal<String> pipelined = new ThreadLocal<>();
+	/** the bytes written by the operation of {@link #capture(Runnable)}, per thread */
+	private final ThreadLocal<ByteArrayOutputStream> captured = new ThreadLocal<>();
 
 	/**
 	 * Constructor
@@ -60,6 +90,7 @@ public abstract class AbstractSerialCom {
 	 */
 	protected AbstractSerialCom(PortSettings portSettings) {
 		this.portSettings = portSettings;
+		setStatusConsumer((a, b) -> System.out.println(a + ":" + b));
 	}
 
 	/**
@@ -71,11 +102,132 @@ public abstract class AbstractSerialCom {
 	}
 
 	/**
-	 * Set serial listener
+	 * Get transports of all serial ports
+	 * @return the transports
+	 */
+	protected static List<SerialTransport> getPortTransports() {
+		var list = new ArrayList<SerialTransport>();
+		boolean nativeTty = "native".equals(System.getProperty(TTY_PROPERTY));
+		for (var p : getPorts()) {
+			list.add(nativeTty ? createNativeTransport(p) : new JSerialCommTransport(p));
+		}
+		return list;
+	}
+
+	/**
+	 * Create a native Linux tty transport, available when built with Java 22
+	 * or newer, falling back to jSerialComm
+	 * @param p the port
+	 * @return the transport
+	 */
+	private static SerialTransport createNativeTransport(SerialPort p) {
+		try {
+			var c = Class.forName("se.wetterstrom.jfuncgen.LinuxTtyTransport");
+			if (Boolean.TRUE.equals(c.getMethod("isSupported").invoke(null))) {
+				return (SerialTransport) c.getConstructor(String.class, String.class)
+						.newInstance(p.getSystemPortPath(), p.getDescriptivePortName());
+			}
+		} catch (ReflectiveOperationException | LinkageError e) {
+			// not built with it
+		}
+		return new JSerialCommTransport(p);
+	}
+
+	/**
+	 * Set the flight recorder of all devices
+	 * @param recorder the recorder, or null to stop recording
+	 */
+	public static void setFlightRecorder(FlightRecorder recorder) {
+		flightRecorder = recorder;
+	}
+
+	/**
+	 * Start recording all serial communication to the configured file,
+	 * unless disabled in the configuration
+	 */
+	public static void startFlightRecorder() {
+		int size = Config.getFlightRecorderSize();
+		if (size > 0 && flightRecorder == null) {
+			try {
+				setFlightRecorder(new FlightRecorder(Config.getFlightRecorderFile().toPath(), size * 1024L * 1024L));
+			} catch (IOException | RuntimeException e) {
+				System.err.println("Flight recorder disabled: " + e);
+			}
+		}
+	}
+
+	/**
+	 * Get the flight recorder
+	 * @return the recorder, or null if not recording
+	 */
+	public static FlightRecorder getFlightRecorder() {
+		return flightRecorder;
+	}
+
+	/**
+	 * Set serial listener, using the clock of this
 	 * @param serialListener the listener
 	 */
 	protected void setSerialListener(SerialListener serialListener) {
 		this.serialListener = serialListener;
+		serialListener.setClock(clock);
+	}
+
+	/**
+	 * Set the clock of delays and timeouts, also used by the serial listener
+	 * @param clock the clock
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+		serialListener.setClock(clock);
+	}
+
+	/**
+	 * Get the clock of delays and timeouts
+	 * @return the clock
+	 */
+	public Clock getClock() {
+		return clock;
+	}
+
+	/**
+	 * Set the time to wait for a reply, short when probing for a device
+	 * @param millis the time in milliseconds
+	 */
+	public void setReplyTimeout(long millis) {
+		replyTimeout = Math.max(0, millis);
+	}
+
+	/**
+	 * Wait for a reply
+	 * @return the reply, or null if timed out
+	 */
+	private String pollReply() {
+		return replyTimeout > 0 ? serialListener.poll(replyTimeout, TimeUnit.MILLISECONDS) : serialListener.poll(10);
+	}
+
+	/**
+	 * Ask the device to identify itself, to check that the device on the
+	 * port is of this type
+	 * @return the model and firmware, or null if the reply is not from a device of this type
+	 */
+	public String identify() {
+		return null;
+	}
+
+	/**
+	 * Sleep on the clock, keeping the interrupt status if interrupted
+	 * @param millis the time in milliseconds
+	 * @return false if interrupted
+	 */
+	protected boolean sleep(long millis) {
+		try {
+			clock.sleep(TimeUnit.MILLISECONDS.toNanos(millis));
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
 	}
 
 	/**
@@ -83,58 +235,201 @@ public abstract class AbstractSerialCom {
 	 * @param port the port
 	 */
 	public void setPort(SerialPort port) {
-		this.port.filter(p -> !p.equals(port)).ifPresent(p -> {
-			p.removeDataListener();
-			p.closePort();
-		});
-		this.port = Optional.ofNullable(port);
+		setTransport(port != null ? new JSerialCommTransport(port) : null);
+	}
+
+	/**
+	 * Set transport and connect
+	 * @param transport the transport, or null for none
+	 */
+	public void setTransport(SerialTransport transport) {
+		var prev = this.transport;
+		if (prev != null && !prev.equals(transport)) {
+			prev.setDataListener(null);
+			prev.close();
+		}
+		this.transport = transport;
 		connect();
 	}
 
+	/**
+	 * Get transport
+	 * @return the transport, or null if none
+	 */
+	public SerialTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * Use a simulator instead of a serial port
+	 * @param simulator the simulator, or null to close the simulator
+	 */
+	public void setSimulator(DeviceSimulator simulator) {
+		setTransport(simulator != null ? new SimulatorTransport(simulator, String.valueOf(getDeviceType())) : null);
+	}
+
+	/**
+	 * Get the simulator
+	 * @return the simulator, or null if not simulating
+	 */
+	public DeviceSimulator getSimulator() {
+		return transport instanceof SimulatorTransport t ? t.getSimulator() : null;
+	}
+
+	/**
+	 * Write all bytes to the transport. Waits at most {@link #WRITE_TIMEOUT}
+	 * without progress for a transport that can not take more bytes, so a
+	 * slow but moving transport is not cut off.
+	 * @param data the bytes
+	 * @return number of bytes written or -1 on error
+	 */
+	private int write(byte[] data) {
+		var t = transport;
+		if (t == null) {
+			return -1;
+		}
+		// recorded before writing, the reply may arrive before the write returns
+		var fr = flightRecorder;
+		if (fr != null) {
+			fr.record(FlightRecorder.Direction.TX, data, 0, data.length);
+		}
+		var buf = ByteBuffer.wrap(data);
+		var c = clock;
+		long deadline = c.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WRITE_TIMEOUT);
+		while (buf.hasRemaining()) {
+			int n = t.write(buf);
+			if (n < 0) {
+				return -1;
+			} else if (n > 0) {
+				deadline = c.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WRITE_TIMEOUT);
+			} else if (c.nanoTime() > deadline || !sleep(1)) {
+				break;
+			}
+		}
+		if (fr != null && buf.hasRemaining()) {
+			fr.event("Wrote " + buf.position() + " of " + data.length + " bytes");
+		}
+		return buf.position();
+	}
+
+	/**
+	 * Read all available bytes from the transport and pass them to the listener
+	 */
+	private void readAvailable() {
+		var t = transport;
+		if (t == null) {
+			return;
+		}
+		var fr = flightRecorder;
+		synchronized (readBuffer) {
+			int n;
+			do {
+				readBuffer.clear();
+				n = t.read(readBuffer);
+				if (n > 0) {
+					if (fr != null) {
+						fr.record(FlightRecorder.Direction.RX, readBuffer.array(), 0, n);
+					}
+					serialListener.received(readBuffer.array(), 0, n);
+				}
+			} while (n > 0);
+		}
+	}
+
 	/**
 	 * Write string to serial
 	 * @param str the string to be written
 	 * @return true if successful
 	 */
 	public boolean writeSerial(String str) {
-		return port.filter(SerialPort::isOpen).map(p -> {
-			var data = str.getBytes(StandardCharsets.ISO_8859_1);
-			outputConsumers.forEach(c -> c.accept(str));
-			int count = p.writeBytes(data, data.length, 0);
-			if (count == -1) {
-				statusConsumer.accept(StatusBar.Status.ERROR, "Write error");
-				return false;
-			} else {
-				statusConsumer.accept(StatusBar.Status.ONLINE, "");
-				return true;
-			}
-		}).orElseGet(() -> {
+		return locked(() -> counted(writeLocked(str)));
+	}
+
+	/**
+	 * Count a write, unless captured
+	 * @param written true if written
+	 * @return written
+	 */
+	private boolean counted(boolean written) {
+		if (written && captured.get() == null) {
+			writes.incrementAndGet();
+		}
+		return written;
+	}
+
+	/**
+	 * Get the number of writes to the device, such as setters, not counting
+	 * requests. A value read from the device may have changed when the count
+	 * has changed.
+	 * @return the number of writes
+	 */
+	public long getWriteCount() {
+		return writes.get();
+	}
+
+	private boolean writeLocked(String str) {
+		var buf = captured.get();
+		if (buf != null) {
+			buf.writeBytes(str.getBytes(StandardCharsets.ISO_8859_1));
+			return true;
+		}
+		if (!isOnline()) {
 			statusConsumer.accept(StatusBar.Status.OFFLINE, "Port is not open");
 			return false;
-		});
+		}
+		var data = str.getBytes(StandardCharsets.ISO_8859_1);
+		outputBus.publish(str);
+		int count = write(data);
+		if (count < data.length) {
+			writeError(count, data.length);
+			return false;
+		} else {
+			statusConsumer.accept(StatusBar.Status.ONLINE, "");
+			return true;
+		}
 	}
 
 	/**
-	 * Write bytes to serial
+	 * Write bytes to serial. The output consumers receive a lazy {@link HexDump}
+	 * of the bytes, limited by {@link Config#getHexDumpLimit()}.
 	 * @param data the bytes to be written
 	 * @return true if successful
 	 */
 	public boolean writeSerial(byte[] data) {
-		return port.filter(SerialPort::isOpen).map(p -> {
-			outputConsumers.forEach(c -> c.accept(Utils.hexDump(data)));
-			int count = p.writeBytes(data, data.length, 0);
-			statusConsumer.accept(StatusBar.Status.ONLINE, "Write bytes.length "+data.length+" count="+count);
-			if (count == -1) {
-				statusConsumer.accept(StatusBar.Status.ERROR, "Write error");
-				return false;
-			} else {
-				statusConsumer.accept(StatusBar.Status.ONLINE, "Write data completed");
-				return true;
-			}
-		}).orElseGet(() -> {
+		return locked(() -> counted(writeLocked(data)));
+	}
+
+	private boolean writeLocked(byte[] data) {
+		var buf = captured.get();
+		if (buf != null) {
+			buf.writeBytes(data);
+			return true;
+		}
+		if (!isOnline()) {
 			statusConsumer.accept(StatusBar.Status.OFFLINE, "Port is not open");
 			return false;
-		});
+		}
+		if (outputBus.hasSubscribers()) {
+			outputBus.publish(new HexDump(data, Config.getHexDumpLimit()));
+		}
+		int count = write(data);
+		statusConsumer.accept(StatusBar.Status.ONLINE, "Write bytes.length "+data.length+" count="+count);
+		if (count < data.length) {
+			writeError(count, data.length);
+			return false;
+		} else {
+			statusConsumer.accept(StatusBar.Status.ONLINE, "Write data completed");
+			return true;
+		}
+	}
+
+	/**
+	 * Report a failed or partial write, the device having received a truncated command
+	 * @param count the number of bytes written, -1 on error
+	 * @param length the number of bytes to write
+	 */
+	private void writeError(int count, int length) {
+		statusConsumer.accept(StatusBar.Status.ERROR, count < 0 ? "Write error" : "Write timeout, wrote " + count + " of " + length + " bytes");
 	}
 
 	/**
@@ -143,11 +438,81 @@ public abstract class AbstractSerialCom {
 	 * @return the reply string
 	 */
 	public String requestReply(String req) {
-		serialListener.flush();
-		if (writeSerial(req)) {
-			return serialListener.poll(10);
+		return locked(() -> {
+			serialListener.flush();
+			return writeLocked(req) && writePipelined() ? pollReply() : null;
+		});
+	}
+
+	/**
+	 * Run a request, writing a command right after the request without waiting
+	 * for its reply. The device handles the command after the request, while
+	 * the reply is on its way. If the command has a reply or acknowledge, the
+	 * caller must take it. The command is not written if writing the request
+	 * failed.
+	 * @param <T> the result type
+	 * @param request the request, a getter or other operation making one request
+	 * @param command the command, or null for none
+	 * @return the result of the request
+	 */
+	public <T> T pipelined(Supplier<T> request, String command) {
+		return locked(() -> {
+			pipelined.set(command);
+			try {
+				// not written if the request failed to write
+				return request.get();
+			} finally {
+				pipelined.remove();
+			}
+		});
+	}
+
+	/**
+	 * Write the pending command of {@link #pipelined(Supplier, String)}, if any
+	 * @return false if failed to write
+	 */
+	private boolean writePipelined() {
+		var cmd = pipelined.get();
+		if (cmd == null) {
+			return true;
+		}
+		pipelined.remove();
+		return writeLocked(cmd);
+	}
+
+	/**
+	 * Get the bytes an operation writes, without writing them, to encode
+	 * commands ahead of time. The operation must not wait for replies.
+	 * @param operation the operation, e.g. a setter
+	 * @return the bytes the operation would have written
+	 */
+	public byte[] capture(Runnable operation) {
+		var prev = captured.get();
+		var buf = new ByteArrayOutputStream();
+		captured.set(buf);
+		try {
+			operation.run();
+		} finally {
+			captured.set(prev);
+		}
+		return buf.toByteArray();
+	}
+
+	/**
+	 * Run an operation holding the port lock, so that the writes and
+	 * requests of other threads are not interleaved with it. Waiting threads
+	 * get the lock in arrival order.
+	 * @param <T> the result type
+	 * @param operation the operation
+	 * @return the result of the operation
+	 */
+	public <T> T locked(Supplier<T> operation) {
+		lock.lock();
+		try {
+			return operation.get();
+		} finally {
+			lock.unlock();
 		}
-		return null;
 	}
 
 	/**
@@ -155,7 +520,35 @@ public abstract class AbstractSerialCom {
 	 * @return the reply string
 	 */
 	public String poll() {
-		return serialListener.poll(10);
+		return pollReply();
+	}
+
+	/**
+	 * Wait for the acknowledge of the last set command, for devices that
+	 * acknowledge each command. Other devices return at once.
+	 * @return true if acknowledged, or if the device does not acknowledge commands
+	 */
+	public boolean awaitAck() {
+		return true;
+	}
+
+	/**
+	 * Take the acknowledges of commands written without waiting, so they are
+	 * not taken as the reply of a later request. Waits for each acknowledge at
+	 * most as long as {@link #awaitAck()}, stops at the first one missing and
+	 * drops anything else received.
+	 * @param count the number of commands written
+	 * @return the number of acknowledges taken
+	 */
+	public int drainAcks(int count) {
+		return locked(() -> {
+			int acked = 0;
+			while (acked < count && awaitAck()) {
+				acked++;
+			}
+			serialListener.flush();
+			return acked;
+		});
 	}
 
 	/**
@@ -194,11 +587,10 @@ public abstract class AbstractSerialCom {
 	 * @return the response
 	 */
 	public String requestReply(byte[] req) {
-		serialListener.flush();
-		if (writeSerial(req)) {
-			return serialListener.poll(10);
-		}
-		return null;
+		return locked(() -> {
+			serialListener.flush();
+			return writeLocked(req) && writePipelined() ? pollReply() : null;
+		});
 	}
 
 	/**
@@ -211,11 +603,11 @@ public abstract class AbstractSerialCom {
 	}
 
 	/**
-	 * Add output listener
+	 * Add output listener. The consumer is called on its own thread.
 	 * @param consumer the consumer
 	 */
-	public void addOutputConsumer(Consumer<String> consumer) {
-		outputConsumers.add(consumer);
+	public void addOutputConsumer(Consumer<CharSequence> consumer) {
+		outputBus.subscribe(consumer);
 	}
 
 	/**
@@ -230,22 +622,29 @@ public abstract class AbstractSerialCom {
 	 * connect
 	 */
 	public void connect() {
-		port.ifPresent(p -> {
-			p.setBaudRate(portSettings.baudRate);
-			p.setNumDataBits(portSettings.dataBits);
-			p.setNumStopBits(portSettings.stopBits);
-			p.setParity(portSettings.parity.id);
-			p.setFlowControl(portSettings.flowCtrl);
-			boolean res = p.openPort();
-			if (!res) {
+		var t = transport;
+		if (t != null) {
+			if (!t.open(portSettings)) {
 				statusConsumer.accept(StatusBar.Status.OFFLINE, "Failed to connect");
 			} else {
-				statusConsumer.accept(StatusBar.Status.ONLINE,
-						"Connected " + getDeviceType() + " on " + toString(p));
-				p.removeDataListener();
-				p.addDataListener(serialListener);
+				t.setDataListener(this::readAvailable);
+				var msg = "Connected " + getDeviceType() + " on "
+						+ (t instanceof JSerialCommTransport j ? toString(j.getPort()) : t.getName());
+				event(msg);
+				statusConsumer.accept(StatusBar.Status.ONLINE, msg);
 			}
-		});
+		}
+	}
+
+	/**
+	 * Record an event in the flight recorder
+	 * @param text the event
+	 */
+	private static void event(String text) {
+		var fr = flightRecorder;
+		if (fr != null) {
+			fr.event(text);
+		}
 	}
 
 	/**
@@ -294,10 +693,13 @@ public abstract class AbstractSerialCom {
 	 * Disconnect
 	 */
 	public void disconnect() {
-		if (port.isPresent()) {
+		var t = transport;
+		if (t != null) {
 			statusConsumer.accept(StatusBar.Status.OFFLINE, "Disconnected");
-			port.get().closePort();
-			port = Optional.empty();
+			event("Disconnected " + getDeviceType());
+			t.setDataListener(null);
+			t.close();
+			transport = null;
 		} else {
 			statusConsumer.accept(StatusBar.Status.OFFLINE, "Already offline");
 		}
@@ -312,16 +714,39 @@ public abstract class AbstractSerialCom {
 	}
 
 	/**
-	 * Set status consumer
+	 * Get the number of bytes the serial link carries per second
+	 * @return bytes per second
+	 */
+	public double getBytesPerSecond() {
+		int bits = 1 + portSettings.dataBits + (portSettings.parity == Parity.NONE ? 0 : 1) + portSettings.stopBits;
+		return (double) portSettings.baudRate / bits;
+	}
+
+	/**
+	 * Get the wave type playing an arbitrary wave form
+	 * @param channel the channel
+	 * @param num the arb number, as of {@link #setArbData(int, int[], Progress)}
+	 * @return the wave type, or null if no such arbitrary wave form
+	 */
+	public WaveType getArbWaveType(int channel, int num) {
+		var arbs = getWaveTypes(channel).stream().filter(w -> w.getName().startsWith("Arbitrary ")).toList();
+		return num >= 0 && num < arbs.size() ? arbs.get(num) : null;
+	}
+
+	/**
+	 * Set status consumer, replacing the previous one. The consumer is called on its own thread.
 	 * @param consumer the status consumer
 	 */
-	public void setStatusConsumer(BiConsumer<StatusBar.Status, String> consumer) {
-		this.statusConsumer = consumer;
+	public synchronized void setStatusConsumer(BiConsumer<StatusBar.Status, String> consumer) {
+		if (statusSubscription != null) {
+			statusBus.unsubscribe(statusSubscription);
+		}
+		statusSubscription = statusBus.subscribe(p -> consumer.accept(p.key, p.value));
 	}
 
 	/**
 	 * Get status consumer
-	 * @return status consumer
+	 * @return status consumer publishing to the consumer set by {@link #setStatusConsumer(BiConsumer)}
 	 */
 	public BiConsumer<StatusBar.Status, String> getStatusConsumer() {
 		return statusConsumer;
@@ -332,7 +757,8 @@ public abstract class AbstractSerialCom {
 	 * @return true if online
 	 */
 	public boolean isOnline() {
-		return port.map(SerialPort::isOpen).orElse(false);
+		var t = transport;
+		return t != null && t.isOpen();
 	}
 
 	/** 
@@ -378,7 +804,7 @@ public abstract class AbstractSerialCom {
 	 * @param pm  the progress monitor
 	 * @return the arb data
 	 */
-	public abstract int[] getArbData(int num, ProgressMonitor pm);
+	public abstract int[] getArbData(int num, Progress pm);
 
 	/**
 	 * Set arbitrary data
@@ -386,7 +812,7 @@ public abstract class AbstractSerialCom {
 	 * @param data the data
 	 * @param pm   the progress monitor
 	 */
-	public abstract void setArbData(int num, int[] data, ProgressMonitor pm);
+	public abstract void setArbData(int num, int[] data, Progress pm);
 
 	/**
 	 * Invert channel
@@ -574,6 +1000,20 @@ public abstract class AbstractSerialCom {
 	 * @return count */
 	public abstract int getCount();
 
+	/**
+	 * Read the frequency meter. The measure mode must be {@link MeasureMode#FREQUENCY}
+	 * on devices with one reading for all modes.
+	 * @return the measured frequency in Hz, NaN if not available
+	 */
+	public abstract double getMeasuredFrequency();
+
+	/**
+	 * Get the gate time of the frequency meter
+	 * @param gate the gate value, see {@link #getGateValues()}
+	 * @return the gate time in seconds
+	 */
+	public abstract double getGateTime(int gate);
+
 	/** 
 	 * Get gate value
 	 * @return gate value */
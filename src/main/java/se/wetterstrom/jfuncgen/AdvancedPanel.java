@@ -2,13 +2,17 @@ package se.wetterstrom.jfuncgen;
 
 import java.awt.Color;
 import java.awt.FlowLayout;
+import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.GridLayout;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.text.ParseException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 import java.util.function.DoubleConsumer;
 import java.util.function.Function;
 import java.util.stream.IntStream;
@@ -19,11 +23,14 @@ import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JFormattedTextField;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JRadioButton;
+import javax.swing.JTextArea;
 import javax.swing.JTextField;
 import javax.swing.JToggleButton;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 
 /**
  * <pre style='font-family:sans-serif;'>
@@ -171,6 +178,16 @@ public class AdvancedPanel extends JPanel implements FuncTab {
 		private final JToggleButton btRunMeasure = new JToggleButton("Run");
 		/** reset button */
 		private final JButton btResetCounter = new JButton("Reset");
+		/** Poll toggle button */
+		private final JToggleButton btPoll = new JToggleButton("Poll");
+		/** Export toggle button */
+		private final JToggleButton btExport = new JToggleButton("Export");
+		/** Stability button */
+		private final JButton btStability = new JButton("Stability");
+		/** the polled readings */
+		private final StripChart chart = new StripChart();
+		/** the poller, or null if no serial */
+		private transient CounterPoller poller = null;
 
 		public MeasurePanel() {
 			setupPanel();
@@ -210,16 +227,80 @@ public class AdvancedPanel extends JPanel implements FuncTab {
 			GuiUtils.addToGridBag(0, 7, 2, 1, 0.0, 0.0, GridBagConstraints.NONE, GridBagConstraints.NORTHWEST, gbc, this,
 					btPanel);
 
-			GuiUtils.fillGridBag(0, 8, 2, 1, gbc, this);
+			var pollPanel = new JPanel(new GridLayout(1, 3));
+			pollPanel.add(btPoll);
+			pollPanel.add(btExport);
+			pollPanel.add(btStability);
+			btStability.setToolTipText("Show the Allan deviation of the polled frequency readings.");
+			btPoll.setToolTipText("Read the counter continuously.");
+			btExport.setToolTipText("Stream the readings to a binary file.");
+			btExport.setEnabled(false);
+
+			GuiUtils.addToGridBag(0, 8, 2, 1, 0.0, 0.0, GridBagConstraints.NONE, GridBagConstraints.NORTHWEST, gbc, this,
+					pollPanel);
+			GuiUtils.addToGridBag(0, 9, 2, 1, 1.0, 1.0, GridBagConstraints.BOTH, GridBagConstraints.NORTHWEST, gbc, this,
+					chart);
 		}
 
 		private void setupEventHandlers() {
 			Function<Object, String> gateNameMapper = obj -> Optional.ofNullable(obj).filter(IdName.class::isInstance)
 					.map(IdName.class::cast).map(p -> p.value).orElse("");
 			cbGateValue.setRenderer(new MappingListRenderer(gateNameMapper));
+
+			btPoll.addActionListener(e -> setPolling(btPoll.isSelected()));
+			btExport.addActionListener(e -> setExporting(btExport.isSelected()));
+			btStability.addActionListener(e -> showStability());
+		}
+
+		private void showStability() {
+			var stats = poller != null ? poller.getStatistics() : null;
+			var text = new JTextArea(stats != null ? stats.toString() : "Poll in frequency mode for stability statistics.");
+			text.setEditable(false);
+			text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, text.getFont().getSize()));
+			JOptionPane.showMessageDialog(this, text, "Frequency stability", JOptionPane.INFORMATION_MESSAGE);
+		}
+
+		private void setPolling(boolean poll) {
+			if (poller == null) {
+				btPoll.setSelected(false);
+			} else if (poll) {
+				poller.start();
+			} else {
+				// a reading may wait long for a silent device, do not block the GUI
+				poller.cancel();
+			}
+			chart.setLive(btPoll.isSelected());
+			btExport.setEnabled(btPoll.isSelected());
+			if (!btPoll.isSelected() && btExport.isSelected()) {
+				btExport.setSelected(false);
+				setExporting(false);
+			}
+		}
+
+		private void setExporting(boolean export) {
+			try {
+				if (!export) {
+					poller.stopExport();
+				} else {
+					String f = GuiUtils.openTextFileDialog("Export counter readings", null, "", true, new String[] { ".bin" });
+					if (f != null) {
+						poller.startExport(Path.of(f));
+					} else {
+						btExport.setSelected(false);
+					}
+				}
+			} catch (IOException ex) {
+				btExport.setSelected(false);
+				GuiUtils.showException(this, "Export failed", ex, "Failed to export the counter readings.");
+			}
 		}
 
 		public void setSerial(AbstractSerialCom cmd) {
+			btPoll.setSelected(false);
+			setPolling(false);
+			poller = new CounterPoller(cmd, CounterPoller.DEFAULT_CAPACITY);
+			chart.setSamples(poller.getSamples());
+
 			cbGateValue.removeAllItems();
 			cmd.getGateValues().forEach(cbGateValue::addItem);
 
@@ -227,6 +308,7 @@ public class AdvancedPanel extends JPanel implements FuncTab {
 				if (!disabled) {
 					var m = cbMeasureMode.getItemAt(cbMeasureMode.getSelectedIndex());
 					cmd.setMeasureMode(m);
+					poller.reconfigure();
 					btResetCounter.setEnabled(m == MeasureMode.COUNTER);
 					btRunMeasure.setEnabled(m == MeasureMode.COUNTER);
 					cbGateValue.setEnabled(m == MeasureMode.FREQUENCY);
@@ -237,6 +319,7 @@ public class AdvancedPanel extends JPanel implements FuncTab {
 				if (!disabled) {
 					cmd.setGateValue(Optional.ofNullable(cbGateValue.getSelectedItem()).filter(Objects::nonNull)
 							.map(IdName.class::cast).map(i -> i.key).orElse(0));
+					poller.reconfigure();
 				}
 			});
 
@@ -258,6 +341,11 @@ public class AdvancedPanel extends JPanel implements FuncTab {
 			btRunMeasure.setEnabled(enable);
 			cbGateValue.setEnabled(enable);
 			btExtTTL.setEnabled(enable);
+			btPoll.setEnabled(enable);
+			if (!enable && btPoll.isSelected()) {
+				btPoll.setSelected(false);
+				setPolling(false);
+			}
 		}
 
 		public void reload(AbstractSerialCom cmd) {
@@ -546,6 +634,14 @@ public class AdvancedPanel extends JPanel implements FuncTab {
 		/** setting number combobox */
 		private final JComboBox<Integer> cbSettingStore = new JComboBox<>(
 				IntStream.range(0, 16).boxed().toArray(Integer[]::new));
+		/** host preset capture button */
+		private final JButton btCapturePreset = new JButton("Capture");
+		/** host preset apply button */
+		private final JButton btApplyPreset = new JButton("Apply");
+		/** the known device state of the presets, or null */
+		private transient DeviceTransaction.State presetState;
+		/** the write count of the driver when the preset state was known */
+		private long presetWrites;
 
 		public SettingsPanel() {
 			setupPanel();
@@ -571,10 +667,91 @@ public class AdvancedPanel extends JPanel implements FuncTab {
 			GuiUtils.addToGridBag(0, 2, 1, 1, 0.0, 0.0, GridBagConstraints.NONE, GridBagConstraints.NORTHWEST, gbc, this,
 					btPanel);
 
-			GuiUtils.fillGridBag(0, 3, 1, 1, gbc, this);
+			btCapturePreset.setToolTipText("Save the channel settings to a preset file.");
+			btApplyPreset.setToolTipText("Apply the channel settings of a preset file that differ from the device.");
+			btCapturePreset.addActionListener(e -> capturePreset());
+			btApplyPreset.addActionListener(e -> applyPreset());
+			var presetPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+			presetPanel.add(btCapturePreset);
+			presetPanel.add(btApplyPreset);
+			GuiUtils.addToGridBag(0, 3, 1, 1, 0.0, 0.0, GridBagConstraints.NONE, GridBagConstraints.NORTHWEST, gbc, this,
+					new JLabel("Host preset"));
+			GuiUtils.addToGridBag(0, 4, 1, 1, 0.0, 0.0, GridBagConstraints.NONE, GridBagConstraints.NORTHWEST, gbc, this,
+					presetPanel);
+
+			GuiUtils.fillGridBag(0, 5, 1, 1, gbc, this);
+		}
+
+		private void capturePreset() {
+			String f = GuiUtils.openTextFileDialog("Save preset", null, "", true, new String[] { ".preset" });
+			if (f != null && cmd != null) {
+				runPreset(() -> {
+					// read from the device, it may have been changed on the front panel
+					presetState = null;
+					Preset.of(knownState()).write(Path.of(f));
+					return null;
+				}, "Failed to save the preset.");
+			}
+		}
+
+		private void applyPreset() {
+			String f = GuiUtils.openTextFileDialog("Apply preset", null, "", false, new String[] { ".preset" });
+			if (f != null && cmd != null) {
+				runPreset(() -> {
+					var result = Preset.read(Path.of(f)).apply(cmd, knownState());
+					presetWrites = cmd.getWriteCount();
+					return String.format("%d settings changed, %d unchanged.", result.written(), result.skipped());
+				}, "Failed to apply the preset.");
+			}
+		}
+
+		/**
+		 * Get the known device state, read again if anything was written to
+		 * the device since, such as by the panels. Changes made on the front
+		 * panel of the device are not seen.
+		 * @return the state
+		 */
+		private DeviceTransaction.State knownState() {
+			if (presetState == null || presetWrites != cmd.getWriteCount()) {
+				presetWrites = cmd.getWriteCount();
+				presetState = DeviceTransaction.State.read(cmd);
+			}
+			return presetState;
+		}
+
+		/**
+		 * Run a preset operation in the background, then show the result and
+		 * reload the panels
+		 * @param operation the operation, returning the message to show or null
+		 * @param error the message if failed
+		 */
+		private void runPreset(Callable<String> operation, String error) {
+			btCapturePreset.setEnabled(false);
+			btApplyPreset.setEnabled(false);
+			Thread.ofVirtual().start(() -> {
+				try {
+					var message = operation.call();
+					SwingUtilities.invokeLater(() -> presetDone(message, null, error));
+				} catch (Exception ex) {
+					SwingUtilities.invokeLater(() -> presetDone(null, ex, error));
+				}
+			});
+		}
+
+		private void presetDone(String message, Exception ex, String error) {
+			btCapturePreset.setEnabled(isEnabled());
+			btApplyPreset.setEnabled(isEnabled());
+			if (ex != null) {
+				GuiUtils.showException(this, "Preset failed", ex, error);
+			} else if (message != null) {
+				// the values shown are those before the preset
+				AdvancedPanel.this.reload();
+				JOptionPane.showMessageDialog(this, message, "Preset", JOptionPane.INFORMATION_MESSAGE);
+			}
 		}
 
 		public void setSerial(AbstractSerialCom cmd) {
+			presetState = null;
 			btLoadSettings.addActionListener(e -> cmd.loadSettings(Optional.ofNullable(cbSettingStore.getSelectedItem())
 					.filter(Objects::nonNull).map(Integer.class::cast).orElse(0)));
 			btSaveSettings.addActionListener(e -> cmd.saveSettings(Optional.ofNullable(cbSettingStore.getSelectedItem())
@@ -587,6 +764,8 @@ public class AdvancedPanel extends JPanel implements FuncTab {
 			btLoadSettings.setEnabled(enable);
 			btSaveSettings.setEnabled(enable);
 			cbSettingStore.setEnabled(enable);
+			btCapturePreset.setEnabled(enable);
+			btApplyPreset.setEnabled(enable);
 		}
 
 		public void reload(AbstractSerialCom cmd) {
@@ -0,0 +1,227 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Plays a wave form longer than an arbitrary wave form slot, split in
+ * segments of one slot each, by switching the wave form of a channel from
+ * slot to slot on schedule.
+ * <p>
+ * Each segment plays for a number of periods of the channel frequency. The
+ * first segments are uploaded before the start, one per slot. The later
+ * segments are uploaded during playback into the slot of a segment that
+ * has finished playing, as soon as it is free and the measured upload time
+ * fits before the next switch, so with enough slots the uploads are done
+ * ahead of their switch. A segment whose upload ends after its planned switch delays the switch,
+ * which is recorded as a stall. Each switch command is written early by
+ * its transfer time on the serial link plus the configured lead, so the
+ * device switches at the planned time. When done the wave form of the
+ * channel before the start is set again.
+ */
+public class ArbPlaylist {
+
+	/**
+	 * The switch to a segment
+	 * @param segment the segment
+	 * @param slot the arb number
+	 * @param due the planned start of the segment from the start in nanoseconds
+	 * @param written the time the command was written from the start in nanoseconds
+	 * @param lateness the time the command was written after its planned time in nanoseconds
+	 * @param stalled true if delayed by the upload of the segment, the uploads of the segments after the first
+	 *        slots starting when the segment before has started
+	 * @param error true if the command could not be written
+	 */
+	public record Switch(int segment, int slot, long due, long written, long lateness, boolean stalled, boolean error) {
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "%10.3f s  segment %d  arb %d  written %10.3f s  late %8.3f ms%s%s", due / 1e9, segment, slot,
+					written / 1e9, lateness / 1e6, stalled ? "  stalled" : "", error ? "  failed" : "");
+		}
+	}
+
+	/**
+	 * The outcome of a run
+	 * @param switches the switches done
+	 * @param uploads the number of segments uploaded
+	 * @param uploadTime the longest upload in nanoseconds
+	 * @param stalls the number of switches delayed by an upload
+	 * @param jitter the lateness of the switches
+	 */
+	public record Report(List<Switch> switches, int uploads, long uploadTime, int stalls, Sequencer.Jitter jitter) {
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "%d switches, %d uploads, longest upload %.3f s, %d stalled, %s",
+					switches.size(), uploads, uploadTime / 1e9, stalls, jitter);
+		}
+	}
+
+	/** the channel */
+	private final int channel;
+	/** the segments */
+	private final int[][] segments;
+	/** the arb numbers used */
+	private final int[] slots;
+	/** the channel frequency in Hz */
+	private final double frequency;
+	/** the time each segment plays in nanoseconds */
+	private final long period;
+	/** the time from the end of the transfer of a switch command until the device switches, in nanoseconds */
+	private long lead;
+	/** true if canceled */
+	private volatile boolean canceled;
+
+	/**
+	 * Constructor
+	 * @param channel the channel
+	 * @param segments the segments, each the samples of one slot
+	 * @param slots the arb numbers to use, at least two if fewer than the segments
+	 * @param frequency the channel frequency in Hz, playing one slot per period
+	 * @param repeats the number of periods each segment plays
+	 */
+	public ArbPlaylist(int channel, int[][] segments, int[] slots, double frequency, int repeats) {
+		if (segments.length == 0 || slots.length == 0 || !(frequency > 0) || repeats < 1) {
+			throw new IllegalArgumentException("Expected segments, slots, a positive frequency and repeat count");
+		}
+		if (segments.length > slots.length && slots.length < 2) {
+			throw new IllegalArgumentException("Expected at least two slots to upload ahead");
+		}
+		this.channel = channel;
+		this.segments = segments;
+		this.slots = slots;
+		this.frequency = frequency;
+		this.period = Math.round(repeats / frequency * 1e9);
+	}
+
+	/**
+	 * Split samples in segments of a slot each, the last one padded
+	 * @param samples the samples
+	 * @param size the number of samples of a slot
+	 * @param fill the value of the padding
+	 * @return the segments
+	 */
+	public static int[][] split(int[] samples, int size, int fill) {
+		var segments = new int[Math.max(1, (samples.length + size - 1) / size)][];
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = new int[size];
+			Arrays.fill(segments[i], fill);
+			int from = i * size;
+			System.arraycopy(samples, Math.min(from, samples.length), segments[i], 0, Math.clamp(samples.length - from, 0, size));
+		}
+		return segments;
+	}
+
+	/**
+	 * Set the time from the end of the transfer of a switch command until
+	 * the device switches
+	 * @param lead the time in nanoseconds
+	 */
+	public void setLead(long lead) {
+		this.lead = Math.max(0, lead);
+	}
+
+	/**
+	 * Stop before the next switch
+	 */
+	public void cancel() {
+		canceled = true;
+	}
+
+	/**
+	 * Play the segments in the calling thread
+	 * @param com the driver
+	 * @return the report
+	 * @throws IllegalArgumentException if a slot has no wave type or the device could not be set up
+	 */
+	public Report run(AbstractSerialCom com) {
+		canceled = false;
+		var clock = com.getClock();
+		var commands = new byte[slots.length][];
+		long transfer = 0;
+		for (int i = 0; i < slots.length; i++) {
+			var type = com.getArbWaveType(channel, slots[i]);
+			if (type == null) {
+				throw new IllegalArgumentException("No arbitrary wave form " + slots[i]);
+			}
+			commands[i] = com.capture(() -> com.setWaveForm(channel, type));
+			transfer = Math.max(transfer, Math.round(commands[i].length * 1e9 / com.getBytesPerSecond()));
+		}
+		long advance = transfer + lead;
+		int initial = com.locked(() -> {
+			int id = com.getWaveForm(channel);
+			com.setFrequency(channel, frequency);
+			if (!com.isOnline() || !com.awaitAck()) {
+				throw new IllegalArgumentException("Not acknowledged");
+			}
+			return id;
+		});
+
+		int uploaded = 0;
+		long uploadTime = 0;
+		int stalls = 0;
+		var switches = new ArrayList<Switch>();
+		while (uploaded < Math.min(segments.length, slots.length) && !canceled && com.isOnline()) {
+			uploadTime = Math.max(uploadTime, upload(com, uploaded++));
+		}
+		long start = clock.nanoTime() + advance;
+		for (int i = 0; i < segments.length && !canceled && com.isOnline(); i++) {
+			long due = i * period;
+			// the slot of segment j is free when segment j - slots has played, the segment before the current one
+			int free = Math.min(segments.length, i == 0 ? slots.length : i - 1 + slots.length);
+			boolean stalled = false;
+			while (uploaded < free && !canceled && (uploaded <= i || clock.nanoTime() + uploadTime <= start + due - advance)) {
+				boolean needed = uploaded <= i;
+				uploadTime = Math.max(uploadTime, upload(com, uploaded++));
+				stalled |= needed && clock.nanoTime() > start + due - advance;
+			}
+			if (canceled || !Sequencer.waitUntil(clock, start + due - advance)) {
+				break;
+			}
+			var command = commands[i % slots.length];
+			var written = new long[1];
+			boolean ok = com.locked(() -> {
+				// drop the acknowledges of the uploads and switches
+				com.serialListener.flush();
+				written[0] = clock.nanoTime() - start;
+				return com.writeSerial(command);
+			});
+			stalls += stalled ? 1 : 0;
+			switches.add(new Switch(i, slots[i % slots.length], due, written[0], written[0] + advance - due, stalled, !ok));
+		}
+		// the last segment plays to its end
+		if (!canceled && switches.size() == segments.length) {
+			Sequencer.waitUntil(clock, start + segments.length * period - advance);
+		}
+		com.locked(() -> {
+			com.serialListener.flush();
+			com.getWaveTypes(channel).stream().filter(w -> w.getId() == initial).findFirst().ifPresent(w -> com.setWaveForm(channel, w));
+			return com.awaitAck();
+		});
+
+		var lateness = new long[switches.size()];
+		int errors = 0;
+		for (int i = 0; i < lateness.length; i++) {
+			lateness[i] = switches.get(i).lateness();
+			errors += switches.get(i).error() ? 1 : 0;
+		}
+		return new Report(switches, uploaded, uploadTime, stalls, Sequencer.Jitter.of(lateness, errors));
+	}
+
+	/**
+	 * Upload a segment into its slot
+	 * @param com the driver
+	 * @param segment the segment
+	 * @return the time taken in nanoseconds
+	 */
+	private long upload(AbstractSerialCom com, int segment) {
+		var clock = com.getClock();
+		long t = clock.nanoTime();
+		com.locked(() -> {
+			com.setArbData(slots[segment % slots.length], segments[segment], Progress.NONE);
+			return null;
+		});
+		return clock.nanoTime() - t;
+	}
+}
@@ -6,6 +6,8 @@ import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Point;
 import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
@@ -31,6 +33,7 @@ import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
+import javax.swing.KeyStroke;
 import javax.swing.ProgressMonitor;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
@@ -46,6 +49,10 @@ public class ArbitraryPanel extends JPanel implements FuncTab {
 
 	private static final long serialVersionUID = 1L;
 
+	/** undo action key */
+	private static final String UNDO_ACTION = "undo";
+	/** redo action key */
+	private static final String REDO_ACTION = "redo";
 	/** random seed */
 	private static final Random RANDOM = new SecureRandom();
 	/** data graph */
@@ -65,6 +72,10 @@ public class ArbitraryPanel extends JPanel implements FuncTab {
 	private final JButton btImport = new JButton("Import");
 	/** edit button */
 	private final JButton btEditData = new JButton("EditData");
+	/** undo button */
+	private final JButton btUndo = new JButton("Undo");
+	/** redo button */
+	private final JButton btRedo = new JButton("Redo");
 	/** List of wave form function buttons */
 	private final List<JButton> funcButtons = new ArrayList<>();
 	/** Function expression field */
@@ -114,6 +125,7 @@ public class ArbitraryPanel extends JPanel implements FuncTab {
 		add(createButtonPanel(), BorderLayout.SOUTH);
 
 		mouseAdapter.setEnabled(false);
+		dgc.setHistoryListener(this::updateUndoButtons);
 		dgc.addMouseListener(mouseAdapter);
 		dgc.addMouseMotionListener(mouseAdapter);
 	}
@@ -129,10 +141,19 @@ public class ArbitraryPanel extends JPanel implements FuncTab {
 		btExport.setEnabled(enable);
 		btImport.setEnabled(enable);
 		btEditData.setEnabled(enable);
+		updateUndoButtons();
 
 		funcButtons.stream().forEach(b -> b.setEnabled(enable));
 	}
 
+	/**
+	 * Enable the undo and redo buttons if there is something to undo or redo
+	 */
+	private void updateUndoButtons() {
+		btUndo.setEnabled(isEnabled() && dgc.canUndo());
+		btRedo.setEnabled(isEnabled() && dgc.canRedo());
+	}
+
 	/**
 	 * Set serial
 	 * @param serialCom the serial com
@@ -158,6 +179,8 @@ public class ArbitraryPanel extends JPanel implements FuncTab {
 		panel.add(btExport);
 		panel.add(btImport);
 		panel.add(btEditData);
+		panel.add(btUndo);
+		panel.add(btRedo);
 		return panel;
 	}
 
@@ -167,6 +190,16 @@ public class ArbitraryPanel extends JPanel implements FuncTab {
 		btExport.addActionListener(e -> exportFile());
 		btImport.addActionListener(e -> importFile());
 		btEditData.addActionListener(e -> openEditData());
+		btUndo.setToolTipText("Undo last edit (Ctrl-Z)");
+		btRedo.setToolTipText("Redo last undone edit (Ctrl-Y)");
+		btUndo.addActionListener(e -> dgc.undo());
+		btRedo.addActionListener(e -> dgc.redo());
+
+		var inputMap = getInputMap(WHEN_ANCESTOR_OF_FOCUSED_COMPONENT);
+		inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), UNDO_ACTION);
+		inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK), REDO_ACTION);
+		getActionMap().put(UNDO_ACTION, GuiUtils.action(e -> btUndo.doClick()));
+		getActionMap().put(REDO_ACTION, GuiUtils.action(e -> btRedo.doClick()));
 	}
 
 	private JPanel getFuncButtonPanel() {
@@ -277,7 +310,7 @@ public class ArbitraryPanel extends JPanel implements FuncTab {
 			}
 
 			var expr = new ExpressionBuilder(f).variables("x").build();
-			dgc.setData(fx(expr, xmin, xmax, size));
+			dgc.setData(fx(expr, xmin, xmax, size, serialCom.getArbMin(), serialCom.getArbMax()));
 		} catch (UnknownFunctionOrVariableException ex) {
 			serialCom.getStatusConsumer().accept(StatusBar.Status.ERROR, ex.getMessage());
 		}
@@ -307,7 +340,17 @@ public class ArbitraryPanel extends JPanel implements FuncTab {
 			.orElse(defaultValue);
 	}
 
-	private int[] fx(Expression expr, double xmin, double xmax, int size) {
+	/**
+	 * Evaluate an expression of x and scale the result to the sample range
+	 * @param expr the expression
+	 * @param xmin the first x
+	 * @param xmax the x after the last sample
+	 * @param size the number of samples
+	 * @param symin the minimum sample value
+	 * @param symax the maximum sample value
+	 * @return the samples
+	 */
+	static int[] fx(Expression expr, double xmin, double xmax, int size, int symin, int symax) {
 
 		double gx = (xmax - xmin) / size;
 		double[] cy = new double[size];
@@ -328,8 +371,6 @@ public class ArbitraryPanel extends JPanel implements FuncTab {
 			}
 		}
 
-		int symin = serialCom.getArbMin();
-		int symax = serialCom.getArbMax();
 		double gy = (symax - symin) / (cymax - cymin);
 		int ax = (int) (symin - cymin * gy);
 		int[] d = new int[size];
@@ -381,6 +422,7 @@ public class ArbitraryPanel extends JPanel implements FuncTab {
 			WaveFunction.SAW_RISING.label,
 			e -> {
 				dgc.drawDataLine(0, 0, serialCom.getArbSize() - 1, serialCom.getArbMax() - 1);
+				dgc.commit();
 				dgc.repaint();
 			},
 			WaveFunction.SAW_RISING.tooltip));
@@ -389,6 +431,7 @@ public class ArbitraryPanel extends JPanel implements FuncTab {
 			WaveFunction.SAW_FALLING.label,
 			e -> {
 				dgc.drawDataLine(0, serialCom.getArbMax() - 1, serialCom.getArbSize() - 1, 0);
+				dgc.commit();
 				dgc.repaint();
 			},
 			WaveFunction.SAW_FALLING.tooltip));
@@ -398,6 +441,7 @@ public class ArbitraryPanel extends JPanel implements FuncTab {
 			e -> {
 				dgc.drawDataLine(0, serialCom.getArbMax() - 1, (serialCom.getArbSize() / 2) - 1, 0);
 				dgc.drawDataLine(serialCom.getArbSize() / 2, 0, serialCom.getArbSize() - 1, serialCom.getArbMax() - 1);
+				dgc.commit();
 				dgc.repaint();
 			},
 			WaveFunction.TRIANGLE.tooltip));
@@ -407,6 +451,7 @@ public class ArbitraryPanel extends JPanel implements FuncTab {
 			e -> {
 				var y = (serialCom.getArbMax() - serialCom.getArbMin()) / 2;
 				dgc.drawDataLine(0, y, serialCom.getArbSize() - 1, y);
+				dgc.commit();
 				dgc.repaint();
 			},
 			WaveFunction.FLAT.tooltip));
@@ -451,6 +496,7 @@ public class ArbitraryPanel extends JPanel implements FuncTab {
 			for (int i = 0; i < data.length; i++) {
 				dgc.setValue(i, data[i]);
 			}
+			dgc.commit();
 			dgc.repaint();
 		}
 	}
@@ -479,9 +525,26 @@ public class ArbitraryPanel extends JPanel implements FuncTab {
 		pm.setProgress(0);
 		pm.setMillisToDecideToPopup(100);
 
+		var progress = new Progress() {
+			@Override
+			public boolean isCanceled() {
+				return pm.isCanceled();
+			}
+
+			@Override
+			public void setProgress(int progress) {
+				pm.setProgress(progress);
+			}
+
+			@Override
+			public void close() {
+				pm.close();
+			}
+		};
+
 		new Thread(() -> {
 			try {
-				action.execute(pm);
+				action.execute(progress);
 			} finally {
 				pm.close();
 			}
@@ -490,7 +553,7 @@ public class ArbitraryPanel extends JPanel implements FuncTab {
 
 	@FunctionalInterface
 	private interface ProgressAction {
-		void execute(ProgressMonitor monitor);
+		void execute(Progress progress);
 	}
 
 	private void importFile() {
@@ -506,6 +569,7 @@ public class ArbitraryPanel extends JPanel implements FuncTab {
 				dgc.setValue(i++, Double.parseDouble(s));
 			}
 		}
+		dgc.commit();
 		dgc.repaint();
 	}
 
@@ -547,6 +611,7 @@ public class ArbitraryPanel extends JPanel implements FuncTab {
 		public void mouseReleased(MouseEvent e) {
 			if (enabled) {
 				lastPt = null;
+				dgc.commit();
 				repaint();
 			}
 		}
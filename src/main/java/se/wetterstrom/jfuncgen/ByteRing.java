@@ -0,0 +1,69 @@
+package se.wetterstrom.jfuncgen;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed capacity FIFO of bytes, used as the receive buffer of in-process
+ * transports. All methods are thread safe.
+ */
+class ByteRing {
+
+	/** the bytes */
+	private final byte[] ring;
+	/** index of the first byte */
+	private int head = 0;
+	/** number of bytes */
+	private int size = 0;
+
+	/**
+	 * Constructor
+	 * @param capacity max number of bytes
+	 */
+	ByteRing(int capacity) {
+		this.ring = new byte[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Copy as many bytes as fit from the buffer
+	 * @param src the buffer, its position is advanced
+	 * @return number of bytes copied
+	 */
+	public synchronized int put(ByteBuffer src) {
+		int count = Math.min(src.remaining(), ring.length - size);
+		int tail = (head + size) % ring.length;
+		int first = Math.min(count, ring.length - tail);
+		src.get(ring, tail, first);
+		src.get(ring, 0, count - first);
+		size += count;
+		return count;
+	}
+
+	/**
+	 * Copy as many bytes as fit into the buffer
+	 * @param dst the buffer, its position is advanced
+	 * @return number of bytes copied
+	 */
+	public synchronized int get(ByteBuffer dst) {
+		int count = Math.min(dst.remaining(), size);
+		int first = Math.min(count, ring.length - head);
+		dst.put(ring, head, first);
+		dst.put(ring, 0, count - first);
+		head = (head + count) % ring.length;
+		size -= count;
+		return count;
+	}
+
+	/**
+	 * Get number of bytes
+	 * @return number of bytes
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/** Remove all bytes */
+	public synchronized void clear() {
+		head = 0;
+		size = 0;
+	}
+}
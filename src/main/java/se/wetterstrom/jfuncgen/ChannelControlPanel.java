@@ -22,6 +22,7 @@ import javax.swing.JRadioButton;
 import javax.swing.JTextField;
 import javax.swing.JToggleButton;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.border.EtchedBorder;
 
 /**
@@ -403,6 +404,10 @@ public class ChannelControlPanel extends JPanel {
 		private final JToggleButton btInvert = new JToggleButton("Invert");
 		/** enable toggle button */
 		private final JToggleButton btEnable = new JToggleButton("Enable");
+		/** frequency lock toggle button */
+		private final JToggleButton btLock = new JToggleButton("Lock");
+		/** the running frequency lock, or null */
+		private FrequencyLock lock = null;
 
 		public JPanel createPanel() {
 			var panel = new JPanel(new GridBagLayout());
@@ -412,6 +417,9 @@ public class ChannelControlPanel extends JPanel {
 					panel, btEnable);
 			GuiUtils.addToGridBag(1, 0, 1, 1, 0.0, 0.0, GridBagConstraints.NONE, GridBagConstraints.NORTHWEST, gbc,
 					panel, btInvert);
+			GuiUtils.addToGridBag(2, 0, 1, 1, 0.0, 0.0, GridBagConstraints.NONE, GridBagConstraints.NORTHWEST, gbc,
+					panel, btLock);
+			btLock.setToolTipText("Track the frequency measured by the frequency meter.");
 
 			setupEventHandlers();
 
@@ -428,11 +436,64 @@ public class ChannelControlPanel extends JPanel {
 				if (cmd != null)
 					cmd.setInvert(channel, btInvert.isSelected());
 			});
+
+			btLock.addActionListener(e -> {
+				if (btLock.isSelected()) {
+					startLock();
+				} else {
+					stopLock();
+				}
+			});
+		}
+
+		private void startLock() {
+			if (cmd == null) {
+				btLock.setSelected(false);
+				return;
+			}
+			var com = cmd;
+			var df = new DecimalFormat("#0.00");
+			var l = new FrequencyLock(channel, FrequencyLock.Mode.TRACK, 1.0, FrequencyLock.DEFAULT_KP, FrequencyLock.DEFAULT_KI,
+					com.getGateValue());
+			lock = l;
+			Thread.ofPlatform().daemon().name("frequency-lock-" + channel).start(() -> {
+				try {
+					l.run(com, Long.MAX_VALUE, u -> SwingUtilities.invokeLater(() -> {
+						frequencyControls.getTfFreq().setText(df.format(u.output()));
+						btLock.setText(u.state() == FrequencyLock.State.LOCKED ? "Locked" : "Lock...");
+						btLock.setToolTipText(u.toString());
+					}));
+				} catch (RuntimeException ex) {
+					SwingUtilities.invokeLater(() -> GuiUtils.showException(ChannelControlPanel.this, "Frequency lock failed", ex,
+							"Failed to lock channel %d to the frequency meter.", channel));
+				} finally {
+					SwingUtilities.invokeLater(() -> {
+						if (lock == l) {
+							lock = null;
+							btLock.setSelected(false);
+						}
+						btLock.setText("Lock");
+					});
+				}
+			});
+		}
+
+		private void stopLock() {
+			if (lock != null) {
+				lock.cancel();
+				lock = null;
+			}
+			btLock.setText("Lock");
 		}
 
 		public void setEnabled(boolean enable) {
 			btEnable.setEnabled(enable);
 			btInvert.setEnabled(enable);
+			btLock.setEnabled(enable);
+			if (!enable && btLock.isSelected()) {
+				btLock.setSelected(false);
+				stopLock();
+			}
 		}
 
 		public void reload(AbstractSerialCom cmd, int channel) {
@@ -0,0 +1,59 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Time source and scheduler of the serial layer. All delays, timeouts and
+ * timestamps of the drivers, the {@link SerialListener} and the
+ * {@link DeviceSimulator} go through a clock, so that tests can replace the
+ * {@link #system() system clock} with a {@link VirtualClock}.
+ */
+public interface Clock {
+
+	/**
+	 * A scheduled task
+	 */
+	interface Scheduled {
+		/** Cancel the task if it has not run */
+		void cancel();
+	}
+
+	/**
+	 * Get the system clock
+	 * @return the clock using {@link System#nanoTime()}
+	 */
+	static Clock system() {
+		return SystemClock.INSTANCE;
+	}
+
+	/**
+	 * Get the current time
+	 * @return the time in nanoseconds, only meaningful as a difference to another time of the same clock
+	 */
+	long nanoTime();
+
+	/**
+	 * Sleep
+	 * @param nanos the time to sleep in nanoseconds
+	 * @throws InterruptedException if interrupted
+	 */
+	void sleep(long nanos) throws InterruptedException;
+
+	/**
+	 * Take the head of a queue, waiting if necessary
+	 * @param <T> the element type
+	 * @param queue the queue
+	 * @param nanos the max time to wait in nanoseconds
+	 * @return the head, or null if the time has elapsed
+	 * @throws InterruptedException if interrupted
+	 */
+	<T> T poll(BlockingQueue<T> queue, long nanos) throws InterruptedException;
+
+	/**
+	 * Run a task after a delay. Tasks with the same time run in the order they were scheduled.
+	 * @param task the task
+	 * @param delay the delay in nanoseconds
+	 * @return the scheduled task
+	 */
+	Scheduled schedule(Runnable task, long delay);
+}
@@ -19,7 +19,6 @@ import java.util.function.Function;
 import javax.swing.UIManager;
 import javax.swing.UIManager.LookAndFeelInfo;
 
-import com.fazecast.jSerialComm.SerialPort;
 
 /**
  * Configuration
@@ -30,6 +29,8 @@ public class Config {
 	private static final String USER_HOME = System.getProperty("user.home");
 	/** Default name of settings file (without path). */
 	private static final String DEFAULT_SETTING_FILE_NAME = ".jfuncgen.cfg";
+	/** Name of the flight recorder file (without path). */
+	private static final String FLIGHT_RECORDER_FILE_NAME = ".jfuncgen.rec";
 	/** Hash map with loaded parameters */
 	private static final Map<String,String> properties = new HashMap<>();
 	/** ConfigParamter to string */
@@ -54,6 +55,14 @@ public class Config {
 		return new File ((USER_HOME != null ? USER_HOME + File.separator : "") + DEFAULT_SETTING_FILE_NAME);
 	}
 
+	/**
+	 * Get flight recorder file
+	 * @return the flight recorder file
+	 */
+	public static File getFlightRecorderFile() {
+		return new File ((USER_HOME != null ? USER_HOME + File.separator : "") + FLIGHT_RECORDER_FILE_NAME);
+	}
+
 	/**
 	 * Load the configuration if it exists.
 	 * @throws IOException if error
@@ -182,29 +191,91 @@ public class Config {
 		return DeviceType.NONE;
 	}
 
+	/**
+	 * Get max number of bytes to show in hexdumps of binary data
+	 * @return the max number of bytes
+	 */
+	public static int getHexDumpLimit() {
+		return GET_INTEGER.apply(ConfigParameter.HEXDUMP_LIMIT.key, 1024);
+	}
+
+	/**
+	 * Set max number of bytes to show in hexdumps of binary data
+	 * @param limit the max number of bytes, or null for default
+	 */
+	public static void setHexDumpLimit(Integer limit) {
+		if (limit != null) {
+			properties.put(ConfigParameter.HEXDUMP_LIMIT.key, String.valueOf(limit));
+		} else {
+			properties.remove(ConfigParameter.HEXDUMP_LIMIT.key);
+		}
+	}
+
 	/**
 	 * Set port
-	 * @param port the serial port
+	 * @param port the transport
 	 */
-	public static void setPort(SerialPort port) {
+	public static void setPort(SerialTransport port) {
 		if (port != null) {
-			properties.put(ConfigParameter.PORT.key, port.getSystemPortName());
+			properties.put(ConfigParameter.PORT.key, port.getName());
 		} else {
 			properties.remove(ConfigParameter.PORT.key);
 		}
 	}
 
 	/**
-	 * Get port
-	 * @return the serial port
+	 * Get port name
+	 * @return the name of the serial port or other transport, or null if not set
 	 */
-	public static SerialPort getPort() {
-		var name = GET_STRING.apply(ConfigParameter.PORT.key, "");
-		for (var p : AbstractSerialCom.getPorts()) {
-			if (name.equals(p.getSystemPortName())) {
-				return p;
-			}
+	public static String getPortName() {
+		return GET_STRING.apply(ConfigParameter.PORT.key, null);
+	}
+
+	/**
+	 * Get size of the flight recorder file
+	 * @return the size in MiB, 0 if not recording
+	 */
+	public static int getFlightRecorderSize() {
+		return GET_INTEGER.apply(ConfigParameter.FLIGHT_RECORDER_SIZE.key, 4);
+	}
+
+	/**
+	 * Set size of the flight recorder file, used at next start
+	 * @param size the size in MiB, 0 to stop recording or null for default
+	 */
+	public static void setFlightRecorderSize(Integer size) {
+		if (size != null) {
+			properties.put(ConfigParameter.FLIGHT_RECORDER_SIZE.key, String.valueOf(size));
+		} else {
+			properties.remove(ConfigParameter.FLIGHT_RECORDER_SIZE.key);
 		}
-		return null;
+	}
+
+	/**
+	 * Get the TCP port of the network gateway
+	 * @return the port, 0 if the gateway is disabled
+	 */
+	public static int getGatewayPort() {
+		return GET_INTEGER.apply(ConfigParameter.GATEWAY_PORT.key, 0);
+	}
+
+	/**
+	 * Set the TCP port of the network gateway, used at next start
+	 * @param port the port, 0 to disable or null for default
+	 */
+	public static void setGatewayPort(Integer port) {
+		if (port != null) {
+			properties.put(ConfigParameter.GATEWAY_PORT.key, String.valueOf(port));
+		} else {
+			properties.remove(ConfigParameter.GATEWAY_PORT.key);
+		}
+	}
+
+	/**
+	 * Get the address the network gateway listens on
+	 * @return the host name or address, the loopback address by default
+	 */
+	public static String getGatewayAddress() {
+		return GET_STRING.apply(ConfigParameter.GATEWAY_ADDRESS.key, "127.0.0.1");
 	}
 }
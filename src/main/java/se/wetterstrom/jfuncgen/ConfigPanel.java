@@ -13,13 +13,13 @@ import java.util.function.Function;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.UIManager.LookAndFeelInfo;
 
-import com.fazecast.jSerialComm.SerialPort;
 
 /**
  * <pre style='font-family:sans-serif;'>
@@ -48,7 +48,7 @@ public class ConfigPanel extends JPanel implements FuncTab {
 	/** device type combo box */
 	private final JComboBox<DeviceType> cbDeviceType = new JComboBox<>(DeviceType.values());
 	/** serial port combo box */
-	private final JComboBox<SerialPort> cbSerialPort = new JComboBox<>();
+	private final JComboBox<SerialTransport> cbSerialPort = new JComboBox<>();
 	/** font size combo box */
 	private final JComboBox<Integer> cbFontSize = new JComboBox<>();
 	/** Look &amp; Feel combo box */
@@ -76,7 +76,10 @@ public class ConfigPanel extends JPanel implements FuncTab {
 		var gbc = new GridBagConstraints();
 
 		cbDeviceType.setSelectedItem(Config.getDeviceType());
-		cbDeviceType.addActionListener(ev -> Config.setDeviceType((DeviceType) cbDeviceType.getSelectedItem()));
+		cbDeviceType.addActionListener(ev -> {
+			Config.setDeviceType((DeviceType) cbDeviceType.getSelectedItem());
+			populatePortBox();
+		});
 
 		Function<Object,String> lafMapper = obj -> Optional.ofNullable(obj)
 				.filter(LookAndFeelInfo.class::isInstance).map(LookAndFeelInfo.class::cast)
@@ -84,10 +87,10 @@ public class ConfigPanel extends JPanel implements FuncTab {
 		cbLook.setRenderer(new MappingListRenderer(lafMapper));
 		
 		Function<Object,String> portMapper = obj -> Optional.ofNullable(obj)
-				.filter(SerialPort.class::isInstance).map(SerialPort.class::cast)
-				.map(p->p.getSystemPortName() + " - " + p.getDescriptivePortName()).orElse("");
+				.filter(SerialTransport.class::isInstance).map(SerialTransport.class::cast)
+				.map(SerialTransport::getDescription).orElse("");
 		cbSerialPort.setRenderer(new MappingListRenderer(portMapper));
-		cbSerialPort.addActionListener(ev -> Config.setPort((SerialPort) cbSerialPort.getSelectedItem()));
+		cbSerialPort.addActionListener(ev -> Config.setPort((SerialTransport) cbSerialPort.getSelectedItem()));
 
 		tfModel.setEditable(false);
 		tfSerial.setEditable(false);
@@ -105,6 +108,12 @@ public class ConfigPanel extends JPanel implements FuncTab {
 		var refresh = new JButton("Refresh");
 		refresh.addActionListener(e-> populatePortBox());
 		connectBtPanel.add(refresh);
+		var tcp = new JButton("TCP...");
+		tcp.addActionListener(e -> addTcpPort());
+		connectBtPanel.add(tcp);
+		var detect = new JButton("Detect");
+		detect.addActionListener(e -> detectDevice(detect));
+		connectBtPanel.add(detect);
 
 		var deviceInfoPanel = new JPanel(new GridLayout(2,3));
 		deviceInfoPanel.add(new JLabel("Model"));
@@ -172,26 +181,67 @@ public class ConfigPanel extends JPanel implements FuncTab {
 	private void populatePortBox() {
 		cbSerialPort.removeAllItems();
 		cbSerialPort.addItem(null);
-		// available serial ports
+		// available serial ports, the simulator and a configured TCP port
 
 		var cmd =  getSerial();
-		String defaultName = Optional.ofNullable(Config.getPort()).map(SerialPort::getSystemPortName).orElse(cmd.getDefaultPortName());
-		for (var p : AbstractSerialCom.getPorts()) {
+		String defaultName = Optional.ofNullable(Config.getPortName()).orElse(cmd.getDefaultPortName());
+		var ports = AbstractSerialCom.getPortTransports();
+		Optional.ofNullable(DeviceSimulator.create((DeviceType) cbDeviceType.getSelectedItem()))
+			.map(sim -> new SimulatorTransport(sim, String.valueOf(cbDeviceType.getSelectedItem())))
+			.ifPresent(ports::add);
+		Optional.ofNullable(TcpTransport.parse(defaultName)).ifPresent(ports::add);
+		for (var p : ports) {
 			cbSerialPort.addItem(p);
-			if (defaultName.equals(p.getSystemPortName())) {
+			if (defaultName.equals(p.getName())) {
 				cbSerialPort.setSelectedItem(p);
-				cmd.setPort(p);
+				cmd.setTransport(p);
+			}
+		}
+	}
+
+	private void addTcpPort() {
+		var address = JOptionPane.showInputDialog(this, "Address of serial server", TcpTransport.PREFIX + "localhost:2000");
+		if (address != null) {
+			var tcp = TcpTransport.parse(address.trim());
+			if (tcp != null) {
+				cbSerialPort.addItem(tcp);
+				cbSerialPort.setSelectedItem(tcp);
+			} else {
+				JOptionPane.showMessageDialog(this, "Expected " + TcpTransport.PREFIX + "host:port", "TCP", JOptionPane.ERROR_MESSAGE);
 			}
 		}
 	}
 
+	private void detectDevice(JButton button) {
+		button.setEnabled(false);
+		// probing takes a while, keep the GUI responsive
+		Thread.ofVirtual().start(() -> {
+			var matches = DeviceProbe.probe(DeviceProbe.DEFAULT_TIMEOUT);
+			SwingUtilities.invokeLater(() -> {
+				button.setEnabled(true);
+				if (matches.isEmpty()) {
+					JOptionPane.showMessageDialog(this, "No device found", "Detect", JOptionPane.INFORMATION_MESSAGE);
+					return;
+				}
+				var match = matches.get(0);
+				cbDeviceType.setSelectedItem(match.type());
+				for (int i = 0; i < cbSerialPort.getItemCount(); i++) {
+					var port = cbSerialPort.getItemAt(i);
+					if (port != null && port.getName().equals(match.transport().getName())) {
+						cbSerialPort.setSelectedItem(port);
+					}
+				}
+			});
+		});
+	}
+
 	private AbstractSerialCom getSerial() {
 		return ((DeviceType) cbDeviceType.getSelectedItem()).getSerialCom();
 	}
 
 	private void openPort(boolean connect) {
 		var cmd = getSerial();
-		cmd.setPort((SerialPort) cbSerialPort.getSelectedItem());
+		cmd.setTransport((SerialTransport) cbSerialPort.getSelectedItem());
 		if (connect) {
 			serialChangeConsumer.accept(cmd);
 			cmd.connect();
@@ -23,8 +23,16 @@ package se.wetterstrom.jfuncgen;
 public enum ConfigParameter {
 	/** device_type */
 	DEVICE_TYPE("device_type"),
+	/** flight_recorder_size */
+	FLIGHT_RECORDER_SIZE("flight_recorder_size"),
 	/** font_size */
 	FONT_SIZE("font_size"),
+	/** gateway_address */
+	GATEWAY_ADDRESS("gateway_address"),
+	/** gateway_port */
+	GATEWAY_PORT("gateway_port"),
+	/** hexdump_limit */
+	HEXDUMP_LIMIT("hexdump_limit"),
 	/** look */
 	LOOK("look"),
 	/** port */
@@ -6,6 +6,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 import javax.swing.JButton;
 import javax.swing.JPanel;
@@ -13,6 +15,9 @@ import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.text.BadLocationException;
 
 /**
  * <pre style='font-family:sans-serif;'>
@@ -86,7 +91,7 @@ public class ConsolePanel extends JPanel implements FuncTab {
 		clearButton.addActionListener(e -> cmdField.setText(""));
 
 		var popMenu = new JPopupMenu();
-		GuiUtils.addMenuItem(popMenu, "Clear", 'c', event -> received.setText(""));
+		GuiUtils.addMenuItem(popMenu, "Clear", 'c', event -> consoleStream.clear());
 		GuiUtils.addMenuItem(popMenu, "Save", 'a', event -> saveConsole());
 		received.setComponentPopupMenu(popMenu);
 	}
@@ -119,10 +124,34 @@ public class ConsolePanel extends JPanel implements FuncTab {
 	}
 
 	/**
-	 * Console stream
+	 * Console stream.
+	 * <p>
+	 * Text may be appended from any thread. It is buffered in a bounded queue and
+	 * flushed to the text area in batches on the event dispatch thread, at most
+	 * once per frame. When the queue is full the oldest text is dropped, and the
+	 * text area is trimmed to the last {@link #MAX_LINES} lines.
 	 */
-	public class ConsoleStream extends OutputStream {
+	public static class ConsoleStream extends OutputStream {
+		/** Max number of lines kept in the text area */
+		public static final int MAX_LINES = 5000;
+		/** Max number of characters waiting to be flushed */
+		public static final int MAX_PENDING = 256 * 1024;
+		/** Min time between two flushes */
+		private static final int FRAME_MILLIS = 33;
+		/** Max size of the tail segment used for single characters */
+		private static final int TAIL_SIZE = 256;
+
 		private final JTextArea textArea;
+		/** the text waiting to be flushed, oldest first */
+		private final Deque<CharSequence> pending = new ArrayDeque<>();
+		/** tail segment for single character writes */
+		private StringBuilder tail = null;
+		/** number of characters in pending */
+		private int pendingChars = 0;
+		/** number of characters dropped since last flush */
+		private long droppedChars = 0;
+		/** the flush timer */
+		private final Timer flushTimer = new Timer(FRAME_MILLIS, e -> flushToTextArea());
 
 		/**
 		 * Constructor
@@ -130,11 +159,22 @@ public class ConsolePanel extends JPanel implements FuncTab {
 		 */
 		public ConsoleStream(JTextArea textArea) {
 			this.textArea = textArea;
+			flushTimer.setRepeats(false);
+			flushTimer.setCoalesce(true);
 		}
 
 		@Override
 		public void write(int b) throws IOException {
-			append(String.valueOf((char) b));
+			synchronized (pending) {
+				if (tail == null || tail.length() >= TAIL_SIZE) {
+					tail = new StringBuilder(TAIL_SIZE);
+					add(tail);
+				}
+				tail.append((char) (b & 0xff));
+				pendingChars++;
+				trimPending();
+			}
+			scheduleFlush();
 		}
 
 		@Override
@@ -148,20 +188,93 @@ public class ConsolePanel extends JPanel implements FuncTab {
 		 * @return the stream
 		 */
 		public ConsoleStream append(Object obj) {
-			return append(String.valueOf(obj));
+			return append(obj instanceof CharSequence seq ? seq : String.valueOf(obj));
 		}
 
 		/**
-		 * Append to console
-		 * @param str the string
+		 * Append to console. The text is not converted to a string until it is
+		 * flushed to the text area, and not at all if it is dropped before that.
+		 * @param str the text
 		 * @return the stream
 		 */
-		public ConsoleStream append(String str) {
-			// redirects data to the text area
-			textArea.append(str);
+		public ConsoleStream append(CharSequence str) {
+			if (!str.isEmpty()) {
+				synchronized (pending) {
+					add(str);
+					tail = null;
+					trimPending();
+				}
+				scheduleFlush();
+			}
+			return this;
+		}
+
+		/** Discard pending text and clear the text area */
+		public void clear() {
+			synchronized (pending) {
+				pending.clear();
+				tail = null;
+				pendingChars = 0;
+				droppedChars = 0;
+			}
+			SwingUtilities.invokeLater(() -> textArea.setText(""));
+		}
+
+		private void add(CharSequence seq) {
+			pending.addLast(seq);
+			pendingChars += seq.length();
+		}
+
+		/** Drop the oldest segments until the pending text fits */
+		private void trimPending() {
+			while (pendingChars > MAX_PENDING && pending.size() > 1) {
+				var seq = pending.removeFirst();
+				if (seq == tail) {
+					tail = null;
+				}
+				pendingChars -= seq.length();
+				droppedChars += seq.length();
+			}
+		}
+
+		private void scheduleFlush() {
+			if (!flushTimer.isRunning()) {
+				flushTimer.start();
+			}
+		}
+
+		/** Move pending text to the text area. Called on the EDT. */
+		void flushToTextArea() {
+			var buf = new StringBuilder();
+			synchronized (pending) {
+				if (droppedChars > 0) {
+					buf.append("\n[").append(droppedChars).append(" characters dropped]\n");
+					droppedChars = 0;
+				}
+				pending.forEach(buf::append);
+				pending.clear();
+				tail = null;
+				pendingChars = 0;
+			}
+			if (buf.isEmpty()) {
+				return;
+			}
+			textArea.append(buf.toString());
+			trimLines();
 			// scrolls the text area to the end of data
 			textArea.setCaretPosition(textArea.getDocument().getLength());
-			return this;
+		}
+
+		/** Remove the oldest lines from the text area */
+		private void trimLines() {
+			int excess = textArea.getLineCount() - MAX_LINES;
+			if (excess > 0) {
+				try {
+					textArea.getDocument().remove(0, textArea.getLineStartOffset(excess));
+				} catch (BadLocationException e) {
+					// ignore
+				}
+			}
 		}
 	}
 
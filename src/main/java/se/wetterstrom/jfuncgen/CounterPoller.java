@@ -0,0 +1,337 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import se.wetterstrom.jfuncgen.AdvancedPanel.MeasureMode;
+
+/**
+ * Polls the counter of the device continuously into a ring of time stamped
+ * samples.
+ * <p>
+ * In frequency mode the frequency meter is read once per gate time, since
+ * it only has a new reading when a gate time has passed. In the other
+ * modes the counter is read again as soon as the previous reading has
+ * arrived, as fast as the link allows. The driver lock is released between
+ * readings so other users of the driver are not starved. The measure mode
+ * and gate value are read when polling starts and after
+ * {@link #reconfigure()}.
+ * <p>
+ * In frequency mode the readings are also fed to {@link StabilityStatistics},
+ * with the gate time as the time between readings, restarted when
+ * reconfigured.
+ * <p>
+ * A sample is stamped with the clock of the driver in the middle of the
+ * round trip of its request. The samples can also be streamed to a binary
+ * file: the int {@link #MAGIC} and {@link #VERSION}, then per sample the
+ * time from the start of the export in nanoseconds as a long and the value
+ * as a double, all big endian. The file is flushed once per gate time.
+ */
+public class CounterPoller {
+
+	/** Default number of samples kept */
+	public static final int DEFAULT_CAPACITY = 100_000;
+	/** The first int of an export file, "JFGS" */
+	public static final int MAGIC = 0x4A464753;
+	/** The format version of export files */
+	public static final int VERSION = 1;
+	/** Weight of a new round trip in the average round trip */
+	private static final double ROUND_TRIP_WEIGHT = 0.25;
+	/** Longest wait before checking for cancel */
+	private static final long WAIT_SLICE = TimeUnit.MILLISECONDS.toNanos(50);
+
+	/** the driver */
+	private final AbstractSerialCom com;
+	/** the samples */
+	private final SampleRing samples;
+	/** the polling thread, or null if not started or canceled */
+	private volatile Thread thread;
+	/** true if canceled */
+	private volatile boolean canceled;
+	/** true if the measure mode and gate value should be read */
+	private volatile boolean reconfigure = true;
+	/** the measure mode */
+	private volatile MeasureMode mode = MeasureMode.FREQUENCY;
+	/** the time between readings in nanoseconds */
+	private volatile long interval;
+	/** the gate time in nanoseconds */
+	private volatile long gateTime;
+	/** the average round trip in nanoseconds */
+	private volatile double roundTrip;
+	/** the stability statistics of frequency readings, or null */
+	private volatile StabilityStatistics statistics;
+	/** the export stream, or null */
+	private DataOutputStream export;
+	/** the start time of the export */
+	private long exportStart;
+	/** the time of the last flush of the export */
+	private long exportFlushed;
+	/** the error of the export, or null */
+	private IOException exportError;
+
+	/**
+	 * Constructor
+	 * @param com the driver
+	 * @param capacity the number of samples kept
+	 */
+	public CounterPoller(AbstractSerialCom com, int capacity) {
+		this.com = com;
+		this.samples = new SampleRing(capacity);
+	}
+
+	/**
+	 * @return the samples
+	 */
+	SampleRing getSamples() {
+		return samples;
+	}
+
+	/**
+	 * @return the measure mode polled
+	 */
+	public MeasureMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * @return the time between the starts of readings in nanoseconds, 0 for as fast as possible
+	 */
+	public long getInterval() {
+		return interval;
+	}
+
+	/**
+	 * @return the average round trip of a reading in nanoseconds
+	 */
+	public double getRoundTrip() {
+		return roundTrip;
+	}
+
+	/**
+	 * @return the stability statistics of the frequency readings since polling started or was reconfigured, or null if not frequency mode
+	 */
+	public StabilityStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Read the measure mode and gate value before the next reading
+	 */
+	public void reconfigure() {
+		reconfigure = true;
+	}
+
+	/**
+	 * Start polling in the background
+	 */
+	public synchronized void start() {
+		if (!isRunning()) {
+			canceled = false;
+			reconfigure = true;
+			thread = Thread.ofPlatform().daemon().name("counter-poller").start(() -> poll(Long.MAX_VALUE));
+		}
+	}
+
+	/**
+	 * Stop polling after the current reading without waiting for it, so
+	 * the caller is not blocked by a reading waiting for a silent device.
+	 * Polling can be started again at once.
+	 * @return the polling thread, or null if not started
+	 */
+	public synchronized Thread cancel() {
+		var t = thread;
+		canceled = true;
+		thread = null;
+		return t;
+	}
+
+	/**
+	 * Stop polling after the current reading and wait for it
+	 */
+	public void stop() {
+		var t = cancel();
+		if (t != null && t != Thread.currentThread()) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @return true if polling in the background
+	 */
+	public synchronized boolean isRunning() {
+		return thread != null && thread.isAlive();
+	}
+
+	/**
+	 * Poll in the calling thread until the time has passed, the device is
+	 * offline or polling is stopped
+	 * @param duration the time in nanoseconds
+	 * @return the number of samples
+	 */
+	public long run(long duration) {
+		canceled = false;
+		return poll(duration);
+	}
+
+	/**
+	 * Poll until the time has passed, the device is offline or canceled
+	 * @param duration the time in nanoseconds
+	 * @return the number of samples
+	 */
+	private long poll(long duration) {
+		var clock = com.getClock();
+		long start = clock.nanoTime();
+		long next = start;
+		long count = 0;
+		while (pause(clock, next) && clock.nanoTime() - start < duration) {
+			if (reconfigure) {
+				reconfigure = false;
+				configure();
+			}
+			long t = clock.nanoTime();
+			double v = mode == MeasureMode.FREQUENCY ? com.getMeasuredFrequency() : com.getCount();
+			long now = clock.nanoTime();
+			if (!com.isOnline()) {
+				break;
+			}
+			roundTrip = count == 0 ? now - t : roundTrip + ROUND_TRIP_WEIGHT * (now - t - roundTrip);
+			long stamp = t + (now - t) / 2;
+			samples.add(stamp, v);
+			var stats = statistics;
+			if (stats != null) {
+				stats.add(v);
+			}
+			write(stamp, v);
+			count++;
+			next = t + interval;
+		}
+		return count;
+	}
+
+	/**
+	 * Start streaming the samples to a file
+	 * @param file the file, replaced if it exists
+	 * @throws IOException if the file can not be created
+	 */
+	public synchronized void startExport(Path file) throws IOException {
+		stopExport();
+		var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		export = out;
+		exportStart = com.getClock().nanoTime();
+		exportFlushed = exportStart;
+		exportError = null;
+	}
+
+	/**
+	 * Stop streaming the samples and close the file
+	 * @throws IOException if failed to write the file
+	 */
+	public synchronized void stopExport() throws IOException {
+		var out = export;
+		var error = exportError;
+		export = null;
+		exportError = null;
+		if (out != null) {
+			out.close();
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * @return true if streaming the samples to a file
+	 */
+	public synchronized boolean isExporting() {
+		return export != null;
+	}
+
+	/**
+	 * Read an export file
+	 * @param file the file
+	 * @param ring the ring to add the samples to
+	 * @return the number of samples read
+	 * @throws IOException if the file can not be read or is not an export file
+	 */
+	static long read(Path file, SampleRing ring) throws IOException {
+		try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Not a counter export file: " + file);
+			}
+			long count = 0;
+			while (true) {
+				long t;
+				try {
+					t = in.readLong();
+				} catch (EOFException e) {
+					return count;
+				}
+				ring.add(t, in.readDouble());
+				count++;
+			}
+		}
+	}
+
+	/** Read the measure mode and gate value and set the interval */
+	private void configure() {
+		mode = com.getMeasureMode();
+		// a new reading of the frequency meter only after a gate time
+		double gate = com.getGateTime(com.getGateValue());
+		gateTime = Math.round(gate * 1e9);
+		interval = mode == MeasureMode.FREQUENCY ? gateTime : 0;
+		statistics = mode == MeasureMode.FREQUENCY ? new StabilityStatistics(gate) : null;
+	}
+
+	/**
+	 * Write a sample to the export file if exporting
+	 * @param t the time stamp
+	 * @param v the value
+	 */
+	private synchronized void write(long t, double v) {
+		if (export != null && exportError == null) {
+			try {
+				export.writeLong(t - exportStart);
+				export.writeDouble(v);
+				if (t - exportFlushed >= gateTime) {
+					export.flush();
+					exportFlushed = t;
+				}
+			} catch (IOException e) {
+				exportError = e;
+			}
+		}
+	}
+
+	/**
+	 * Wait for a time, checking for cancel now and then
+	 * @param clock the clock
+	 * @param time the time
+	 * @return false if canceled or interrupted
+	 */
+	private boolean pause(Clock clock, long time) {
+		// a canceled thread stops also if polling was started again on another thread
+		while (!canceled && (thread == null || thread == Thread.currentThread())) {
+			long now = clock.nanoTime();
+			if (time - now <= 0) {
+				return true;
+			}
+			if (!Sequencer.waitUntil(clock, now + Math.min(time - now, WAIT_SLICE))) {
+				return false;
+			}
+		}
+		return false;
+	}
+}
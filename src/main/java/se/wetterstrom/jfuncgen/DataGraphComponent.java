@@ -35,7 +35,9 @@ import javax.swing.JPanel;
 public class DataGraphComponent extends JPanel {
 
 	private static final long serialVersionUID = 1L;
-	private static final String SPLIT_REGEXP = "\\s*[,;]\\s*";
+	private static final String SPLIT_REGEXP = "\\s*[,;\\n\\r]+\\s*";
+	/** Number of undo levels */
+	private static final int UNDO_LEVELS = 256;
 
 	/** Data model for the graph */
 	private final transient DataModel dataModel = new DataModel();
@@ -44,6 +46,8 @@ public class DataGraphComponent extends JPanel {
 	private double xScale = 4.0;
 	/** y scale */
 	private double yScale = 8.0;
+	/** called when the undo history has changed */
+	private transient Runnable historyListener = () -> {};
 
 	/** Constructor */
 	public DataGraphComponent() {
@@ -58,6 +62,15 @@ public class DataGraphComponent extends JPanel {
 	 */
 	public void initData(int max, int offset, int dataSize) {
 		dataModel.initialize(max, dataSize);
+		historyListener.run();
+	}
+
+	/**
+	 * Set the listener called when the undo history has changed
+	 * @param listener the listener
+	 */
+	public void setHistoryListener(Runnable listener) {
+		historyListener = listener;
 	}
 
 	/**
@@ -66,11 +79,12 @@ public class DataGraphComponent extends JPanel {
 	 */
 	public void setData(int[] data) {
 		dataModel.setData(data);
+		historyListener.run();
 		repaint();
 	}
 
 	/**
-	 * Set double value
+	 * Set double value. Call {@link #commit()} when done editing.
 	 * @param index the index
 	 * @param value the value
 	 */
@@ -79,7 +93,7 @@ public class DataGraphComponent extends JPanel {
 	}
 
 	/**
-	 * Set double value
+	 * Set integer value. Call {@link #commit()} when done editing.
 	 * @param index the index
 	 * @param value the value
 	 */
@@ -148,7 +162,7 @@ public class DataGraphComponent extends JPanel {
 	}
 
 	/**
-	 * Draw line
+	 * Draw line. Call {@link #commit()} when done editing.
 	 * @param x1 x1
 	 * @param y1 y1
 	 * @param x2 x2
@@ -186,6 +200,7 @@ public class DataGraphComponent extends JPanel {
 	 */
 	public void plot(IntUnaryOperator func) {
 		dataModel.applyFunction(func);
+		historyListener.run();
 		repaint();
 	}
 
@@ -195,12 +210,14 @@ public class DataGraphComponent extends JPanel {
 	 */
 	public void plot(IntBinaryOperator func) {
 		dataModel.applyFunction(func);
+		historyListener.run();
 		repaint();
 	}
 
 	/** Scale up waveform */
 	public void gain() {
 		dataModel.gain();
+		historyListener.run();
 		repaint();
 	}
 
@@ -210,6 +227,7 @@ public class DataGraphComponent extends JPanel {
 	 */
 	public void move(int dist) {
 		dataModel.move(dist);
+		historyListener.run();
 		repaint();
 	}
 
@@ -218,6 +236,55 @@ public class DataGraphComponent extends JPanel {
 	 */
 	public void reset() {
 		dataModel.reset();
+		historyListener.run();
+	}
+
+	/**
+	 * Store pending point and line edits as one undo level
+	 * @return true if anything changed since the last undo level
+	 */
+	public boolean commit() {
+		boolean res = dataModel.commit();
+		historyListener.run();
+		return res;
+	}
+
+	/**
+	 * Undo the last edit
+	 * @return true if undone
+	 */
+	public boolean undo() {
+		boolean res = dataModel.undo();
+		historyListener.run();
+		repaint();
+		return res;
+	}
+
+	/**
+	 * Redo the last undone edit
+	 * @return true if redone
+	 */
+	public boolean redo() {
+		boolean res = dataModel.redo();
+		historyListener.run();
+		repaint();
+		return res;
+	}
+
+	/**
+	 * Check if undo is possible
+	 * @return true if undo is possible
+	 */
+	public boolean canUndo() {
+		return dataModel.history.canUndo();
+	}
+
+	/**
+	 * Check if redo is possible
+	 * @return true if redo is possible
+	 */
+	public boolean canRedo() {
+		return dataModel.history.canRedo();
 	}
 
 	/**
@@ -272,7 +339,9 @@ public class DataGraphComponent extends JPanel {
 	}
 
 	/**
-	 * Data model for the graph component
+	 * Data model for the graph component.
+	 * Bulk operations are stored as undo levels directly, while point and line
+	 * edits are stored when {@link #commit()} is called.
 	 */
 	private static class DataModel {
 		/** data */
@@ -281,6 +350,8 @@ public class DataGraphComponent extends JPanel {
 		private int size = 0;
 		/** maximum */
 		private int max = 4096;
+		/** undo history */
+		private final UndoHistory history = new UndoHistory(UNDO_LEVELS);
 
 		/**
 		 * Initialize data
@@ -291,7 +362,7 @@ public class DataGraphComponent extends JPanel {
 			this.size = size;
 			this.data = new int[size];
 			this.max = max;
-			reset();
+			history.reset(data);
 		}
 
 		/**
@@ -299,6 +370,32 @@ public class DataGraphComponent extends JPanel {
 		 */
 		public void reset() {
 			Arrays.fill(data, 0);
+			commit();
+		}
+
+		/**
+		 * Store data as an undo level if changed
+		 * @return true if changed
+		 */
+		public boolean commit() {
+			return history.commit(data);
+		}
+
+		/**
+		 * Undo, storing pending edits first
+		 * @return true if undone
+		 */
+		public boolean undo() {
+			commit();
+			return history.undo(data);
+		}
+
+		/**
+		 * Redo
+		 * @return true if redone
+		 */
+		public boolean redo() {
+			return !commit() && history.redo(data);
 		}
 
 		/**
@@ -333,6 +430,7 @@ public class DataGraphComponent extends JPanel {
 			for (int i = 0; i < newData.length && i < this.data.length; i++) {
 				this.data[i] = newData[i];
 			}
+			commit();
 		}
 
 		/**
@@ -411,6 +509,7 @@ public class DataGraphComponent extends JPanel {
 			for (int x = 0; x < size; x++) {
 				data[x] = func.applyAsInt(x);
 			}
+			commit();
 		}
 
 		/**
@@ -421,6 +520,7 @@ public class DataGraphComponent extends JPanel {
 			for (int x = 0; x < size; x++) {
 				data[x] = func.applyAsInt(x, data[x]);
 			}
+			commit();
 		}
 
 		/**
@@ -438,6 +538,7 @@ public class DataGraphComponent extends JPanel {
 					data[i] = ((int) ((data[i] - h) / k)) + h;
 				}
 			}
+			commit();
 		}
 
 		/**
@@ -448,6 +549,7 @@ public class DataGraphComponent extends JPanel {
 			for (int i = 0; i < size; i++) {
 				data[i] = data[i] + dist;
 			}
+			commit();
 		}
 
 		/**
@@ -469,12 +571,16 @@ public class DataGraphComponent extends JPanel {
 		 * @return number of values parsed
 		 */
 		public int fromCSV(String csv, String splitRegexp) {
-			reset();
-			var a = csv.split(splitRegexp);
-			for (var i = 0; i < a.length && i < data.length; i++) {
-				data[i] = Integer.parseInt(a[i]);
+			Arrays.fill(data, 0);
+			try {
+				var a = csv.split(splitRegexp);
+				for (var i = 0; i < a.length && i < data.length; i++) {
+					data[i] = Integer.parseInt(a[i]);
+				}
+				return a.length;
+			} finally {
+				commit();
 			}
-			return a.length;
 		}
 	}
 }
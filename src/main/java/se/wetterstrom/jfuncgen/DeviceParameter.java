@@ -0,0 +1,235 @@
+package se.wetterstrom.jfuncgen;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import se.wetterstrom.jfuncgen.AdvancedPanel.MeasureMode;
+
+/**
+ * The device parameters that can be read or written by name, as text, by
+ * the command line interface and the network gateway.
+ */
+public enum DeviceParameter {
+	/** model */
+	MODEL("model", false, (c, ch) -> c.getModel(), null),
+	/** product */
+	PRODUCT("product", false, (c, ch) -> c.getProduct(), null),
+	/** firmware */
+	FIRMWARE("firmware", false, (c, ch) -> c.getFirmware(), null),
+	/** waveform, set by id or name */
+	WAVEFORM("waveform", true, DeviceParameter::waveForm, (c, ch, v) -> c.setWaveForm(ch, waveType(c, ch, v))),
+	/** frequency */
+	FREQUENCY("frequency", true, AbstractSerialCom::getFrequency, (c, ch, v) -> c.setFrequency(ch, Double.parseDouble(v))),
+	/** amplitude */
+	AMPLITUDE("amplitude", true, AbstractSerialCom::getAmplitude, (c, ch, v) -> c.setAmplitude(ch, Double.parseDouble(v))),
+	/** offset */
+	OFFSET("offset", true, AbstractSerialCom::getOffset, (c, ch, v) -> c.setOffset(ch, Double.parseDouble(v))),
+	/** duty */
+	DUTY("duty", true, AbstractSerialCom::getDutyCycle, (c, ch, v) -> c.setDutyCycle(ch, Double.parseDouble(v))),
+	/** phase */
+	PHASE("phase", true, AbstractSerialCom::getPhase, (c, ch, v) -> c.setPhase(ch, Double.parseDouble(v))),
+	/** attenuation */
+	ATTENUATION("attenuation", true, AbstractSerialCom::getAttenuation, (c, ch, v) -> c.setAttenuation(ch, Integer.parseInt(v))),
+	/** enable */
+	ENABLE("enable", true, AbstractSerialCom::getEnableChannel, (c, ch, v) -> c.setEnableChannel(ch, parseBoolean(v))),
+	/** invert */
+	INVERT("invert", true, AbstractSerialCom::getInvert, (c, ch, v) -> c.setInvert(ch, parseBoolean(v))),
+	/** output */
+	OUTPUT("output", false, (c, ch) -> c.getEnableOutput(), (c, ch, v) -> c.setEnableOutput(parseBoolean(v))),
+	/** powerout */
+	POWEROUT("powerout", false, (c, ch) -> c.getPowerOut(), (c, ch, v) -> c.setPowerOut(parseBoolean(v))),
+	/** trace */
+	TRACE("trace", false, (c, ch) -> c.getTrace(), (c, ch, v) -> c.setTrace(parseBoolean(v))),
+	/** measure */
+	MEASURE("measure", false, (c, ch) -> c.getMeasureMode(), (c, ch, v) -> c.setMeasureMode(measureMode(v))),
+	/** gate */
+	GATE("gate", false, (c, ch) -> c.getGateValue(), (c, ch, v) -> c.setGateValue(Integer.parseInt(v))),
+	/** count */
+	COUNT("count", false, (c, ch) -> c.getCount(), null),
+	/** sweepstart */
+	SWEEPSTART("sweepstart", false, (c, ch) -> c.getSweepStart(), (c, ch, v) -> c.setSweepStart(Double.parseDouble(v))),
+	/** sweepend */
+	SWEEPEND("sweepend", false, (c, ch) -> c.getSweepEnd(), (c, ch, v) -> c.setSweepEnd(Double.parseDouble(v))),
+	/** sweeptime */
+	SWEEPTIME("sweeptime", false, (c, ch) -> c.getSweepTime(), (c, ch, v) -> c.setSweepTime(Double.parseDouble(v))),
+	/** sweep, write only */
+	SWEEP("sweep", false, null, (c, ch, v) -> c.setSweepState(parseBoolean(v)));
+
+	/** Get a parameter */
+	@FunctionalInterface
+	private interface Getter {
+		Object get(AbstractSerialCom com, int channel);
+	}
+
+	/** Set a parameter */
+	@FunctionalInterface
+	private interface Setter {
+		void set(AbstractSerialCom com, int channel, String value);
+	}
+
+	/** the key */
+	final String key;
+	/** true if the parameter has a channel */
+	final boolean channel;
+	/** the getter, or null if write only */
+	private final Getter getter;
+	/** the setter, or null if read only */
+	private final Setter setter;
+
+	/**
+	 * Constructor
+	 * @param key the key
+	 * @param channel true if the parameter has a channel
+	 * @param getter the getter, or null if write only
+	 * @param setter the setter, or null if read only
+	 */
+	private DeviceParameter(String key, boolean channel, Getter getter, Setter setter) {
+		this.key = key;
+		this.channel = channel;
+		this.getter = getter;
+		this.setter = setter;
+	}
+
+	@Override
+	public String toString() {
+		return key;
+	}
+
+	/**
+	 * Find a parameter
+	 * @param key the key, in any case
+	 * @return the parameter
+	 * @throws IllegalArgumentException if not found
+	 */
+	public static DeviceParameter of(String key) {
+		for (var v : values()) {
+			if (v.key.equalsIgnoreCase(key)) {
+				return v;
+			}
+		}
+		throw new IllegalArgumentException("Unknown parameter: " + key);
+	}
+
+	/**
+	 * @return true if the parameter can be read
+	 */
+	public boolean isReadable() {
+		return getter != null;
+	}
+
+	/**
+	 * @return true if the parameter can be written
+	 */
+	public boolean isWritable() {
+		return setter != null;
+	}
+
+	/**
+	 * Read the parameter from the device
+	 * @param com the driver
+	 * @param ch the channel, ignored if the parameter has no channel
+	 * @return the value as text
+	 * @throws IllegalArgumentException if write only or the device is offline
+	 */
+	public String get(AbstractSerialCom com, int ch) {
+		if (getter == null) {
+			throw new IllegalArgumentException("Write only: " + key);
+		}
+		var value = getter.get(com, ch);
+		if (!com.isOnline()) {
+			throw new IllegalArgumentException("Offline");
+		}
+		return String.valueOf(value);
+	}
+
+	/**
+	 * Write the parameter to the device and wait for the acknowledge, holding
+	 * the port lock. Replies left over by others, such as the unread
+	 * acknowledges of the GUI setters, are dropped first, so they are not
+	 * taken for the acknowledge.
+	 * @param com the driver
+	 * @param ch the channel, ignored if the parameter has no channel
+	 * @param value the value as text
+	 * @throws IllegalArgumentException if read only, the value is invalid or the device did not acknowledge
+	 */
+	public void set(AbstractSerialCom com, int ch, String value) {
+		if (setter == null) {
+			throw new IllegalArgumentException("Read only: " + key);
+		}
+		boolean ok = com.locked(() -> {
+			com.serialListener.flush();
+			setter.set(com, ch, value.trim());
+			return com.isOnline() && com.awaitAck();
+		});
+		if (!ok) {
+			throw new IllegalArgumentException("Not acknowledged");
+		}
+	}
+
+	/**
+	 * Encode the command writing the parameter, without writing it
+	 * @param com the driver
+	 * @param ch the channel, ignored if the parameter has no channel
+	 * @param value the value as text
+	 * @return the command, empty if the driver does not write the value
+	 * @throws IllegalArgumentException if read only or the value is invalid
+	 */
+	public String encode(AbstractSerialCom com, int ch, String value) {
+		if (setter == null) {
+			throw new IllegalArgumentException("Read only: " + key);
+		}
+		return new String(com.capture(() -> setter.set(com, ch, value.trim())), StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Parse a channel number
+	 * @param s the text
+	 * @return 1 or 2
+	 * @throws IllegalArgumentException if not a channel
+	 */
+	static int parseChannel(String s) {
+		int ch = Integer.parseInt(s.trim());
+		if (ch != 1 && ch != 2) {
+			throw new IllegalArgumentException("Invalid channel: " + s);
+		}
+		return ch;
+	}
+
+	/**
+	 * Parse a boolean
+	 * @param s on, off, 1, 0, true, false, yes or no
+	 * @return the value
+	 * @throws IllegalArgumentException if not a boolean
+	 */
+	static boolean parseBoolean(String s) {
+		switch (s.toLowerCase(Locale.US)) {
+		case "1", "on", "true", "yes": return true;
+		case "0", "off", "false", "no": return false;
+		default: throw new IllegalArgumentException("Expected on or off: " + s);
+		}
+	}
+
+	private static WaveType waveType(AbstractSerialCom com, int channel, String s) {
+		for (var wt : com.getWaveTypes(channel)) {
+			if (String.valueOf(wt.id).equals(s) || wt.name.equalsIgnoreCase(s)) {
+				return wt;
+			}
+		}
+		throw new IllegalArgumentException("Unknown wave form: " + s);
+	}
+
+	private static String waveForm(AbstractSerialCom com, int channel) {
+		int id = com.getWaveForm(channel);
+		return com.getWaveTypes(channel).stream().filter(wt -> wt.id == id).map(wt -> id + " " + wt.name)
+				.findFirst().orElse(String.valueOf(id));
+	}
+
+	private static MeasureMode measureMode(String s) {
+		for (var m : MeasureMode.values()) {
+			if (m.name().equalsIgnoreCase(s) || String.valueOf(m.id).equals(s)) {
+				return m;
+			}
+		}
+		throw new IllegalArgumentException("Unknown measure mode: " + s);
+	}
+}
@@ -0,0 +1,110 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Finds the function generators on a set of ports.
+ * <p>
+ * Every port is probed on its own virtual thread, so all ports are probed
+ * at the same time. A port is opened with the serial settings of each
+ * device type in turn, 57600 baud with RTS/CTS for the MHS-5200 and 115200
+ * baud for the FY6900, and the device is asked to identify itself with a
+ * short reply timeout, stopping at the first type that answers. Probing
+ * takes about one reply timeout per device type, whatever the number of
+ * ports. Each probe uses a driver of its own and closes the port when
+ * done, so the drivers of the GUI are not touched.
+ */
+public class DeviceProbe {
+
+	/** Default reply timeout of a probe in milliseconds */
+	public static final long DEFAULT_TIMEOUT = 300;
+
+	/**
+	 * A device found
+	 * @param transport the port
+	 * @param type the device type
+	 * @param identity the model and firmware
+	 */
+	public record Match(SerialTransport transport, DeviceType type, String identity) {
+		@Override
+		public String toString() {
+			return type + " on " + transport.getName() + ": " + identity;
+		}
+	}
+
+	/** Hidden constructor */
+	private DeviceProbe() {
+		super();
+	}
+
+	/**
+	 * Probe the serial ports for all device types
+	 * @param timeout the reply timeout in milliseconds
+	 * @return the devices found, in port order
+	 */
+	public static List<Match> probe(long timeout) {
+		return probe(AbstractSerialCom.getPortTransports(), List.of(DeviceType.MHS5200, DeviceType.FY6900), timeout);
+	}
+
+	/**
+	 * Probe ports
+	 * @param transports the ports, closed
+	 * @param types the device types to try, in order
+	 * @param timeout the reply timeout in milliseconds
+	 * @return the devices found, in port order
+	 */
+	public static List<Match> probe(List<SerialTransport> transports, List<DeviceType> types, long timeout) {
+		var matches = new ArrayList<Match>();
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			var futures = new ArrayList<Future<Match>>();
+			for (var t : transports) {
+				futures.add(executor.submit(() -> probe(t, types, timeout)));
+			}
+			for (var f : futures) {
+				var m = f.get();
+				if (m != null) {
+					matches.add(m);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// a probe does not throw
+			throw new IllegalStateException(e.getCause());
+		}
+		return matches;
+	}
+
+	/**
+	 * Probe a port
+	 * @param transport the port, closed
+	 * @param types the device types to try, in order
+	 * @param timeout the reply timeout in milliseconds
+	 * @return the device found, or null
+	 */
+	private static Match probe(SerialTransport transport, List<DeviceType> types, long timeout) {
+		for (var type : types) {
+			var com = type.createSerialCom();
+			com.setStatusConsumer((status, msg) -> {});
+			com.setReplyTimeout(timeout);
+			try {
+				com.setTransport(transport);
+				var identity = com.isOnline() ? com.identify() : null;
+				if (identity != null) {
+					return new Match(transport, type, identity);
+				}
+			} catch (RuntimeException e) {
+				// garbage from a device of another type or a port in use
+			} finally {
+				if (com.isOnline()) {
+					com.disconnect();
+				}
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,712 @@
+package se.wetterstrom.jfuncgen;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * In-process simulator of a function generator.
+ * <p>
+ * Keeps the state of the device: two channels, the arbitrary waveform slots,
+ * the stored settings, the sweep and the frequency counter. Subclasses parse
+ * the command set of one device type.
+ * <p>
+ * The simulator behaves like a device behind a serial line. Written bytes are
+ * handled by tasks scheduled on the {@link Clock}, one command at a time.
+ * Optionally the transfer time at a given baud rate, a processing latency with
+ * random jitter, and random faults on the replies are emulated. All settings
+ * may be changed while the simulator is running. On a {@link VirtualClock}
+ * the delays take no real time and the simulator runs on the thread moving
+ * the time.
+ */
+public abstract class DeviceSimulator {
+
+	/** Number of bits per character, 8N1 */
+	private static final int BITS_PER_CHAR = 10;
+
+	/** Faults that can be injected in replies */
+	public enum Fault {
+		/** The reply is not sent */
+		DROP,
+		/** One bit of the reply is flipped */
+		CORRUPT,
+		/** The reply is sent in two parts with a pause in between */
+		SPLIT,
+		/** A random byte is sent before the reply */
+		NOISE
+	}
+
+	/** the clock */
+	private volatile Clock clock = Clock.system();
+	/** the received chunks, waiting to be handled, also the lock of the input state */
+	private final Queue<Chunk> input = new ArrayDeque<>();
+	/** the random generator used for jitter and faults */
+	private final Random random = new Random();
+	/** the fault probabilities, indexed by fault ordinal */
+	private final double[] faults = new double[Fault.values().length];
+	/** number of handled commands */
+	private final AtomicLong commandCount = new AtomicLong();
+	/** number of injected faults */
+	private final AtomicLong faultCount = new AtomicLong();
+	/** the receiver of replies */
+	private volatile Consumer<byte[]> receiver;
+	/** incremented on close, tasks of an earlier session are ignored */
+	private volatile int session = 0;
+	/** true when handling of the next chunk is scheduled */
+	private boolean scheduled = false;
+	/** time when the replies of the last command have been sent */
+	private long busyUntil = 0;
+	/** time when the next reply is sent, while handling a command */
+	private long replyTime = 0;
+	/** the emulated baud rate, 0 for no emulation */
+	private volatile int baudRate = 0;
+	/** the processing latency in nanoseconds */
+	private volatile long latency = 0;
+	/** the max random jitter added to the latency in nanoseconds */
+	private volatile long jitter = 0;
+	/** time when the last written byte has arrived */
+	private long inputFreeAt = 0;
+	/** the command line being received */
+	private final StringBuilder line = new StringBuilder();
+
+	/** the channels */
+	protected final Channel[] channels = { new Channel(), new Channel() };
+	/** the arbitrary waveforms */
+	protected final int[][] arbSlots;
+	/** the stored settings */
+	protected final Channel[][] memory;
+	/** the sweep */
+	protected final Sweep sweep = new Sweep();
+	/** the frequency counter */
+	protected final Counter counter = new Counter();
+
+	/**
+	 * Constructor
+	 * @param arbCount number of arbitrary waveforms
+	 * @param arbSize number of samples in each arbitrary waveform
+	 * @param arbZero the sample value of zero output
+	 * @param memoryCount number of stored settings
+	 */
+	protected DeviceSimulator(int arbCount, int arbSize, int arbZero, int memoryCount) {
+		arbSlots = new int[arbCount][arbSize];
+		for (var slot : arbSlots) {
+			Arrays.fill(slot, arbZero);
+		}
+		memory = new Channel[memoryCount][];
+	}
+
+	/**
+	 * Create a simulator for the device type
+	 * @param deviceType the device type
+	 * @return the simulator, or null if there is no simulator for the device type
+	 */
+	public static DeviceSimulator create(DeviceType deviceType) {
+		switch (deviceType) {
+		case MHS5200: return new Mhs5200Simulator();
+		case FY6900: return new Fy6900Simulator();
+		default: return null;
+		}
+	}
+
+	/**
+	 * Execute a command. Called by a task of the clock.
+	 * @param command the command line without line break
+	 */
+	protected abstract void execute(String command);
+
+	/**
+	 * Get the gate time of the counter
+	 * @param gate the gate value
+	 * @return the gate time in seconds
+	 */
+	protected abstract double getGateTime(int gate);
+
+	/**
+	 * Set the clock, before opening
+	 * @param clock the clock
+	 */
+	public synchronized void setClock(Clock clock) {
+		this.clock = clock;
+		counter.updated = clock.nanoTime();
+		sweep.startTime = counter.updated;
+	}
+
+	/**
+	 * Get the clock
+	 * @return the clock
+	 */
+	public Clock getClock() {
+		return clock;
+	}
+
+	/**
+	 * Open the simulator
+	 * @param receiver the receiver of replies, called by a task of the clock
+	 */
+	public synchronized void open(Consumer<byte[]> receiver) {
+		close();
+		this.receiver = receiver;
+	}
+
+	/** Close the simulator. Pending input and replies are discarded. */
+	public synchronized void close() {
+		receiver = null;
+		synchronized (input) {
+			session++;
+			input.clear();
+			scheduled = false;
+		}
+	}
+
+	/**
+	 * Check if open
+	 * @return true if open
+	 */
+	public boolean isOpen() {
+		return receiver != null;
+	}
+
+	/**
+	 * Write bytes to the simulator. Returns at once, like a write to the
+	 * output buffer of a serial port.
+	 * @param data the bytes, copied before returning
+	 * @param offset the offset of the first byte
+	 * @param length number of bytes to write
+	 * @return number of bytes written, or -1 if not open
+	 */
+	public int write(byte[] data, int offset, int length) {
+		if (!isOpen()) {
+			return -1;
+		}
+		var chunk = Arrays.copyOfRange(data, offset, offset + length);
+		synchronized (input) {
+			inputFreeAt = Math.max(clock.nanoTime(), inputFreeAt) + transferTime(length);
+			input.add(new Chunk(chunk, inputFreeAt));
+			scheduleNext();
+		}
+		return length;
+	}
+
+	/**
+	 * Set the emulated baud rate
+	 * @param baudRate the baud rate, or 0 for no emulation
+	 */
+	public void setBaudRate(int baudRate) {
+		this.baudRate = Math.max(0, baudRate);
+	}
+
+	/**
+	 * Set the processing time of each command
+	 * @param latency the latency
+	 * @param jitter the max random time added to the latency
+	 * @param unit the time unit
+	 */
+	public void setLatency(long latency, long jitter, TimeUnit unit) {
+		this.latency = unit.toNanos(Math.max(0, latency));
+		this.jitter = unit.toNanos(Math.max(0, jitter));
+	}
+
+	/**
+	 * Set the probability of a fault in each reply
+	 * @param fault the fault
+	 * @param probability the probability 0.0 - 1.0
+	 */
+	public void setFault(Fault fault, double probability) {
+		synchronized (faults) {
+			faults[fault.ordinal()] = Math.clamp(probability, 0.0, 1.0);
+		}
+	}
+
+	/**
+	 * Set the random seed, to make jitter and faults repeatable
+	 * @param seed the seed
+	 */
+	public void setSeed(long seed) {
+		synchronized (random) {
+			random.setSeed(seed);
+		}
+	}
+
+	/**
+	 * Get number of handled commands
+	 * @return number of commands
+	 */
+	public long getCommandCount() {
+		return commandCount.get();
+	}
+
+	/**
+	 * Get number of injected faults
+	 * @return number of faults
+	 */
+	public long getFaultCount() {
+		return faultCount.get();
+	}
+
+	/**
+	 * Get a copy of the channel state
+	 * @param channel the channel, 1 or 2
+	 * @return the channel state
+	 */
+	public synchronized Channel getChannel(int channel) {
+		return channels[(channel - 1) & 1].copy();
+	}
+
+	/**
+	 * Get a copy of an arbitrary waveform
+	 * @param slot the slot, starting at 0
+	 * @return the samples
+	 */
+	public synchronized int[] getArbData(int slot) {
+		return arbSlots[slot].clone();
+	}
+
+	/**
+	 * Set the frequency of the counter input. By default the counter measures
+	 * the output of channel 1.
+	 * @param frequency the frequency in Hz, or NaN to measure channel 1
+	 */
+	public synchronized void setCounterInput(double frequency) {
+		updateCounter();
+		counter.input = frequency;
+	}
+
+	/**
+	 * Get the current output frequency of channel 1, following the sweep if running
+	 * @return the frequency in Hz
+	 */
+	public synchronized double getOutputFrequency() {
+		return outputFrequency(clock.nanoTime());
+	}
+
+	/**
+	 * Handle received bytes. Called by a task of the clock.
+	 * @param data the bytes
+	 */
+	protected void receive(byte[] data) {
+		for (byte b : data) {
+			receive(b);
+		}
+	}
+
+	/**
+	 * Handle a received command byte, executing the command at line break
+	 * @param b the byte
+	 */
+	protected void receive(byte b) {
+		if (b == '\n') {
+			var command = line.toString().trim();
+			line.setLength(0);
+			if (!command.isEmpty()) {
+				commandCount.incrementAndGet();
+				execute(command);
+			}
+		} else {
+			line.append((char) (b & 0xff));
+		}
+	}
+
+	/**
+	 * Send a reply after the processing latency, with the transfer time
+	 * and faults applied
+	 * @param reply the reply
+	 */
+	protected void reply(String reply) {
+		reply(reply.getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	/**
+	 * Send a reply after the processing latency, with the transfer time
+	 * and faults applied
+	 * @param reply the reply
+	 */
+	protected void reply(byte[] reply) {
+		if (receiver == null) {
+			return;
+		}
+		replyTime += latency + randomJitter();
+		if (injectFault(Fault.DROP)) {
+			return;
+		}
+		var data = reply.clone();
+		if (data.length > 0 && injectFault(Fault.CORRUPT)) {
+			int bit = nextInt(data.length * 8);
+			data[bit / 8] ^= (byte) (1 << (bit % 8));
+		}
+		if (injectFault(Fault.NOISE)) {
+			deliver(new byte[] { (byte) nextInt(256) });
+		}
+		if (data.length > 1 && injectFault(Fault.SPLIT)) {
+			int split = 1 + nextInt(data.length - 1);
+			deliver(Arrays.copyOf(data, split));
+			replyTime += Math.max(latency, TimeUnit.MILLISECONDS.toNanos(1));
+			deliver(Arrays.copyOfRange(data, split, data.length));
+		} else {
+			deliver(data);
+		}
+	}
+
+	/**
+	 * Store the channel settings
+	 * @param slot the memory slot
+	 */
+	protected synchronized void save(int slot) {
+		if (slot >= 0 && slot < memory.length) {
+			memory[slot] = new Channel[] { channels[0].copy(), channels[1].copy() };
+		}
+	}
+
+	/**
+	 * Load stored channel settings
+	 * @param slot the memory slot
+	 */
+	protected synchronized void load(int slot) {
+		if (slot >= 0 && slot < memory.length && memory[slot] != null) {
+			updateCounter();
+			channels[0] = memory[slot][0].copy();
+			channels[1] = memory[slot][1].copy();
+		}
+	}
+
+	/**
+	 * Start or stop the sweep
+	 * @param run true to start
+	 */
+	protected synchronized void setSweepRunning(boolean run) {
+		updateCounter();
+		if (run && !sweep.running) {
+			sweep.startTime = clock.nanoTime();
+		}
+		sweep.running = run;
+	}
+
+	/**
+	 * Set the frequency of a channel
+	 * @param channel the channel index, 0 or 1
+	 * @param frequency the frequency in Hz
+	 */
+	protected synchronized void setFrequency(int channel, double frequency) {
+		updateCounter();
+		channels[channel].frequency = frequency;
+	}
+
+	/**
+	 * Start or stop the counter
+	 * @param run true to run
+	 */
+	protected synchronized void setCounterRunning(boolean run) {
+		updateCounter();
+		counter.running = run;
+	}
+
+	/** Reset the counter */
+	protected synchronized void resetCounter() {
+		updateCounter();
+		counter.count = 0.0;
+	}
+
+	/**
+	 * Get the counter reading in the current mode
+	 * @return the reading, in the units of the device
+	 */
+	protected synchronized long readCounter() {
+		updateCounter();
+		double f = counter.input();
+		switch (counter.mode) {
+		case 1: // counter
+			return (long) counter.count;
+		case 2: // positive pulse width in ns
+			return f > 0 ? Math.round(1e9 * channels[0].duty / 100.0 / f) : 0;
+		case 3: // negative pulse width in ns
+			return f > 0 ? Math.round(1e9 * (100.0 - channels[0].duty) / 100.0 / f) : 0;
+		case 4: // period in ns
+			return f > 0 ? Math.round(1e9 / f) : 0;
+		case 5: // duty cycle in 0.1 %
+			return Math.round(channels[0].duty * 10);
+		case 0: // frequency, with the resolution of the gate time
+		default:
+			double gateTime = getGateTime(counter.gate);
+			return (long) (Math.floor(f * gateTime) / gateTime);
+		}
+	}
+
+	/** Accumulate the count up to now */
+	private void updateCounter() {
+		long now = clock.nanoTime();
+		if (counter.running) {
+			counter.count += counter.input() * (now - counter.updated) / 1e9;
+		}
+		counter.updated = now;
+	}
+
+	/**
+	 * Get the output frequency of channel 1
+	 * @param now the time
+	 * @return the frequency in Hz
+	 */
+	private double outputFrequency(long now) {
+		if (!sweep.running || sweep.time <= 0) {
+			return channels[0].frequency;
+		}
+		double pos = ((now - sweep.startTime) / 1e9 % sweep.time) / sweep.time;
+		if (sweep.log && sweep.start > 0 && sweep.end > 0) {
+			return sweep.start * Math.pow(sweep.end / sweep.start, pos);
+		}
+		return sweep.start + (sweep.end - sweep.start) * pos;
+	}
+
+	/**
+	 * Schedule handling of the next chunk, when it has arrived and the
+	 * replies of the previous command have been sent. Called with the input lock.
+	 */
+	private void scheduleNext() {
+		var next = input.peek();
+		if (!scheduled && next != null) {
+			scheduled = true;
+			int s = session;
+			var c = clock;
+			c.schedule(() -> handleNext(s), Math.max(next.arrival, busyUntil) - c.nanoTime());
+		}
+	}
+
+	/**
+	 * Handle the next chunk
+	 * @param s the session that scheduled the task
+	 */
+	private void handleNext(int s) {
+		Chunk chunk;
+		synchronized (input) {
+			if (s != session) {
+				return;
+			}
+			scheduled = false;
+			chunk = input.poll();
+		}
+		if (chunk != null) {
+			replyTime = clock.nanoTime();
+			receive(chunk.data);
+		}
+		synchronized (input) {
+			if (s == session) {
+				busyUntil = replyTime;
+				scheduleNext();
+			}
+		}
+	}
+
+	/**
+	 * Schedule delivery of reply bytes after their transfer time
+	 * @param data the bytes
+	 */
+	private void deliver(byte[] data) {
+		replyTime += transferTime(data.length);
+		int s = session;
+		var c = clock;
+		c.schedule(() -> {
+			var r = receiver;
+			if (r != null && s == session) {
+				r.accept(data);
+			}
+		}, replyTime - c.nanoTime());
+	}
+
+	private long transferTime(int length) {
+		int baud = baudRate;
+		return baud > 0 ? length * BITS_PER_CHAR * 1_000_000_000L / baud : 0;
+	}
+
+	private boolean injectFault(Fault fault) {
+		double p;
+		synchronized (faults) {
+			p = faults[fault.ordinal()];
+		}
+		if (p > 0 && nextDouble() < p) {
+			faultCount.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	private long randomJitter() {
+		long j = jitter;
+		return j > 0 ? (long) (nextDouble() * j) : 0;
+	}
+
+	private int nextInt(int bound) {
+		synchronized (random) {
+			return random.nextInt(bound);
+		}
+	}
+
+	private double nextDouble() {
+		synchronized (random) {
+			return random.nextDouble();
+		}
+	}
+
+	/**
+	 * The state of a channel
+	 */
+	public static class Channel {
+		/** the waveform number */
+		int waveform = 0;
+		/** the frequency in Hz */
+		double frequency = 1000.0;
+		/** the amplitude in V */
+		double amplitude = 5.0;
+		/** the offset, in V or % depending on device */
+		double offset = 0.0;
+		/** the duty cycle in % */
+		double duty = 50.0;
+		/** the phase in degrees */
+		double phase = 0.0;
+		/** the attenuation */
+		int attenuation = 0;
+		/** true if enabled */
+		boolean enabled = true;
+		/** true if inverted */
+		boolean inverted = false;
+
+		private Channel copy() {
+			var c = new Channel();
+			c.waveform = waveform;
+			c.frequency = frequency;
+			c.amplitude = amplitude;
+			c.offset = offset;
+			c.duty = duty;
+			c.phase = phase;
+			c.attenuation = attenuation;
+			c.enabled = enabled;
+			c.inverted = inverted;
+			return c;
+		}
+
+		/**
+		 * Get waveform
+		 * @return the waveform number
+		 */
+		public int getWaveform() {
+			return waveform;
+		}
+
+		/**
+		 * Get frequency
+		 * @return the frequency in Hz
+		 */
+		public double getFrequency() {
+			return frequency;
+		}
+
+		/**
+		 * Get amplitude
+		 * @return the amplitude in V
+		 */
+		public double getAmplitude() {
+			return amplitude;
+		}
+
+		/**
+		 * Get offset
+		 * @return the offset
+		 */
+		public double getOffset() {
+			return offset;
+		}
+
+		/**
+		 * Get duty cycle
+		 * @return the duty cycle in %
+		 */
+		public double getDuty() {
+			return duty;
+		}
+
+		/**
+		 * Get phase
+		 * @return the phase in degrees
+		 */
+		public double getPhase() {
+			return phase;
+		}
+
+		/**
+		 * Get attenuation
+		 * @return the attenuation
+		 */
+		public int getAttenuation() {
+			return attenuation;
+		}
+
+		/**
+		 * Check if enabled
+		 * @return true if enabled
+		 */
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		/**
+		 * Check if inverted
+		 * @return true if inverted
+		 */
+		public boolean isInverted() {
+			return inverted;
+		}
+	}
+
+	/**
+	 * The sweep settings
+	 */
+	protected static class Sweep {
+		/** start frequency in Hz */
+		double start = 100.0;
+		/** end frequency in Hz */
+		double end = 10000.0;
+		/** sweep time in seconds */
+		double time = 10.0;
+		/** true for logarithmic sweep */
+		boolean log = false;
+		/** the swept object */
+		int object = 0;
+		/** the sweep source */
+		int source = 0;
+		/** true if running */
+		boolean running = false;
+		/** time when started */
+		long startTime = 0;
+	}
+
+	/**
+	 * The frequency counter
+	 */
+	protected class Counter {
+		/** the measure mode */
+		int mode = 0;
+		/** the gate value */
+		int gate = 0;
+		/** true if counting */
+		boolean running = true;
+		/** number of counted periods */
+		double count = 0.0;
+		/** time of last count update */
+		long updated = clock.nanoTime();
+		/** the input frequency, NaN to measure channel 1 */
+		double input = Double.NaN;
+
+		private double input() {
+			return Double.isNaN(input) ? outputFrequency(clock.nanoTime()) : input;
+		}
+	}
+
+	/**
+	 * Received bytes
+	 * @param data the bytes
+	 * @param arrival time when the last byte has arrived
+	 */
+	private record Chunk(byte[] data, long arrival) {}
+}
@@ -0,0 +1,244 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A set of parameter changes of one or both channels, applied together.
+ * <p>
+ * The changes are encoded when committed, and a change whose command is
+ * the same as the command of the known device state is dropped, so values
+ * the device rounds to its current value cost nothing. The remaining
+ * commands are ordered to avoid glitches: outputs being disabled and
+ * amplitudes being lowered first, then the wave form, frequency, duty
+ * cycle, offset and phase, then amplitudes being raised and outputs being
+ * enabled last, the two channels next to each other for each parameter.
+ * They are written back to back in one write holding the driver lock, and
+ * then the acknowledges are awaited. The transaction succeeds only if all
+ * commands are acknowledged.
+ */
+public class DeviceTransaction {
+
+	/**
+	 * The outcome of a commit
+	 * @param written the number of commands written
+	 * @param skipped the number of changes dropped as equal to the known state
+	 * @param bytes the number of bytes written
+	 */
+	public record Result(int written, int skipped, int bytes) {}
+
+	/**
+	 * A change
+	 * @param parameter the parameter
+	 * @param channel the channel, 0 if the parameter has no channel
+	 * @param value the value as text
+	 */
+	private record Change(DeviceParameter parameter, int channel, String value) {}
+
+	/**
+	 * The known state of a device: the values of the parameters and the
+	 * commands that would write them
+	 */
+	public static class State {
+		/** the values by parameter and channel */
+		private final Map<String, String> values = new HashMap<>();
+		/** the commands writing the values, by parameter and channel */
+		private final Map<String, String> commands = new HashMap<>();
+
+		/**
+		 * Read the channel parameters of both channels from the device
+		 * @param com the driver
+		 * @return the state
+		 * @throws IllegalArgumentException if the device is offline
+		 */
+		public static State read(AbstractSerialCom com) {
+			var state = new State();
+			com.locked(() -> {
+				for (var p : DeviceParameter.values()) {
+					if (p.channel && p.isReadable() && p.isWritable()) {
+						for (int ch = 1; ch <= 2; ch++) {
+							var value = p.get(com, ch);
+							// a wave form reads as id and name
+							state.put(com, p, ch, p == DeviceParameter.WAVEFORM ? value.split(" ")[0] : value);
+						}
+					}
+				}
+				return null;
+			});
+			return state;
+		}
+
+		/**
+		 * Set a known value
+		 * @param com the driver
+		 * @param p the parameter
+		 * @param ch the channel, 0 if the parameter has no channel
+		 * @param value the value
+		 */
+		synchronized void put(AbstractSerialCom com, DeviceParameter p, int ch, String value) {
+			values.put(key(p, ch), value);
+			commands.put(key(p, ch), p.encode(com, ch, value));
+		}
+
+		/**
+		 * Forget a value, it is not known any more
+		 * @param p the parameter
+		 * @param ch the channel, 0 if the parameter has no channel
+		 */
+		public synchronized void forget(DeviceParameter p, int ch) {
+			values.remove(key(p, ch));
+			commands.remove(key(p, ch));
+		}
+
+		/**
+		 * @param p the parameter
+		 * @param ch the channel, 0 if the parameter has no channel
+		 * @return the known value, or null if not known
+		 */
+		public synchronized String get(DeviceParameter p, int ch) {
+			return values.get(key(p, ch));
+		}
+
+		/**
+		 * @param p the parameter
+		 * @param ch the channel, 0 if the parameter has no channel
+		 * @return the command writing the known value, or null if not known
+		 */
+		synchronized String command(DeviceParameter p, int ch) {
+			return commands.get(key(p, ch));
+		}
+
+		private static String key(DeviceParameter p, int ch) {
+			return p.key + "/" + ch;
+		}
+	}
+
+	/** the changes by parameter and channel, the last change of each */
+	private final Map<String, Change> changes = new LinkedHashMap<>();
+
+	/**
+	 * Add a change, replacing an earlier change of the same parameter and channel
+	 * @param parameter the parameter
+	 * @param channel the channel, ignored if the parameter has no channel
+	 * @param value the value as text
+	 * @return this
+	 * @throws IllegalArgumentException if the parameter is read only or the channel is invalid
+	 */
+	public DeviceTransaction set(DeviceParameter parameter, int channel, String value) {
+		if (!parameter.isWritable()) {
+			throw new IllegalArgumentException("Read only: " + parameter);
+		}
+		int ch = parameter.channel ? DeviceParameter.parseChannel(String.valueOf(channel)) : 0;
+		changes.put(State.key(parameter, ch), new Change(parameter, ch, value.trim()));
+		return this;
+	}
+
+	/**
+	 * @return true if there are no changes
+	 */
+	public boolean isEmpty() {
+		return changes.isEmpty();
+	}
+
+	/**
+	 * Apply the changes
+	 * @param com the driver
+	 * @param state the known state, updated with the changes, or null to write all changes
+	 * @return the result
+	 * @throws IllegalArgumentException if a value is invalid, nothing being written, or a command was not
+	 *         acknowledged, the values of the transaction then being forgotten by the state
+	 */
+	public Result commit(AbstractSerialCom com, State state) {
+		// encode everything first, an invalid value fails the whole transaction
+		var pending = new ArrayList<Change>();
+		var encoded = new HashMap<Change, String>();
+		int skipped = 0;
+		for (var c : changes.values()) {
+			var command = c.parameter.encode(com, c.channel, c.value);
+			if (command.isEmpty() || state != null && command.equals(state.command(c.parameter, c.channel))) {
+				skipped++;
+			} else {
+				pending.add(c);
+				encoded.put(c, command);
+			}
+		}
+		pending.sort(Comparator.comparingInt((Change c) -> rank(c, state)).thenComparingInt(Change::channel));
+		var buf = new ByteArrayOutputStream();
+		pending.forEach(c -> buf.writeBytes(encoded.get(c).getBytes(StandardCharsets.ISO_8859_1)));
+		var bytes = buf.toByteArray();
+
+		boolean ok = pending.isEmpty() || com.locked(() -> {
+			com.serialListener.flush();
+			if (!com.writeSerial(bytes)) {
+				return false;
+			}
+			for (int i = 0; i < pending.size(); i++) {
+				if (!com.awaitAck()) {
+					return false;
+				}
+			}
+			return com.isOnline();
+		});
+		if (state != null) {
+			for (var c : pending) {
+				if (ok) {
+					state.put(com, c.parameter, c.channel, c.value);
+				} else {
+					state.forget(c.parameter, c.channel);
+				}
+			}
+		}
+		if (!ok) {
+			throw new IllegalArgumentException("Not acknowledged, " + pending.size() + " changes in doubt");
+		}
+		return new Result(pending.size(), skipped, bytes.length);
+	}
+
+	/**
+	 * Get the position of a change in the order of writing
+	 * @param c the change
+	 * @param state the known state, or null
+	 * @return the rank, low first
+	 */
+	private static int rank(Change c, State state) {
+		switch (c.parameter) {
+		case ENABLE:
+		case OUTPUT:
+			return DeviceParameter.parseBoolean(c.value) ? 9 : 0;
+		case AMPLITUDE:
+			// an unknown amplitude is assumed to be raised
+			return lower(c, state) ? 1 : 8;
+		case WAVEFORM:
+			return 2;
+		case FREQUENCY:
+			return 3;
+		case DUTY:
+			return 4;
+		case OFFSET:
+			return 5;
+		case PHASE:
+			return 7;
+		default:
+			return 6;
+		}
+	}
+
+	/**
+	 * @param c a change
+	 * @param state the known state, or null
+	 * @return true if the change lowers the known value
+	 */
+	private static boolean lower(Change c, State state) {
+		var known = state != null ? state.get(c.parameter, c.channel) : null;
+		try {
+			return known != null && Double.parseDouble(c.value) < Double.parseDouble(known);
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+}
@@ -54,6 +54,21 @@ public enum DeviceType {
 		return serialCom;
 	}
 
+	/**
+	 * Create a driver of the type, not shared with the GUI
+	 * @return the new driver
+	 */
+	public AbstractSerialCom createSerialCom() {
+		AbstractSerialCom com;
+		switch (this) {
+		case MHS5200: com = new SerialCom5200(); break;
+		case FY6900: com = new SerialCom6900(); break;
+		default: com = new SerialComDummy(); break;
+		}
+		com.setDeviceType(this);
+		return com;
+	}
+
 	/**
 	 * Set consumer of serial port status changes.
 	 * @param statusConsumer the consumer
@@ -83,7 +98,7 @@ public enum DeviceType {
 	 * Set consumer of data being written to serial port.
 	 * @param outputConsumer the serial port
 	 */
-	protected static void setOutputConsumer(Consumer<String> outputConsumer) {
+	protected static void setOutputConsumer(Consumer<CharSequence> outputConsumer) {
 		for (var ft : values()) {
 			ft.getSerialCom().addOutputConsumer(outputConsumer);
 		}
@@ -0,0 +1,302 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Asynchronous publish/subscribe bus.
+ * <p>
+ * The subscriber list is a copy-on-write array swapped atomically, so
+ * publishing never waits for subscribing or unsubscribing. Each subscriber
+ * has its own bounded queue, locked only while an event is added or taken,
+ * and its own delivery thread, which means a slow subscriber never delays the
+ * publisher or the other subscribers. What happens when a queue is full is
+ * decided by the subscriber's {@link Overflow} policy.
+ *
+ * @param <T> the event type
+ */
+public class EventBus<T> {
+
+	/** Default queue capacity */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * What to do when a subscriber queue is full
+	 */
+	public enum Overflow {
+		/** Drop the oldest queued event */
+		DROP_OLDEST,
+		/** Merge the events published while the queue is full into one event, delivered after the queued events */
+		COALESCE,
+		/** Block the publisher until there is room */
+		BLOCK
+	}
+
+	/** the name used for the delivery threads */
+	private final String name;
+	/** the subscriptions */
+	private final AtomicReference<Subscription<T>[]> subscriptions = new AtomicReference<>(newArray(0));
+
+	/**
+	 * Constructor
+	 * @param name the bus name
+	 */
+	public EventBus(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Subscribe with default capacity, dropping the oldest events on overflow
+	 * @param consumer the consumer
+	 * @return the subscription
+	 */
+	public Subscription<T> subscribe(Consumer<? super T> consumer) {
+		return subscribe(consumer, DEFAULT_CAPACITY, Overflow.DROP_OLDEST, null);
+	}
+
+	/**
+	 * Subscribe
+	 * @param consumer the consumer
+	 * @param capacity the queue capacity
+	 * @param overflow the overflow policy
+	 * @param merger merges two events into one, required for {@link Overflow#COALESCE}
+	 * @return the subscription
+	 */
+	public Subscription<T> subscribe(Consumer<? super T> consumer, int capacity, Overflow overflow, BinaryOperator<T> merger) {
+		if (overflow == Overflow.COALESCE && merger == null) {
+			throw new IllegalArgumentException("No merger for coalescing subscription");
+		}
+		var sub = new Subscription<T>(consumer, capacity, overflow, merger);
+		sub.start(name);
+		Subscription<T>[] prev;
+		Subscription<T>[] next;
+		do {
+			prev = subscriptions.get();
+			next = Arrays.copyOf(prev, prev.length + 1);
+			next[prev.length] = sub;
+		} while (!subscriptions.compareAndSet(prev, next));
+		return sub;
+	}
+
+	/**
+	 * Unsubscribe. Events not yet delivered are discarded.
+	 * @param subscription the subscription
+	 * @return true if removed
+	 */
+	public boolean unsubscribe(Subscription<T> subscription) {
+		return remove(s -> s == subscription);
+	}
+
+	/**
+	 * Unsubscribe all subscriptions of the consumer
+	 * @param consumer the consumer
+	 * @return true if removed
+	 */
+	public boolean unsubscribe(Consumer<? super T> consumer) {
+		return remove(s -> s.consumer == consumer);
+	}
+
+	/** Unsubscribe all */
+	public void unsubscribeAll() {
+		remove(s -> true);
+	}
+
+	private boolean remove(Predicate<Subscription<T>> filter) {
+		Subscription<T>[] prev;
+		Subscription<T>[] next;
+		var removed = new ArrayList<Subscription<T>>();
+		do {
+			removed.clear();
+			prev = subscriptions.get();
+			var keep = new ArrayList<Subscription<T>>(prev.length);
+			for (var s : prev) {
+				(filter.test(s) ? removed : keep).add(s);
+			}
+			if (removed.isEmpty()) {
+				return false;
+			}
+			next = keep.toArray(newArray(keep.size()));
+		} while (!subscriptions.compareAndSet(prev, next));
+		removed.forEach(Subscription::stop);
+		return true;
+	}
+
+	/**
+	 * Publish event to all subscribers
+	 * @param event the event
+	 */
+	public void publish(T event) {
+		for (var s : subscriptions.get()) {
+			s.offer(event);
+		}
+	}
+
+	/**
+	 * Check for subscribers
+	 * @return true if there is at least one subscriber
+	 */
+	public boolean hasSubscribers() {
+		return subscriptions.get().length > 0;
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <T> Subscription<T>[] newArray(int size) {
+		return new Subscription[size];
+	}
+
+	/**
+	 * A subscription
+	 * @param <T> the event type
+	 */
+	public static class Subscription<T> implements Runnable {
+		/** the consumer */
+		private final Consumer<? super T> consumer;
+		/** the event queue */
+		private final BlockingQueue<T> queue;
+		/** the overflow policy */
+		private final Overflow overflow;
+		/** the merger */
+		private final BinaryOperator<T> merger;
+		/** the events published while the queue was full, merged, or null */
+		private final AtomicReference<T> pending = new AtomicReference<>();
+		/** number of dropped events */
+		private final AtomicLong dropped = new AtomicLong();
+		/** number of merged events */
+		private final AtomicLong merged = new AtomicLong();
+		/** the delivery thread */
+		private Thread thread;
+		/** set to false to stop delivery */
+		private volatile boolean running = true;
+
+		private Subscription(Consumer<? super T> consumer, int capacity, Overflow overflow, BinaryOperator<T> merger) {
+			this.consumer = consumer;
+			this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+			this.overflow = overflow;
+			this.merger = merger;
+		}
+
+		private void start(String name) {
+			thread = Thread.ofVirtual().name(name).start(this);
+		}
+
+		private void stop() {
+			running = false;
+			queue.clear();
+			pending.set(null);
+			thread.interrupt();
+		}
+
+		private void offer(T event) {
+			if (!running) {
+				return;
+			}
+			if (overflow == Overflow.COALESCE && pending.get() != null) {
+				// newer than everything queued, queueing it would deliver it before the pending events
+				coalesce(event);
+			} else if (!queue.offer(event)) {
+				overflow(event);
+			}
+			LockSupport.unpark(thread);
+		}
+
+		/**
+		 * Handle a full queue
+		 * @param event the new event
+		 */
+		private void overflow(T event) {
+			switch (overflow) {
+			case BLOCK:
+				try {
+					queue.put(event);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					dropped.incrementAndGet();
+				}
+				break;
+			case COALESCE:
+				coalesce(event);
+				break;
+			case DROP_OLDEST:
+			default:
+				while (!queue.offer(event)) {
+					if (queue.poll() != null) {
+						dropped.incrementAndGet();
+					}
+				}
+				break;
+			}
+		}
+
+		/**
+		 * Merge the new event into the pending event
+		 * @param event the new event
+		 */
+		private void coalesce(T event) {
+			T prev;
+			T next;
+			do {
+				prev = pending.get();
+				next = prev == null ? event : merger.apply(prev, event);
+			} while (!pending.compareAndSet(prev, next));
+			if (prev != null) {
+				merged.incrementAndGet();
+			}
+		}
+
+		/**
+		 * Get number of dropped events
+		 * @return number of dropped events
+		 */
+		public long getDropped() {
+			return dropped.get();
+		}
+
+		/**
+		 * Get number of events merged into others
+		 * @return number of merged events
+		 */
+		public long getMerged() {
+			return merged.get();
+		}
+
+		/**
+		 * Get number of queued events
+		 * @return number of events waiting for delivery
+		 */
+		public int getQueued() {
+			return queue.size() + (pending.get() != null ? 1 : 0);
+		}
+
+		@Override
+		public void run() {
+			while (running) {
+				// the pending event is newer than the queued events
+				T event = queue.poll();
+				if (event == null) {
+					event = pending.getAndSet(null);
+				}
+				if (event == null) {
+					// a publisher unparks after queueing, so a wake up is not lost
+					LockSupport.park(this);
+					if (Thread.interrupted()) {
+						return;
+					}
+					continue;
+				}
+				try {
+					consumer.accept(event);
+				} catch (RuntimeException e) { // NOSONAR
+					// a failing consumer must not stop the delivery
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Always-on recorder of the bytes written to and received from the
+ * transport, in a fixed-size memory-mapped ring file.
+ * <p>
+ * The file is a header followed by slots of {@link #SLOT_SIZE} bytes. Each
+ * slot holds a sequence number, a timestamp in nanoseconds since the epoch,
+ * the direction and up to {@link #SLOT_PAYLOAD} bytes. Longer chunks continue
+ * in the following slots. Writers reserve their slots with one atomic add and
+ * then copy into the mapping, so recording neither locks nor allocates, and
+ * the kernel keeps the pages even if the application dies. When the ring is
+ * full the oldest slots are overwritten; {@link #read(Path)} returns the
+ * remaining chunks in order, oldest first.
+ */
+public class FlightRecorder implements AutoCloseable {
+
+	/** File magic, "JFRC" */
+	private static final int MAGIC = 0x4a465243;
+	/** File format version */
+	private static final int VERSION = 1;
+	/** Size of the file header */
+	private static final int HEADER_SIZE = 64;
+	/** Size of one slot */
+	static final int SLOT_SIZE = 64;
+	/** Offset of the payload in a slot */
+	private static final int PAYLOAD_OFFSET = 18;
+	/** Max number of bytes in one slot */
+	static final int SLOT_PAYLOAD = SLOT_SIZE - PAYLOAD_OFFSET;
+	/** Flag of a slot continuing the chunk of the previous slot */
+	private static final int CONTINUED = 0x80;
+
+	/** Direction of a chunk */
+	public enum Direction {
+		/** written to the device */
+		TX,
+		/** received from the device */
+		RX,
+		/** an event, such as connect, as text */
+		EVENT
+	}
+
+	/**
+	 * A recorded chunk
+	 * @param time nanoseconds since the epoch
+	 * @param direction the direction
+	 * @param data the bytes
+	 */
+	public record Entry(long time, Direction direction, byte[] data) {
+
+		/**
+		 * Get the bytes as text
+		 * @return the text
+		 */
+		public String text() {
+			return new String(data, StandardCharsets.ISO_8859_1);
+		}
+
+		@Override
+		public String toString() {
+			return Instant.ofEpochSecond(0, time) + " " + direction + " "
+					+ (direction == Direction.TX || direction == Direction.RX ? new HexDump(data, data.length) : text());
+		}
+	}
+
+	/** the file */
+	private final Path file;
+	/** the channel */
+	private final FileChannel channel;
+	/** the mapping */
+	private final MappedByteBuffer map;
+	/** the number of slots */
+	private final int slots;
+	/** the next sequence number */
+	private final AtomicLong next;
+	/** nanoseconds since the epoch at {@link #nanoBase} */
+	private final long epochBase;
+	/** {@link System#nanoTime()} at {@link #epochBase} */
+	private final long nanoBase;
+	/** false when closed */
+	private volatile boolean open = true;
+
+	/**
+	 * Open a recorder, continuing an existing file of the same size
+	 * @param file the file
+	 * @param size the file size in bytes, at least two slots
+	 * @throws IOException if the file can not be mapped
+	 */
+	public FlightRecorder(Path file, long size) throws IOException {
+		this.file = file;
+		long count = (size - HEADER_SIZE) / SLOT_SIZE;
+		if (count < 2 || count > Integer.MAX_VALUE / SLOT_SIZE) {
+			throw new IllegalArgumentException("Invalid size " + size);
+		}
+		this.slots = (int) count;
+		long length = HEADER_SIZE + count * SLOT_SIZE;
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			if (channel.size() != length) {
+				channel.truncate(0);
+			}
+			this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+			if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION || map.getInt(8) != SLOT_SIZE || map.getInt(12) != slots) {
+				for (int pos = HEADER_SIZE; pos < length; pos += SLOT_SIZE) {
+					map.putLong(pos, 0L);
+				}
+				map.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, SLOT_SIZE).putInt(12, slots);
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+		this.next = new AtomicLong(lastSequence(map, slots) + 1);
+		var now = Instant.now();
+		this.nanoBase = System.nanoTime();
+		this.epochBase = TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+	}
+
+	/**
+	 * Get the file
+	 * @return the file
+	 */
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Get the number of bytes that can be recorded before the oldest are overwritten
+	 * @return the capacity in bytes
+	 */
+	public long getCapacity() {
+		return (long) slots * SLOT_PAYLOAD;
+	}
+
+	/**
+	 * Record bytes
+	 * @param direction the direction
+	 * @param data the bytes
+	 * @param offset the offset of the first byte
+	 * @param length the number of bytes
+	 */
+	public void record(Direction direction, byte[] data, int offset, int length) {
+		if (!open || length <= 0) {
+			return;
+		}
+		long time = epochBase + (System.nanoTime() - nanoBase);
+		// a chunk longer than half the ring would overwrite its own beginning
+		int max = (slots / 2) * SLOT_PAYLOAD;
+		if (length > max) {
+			offset += length - max;
+			length = max;
+		}
+		int n = (length + SLOT_PAYLOAD - 1) / SLOT_PAYLOAD;
+		long seq = next.getAndAdd(n);
+		for (int i = 0; i < n; i++, seq++) {
+			int pos = HEADER_SIZE + (int) (seq % slots) * SLOT_SIZE;
+			int len = Math.min(SLOT_PAYLOAD, length - i * SLOT_PAYLOAD);
+			map.putLong(pos + 8, time);
+			map.put(pos + 16, (byte) (direction.ordinal() | (i > 0 ? CONTINUED : 0)));
+			map.put(pos + 17, (byte) len);
+			map.put(pos + PAYLOAD_OFFSET, data, offset + i * SLOT_PAYLOAD, len);
+			map.putLong(pos, seq);
+		}
+	}
+
+	/**
+	 * Record an event
+	 * @param text the event text
+	 */
+	public void event(String text) {
+		var data = text.getBytes(StandardCharsets.ISO_8859_1);
+		record(Direction.EVENT, data, 0, data.length);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (open) {
+			open = false;
+			map.force();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Read the recorded chunks of a file
+	 * @param file the file
+	 * @return the chunks, oldest first
+	 * @throws IOException if the file is not a recording
+	 */
+	public static List<Entry> read(Path file) throws IOException {
+		try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			var map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			if (ch.size() < HEADER_SIZE || map.getInt(0) != MAGIC || map.getInt(4) != VERSION || map.getInt(8) != SLOT_SIZE
+					|| HEADER_SIZE + (long) map.getInt(12) * SLOT_SIZE != ch.size()) {
+				throw new IOException("Not a flight recording: " + file);
+			}
+			return read(map, map.getInt(12));
+		}
+	}
+
+	/**
+	 * Read the recorded chunks
+	 * @param map the mapping
+	 * @param slots the number of slots
+	 * @return the chunks, oldest first
+	 */
+	private static List<Entry> read(ByteBuffer map, int slots) {
+		var list = new ArrayList<Entry>();
+		long last = lastSequence(map, slots);
+		byte[] payload = new byte[SLOT_PAYLOAD];
+		byte[] buf = null;
+		int len = 0;
+		long time = 0;
+		int dir = 0;
+		for (long seq = Math.max(1, last - slots + 1); seq <= last; seq++) {
+			int pos = HEADER_SIZE + (int) (seq % slots) * SLOT_SIZE;
+			int flags = map.get(pos + 16) & 0xff;
+			int n = Math.min(map.get(pos + 17) & 0xff, SLOT_PAYLOAD);
+			if (map.getLong(pos) != seq || (flags & ~CONTINUED) >= Direction.values().length) {
+				// not yet written or being overwritten
+				buf = flush(list, buf, len, time, dir);
+				continue;
+			}
+			if ((flags & CONTINUED) == 0) {
+				flush(list, buf, len, time, dir);
+				buf = new byte[SLOT_PAYLOAD * 4];
+				len = 0;
+				time = map.getLong(pos + 8);
+				dir = flags;
+			} else if (buf == null) {
+				// the beginning has been overwritten
+				continue;
+			}
+			map.get(pos + PAYLOAD_OFFSET, payload, 0, n);
+			if (len + n > buf.length) {
+				buf = Arrays.copyOf(buf, buf.length * 2);
+			}
+			System.arraycopy(payload, 0, buf, len, n);
+			len += n;
+		}
+		flush(list, buf, len, time, dir);
+		return list;
+	}
+
+	/**
+	 * Add a reassembled chunk to the list
+	 * @param list the list
+	 * @param buf the bytes or null if none
+	 * @param len the number of bytes
+	 * @param time the time
+	 * @param dir the direction ordinal
+	 * @return null
+	 */
+	private static byte[] flush(List<Entry> list, byte[] buf, int len, long time, int dir) {
+		if (buf != null) {
+			list.add(new Entry(time, Direction.values()[dir], Arrays.copyOf(buf, len)));
+		}
+		return null;
+	}
+
+	/**
+	 * Find the highest sequence number
+	 * @param map the mapping
+	 * @param slots the number of slots
+	 * @return the highest sequence number, 0 if empty
+	 */
+	private static long lastSequence(ByteBuffer map, int slots) {
+		long last = 0;
+		for (int i = 0; i < slots; i++) {
+			last = Math.max(last, map.getLong(HEADER_SIZE + i * SLOT_SIZE));
+		}
+		return last;
+	}
+}
@@ -0,0 +1,211 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import se.wetterstrom.jfuncgen.FlightRecorder.Direction;
+import se.wetterstrom.jfuncgen.FlightRecorder.Entry;
+
+/**
+ * Replays a session of a {@link FlightRecorder} file through a driver and its
+ * {@link SerialListener}. The recorded writes are written by the driver and
+ * the recorded replies are returned by the other end of a
+ * {@link LoopbackTransport}, at the recorded pace or faster.
+ *
+ * <pre>
+ * java -cp jfuncgen.jar se.wetterstrom.jfuncgen.FlightReplay [options] [file]
+ *   -l          list the recorded chunks instead of replaying
+ *   -n session  the session number, default the last one
+ *   -s speed    1 for the recorded pace, 10 for ten times faster, 0 as fast as possible
+ *   -d device   the device type, default the recorded one
+ *   -v          print the received lines
+ * </pre>
+ */
+public class FlightReplay {
+
+	/** Prefix of the event starting a session */
+	private static final String CONNECTED = "Connected ";
+
+	/**
+	 * The result of a replay
+	 * @param chunks the number of chunks written and received
+	 * @param written the number of bytes written
+	 * @param received the number of bytes received
+	 * @param lines the number of lines received
+	 * @param recorded the recorded duration in nanoseconds
+	 * @param elapsed the duration of the replay in nanoseconds
+	 */
+	public record Result(int chunks, long written, long received, int lines, long recorded, long elapsed) {
+		@Override
+		public String toString() {
+			double s = elapsed / 1e9;
+			return String.format(Locale.US, "%d chunks, %d bytes written, %d bytes received, %d lines in %.3f s (recorded %.3f s), %.0f lines/s",
+					chunks, written, received, lines, s, recorded / 1e9, s > 0 ? lines / s : 0.0);
+		}
+	}
+
+	/** the session */
+	private final List<Entry> session;
+
+	/**
+	 * Constructor
+	 * @param session the recorded session
+	 */
+	public FlightReplay(List<Entry> session) {
+		this.session = session;
+	}
+
+	/**
+	 * Split recorded chunks into sessions, each starting when a device is connected
+	 * @param entries the chunks
+	 * @return the sessions
+	 */
+	public static List<List<Entry>> sessions(List<Entry> entries) {
+		var list = new ArrayList<List<Entry>>();
+		List<Entry> current = null;
+		for (var e : entries) {
+			if (current == null || (e.direction() == Direction.EVENT && e.text().startsWith(CONNECTED))) {
+				current = new ArrayList<>();
+				list.add(current);
+			}
+			current.add(e);
+		}
+		return list;
+	}
+
+	/**
+	 * Get the recorded device type of the session
+	 * @return the device type, or null if not recorded
+	 */
+	public DeviceType getDeviceType() {
+		for (var e : session) {
+			if (e.direction() == Direction.EVENT && e.text().startsWith(CONNECTED)) {
+				var name = e.text().substring(CONNECTED.length()).split(" ", 2)[0];
+				for (var dt : DeviceType.values()) {
+					if (!dt.deviceName.isEmpty() && dt.deviceName.equals(name)) {
+						return dt;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Replay the session. The driver is connected to a loopback transport and
+	 * disconnected when done.
+	 * @param com the driver
+	 * @param speed the speed factor, 1 for the recorded pace or 0 for as fast as possible
+	 * @param lineConsumer consumer of the received lines
+	 * @return the result
+	 */
+	public Result replay(AbstractSerialCom com, double speed, Consumer<String> lineConsumer) {
+		var pair = LoopbackTransport.createPair("replay");
+		var device = pair[1];
+		var sink = ByteBuffer.allocate(LoopbackTransport.DEFAULT_CAPACITY);
+		device.open(null);
+		device.setDataListener(() -> {
+			while (device.read(sink.clear()) > 0) {
+				// discard what the driver writes
+			}
+		});
+		com.setTransport(pair[0]);
+		int chunks = 0;
+		long written = 0;
+		long received = 0;
+		int lines = 0;
+		long t0 = session.isEmpty() ? 0 : session.get(0).time();
+		long start = System.nanoTime();
+		try {
+			for (var e : session) {
+				if (speed > 0) {
+					long wait = start + (long) ((e.time() - t0) / speed) - System.nanoTime();
+					if (wait > 0) {
+						LockSupport.parkNanos(wait);
+					}
+				}
+				if (e.direction() == Direction.TX) {
+					com.writeSerial(e.data());
+					written += e.data().length;
+					chunks++;
+				} else if (e.direction() == Direction.RX) {
+					var buf = ByteBuffer.wrap(e.data());
+					while (buf.hasRemaining() && device.write(buf) >= 0) {
+						Thread.onSpinWait();
+					}
+					received += e.data().length;
+					chunks++;
+				}
+				String line;
+				while ((line = com.serialListener.poll(0)) != null) {
+					lines++;
+					lineConsumer.accept(line);
+				}
+			}
+		} finally {
+			com.setTransport(null);
+		}
+		long recorded = session.isEmpty() ? 0 : session.get(session.size() - 1).time() - t0;
+		return new Result(chunks, written, received, lines, recorded, System.nanoTime() - start);
+	}
+
+	/**
+	 * Main
+	 * @param args the options and the file, see the class description
+	 * @throws IOException if the file is not a recording
+	 */
+	public static void main(String[] args) throws IOException {
+		Path file = null;
+		boolean list = false;
+		boolean verbose = false;
+		int num = -1;
+		double speed = 1.0;
+		DeviceType deviceType = null;
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "-l" -> list = true;
+			case "-v" -> verbose = true;
+			case "-n" -> num = Integer.parseInt(args[++i]);
+			case "-s" -> speed = Double.parseDouble(args[++i]);
+			case "-d" -> deviceType = DeviceType.valueOf(args[++i].toUpperCase(Locale.US));
+			default -> file = Path.of(args[i]);
+			}
+		}
+		if (file == null) {
+			file = Config.getFlightRecorderFile().toPath();
+		}
+		var sessions = sessions(FlightRecorder.read(file));
+		if (list) {
+			for (int i = 0; i < sessions.size(); i++) {
+				if (num < 0 || num == i) {
+					System.out.println("Session " + i);
+					sessions.get(i).forEach(System.out::println);
+				}
+			}
+			return;
+		}
+		if (sessions.isEmpty()) {
+			System.out.println("Nothing recorded in " + file);
+			return;
+		}
+		var replay = new FlightReplay(sessions.get(num < 0 ? sessions.size() - 1 : num));
+		if (deviceType == null) {
+			deviceType = replay.getDeviceType();
+		}
+		if (deviceType == null) {
+			System.out.println("Unknown device type, use -d MHS5200 or -d FY6900");
+			return;
+		}
+		var com = deviceType.getSerialCom();
+		com.setStatusConsumer((status, msg) -> {});
+		Consumer<String> lineConsumer = verbose ? System.out::println : line -> {};
+		var result = replay.replay(com, speed, lineConsumer);
+		System.out.println(deviceType + ": " + result);
+	}
+}
@@ -0,0 +1,274 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.Locale;
+import java.util.function.Consumer;
+
+import se.wetterstrom.jfuncgen.AdvancedPanel.MeasureMode;
+
+/**
+ * Locks the output frequency of a channel to the frequency meter of the
+ * device with a PI controller.
+ * <p>
+ * In {@link Mode#TRACK} the meter measures an external reference and the
+ * output is steered to a ratio times the reference, the controller
+ * filtering the noise of the readings. In {@link Mode#HOLD} the meter
+ * measures a signal depending on the output, such as the output itself or
+ * a device under test fed by it, and the output is steered until the
+ * reading is the target frequency.
+ * <p>
+ * The meter is read once per gate time. The correction is computed and
+ * written as soon as the reading has arrived, holding the driver lock from
+ * the read request to the acknowledge of the correction so no other
+ * command comes between. The time from the read request to the correction is recorded
+ * for every update. In hold mode the next reading is taken a full gate
+ * time after a correction, so the gate only sees the new output.
+ */
+public class FrequencyLock {
+
+	/** Default proportional gain */
+	public static final double DEFAULT_KP = 0.1;
+	/** Default integral gain per update */
+	public static final double DEFAULT_KI = 0.7;
+	/** Default error tolerated when locked in Hz */
+	public static final double DEFAULT_TOLERANCE = 1.0;
+	/** Number of updates within the tolerance to be locked */
+	private static final int LOCK_COUNT = 3;
+
+	/**
+	 * What the frequency meter measures
+	 */
+	public enum Mode {
+		/** an external reference, the output being a ratio times it */
+		TRACK,
+		/** a signal depending on the output, steered to the target frequency */
+		HOLD
+	}
+
+	/**
+	 * Lock state
+	 */
+	public enum State {
+		/** no valid reading */
+		UNLOCKED,
+		/** the error is outside the tolerance */
+		ACQUIRING,
+		/** the error has been within the tolerance for a few updates */
+		LOCKED
+	}
+
+	/**
+	 * A control update
+	 * @param time the time of the reading from the start in nanoseconds
+	 * @param measured the reading in Hz, NaN if failed
+	 * @param error the error in Hz
+	 * @param output the output frequency after the update in Hz
+	 * @param state the lock state
+	 * @param residual the root mean square error since locked, the error if not locked, in Hz
+	 * @param latency the time from the read request to the correction in nanoseconds, or to the reading if not corrected
+	 */
+	public record Update(long time, double measured, double error, double output, State state, double residual, long latency) {
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "%10.3f s  measured %.6f Hz  error %+.6f Hz  output %.6f Hz  %s  residual %.6f Hz  latency %.3f ms",
+					time / 1e9, measured, error, output, state, residual, latency / 1e6);
+		}
+	}
+
+	/**
+	 * The outcome of a run
+	 * @param updates the number of updates
+	 * @param corrections the number of corrections written
+	 * @param state the final lock state
+	 * @param residual the root mean square error since locked, the last error if not locked, in Hz
+	 * @param meanLatency the mean time from read request to correction in nanoseconds
+	 * @param maxLatency the max time from read request to correction in nanoseconds
+	 */
+	public record Report(int updates, int corrections, State state, double residual, double meanLatency, long maxLatency) {
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "%d updates, %d corrections, %s, residual %.6f Hz, latency mean %.3f ms, max %.3f ms",
+					updates, corrections, state, residual, meanLatency / 1e6, maxLatency / 1e6);
+		}
+	}
+
+	/**
+	 * PI controller in position form
+	 */
+	private final class Controller {
+		/** the output before the first update */
+		final double initial;
+		/** the max output */
+		final double max;
+		/** the sum of the errors */
+		double integral = 0;
+		/** the last error */
+		double error = Double.NaN;
+		/** the output */
+		double output;
+
+		/**
+		 * Constructor
+		 * @param initial the output before the first update
+		 * @param max the max output
+		 */
+		Controller(double initial, double max) {
+			this.initial = initial;
+			this.max = max;
+			this.output = initial;
+		}
+
+		/**
+		 * Update the output
+		 * @param e the error
+		 */
+		void update(double e) {
+			error = e;
+			double u = initial + kp * e + ki * (integral + e);
+			output = Math.clamp(u, 0, max);
+			if (u == output) {
+				// no wind up while saturated
+				integral += e;
+			}
+		}
+	}
+
+	/** the output channel */
+	private final int channel;
+	/** the mode */
+	private final Mode mode;
+	/** the ratio of the output to the reference, or the target frequency */
+	private final double target;
+	/** the proportional gain */
+	private final double kp;
+	/** the integral gain per update */
+	private final double ki;
+	/** the gate value */
+	private final int gate;
+	/** the error tolerated when locked in Hz */
+	private double tolerance = DEFAULT_TOLERANCE;
+	/** true if canceled */
+	private volatile boolean canceled;
+
+	/**
+	 * Constructor
+	 * @param channel the output channel
+	 * @param mode the mode
+	 * @param target the ratio of the output to the reference in track mode, the target frequency in Hz in hold mode
+	 * @param kp the proportional gain
+	 * @param ki the integral gain per update
+	 * @param gate the gate value of the frequency meter, see {@link AbstractSerialCom#getGateValues()}
+	 */
+	public FrequencyLock(int channel, Mode mode, double target, double kp, double ki, int gate) {
+		if (!(target > 0) || kp < 0 || ki < 0 || kp + ki == 0) {
+			throw new IllegalArgumentException("Expected a positive target and gains");
+		}
+		this.channel = channel;
+		this.mode = mode;
+		this.target = target;
+		this.kp = kp;
+		this.ki = ki;
+		this.gate = gate;
+	}
+
+	/**
+	 * Set the error tolerated when locked
+	 * @param tolerance the error in Hz
+	 */
+	public void setTolerance(double tolerance) {
+		this.tolerance = Math.abs(tolerance);
+	}
+
+	/**
+	 * Stop after the current update
+	 */
+	public void cancel() {
+		canceled = true;
+	}
+
+	/**
+	 * Run the loop until the time has passed, the device is offline or canceled
+	 * @param com the driver
+	 * @param duration the time in nanoseconds
+	 * @param listener receives every update, or null
+	 * @return the report
+	 * @throws IllegalArgumentException if the device could not be set up
+	 */
+	public Report run(AbstractSerialCom com, long duration, Consumer<Update> listener) {
+		canceled = false;
+		var clock = com.getClock();
+		long gateTime = Math.round(com.getGateTime(gate) * 1e9);
+		double max = com.getMaxFrequency();
+		double initial = com.locked(() -> {
+			com.setMeasureMode(MeasureMode.FREQUENCY);
+			com.setGateValue(gate);
+			if (!com.isOnline() || !com.awaitAck() || !com.awaitAck()) {
+				throw new IllegalArgumentException("Not acknowledged");
+			}
+			return com.getFrequency(channel);
+		});
+
+		var pi = new Controller(initial, max);
+		double residual = Double.NaN;
+		double lockedSum = 0;
+		int lockedCount = 0;
+		var state = State.UNLOCKED;
+		int within = 0;
+		int updates = 0;
+		int corrections = 0;
+		long latencySum = 0;
+		long maxLatency = 0;
+		long start = clock.nanoTime();
+		// the first gate fully after the set up
+		long next = start + gateTime;
+		while (!canceled && Sequencer.waitUntil(clock, next) && clock.nanoTime() - start < duration) {
+			long t = clock.nanoTime();
+			double before = pi.output;
+			var done = new long[1];
+			double measured = com.locked(() -> {
+				double m = com.getMeasuredFrequency();
+				done[0] = clock.nanoTime();
+				if (com.isOnline() && Double.isFinite(m)) {
+					pi.update(mode == Mode.TRACK ? target * m - pi.output : target - m);
+					if (pi.output != before) {
+						com.setFrequency(channel, pi.output);
+						done[0] = clock.nanoTime();
+						com.awaitAck();
+					}
+				}
+				return m;
+			});
+			if (!com.isOnline()) {
+				break;
+			}
+			boolean corrected = pi.output != before;
+			double error = Double.NaN;
+			if (Double.isFinite(measured)) {
+				error = pi.error;
+				within = Math.abs(error) <= tolerance ? within + 1 : 0;
+				state = within >= LOCK_COUNT ? State.LOCKED : State.ACQUIRING;
+			} else {
+				within = 0;
+				state = State.UNLOCKED;
+			}
+			if (state == State.LOCKED) {
+				lockedSum += error * error;
+				lockedCount++;
+				residual = Math.sqrt(lockedSum / lockedCount);
+			} else {
+				lockedSum = 0;
+				lockedCount = 0;
+				residual = Math.abs(error);
+			}
+			corrections += corrected ? 1 : 0;
+			long latency = done[0] - t;
+			latencySum += latency;
+			maxLatency = Math.max(maxLatency, latency);
+			updates++;
+			if (listener != null) {
+				listener.accept(new Update(t - start, measured, error, pi.output, state, residual, latency));
+			}
+			next = mode == Mode.HOLD && corrected ? clock.nanoTime() + gateTime : t + gateTime;
+		}
+		return new Report(updates, corrections, state, residual, updates > 0 ? (double) latencySum / updates : 0, maxLatency);
+	}
+}
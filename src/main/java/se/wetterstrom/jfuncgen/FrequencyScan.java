@@ -0,0 +1,218 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+import se.wetterstrom.jfuncgen.AdvancedPanel.MeasureMode;
+
+/**
+ * Frequency response scan. Steps the output frequency of a channel and
+ * reads the frequency meter of the device after each step, for example
+ * measuring the output of a device under test fed by the channel.
+ * <p>
+ * A reading needs the settling time of the device under test and one gate
+ * time of the meter after a step. The serial round trip of the reading is
+ * hidden in the settling of the next step: the command of the next step is
+ * written right after the read request, before the reply has arrived, so
+ * the device reads the meter first and then steps. The device is assumed
+ * to have stepped in the middle of the round trip. A scan of n points takes
+ * n times the settling time plus the gate time, plus half a round trip per
+ * point instead of the two round trips of setting and reading in turn.
+ */
+public class FrequencyScan {
+
+	/**
+	 * The results, in primitive arrays
+	 */
+	public static final class Table {
+		/** the time of each reading from the start of the scan in nanoseconds */
+		private final long[] time;
+		/** the output frequency of each point in Hz */
+		private final double[] frequency;
+		/** the reading of each point in Hz, NaN if failed */
+		private final double[] value;
+		/** the number of points */
+		private int size;
+
+		/**
+		 * Constructor
+		 * @param capacity the max number of points
+		 */
+		Table(int capacity) {
+			time = new long[capacity];
+			frequency = new double[capacity];
+			value = new double[capacity];
+		}
+
+		/**
+		 * Add a point
+		 * @param t the time
+		 * @param f the output frequency
+		 * @param v the reading
+		 */
+		void add(long t, double f, double v) {
+			time[size] = t;
+			frequency[size] = f;
+			value[size] = v;
+			size++;
+		}
+
+		/**
+		 * @return the number of points
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * @param i the index
+		 * @return the time of the reading from the start of the scan in nanoseconds
+		 */
+		public long getTime(int i) {
+			return time[i];
+		}
+
+		/**
+		 * @param i the index
+		 * @return the output frequency in Hz
+		 */
+		public double getFrequency(int i) {
+			return frequency[i];
+		}
+
+		/**
+		 * @param i the index
+		 * @return the reading in Hz, NaN if failed
+		 */
+		public double getValue(int i) {
+			return value[i];
+		}
+
+		/**
+		 * @return the readings
+		 */
+		public double[] getValues() {
+			return Arrays.copyOf(value, size);
+		}
+
+		/**
+		 * Write as CSV, time in seconds, frequency and reading
+		 * @param out the output
+		 * @throws IOException if failed to write
+		 */
+		public void write(Appendable out) throws IOException {
+			out.append("time,frequency,value\n");
+			for (int i = 0; i < size; i++) {
+				out.append(String.format(Locale.US, "%.6f,%s,%s%n", time[i] / 1e9, frequency[i], value[i]));
+			}
+		}
+
+		/**
+		 * Write as CSV to a file
+		 * @param file the file
+		 * @throws IOException if failed to write
+		 */
+		public void write(Path file) throws IOException {
+			try (var w = Files.newBufferedWriter(file, StandardCharsets.ISO_8859_1)) {
+				write(w);
+			}
+		}
+	}
+
+	/** the output channel */
+	private final int channel;
+	/** the frequencies */
+	private final double[] frequencies;
+	/** the settling time in nanoseconds */
+	private final long settle;
+	/** the gate value */
+	private final int gate;
+	/** true if canceled */
+	private volatile boolean canceled;
+
+	/**
+	 * Constructor
+	 * @param channel the output channel
+	 * @param frequencies the frequencies, see {@link HostSweep#points(double, double, int, HostSweep.Spacing)}
+	 * @param settle the settling time after each step in nanoseconds
+	 * @param gate the gate value of the frequency meter, see {@link AbstractSerialCom#getGateValues()}
+	 */
+	public FrequencyScan(int channel, double[] frequencies, long settle, int gate) {
+		if (frequencies.length == 0) {
+			throw new IllegalArgumentException("No frequencies");
+		}
+		this.channel = channel;
+		this.frequencies = frequencies.clone();
+		this.settle = Math.max(0, settle);
+		this.gate = gate;
+	}
+
+	/**
+	 * Stop after the current point
+	 */
+	public void cancel() {
+		canceled = true;
+	}
+
+	/**
+	 * Get the least time a scan can take
+	 * @param com the driver
+	 * @return the time in nanoseconds
+	 */
+	public long getMinTime(AbstractSerialCom com) {
+		return frequencies.length * (settle + Math.round(com.getGateTime(gate) * 1e9));
+	}
+
+	/**
+	 * Run the scan
+	 * @param com the driver
+	 * @return the results of the points scanned
+	 * @throws IllegalArgumentException if the device could not be set up
+	 */
+	public Table run(AbstractSerialCom com) {
+		canceled = false;
+		var clock = com.getClock();
+		var steps = new String[frequencies.length];
+		for (int i = 0; i < steps.length; i++) {
+			double f = frequencies[i];
+			steps[i] = new String(com.capture(() -> com.setFrequency(channel, f)), StandardCharsets.ISO_8859_1);
+		}
+		long wait = settle + Math.round(com.getGateTime(gate) * 1e9);
+		var table = new Table(frequencies.length);
+
+		long start = clock.nanoTime();
+		long stepped = com.locked(() -> {
+			com.setMeasureMode(MeasureMode.FREQUENCY);
+			com.setGateValue(gate);
+			com.writeSerial(steps[0]);
+			if (!com.isOnline() || !com.awaitAck() || !com.awaitAck() || !com.awaitAck()) {
+				throw new IllegalArgumentException("Not acknowledged");
+			}
+			return clock.nanoTime();
+		});
+		for (int i = 0; i < steps.length && !canceled; i++) {
+			if (!Sequencer.waitUntil(clock, stepped + wait)) {
+				break;
+			}
+			long t = clock.nanoTime();
+			var next = i + 1 < steps.length && !steps[i + 1].isEmpty() ? steps[i + 1] : null;
+			var replied = new long[1];
+			double v = com.locked(() -> {
+				double reading = com.pipelined(com::getMeasuredFrequency, next);
+				// the device has stepped while the request was on its way, estimated as the middle of the round trip
+				replied[0] = t + (clock.nanoTime() - t) / 2;
+				if (next != null) {
+					com.awaitAck();
+				}
+				return reading;
+			});
+			stepped = replied[0];
+			table.add(t - start, frequencies[i], v);
+		}
+		return table;
+	}
+}
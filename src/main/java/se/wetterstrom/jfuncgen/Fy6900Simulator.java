@@ -0,0 +1,229 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.Locale;
+
+/**
+ * Simulator of the FY6900 command set.
+ * <p>
+ * Commands are three letters followed by the value, e.g. <code>WMF1000</code>.
+ * <code>WM</code>/<code>RM</code> set/read the main channel (channel 1) and
+ * <code>WF</code>/<code>RF</code> the sub channel (channel 2). Every set command
+ * is acknowledged by an empty line.
+ * <p>
+ * An arbitrary waveform is written by <code>DDS_WAVE</code> followed by the
+ * slot number 1 - 64. The device replies <code>W</code> and then expects
+ * 8192 samples of two bytes, low 7 bits first. When all bytes are received
+ * it replies <code>H</code>, and <code>N</code> when the data is stored.
+ */
+public class Fy6900Simulator extends DeviceSimulator {
+
+	/** the model */
+	static final String MODEL = "FY6900-60M";
+	/** the product id */
+	static final String PRODUCT = "1234567890";
+	/** the firmware version */
+	static final String FIRMWARE = "V1.8";
+	/** Number of arbitrary waveforms */
+	private static final int ARB_COUNT = 64;
+	/** Number of samples in each arbitrary waveform */
+	private static final int ARB_SIZE = 8192;
+
+	/** the arbitrary waveform being received, or -1 if receiving commands */
+	private int arbSlot = -1;
+	/** the arbitrary waveform bytes */
+	private final byte[] arbBuffer = new byte[ARB_SIZE * 2];
+	/** number of received arbitrary waveform bytes */
+	private int arbReceived = 0;
+
+	/**
+	 * Constructor
+	 */
+	public Fy6900Simulator() {
+		super(ARB_COUNT, ARB_SIZE, 4096, 100);
+	}
+
+	@Override
+	protected double getGateTime(int gate) {
+		switch (gate) {
+		case 1: return 10.0;
+		case 2: return 100.0;
+		default: return 1.0;
+		}
+	}
+
+	@Override
+	protected void receive(byte[] data) {
+		int i = 0;
+		while (i < data.length) {
+			if (arbSlot < 0) {
+				receive(data[i++]);
+			} else {
+				int n = Math.min(data.length - i, arbBuffer.length - arbReceived);
+				System.arraycopy(data, i, arbBuffer, arbReceived, n);
+				arbReceived += n;
+				i += n;
+				if (arbReceived == arbBuffer.length) {
+					storeArb();
+				}
+			}
+		}
+	}
+
+	@Override
+	protected void execute(String command) {
+		if (command.startsWith("DDS_WAVE")) {
+			try {
+				int slot = Integer.parseInt(command.substring(8).trim()) - 1;
+				if (slot >= 0 && slot < ARB_COUNT) {
+					arbSlot = slot;
+					arbReceived = 0;
+					reply("W\n");
+				}
+			} catch (NumberFormatException e) {
+				// ignore
+			}
+			return;
+		}
+		if (command.length() < 3) {
+			return;
+		}
+		var cmd = command.substring(0, 3);
+		var value = command.substring(3).trim();
+		String reply;
+		try {
+			reply = command.charAt(0) == 'W' || command.charAt(0) == 'S' || cmd.equals("USN") || cmd.equals("ULN")
+					? set(cmd, value) : read(cmd);
+		} catch (NumberFormatException e) {
+			reply = null;
+		}
+		if (reply != null) {
+			reply(reply + "\n");
+		}
+	}
+
+	/**
+	 * Execute a set command
+	 * @param cmd the command
+	 * @param value the value
+	 * @return the reply, or null if invalid
+	 */
+	private synchronized String set(String cmd, String value) {
+		switch (cmd) {
+		case "WCZ": resetCounter(); return "";
+		case "WCP": setCounterRunning(parseInt(value) != 0); return "";
+		case "WCG": counter.gate = parseInt(value); return "";
+		case "SST": sweep.start = parseDouble(value); return "";
+		case "SEN": sweep.end = parseDouble(value); return "";
+		case "STI": sweep.time = parseDouble(value); return "";
+		case "SMO": sweep.log = parseInt(value) != 0; return "";
+		case "SOB": sweep.object = parseInt(value); return "";
+		case "SXY": sweep.source = parseInt(value); return "";
+		case "SBE": setSweepRunning(parseInt(value) != 0); return "";
+		case "USN": save(parseInt(value)); return "";
+		case "ULN": load(parseInt(value)); return "";
+		default: break;
+		}
+		int ch = channel(cmd);
+		if (ch < 0) {
+			return null;
+		}
+		var c = channels[ch];
+		switch (cmd.charAt(2)) {
+		case 'W': c.waveform = parseInt(value); return "";
+		case 'F': setFrequency(ch, parseDouble(value)); return "";
+		case 'A': c.amplitude = parseDouble(value); return "";
+		case 'O': c.offset = parseDouble(value); return "";
+		case 'D': c.duty = parseDouble(value); return "";
+		case 'P': c.phase = parseDouble(value) % 360.0; return "";
+		case 'N': c.enabled = parseInt(value) != 0; return "";
+		default: return null;
+		}
+	}
+
+	/**
+	 * Execute a read command
+	 * @param cmd the command
+	 * @return the reply, or null if invalid
+	 */
+	private synchronized String read(String cmd) {
+		switch (cmd) {
+		case "UMO": return MODEL;
+		case "UID": return PRODUCT;
+		case "UVE": return FIRMWARE;
+		case "RCG": return String.valueOf(counter.gate);
+		case "RCC": return readCounter(1);
+		case "RCF": return readCounter(0);
+		case "RCT": return readCounter(4);
+		case "RCD": return readCounter(5);
+		default: break;
+		}
+		int ch = cmd.charAt(0) == 'R' ? channel(cmd) : -1;
+		if (ch < 0) {
+			return null;
+		}
+		var c = channels[ch];
+		switch (cmd.charAt(2)) {
+		case 'W': return String.valueOf(c.waveform);
+		case 'F': return String.format(Locale.US, "%.6f", c.frequency);
+		case 'A': return String.valueOf(Math.round(c.amplitude * 10000));
+		case 'O': return String.valueOf(Math.round(c.offset * 1000));
+		case 'D': return String.valueOf(Math.round(c.duty * 1000));
+		case 'P': return String.valueOf(Math.round(c.phase * 1000));
+		case 'N': return c.enabled ? "1" : "0";
+		default: return null;
+		}
+	}
+
+	/**
+	 * Read the counter in a mode
+	 * @param mode the measure mode
+	 * @return the reading
+	 */
+	private String readCounter(int mode) {
+		counter.mode = mode;
+		return String.valueOf(readCounter());
+	}
+
+	/** Store the received arbitrary waveform */
+	private void storeArb() {
+		synchronized (this) {
+			var slot = arbSlots[arbSlot];
+			for (int i = 0; i < slot.length; i++) {
+				slot[i] = Math.clamp((arbBuffer[i * 2] & 0x7f) | (arbBuffer[i * 2 + 1] & 0xff) << 7, 0, 8191);
+			}
+			arbSlot = -1;
+		}
+		reply("H\n");
+		reply("N\n");
+	}
+
+	/**
+	 * Get channel index of a command
+	 * @param cmd the command
+	 * @return 0 for main, 1 for sub, -1 if not a channel command
+	 */
+	private static int channel(String cmd) {
+		switch (cmd.charAt(1)) {
+		case 'M': return 0;
+		case 'F': return 1;
+		default: return -1;
+		}
+	}
+
+	private static int parseInt(String value) {
+		return (int) parseDouble(value);
+	}
+
+	/**
+	 * Parse the leading number of a value, ignoring any trailing characters
+	 * @param value the value
+	 * @return the number
+	 */
+	private static double parseDouble(String value) {
+		int end = 0;
+		while (end < value.length() && "+-.0123456789".indexOf(value.charAt(end)) >= 0) {
+			end++;
+		}
+		return Double.parseDouble(value.substring(0, end));
+	}
+}
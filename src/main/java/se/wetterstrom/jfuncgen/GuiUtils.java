@@ -9,6 +9,7 @@ import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.Toolkit;
 import java.awt.Window;
+import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
@@ -18,6 +19,8 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 
 import javax.imageio.ImageIO;
+import javax.swing.AbstractAction;
+import javax.swing.Action;
 import javax.swing.ImageIcon;
 import javax.swing.JComponent;
 import javax.swing.JFileChooser;
@@ -351,6 +354,22 @@ public class GuiUtils {
 		return menuItem;
 	}
 
+	/**
+	 * Create action
+	 * @param listener the listener to be called when the action is performed
+	 * @return the action
+	 */
+	public static Action action(ActionListener listener) {
+		return new AbstractAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				listener.actionPerformed(e);
+			}
+		};
+	}
+
 	/**
 	 * Set location
 	 * @param component the component
@@ -0,0 +1,62 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.Arrays;
+
+/**
+ * Lazy hexdump of bytes.
+ * <p>
+ * Keeps a copy of at most <code>limit</code> bytes and formats them the first
+ * time the text is needed, so a dump that is never displayed costs only the copy.
+ * The length is known without formatting.
+ */
+public class HexDump implements CharSequence {
+
+	/** the bytes to dump */
+	private final byte[] data;
+	/** total number of bytes */
+	private final int total;
+	/** the formatted text, created on demand */
+	private String text = null;
+
+	/**
+	 * Constructor
+	 * @param data the data
+	 * @param limit max number of bytes to dump
+	 */
+	public HexDump(byte[] data, int limit) {
+		this.total = data.length;
+		this.data = Arrays.copyOf(data, Math.clamp(limit, 0, data.length));
+	}
+
+	/**
+	 * Get total number of bytes
+	 * @return number of bytes including those not dumped
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	@Override
+	public int length() {
+		return text != null ? text.length()
+				: Utils.hexDumpLength(data.length) + Utils.hexDumpSummary(data.length, total).length();
+	}
+
+	@Override
+	public char charAt(int index) {
+		return toString().charAt(index);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return toString().subSequence(start, end);
+	}
+
+	@Override
+	public synchronized String toString() {
+		if (text == null) {
+			text = Utils.hexDump(data) + Utils.hexDumpSummary(data.length, total);
+		}
+		return text;
+	}
+}
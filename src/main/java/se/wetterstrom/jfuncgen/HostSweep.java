@@ -0,0 +1,248 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sweeps a channel parameter from the host, for the parameters and point
+ * spacings the device sweep does not have.
+ * <p>
+ * The command of every point is encoded by the driver before the sweep
+ * starts, so the sweep only writes prepared bytes. Each point is written
+ * when its time has come, after the dwell times of the previous points. If
+ * the sweep falls behind, points whose successor is also due are skipped,
+ * so the device always gets the value it should have now instead of a
+ * growing backlog. Replies and acknowledges are not waited for during the
+ * sweep.
+ */
+public class HostSweep {
+
+	/** The parameters that can be swept */
+	public static final Set<DeviceParameter> PARAMETERS = EnumSet.of(DeviceParameter.FREQUENCY, DeviceParameter.AMPLITUDE,
+			DeviceParameter.OFFSET, DeviceParameter.DUTY, DeviceParameter.PHASE);
+
+	/**
+	 * Point spacing
+	 */
+	public enum Spacing {
+		/** equal steps */
+		LINEAR,
+		/** equal ratios */
+		LOG
+	}
+
+	/**
+	 * The outcome of a sweep
+	 * @param points the number of points of the sweep
+	 * @param written the number of points written
+	 * @param coalesced the number of points skipped because the next point was due
+	 * @param elapsed the duration in nanoseconds
+	 * @param jitter the lateness of the written points
+	 */
+	public record Report(int points, int written, int coalesced, long elapsed, Sequencer.Jitter jitter) {
+		/**
+		 * @return the achieved rate in points written per second
+		 */
+		public double rate() {
+			return elapsed > 0 ? written * 1e9 / elapsed : 0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "%d points, %d written, %d coalesced, %.3f s, %.1f points/s, %s",
+					points, written, coalesced, elapsed / 1e9, rate(), jitter);
+		}
+	}
+
+	/** the parameter */
+	private final DeviceParameter parameter;
+	/** the channel */
+	private final int channel;
+	/** the values */
+	private final double[] values;
+	/** the dwell time of each point in nanoseconds */
+	private final long[] dwells;
+	/** true if canceled */
+	private volatile boolean canceled;
+
+	/**
+	 * Constructor
+	 * @param parameter the parameter, one of {@link #PARAMETERS}
+	 * @param channel the channel
+	 * @param values the values
+	 * @param dwells the time to stay at each value in nanoseconds
+	 */
+	public HostSweep(DeviceParameter parameter, int channel, double[] values, long[] dwells) {
+		if (!PARAMETERS.contains(parameter)) {
+			throw new IllegalArgumentException("Can not sweep " + parameter);
+		}
+		if (values.length != dwells.length || values.length == 0) {
+			throw new IllegalArgumentException("Expected one dwell time for each of at least one value");
+		}
+		this.parameter = parameter;
+		this.channel = channel;
+		this.values = values.clone();
+		this.dwells = dwells.clone();
+	}
+
+	/**
+	 * Create a sweep with the same dwell time at every point
+	 * @param parameter the parameter, one of {@link #PARAMETERS}
+	 * @param channel the channel
+	 * @param values the values
+	 * @param dwell the time to stay at each value in nanoseconds
+	 * @return the sweep
+	 */
+	public static HostSweep of(DeviceParameter parameter, int channel, double[] values, long dwell) {
+		var dwells = new long[values.length];
+		Arrays.fill(dwells, dwell);
+		return new HostSweep(parameter, channel, values, dwells);
+	}
+
+	/**
+	 * Load a list of points, one value and optionally its dwell time in milliseconds per line
+	 * @param parameter the parameter, one of {@link #PARAMETERS}
+	 * @param channel the channel
+	 * @param file the file
+	 * @param dwell the dwell time of points without one, in nanoseconds
+	 * @return the sweep
+	 * @throws IOException if the file can not be read
+	 * @throws IllegalArgumentException if a line is invalid
+	 */
+	public static HostSweep load(DeviceParameter parameter, int channel, Path file, long dwell) throws IOException {
+		var values = new ArrayList<Double>();
+		var dwells = new ArrayList<Long>();
+		var lines = Files.readAllLines(file, StandardCharsets.ISO_8859_1);
+		for (int i = 0; i < lines.size(); i++) {
+			var line = lines.get(i).trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			var fields = line.split("[,;\\s]+");
+			try {
+				values.add(Double.parseDouble(fields[0]));
+				dwells.add(fields.length > 1 ? Math.round(Double.parseDouble(fields[1]) * 1e6) : dwell);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Line " + (i + 1) + ": " + e.getMessage(), e);
+			}
+		}
+		return new HostSweep(parameter, channel, values.stream().mapToDouble(Double::doubleValue).toArray(),
+				dwells.stream().mapToLong(Long::longValue).toArray());
+	}
+
+	/**
+	 * Compute the points between two values
+	 * @param start the first value
+	 * @param end the last value
+	 * @param count the number of points, at least 2
+	 * @param spacing the spacing
+	 * @return the values
+	 * @throws IllegalArgumentException if the count is less than 2, or log spacing of values that are not positive
+	 */
+	public static double[] points(double start, double end, int count, Spacing spacing) {
+		if (count < 2) {
+			throw new IllegalArgumentException("At least 2 points");
+		}
+		if (spacing == Spacing.LOG && (start <= 0 || end <= 0)) {
+			throw new IllegalArgumentException("Log sweep of values that are not positive");
+		}
+		var points = new double[count];
+		for (int i = 0; i < count; i++) {
+			double f = (double) i / (count - 1);
+			points[i] = spacing == Spacing.LOG ? start * Math.pow(end / start, f) : start + (end - start) * f;
+		}
+		points[count - 1] = end;
+		return points;
+	}
+
+	/**
+	 * @return the values
+	 */
+	public double[] getValues() {
+		return values.clone();
+	}
+
+	/**
+	 * Stop after the current point
+	 */
+	public void cancel() {
+		canceled = true;
+	}
+
+	/**
+	 * Encode the commands of the points
+	 * @param com the driver
+	 * @return the commands
+	 */
+	String[] encode(AbstractSerialCom com) {
+		var commands = new String[values.length];
+		for (int i = 0; i < values.length; i++) {
+			commands[i] = parameter.encode(com, channel, Double.toString(values[i]));
+		}
+		return commands;
+	}
+
+	/**
+	 * Run the sweep
+	 * @param com the driver
+	 * @return the report
+	 */
+	public Report run(AbstractSerialCom com) {
+		canceled = false;
+		var commands = encode(com);
+		var clock = com.getClock();
+		var lateness = new long[commands.length];
+		int written = 0;
+		int coalesced = 0;
+		int errors = 0;
+		int sent = 0;
+		long start = clock.nanoTime();
+		long due = 0;
+		for (int i = 0; i < commands.length && !canceled; i++) {
+			long next = due + dwells[i];
+			if (i + 1 < commands.length && clock.nanoTime() - start >= next) {
+				// behind, the next point is already due
+				coalesced++;
+				due = next;
+				continue;
+			}
+			if (!Sequencer.waitUntil(clock, start + due)) {
+				break;
+			}
+			if (commands[i].isEmpty()) {
+				// nothing to write
+			} else if (com.writeSerial(commands[i])) {
+				sent++;
+			} else {
+				errors++;
+			}
+			lateness[written++] = clock.nanoTime() - start - due;
+			due = next;
+		}
+		// stay at the last point
+		if (!canceled) {
+			Sequencer.waitUntil(clock, start + due);
+		}
+		long elapsed = clock.nanoTime() - start;
+		// the device has not been waited for, take the acknowledges of the points written
+		com.drainAcks(sent);
+		return new Report(commands.length, written, coalesced, elapsed, Sequencer.Jitter.of(Arrays.copyOf(lateness, written), errors));
+	}
+
+	/**
+	 * Parse a dwell time
+	 * @param ms the time in milliseconds
+	 * @return the time in nanoseconds
+	 */
+	static long dwell(String ms) {
+		return Math.round(Double.parseDouble(ms) * TimeUnit.MILLISECONDS.toNanos(1));
+	}
+}
@@ -39,7 +39,8 @@ public class JFuncGen {
 		} catch (IOException ignore) {
 			// ignored
 		}
+		AbstractSerialCom.startFlightRecorder();
 		MainPanel.create().setVisible(true);
+		NetworkGateway.startConfigured();
 	}
-
 }
@@ -0,0 +1,524 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Headless command line interface. Opens the configured device, or the one
+ * given with options, and runs get, set and arbitrary wave form commands
+ * from the arguments or, without a command argument, from standard input,
+ * one per line. Neither AWT nor Swing is loaded.
+ *
+ * <pre>
+ * java -cp jfuncgen.jar se.wetterstrom.jfuncgen.JFuncGenCli [-d device] [-p port] [-v] [command]
+ *   -d device  MHS5200 or FY6900, default the configured one
+ *   -p port    serial port, tcp://host:port, sim:// for the simulator or auto to probe the serial ports,
+ *              default the configured one
+ *   -v         print the status messages of the driver
+ * </pre>
+ *
+ * The exit status is 0 if all commands succeeded, 1 if a command failed and
+ * 2 if the device could not be opened.
+ */
+public class JFuncGenCli {
+
+	/** the usage */
+	private static final String HELP = """
+			Commands:
+			  get <parameter> [channel]          print a parameter, channel 1 by default
+			  set <parameter> [channel] <value>  set a parameter
+			  tx <parameter> [channel] <value>, ...
+			                                     set parameters together in one write, skipping unchanged values
+			  arb-download <num> [file]          print an arbitrary wave form, one sample per line, or save it
+			  arb-upload <num> <file>            write an arbitrary wave form, samples separated by line breaks, commas or semicolons
+			  preset save|apply <file>           save the channel settings to a file, or apply the ones that differ
+			  load <num>                         load stored settings
+			  save <num>                         store the settings
+			  send <command>                     send a raw command and print the reply
+			  host-sweep <parameter> <channel> lin|log <start> <end> <points> <dwell ms>
+			  host-sweep <parameter> <channel> <file> [dwell ms]
+			                                     step frequency, amplitude, offset, duty or phase from the host,
+			                                     the file holding a value and optionally a dwell time per line
+			  scan <channel> lin|log <start> <end> <points> <settle ms> <gate> [file]
+			                                     step the frequency and read the frequency meter after each step,
+			                                     printing or saving time, frequency and reading as CSV
+			  lock <channel> track|hold <ratio|Hz> <gate> <seconds> [kp ki]
+			                                     steer the frequency from the frequency meter, to the ratio times
+			                                     a reference or until the reading is the frequency, printing each update
+			  modulate <channel> am|fm|pwm sine|triangle|square|sawtooth <carrier> <depth> <Hz> <updates/s> <seconds> [virtual]
+			                                     modulate the amplitude, frequency or duty cycle from the host,
+			                                     the depth being a fraction, Hz or %, printing the rate and jitter
+			  playlist <channel> <file> <Hz> <periods> <arb,arb,...> [lead ms]
+			                                     play a wave form longer than an arb slot, uploading it in segments to the
+			                                     arbs and switching between them, each segment playing the periods
+			  poll <seconds> [file]              read the counter continuously, printing time and reading as CSV
+			                                     or streaming them to a binary file and printing the Allan deviation
+			  sequence <file>                    run a script of timed commands and print their timing
+			  sleep <ms>                         wait
+			  ports                              list the serial ports
+			  detect                             probe the serial ports for function generators
+			  help                               this text
+			Parameters:
+			""";
+
+	/** the driver */
+	private final AbstractSerialCom com;
+	/** the output */
+	private final PrintStream out;
+	/** the device state known by the transactions, null when other commands may have changed it */
+	private DeviceTransaction.State txState;
+
+	/**
+	 * Constructor
+	 * @param com the connected driver
+	 * @param out the output of replies
+	 */
+	JFuncGenCli(AbstractSerialCom com, PrintStream out) {
+		this.com = com;
+		this.out = out;
+	}
+
+	/**
+	 * Execute a command line
+	 * @param line the command line, empty or starting with # to do nothing
+	 * @throws IllegalArgumentException if the command is invalid or failed
+	 * @throws IOException if a file can not be read or written
+	 */
+	void execute(String line) throws IOException {
+		var cmd = line.trim();
+		if (cmd.isEmpty() || cmd.startsWith("#")) {
+			return;
+		}
+		var args = cmd.split("\\s+");
+		var name = args[0].toLowerCase(Locale.US);
+		if (!List.of("tx", "preset", "get", "sleep", "ports", "help").contains(name)) {
+			txState = null;
+		}
+		switch (name) {
+		case "get" -> get(args);
+		case "set" -> set(args);
+		case "tx" -> tx(cmd.substring(args[0].length()));
+		case "preset" -> preset(args);
+		case "arb-download" -> arbDownload(args);
+		case "arb-upload" -> arbUpload(args);
+		case "load" -> {
+			com.loadSettings(Integer.parseInt(arg(args, 1)));
+			ack();
+		}
+		case "save" -> {
+			com.saveSettings(Integer.parseInt(arg(args, 1)));
+			ack();
+		}
+		case "send" -> {
+			var reply = com.requestReply(cmd.substring(args[0].length()).trim() + "\n");
+			if (reply == null) {
+				throw new IllegalArgumentException("No reply");
+			}
+			out.println(reply);
+		}
+		case "host-sweep" -> hostSweep(args);
+		case "scan" -> scan(args);
+		case "poll" -> poll(args);
+		case "lock" -> lock(args);
+		case "modulate" -> modulate(args);
+		case "playlist" -> playlist(args);
+		case "sequence" -> sequence(args);
+		case "sleep" -> com.sleep(Long.parseLong(arg(args, 1)));
+		case "ports" -> printPorts(out);
+		case "detect" -> DeviceProbe.probe(DeviceProbe.DEFAULT_TIMEOUT).forEach(out::println);
+		case "help" -> printHelp(out);
+		default -> throw new IllegalArgumentException("Unknown command: " + args[0]);
+		}
+	}
+
+	private void get(String[] args) {
+		var param = DeviceParameter.of(arg(args, 1));
+		out.println(param.get(com, param.channel && args.length > 2 ? DeviceParameter.parseChannel(args[2]) : 1));
+	}
+
+	private void set(String[] args) {
+		var param = DeviceParameter.of(arg(args, 1));
+		int channel = 1;
+		int value = 2;
+		if (param.channel && args.length > 3) {
+			channel = DeviceParameter.parseChannel(args[2]);
+			value = 3;
+		}
+		param.set(com, channel, String.join(" ", Arrays.copyOfRange(args, value, Math.max(value, args.length))));
+	}
+
+	private void tx(String changes) {
+		var tx = new DeviceTransaction();
+		for (var change : changes.split(",")) {
+			var args = ("tx " + change.trim()).split("\\s+");
+			var param = DeviceParameter.of(arg(args, 1));
+			boolean hasChannel = param.channel && args.length > 3;
+			tx.set(param, hasChannel ? DeviceParameter.parseChannel(args[2]) : 1, String.join(" ", Arrays.copyOfRange(args, hasChannel ? 3 : 2, Math.max(2, args.length))));
+		}
+		if (txState == null) {
+			txState = DeviceTransaction.State.read(com);
+		}
+		var result = tx.commit(com, txState);
+		out.println(String.format(Locale.US, "%d written, %d unchanged, %d bytes", result.written(), result.skipped(), result.bytes()));
+	}
+
+	private void preset(String[] args) throws IOException {
+		var path = Path.of(arg(args, 2));
+		if (txState == null) {
+			txState = DeviceTransaction.State.read(com);
+		}
+		switch (arg(args, 1).toLowerCase(Locale.US)) {
+		case "save" -> Preset.of(txState).write(path);
+		case "apply" -> {
+			var result = Preset.read(path).apply(com, txState);
+			out.println(String.format(Locale.US, "%d written, %d unchanged, %d bytes", result.written(), result.skipped(), result.bytes()));
+		}
+		default -> throw new IllegalArgumentException("Expected save or apply: " + args[1]);
+		}
+	}
+
+	private void hostSweep(String[] args) throws IOException {
+		var param = DeviceParameter.of(arg(args, 1));
+		int channel = DeviceParameter.parseChannel(arg(args, 2));
+		var mode = arg(args, 3).toLowerCase(Locale.US);
+		HostSweep sweep;
+		if (mode.equals("lin") || mode.equals("log")) {
+			var points = HostSweep.points(Double.parseDouble(arg(args, 4)), Double.parseDouble(arg(args, 5)), Integer.parseInt(arg(args, 6)),
+					mode.equals("log") ? HostSweep.Spacing.LOG : HostSweep.Spacing.LINEAR);
+			sweep = HostSweep.of(param, channel, points, HostSweep.dwell(arg(args, 7)));
+		} else {
+			sweep = HostSweep.load(param, channel, Path.of(args[3]), HostSweep.dwell(args.length > 4 ? args[4] : "100"));
+		}
+		var report = sweep.run(com);
+		out.println(report);
+		if (report.jitter().errors() > 0) {
+			throw new IllegalArgumentException(report.jitter().errors() + " points failed");
+		}
+	}
+
+	private void scan(String[] args) throws IOException {
+		int channel = DeviceParameter.parseChannel(arg(args, 1));
+		var spacing = arg(args, 2).equalsIgnoreCase("log") ? HostSweep.Spacing.LOG : HostSweep.Spacing.LINEAR;
+		var points = HostSweep.points(Double.parseDouble(arg(args, 3)), Double.parseDouble(arg(args, 4)), Integer.parseInt(arg(args, 5)), spacing);
+		var table = new FrequencyScan(channel, points, HostSweep.dwell(arg(args, 6)), Integer.parseInt(arg(args, 7))).run(com);
+		if (args.length > 8) {
+			table.write(Path.of(args[8]));
+		} else {
+			table.write(out);
+		}
+	}
+
+	private void poll(String[] args) throws IOException {
+		long duration = Math.round(Double.parseDouble(arg(args, 1)) * 1e9);
+		var poller = new CounterPoller(com, CounterPoller.DEFAULT_CAPACITY);
+		if (args.length > 2) {
+			poller.startExport(Path.of(args[2]));
+		}
+		long count;
+		try {
+			count = poller.run(duration);
+		} finally {
+			poller.stopExport();
+		}
+		if (count == 0) {
+			throw new IllegalArgumentException("No readings");
+		}
+		var samples = poller.getSamples();
+		if (args.length > 2) {
+			out.println(String.format(Locale.US, "%d readings, %s, %.1f readings/s, round trip %.3f ms", count, poller.getMode(),
+					count * 1e9 / duration, poller.getRoundTrip() / 1e6));
+			if (poller.getStatistics() != null) {
+				out.print(poller.getStatistics());
+			}
+		} else {
+			out.println("time,value");
+			long start = samples.getTime(0);
+			for (int i = 0; i < samples.size(); i++) {
+				out.println(String.format(Locale.US, "%.6f,%s", (samples.getTime(i) - start) / 1e9, samples.getValue(i)));
+			}
+		}
+	}
+
+	private void lock(String[] args) {
+		int channel = DeviceParameter.parseChannel(arg(args, 1));
+		var mode = FrequencyLock.Mode.valueOf(arg(args, 2).toUpperCase(Locale.US));
+		double kp = args.length > 6 ? Double.parseDouble(args[6]) : FrequencyLock.DEFAULT_KP;
+		double ki = args.length > 7 ? Double.parseDouble(args[7]) : FrequencyLock.DEFAULT_KI;
+		var lock = new FrequencyLock(channel, mode, Double.parseDouble(arg(args, 3)), kp, ki, Integer.parseInt(arg(args, 4)));
+		var report = lock.run(com, Math.round(Double.parseDouble(arg(args, 5)) * 1e9), out::println);
+		out.println(report);
+		if (report.state() != FrequencyLock.State.LOCKED) {
+			throw new IllegalArgumentException("Not locked");
+		}
+	}
+
+	private void modulate(String[] args) {
+		int channel = DeviceParameter.parseChannel(arg(args, 1));
+		var type = Modulation.Type.valueOf(arg(args, 2).toUpperCase(Locale.US));
+		var shape = Modulation.Shape.valueOf(arg(args, 3).toUpperCase(Locale.US));
+		var modulation = new Modulation(channel, type, shape, Double.parseDouble(arg(args, 4)), Double.parseDouble(arg(args, 5)),
+				Double.parseDouble(arg(args, 6)), Double.parseDouble(arg(args, 7)));
+		boolean virtual = args.length > 9 && "virtual".equalsIgnoreCase(args[9]);
+		modulation.start(com, Math.round(Double.parseDouble(arg(args, 8)) * 1e9), virtual);
+		try {
+			while (!modulation.await(1000)) {
+				out.println(modulation.getMetrics());
+			}
+		} catch (InterruptedException e) {
+			modulation.cancel();
+			Thread.currentThread().interrupt();
+		}
+		var metrics = modulation.getMetrics();
+		out.println(metrics);
+		if (metrics.errors() > 0) {
+			throw new IllegalArgumentException(metrics.errors() + " updates failed");
+		}
+	}
+
+	private void sequence(String[] args) throws IOException {
+		var results = Sequencer.load(Path.of(arg(args, 1))).run(com);
+		results.forEach(out::println);
+		var jitter = Sequencer.Jitter.of(results);
+		out.println(jitter);
+		if (jitter.errors() > 0) {
+			throw new IllegalArgumentException(jitter.errors() + " commands failed");
+		}
+	}
+
+	private void arbDownload(String[] args) throws IOException {
+		var data = com.getArbData(Integer.parseInt(arg(args, 1)), Progress.NONE);
+		var csv = new StringBuilder();
+		for (var d : data) {
+			csv.append(d).append('\n');
+		}
+		if (args.length > 2) {
+			Files.writeString(Path.of(args[2]), csv, StandardCharsets.ISO_8859_1);
+		} else {
+			out.print(csv);
+		}
+	}
+
+	private void arbUpload(String[] args) throws IOException {
+		int num = Integer.parseInt(arg(args, 1));
+		// the first slot of samples, padded with the zero level
+		var data = ArbPlaylist.split(readSamples(Path.of(arg(args, 2))), com.getArbSize(), com.getArbOffset())[0];
+		com.setArbData(num, data, Progress.NONE);
+		if (!com.isOnline()) {
+			throw new IllegalArgumentException("Offline");
+		}
+	}
+
+	private void playlist(String[] args) throws IOException {
+		int channel = DeviceParameter.parseChannel(arg(args, 1));
+		var segments = ArbPlaylist.split(readSamples(Path.of(arg(args, 2))), com.getArbSize(), com.getArbOffset());
+		var slots = Arrays.stream(arg(args, 5).split(",")).mapToInt(Integer::parseInt).toArray();
+		var playlist = new ArbPlaylist(channel, segments, slots, Double.parseDouble(arg(args, 3)), Integer.parseInt(arg(args, 4)));
+		if (args.length > 6) {
+			playlist.setLead(Math.round(Double.parseDouble(args[6]) * 1e6));
+		}
+		var report = playlist.run(com);
+		report.switches().forEach(out::println);
+		out.println(report);
+		if (report.switches().size() < segments.length || report.jitter().errors() > 0) {
+			throw new IllegalArgumentException("Not played");
+		}
+	}
+
+	/**
+	 * Read arbitrary wave form samples
+	 * @param path the file, samples separated by line breaks, commas or semicolons
+	 * @return the samples, clamped to the range of the device
+	 * @throws IOException if the file can not be read
+	 */
+	private int[] readSamples(Path path) throws IOException {
+		var values = Files.readString(path, StandardCharsets.ISO_8859_1).trim().split("\\s*[,;\\n\\r]+\\s*");
+		var data = new int[values.length];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = Math.clamp(Math.round(Double.parseDouble(values[i])), com.getArbMin(), com.getArbMax());
+		}
+		return data;
+	}
+
+	/** Wait for the device to acknowledge the last command */
+	private void ack() {
+		if (!com.isOnline() || !com.awaitAck()) {
+			throw new IllegalArgumentException("Not acknowledged");
+		}
+	}
+
+	private static String arg(String[] args, int index) {
+		if (index >= args.length) {
+			throw new IllegalArgumentException("Missing argument: " + String.join(" ", args));
+		}
+		return args[index];
+	}
+
+	private static void printHelp(PrintStream out) {
+		out.print(HELP);
+		for (var p : DeviceParameter.values()) {
+			out.println("  " + p + (p.channel ? " [channel]" : "")
+					+ (!p.isReadable() ? " (write only)" : !p.isWritable() ? " (read only)" : ""));
+		}
+	}
+
+	private static void printPorts(PrintStream out) {
+		AbstractSerialCom.getPortTransports().forEach(t -> out.println(t.getDescription()));
+	}
+
+	/**
+	 * Find the transport of a port name
+	 * @param name the port name
+	 * @param deviceType the device type, for the simulator
+	 * @return the transport, or null if not found
+	 */
+	static SerialTransport findTransport(String name, DeviceType deviceType) {
+		if (name.startsWith(SimulatorTransport.PREFIX)) {
+			var sim = DeviceSimulator.create(deviceType);
+			return sim != null ? new SimulatorTransport(sim, deviceType.deviceName) : null;
+		}
+		if (name.startsWith(TcpTransport.PREFIX)) {
+			return TcpTransport.parse(name);
+		}
+		return AbstractSerialCom.getPortTransports().stream().filter(t -> name.equals(t.getName())).findFirst().orElse(null);
+	}
+
+	/**
+	 * Main
+	 * @param args the options and a command, see the class description
+	 */
+	public static void main(String[] args) {
+		System.exit(run(args));
+	}
+
+	/**
+	 * Run
+	 * @param args the options and a command
+	 * @return the exit status
+	 */
+	private static int run(String[] args) {
+		String deviceName = null;
+		String portName = null;
+		boolean verbose = false;
+		int i = 0;
+		for (; i < args.length && args[i].startsWith("-"); i++) {
+			switch (args[i]) {
+			case "-d" -> deviceName = ++i < args.length ? args[i] : "";
+			case "-p" -> portName = ++i < args.length ? args[i] : "";
+			case "-v" -> verbose = true;
+			default -> {
+				System.err.println("Unknown option: " + args[i]);
+				return 2;
+			}
+			}
+		}
+		var command = String.join(" ", Arrays.copyOfRange(args, i, args.length));
+		if (command.equals("help") || command.equals("ports") || command.equals("detect")) {
+			var out = System.out;
+			if (command.equals("help")) {
+				printHelp(out);
+			} else if (command.equals("ports")) {
+				printPorts(out);
+			} else {
+				DeviceProbe.probe(DeviceProbe.DEFAULT_TIMEOUT).forEach(out::println);
+			}
+			return 0;
+		}
+
+		try {
+			Config.load();
+		} catch (IOException e) {
+			System.err.println("Failed to load configuration: " + e.getMessage());
+		}
+		var deviceType = Config.getDeviceType();
+		SerialTransport detected = null;
+		if ("auto".equalsIgnoreCase(portName)) {
+			// the first port with a device of the given type, or of any type
+			var name = deviceName != null ? deviceName.trim() : null;
+			var types = name != null ? Arrays.stream(DeviceType.values()).filter(dt -> dt.deviceName.equalsIgnoreCase(name)).toList()
+					: List.of(DeviceType.MHS5200, DeviceType.FY6900);
+			var matches = DeviceProbe.probe(AbstractSerialCom.getPortTransports(), types, DeviceProbe.DEFAULT_TIMEOUT);
+			if (matches.isEmpty()) {
+				System.err.println("No device found");
+				return 2;
+			}
+			if (verbose) {
+				matches.forEach(System.err::println);
+			}
+			detected = matches.get(0).transport();
+			deviceType = matches.get(0).type();
+			portName = detected.getName();
+		} else if (deviceName != null) {
+			var name = deviceName.trim();
+			deviceType = Arrays.stream(DeviceType.values()).filter(dt -> dt.deviceName.equalsIgnoreCase(name))
+					.findFirst().orElse(DeviceType.NONE);
+		}
+		if (deviceType == DeviceType.NONE) {
+			System.err.println("No device type, use -d MHS5200 or -d FY6900");
+			return 2;
+		}
+		var com = deviceType.getSerialCom();
+		if (portName == null) {
+			portName = Config.getPortName() != null ? Config.getPortName() : com.getDefaultPortName();
+		}
+		var transport = detected != null ? detected : findTransport(portName, deviceType);
+		if (transport == null) {
+			System.err.println("Port not found: " + portName);
+			return 2;
+		}
+
+		boolean v = verbose;
+		com.setStatusConsumer((status, msg) -> {
+			if (v || status == StatusBar.Status.ERROR) {
+				System.err.println(status + ": " + msg);
+			}
+		});
+		AbstractSerialCom.startFlightRecorder();
+		com.setTransport(transport);
+		if (!com.isOnline()) {
+			System.err.println("Failed to open " + portName);
+			return 2;
+		}
+		var cli = new JFuncGenCli(com, System.out);
+		int status = 0;
+		try {
+			if (!command.isEmpty()) {
+				status = cli.run(command);
+			} else {
+				var reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.ISO_8859_1));
+				String line;
+				while ((line = reader.readLine()) != null) {
+					status = Math.max(status, cli.run(line));
+				}
+			}
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			status = 1;
+		} finally {
+			com.disconnect();
+		}
+		return status;
+	}
+
+	/**
+	 * Execute a command line, printing errors
+	 * @param line the command line
+	 * @return 0 if successful, 1 if failed
+	 */
+	int run(String line) {
+		try {
+			execute(line);
+			return 0;
+		} catch (IOException | RuntimeException e) {
+			System.err.println(line.trim() + ": " + (e.getMessage() != null ? e.getMessage() : e));
+			return 1;
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package se.wetterstrom.jfuncgen;
+
+import java.nio.ByteBuffer;
+
+import com.fazecast.jSerialComm.SerialPort;
+import com.fazecast.jSerialComm.SerialPortDataListener;
+import com.fazecast.jSerialComm.SerialPortEvent;
+
+/**
+ * Serial port transport using jSerialComm.
+ * <p>
+ * Reads use non-blocking port timeouts. Writes hand the bytes to the
+ * operating system output buffer, which takes a full command at once.
+ */
+public class JSerialCommTransport implements SerialTransport {
+
+	/** the port */
+	private final SerialPort port;
+	/** the data listener */
+	private volatile Runnable listener;
+
+	/**
+	 * Constructor
+	 * @param port the port
+	 */
+	public JSerialCommTransport(SerialPort port) {
+		this.port = port;
+	}
+
+	/**
+	 * Get the port
+	 * @return the port
+	 */
+	public SerialPort getPort() {
+		return port;
+	}
+
+	@Override
+	public boolean open(PortSettings settings) {
+		port.setBaudRate(settings.baudRate);
+		port.setNumDataBits(settings.dataBits);
+		port.setNumStopBits(settings.stopBits);
+		port.setParity(settings.parity.id);
+		port.setFlowControl(settings.flowCtrl);
+		if (!port.openPort()) {
+			return false;
+		}
+		port.setComPortTimeouts(SerialPort.TIMEOUT_NONBLOCKING, 0, 0);
+		port.removeDataListener();
+		port.addDataListener(new SerialPortDataListener() {
+			@Override
+			public int getListeningEvents() {
+				return SerialPort.LISTENING_EVENT_DATA_AVAILABLE;
+			}
+
+			@Override
+			public void serialEvent(SerialPortEvent event) {
+				var l = listener;
+				if (l != null) {
+					l.run();
+				}
+			}
+		});
+		return true;
+	}
+
+	@Override
+	public void close() {
+		port.removeDataListener();
+		port.closePort();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return port.isOpen();
+	}
+
+	@Override
+	public int read(ByteBuffer dst) {
+		int available = port.bytesAvailable();
+		if (available < 0) {
+			return -1;
+		}
+		int count = Math.min(available, dst.remaining());
+		if (count == 0) {
+			return 0;
+		}
+		int n;
+		if (dst.hasArray()) {
+			n = port.readBytes(dst.array(), count, dst.arrayOffset() + dst.position());
+			if (n > 0) {
+				dst.position(dst.position() + n);
+			}
+		} else {
+			var tmp = new byte[count];
+			n = port.readBytes(tmp, count);
+			if (n > 0) {
+				dst.put(tmp, 0, n);
+			}
+		}
+		return n;
+	}
+
+	@Override
+	public int write(ByteBuffer src) {
+		int count = src.remaining();
+		int n;
+		if (src.hasArray()) {
+			n = port.writeBytes(src.array(), count, src.arrayOffset() + src.position());
+			if (n > 0) {
+				src.position(src.position() + n);
+			}
+		} else {
+			var tmp = new byte[count];
+			src.duplicate().get(tmp);
+			n = port.writeBytes(tmp, count);
+			if (n > 0) {
+				src.position(src.position() + n);
+			}
+		}
+		return n;
+	}
+
+	@Override
+	public void setDataListener(Runnable listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public String getName() {
+		return port.getSystemPortName();
+	}
+
+	@Override
+	public String getDescription() {
+		return port.getSystemPortName() + " - " + port.getDescriptivePortName();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof JSerialCommTransport t && port.equals(t.port);
+	}
+
+	@Override
+	public int hashCode() {
+		return port.hashCode();
+	}
+}
@@ -0,0 +1,116 @@
+package se.wetterstrom.jfuncgen;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One end of an in-memory byte pipe. Bytes written to one end are read
+ * from the other end.
+ * <p>
+ * Each end has a receive buffer of fixed capacity; a write to a full buffer
+ * returns 0. The data listener of the reading end is called on the writing
+ * thread, so a pair runs at memory speed without any thread hand-over.
+ */
+public class LoopbackTransport implements SerialTransport {
+
+	/** Default receive buffer capacity */
+	public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+	/** the name */
+	private final String name;
+	/** the receive buffer */
+	private final ByteRing in;
+	/** the other end */
+	private LoopbackTransport peer;
+	/** the data listener */
+	private volatile Runnable listener;
+	/** true if open */
+	private volatile boolean open = false;
+
+	/**
+	 * Constructor
+	 * @param name the name
+	 * @param capacity the receive buffer capacity
+	 */
+	private LoopbackTransport(String name, int capacity) {
+		this.name = name;
+		this.in = new ByteRing(capacity);
+	}
+
+	/**
+	 * Create a connected pair with default capacity
+	 * @param name the name of the pair
+	 * @return the two ends
+	 */
+	public static LoopbackTransport[] createPair(String name) {
+		return createPair(name, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a connected pair
+	 * @param name the name of the pair
+	 * @param capacity the receive buffer capacity of each end
+	 * @return the two ends
+	 */
+	public static LoopbackTransport[] createPair(String name, int capacity) {
+		var a = new LoopbackTransport(name + ":a", capacity);
+		var b = new LoopbackTransport(name + ":b", capacity);
+		a.peer = b;
+		b.peer = a;
+		return new LoopbackTransport[] { a, b };
+	}
+
+	@Override
+	public boolean open(PortSettings settings) {
+		open = true;
+		return true;
+	}
+
+	@Override
+	public void close() {
+		open = false;
+		in.clear();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	@Override
+	public int read(ByteBuffer dst) {
+		if (!open) {
+			return -1;
+		}
+		return in.get(dst);
+	}
+
+	@Override
+	public int write(ByteBuffer src) {
+		if (!open || !peer.open) {
+			return -1;
+		}
+		int count = peer.in.put(src);
+		if (count > 0) {
+			peer.dataAvailable();
+		}
+		return count;
+	}
+
+	/** Notify the data listener */
+	private void dataAvailable() {
+		var l = listener;
+		if (l != null) {
+			l.run();
+		}
+	}
+
+	@Override
+	public void setDataListener(Runnable listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+}
@@ -0,0 +1,271 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Simulator of the MHS5200 command set.
+ * <p>
+ * Commands are <code>:s</code> (set) and <code>:r</code> (read) followed by a
+ * digit and a parameter letter, e.g. <code>:s1f00100000</code>. Reads are
+ * answered by the command followed by the value, sets by <code>:ok</code>.
+ * The 16 arbitrary waveforms are written and read one slice of 128 samples
+ * at a time by <code>:a</code> and <code>:b</code>.
+ */
+public class Mhs5200Simulator extends DeviceSimulator {
+
+	/** the model */
+	static final String MODEL = "5225A5040000";
+	/** the product number */
+	static final String PRODUCT = "225A5040000";
+	/** the firmware version */
+	static final String FIRMWARE = "5040000";
+
+	/** the flags set by <code>:s[0-9ab]b</code> that have no other state */
+	private final Map<Character, Integer> flags = new HashMap<>();
+
+	/**
+	 * Constructor
+	 */
+	public Mhs5200Simulator() {
+		super(16, SerialCom5200.SLICE_COUNT * SerialCom5200.SAMPLES_PER_SLICE, 2048, 16);
+		flags.put('1', 1);
+		flags.put('2', 1);
+		flags.put('6', 1);
+	}
+
+	@Override
+	protected double getGateTime(int gate) {
+		switch (gate) {
+		case 1: return 10.0;
+		case 2: return 0.01;
+		case 3: return 0.1;
+		default: return 1.0;
+		}
+	}
+
+	@Override
+	protected void execute(String command) {
+		if (command.length() < 4 || command.charAt(0) != ':') {
+			return;
+		}
+		char op = command.charAt(1);
+		char num = command.charAt(2);
+		char param = command.charAt(3);
+		var value = command.substring(4);
+		String reply;
+		switch (op) {
+		case 's':
+			reply = set(num, param, value) ? ":ok" : null;
+			break;
+		case 'r':
+			reply = read(num, param);
+			break;
+		case 'a':
+			reply = writeSlice(num, param, value) ? ":ok" : null;
+			break;
+		case 'b':
+			reply = readSlice(num, param);
+			break;
+		default:
+			reply = null;
+			break;
+		}
+		if (reply != null) {
+			reply(reply + "\n");
+		}
+	}
+
+	/**
+	 * Set a parameter
+	 * @param num the number
+	 * @param param the parameter
+	 * @param value the value
+	 * @return true if valid
+	 */
+	private synchronized boolean set(char num, char param, String value) {
+		int ch = num - '1';
+		try {
+			switch (param) {
+			case 'f':
+				double f = Long.parseLong(value) / 100.0;
+				if (num == '3') {
+					sweep.start = f;
+				} else if (num == '4') {
+					sweep.end = f;
+				} else if (ch == 0 || ch == 1) {
+					setFrequency(ch, f);
+				} else {
+					return false;
+				}
+				return true;
+			case 'g':
+				counter.gate = Character.digit(num, 10);
+				return true;
+			case 'm':
+				counter.mode = Character.digit(num, 10);
+				return true;
+			case 'u':
+				save(Character.digit(num, 16));
+				return true;
+			case 'v':
+				load(Character.digit(num, 16));
+				return true;
+			case 't':
+				sweep.time = Integer.parseInt(value);
+				return true;
+			case 'b':
+				return setFlag(num, Integer.parseInt(value));
+			default:
+				break;
+			}
+			if (ch != 0 && ch != 1) {
+				return false;
+			}
+			var c = channels[ch];
+			switch (param) {
+			case 'a': c.amplitude = Integer.parseInt(value) / 100.0; return true;
+			case 'd': c.duty = Integer.parseInt(value) / 10.0; return true;
+			case 'o': c.offset = Integer.parseInt(value) - 120.0; return true;
+			case 'p': c.phase = Integer.parseInt(value); return true;
+			case 'w': c.waveform = Integer.parseInt(value); return true;
+			case 'y': c.attenuation = Integer.parseInt(value); return true;
+			default: return false;
+			}
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Set a flag
+	 * @param num the flag
+	 * @param v the value
+	 * @return true if valid
+	 */
+	private boolean setFlag(char num, int v) {
+		switch (num) {
+		case '5':
+			if (v != 0) {
+				resetCounter();
+			}
+			break;
+		case '6':
+			setCounterRunning(v != 0);
+			break;
+		case '7':
+			sweep.log = v != 0;
+			break;
+		case '8':
+			setSweepRunning(v != 0);
+			break;
+		case 'a':
+			channels[1].inverted = v != 0;
+			break;
+		case 'b':
+			channels[0].inverted = v != 0;
+			break;
+		default:
+			if (num < '0' || num > '9') {
+				return false;
+			}
+			break;
+		}
+		flags.put(num, v);
+		return true;
+	}
+
+	/**
+	 * Read a parameter
+	 * @param num the number
+	 * @param param the parameter
+	 * @return the reply, or null if invalid
+	 */
+	private synchronized String read(char num, char param) {
+		var prefix = ":r" + num + param;
+		int ch = num - '1';
+		switch (param) {
+		case 'c':
+			return prefix + (num == '0' ? MODEL : num == '1' ? PRODUCT : FIRMWARE);
+		case 'e':
+			return prefix + readCounter();
+		case 'g':
+			return ":r" + counter.gate + param;
+		case 'm':
+			return ":r" + counter.mode + param;
+		case 't':
+			return prefix + (int) sweep.time;
+		case 'b':
+			return prefix + flags.getOrDefault(num, 0);
+		case 'f':
+			if (num == '3' || num == '4') {
+				return prefix + String.format("%010d", Math.round((num == '3' ? sweep.start : sweep.end) * 100));
+			}
+			break;
+		default:
+			break;
+		}
+		if (ch != 0 && ch != 1) {
+			return null;
+		}
+		var c = channels[ch];
+		switch (param) {
+		case 'f': return prefix + String.format("%010d", Math.round(c.frequency * 100));
+		case 'a': return prefix + Math.round(c.amplitude * 100);
+		case 'd': return prefix + Math.round(c.duty * 10);
+		case 'o': return prefix + Math.round(c.offset + 120);
+		case 'p': return prefix + Math.round(c.phase);
+		case 'w': return prefix + c.waveform;
+		case 'y': return prefix + c.attenuation;
+		default: return null;
+		}
+	}
+
+	/**
+	 * Write one slice of an arbitrary waveform
+	 * @param num the waveform number
+	 * @param slice the slice number
+	 * @param value comma separated samples
+	 * @return true if valid
+	 */
+	private synchronized boolean writeSlice(char num, char slice, String value) {
+		int n = Character.digit(num, 16);
+		int s = Character.digit(slice, 16);
+		if (n < 0 || s < 0) {
+			return false;
+		}
+		var samples = value.split("\\s*,\\s*");
+		var slot = arbSlots[n];
+		try {
+			for (int i = 0; i < SerialCom5200.SAMPLES_PER_SLICE; i++) {
+				int v = i < samples.length ? Integer.parseInt(samples[i].trim()) : 0;
+				slot[s * SerialCom5200.SAMPLES_PER_SLICE + i] = Math.clamp(v, 0, 4096);
+			}
+		} catch (NumberFormatException e) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Read one slice of an arbitrary waveform
+	 * @param num the waveform number
+	 * @param slice the slice number
+	 * @return the reply, or null if invalid
+	 */
+	private synchronized String readSlice(char num, char slice) {
+		int n = Character.digit(num, 16);
+		int s = Character.digit(slice, 16);
+		if (n < 0 || s < 0) {
+			return null;
+		}
+		var buf = new StringBuilder(":b").append(num).append(slice);
+		for (int i = 0; i < SerialCom5200.SAMPLES_PER_SLICE; i++) {
+			if (i > 0) {
+				buf.append(',');
+			}
+			buf.append(arbSlots[n][s * SerialCom5200.SAMPLES_PER_SLICE + i]);
+		}
+		return buf.toString();
+	}
+}
@@ -0,0 +1,334 @@
+package se.wetterstrom.jfuncgen;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Amplitude, frequency or pulse width modulation of a channel, emulated
+ * by updating the parameter from the host at a fixed rate.
+ * <p>
+ * One period of the modulation is precomputed as the command bytes of
+ * {@link #TABLE_SIZE} points. Update k is due at k divided by the update
+ * rate after the start, so the schedule does not drift, and writes the
+ * point of the modulation phase at its due time, so the modulation
+ * frequency is exact whatever the ratio of the rates. If the updates fall
+ * behind, updates whose successor is also due are skipped. Replies and
+ * acknowledges are not waited for until the end. Running on a virtual thread the
+ * updates are paced by sleeping only, on a platform thread by sleeping
+ * and then spinning for less jitter. When done the unmodulated value is
+ * written back.
+ */
+public class Modulation {
+
+	/** Number of points of the precomputed period */
+	public static final int TABLE_SIZE = 1024;
+	/** Number of recent updates of the jitter metrics */
+	private static final int JITTER_WINDOW = 1024;
+
+	/**
+	 * Modulation type
+	 */
+	public enum Type {
+		/** amplitude, the depth being a fraction of the carrier amplitude */
+		AM(DeviceParameter.AMPLITUDE),
+		/** frequency, the depth being the deviation in Hz */
+		FM(DeviceParameter.FREQUENCY),
+		/** pulse width, the depth being the deviation of the duty cycle in % */
+		PWM(DeviceParameter.DUTY);
+
+		/** the parameter updated */
+		final DeviceParameter parameter;
+
+		private Type(DeviceParameter parameter) {
+			this.parameter = parameter;
+		}
+	}
+
+	/**
+	 * Modulation wave form
+	 */
+	public enum Shape {
+		/** sine */
+		SINE,
+		/** triangle */
+		TRIANGLE,
+		/** square */
+		SQUARE,
+		/** rising saw tooth */
+		SAWTOOTH;
+
+		/**
+		 * @param phase the phase, 0 to 1
+		 * @return the value, -1 to 1
+		 */
+		double value(double phase) {
+			switch (this) {
+			case TRIANGLE: return phase < 0.25 ? 4 * phase : phase < 0.75 ? 2 - 4 * phase : 4 * phase - 4;
+			case SQUARE: return phase < 0.5 ? 1 : -1;
+			case SAWTOOTH: return 2 * phase - 1;
+			case SINE:
+			default: return Math.sin(2 * Math.PI * phase);
+			}
+		}
+	}
+
+	/**
+	 * The live metrics
+	 * @param updates the number of updates written
+	 * @param coalesced the number of updates skipped because the next update was due
+	 * @param errors the number of updates that could not be written
+	 * @param elapsed the time since the start in nanoseconds
+	 * @param jitter the lateness of the recent updates
+	 */
+	public record Metrics(long updates, long coalesced, long errors, long elapsed, Sequencer.Jitter jitter) {
+		/**
+		 * @return the achieved rate in updates written per second
+		 */
+		public double rate() {
+			return elapsed > 0 ? updates * 1e9 / elapsed : 0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "%d updates, %d coalesced, %d failed, %.3f s, %.1f updates/s, recent lateness mean %.3f ms, stddev %.3f ms, max %.3f ms, 95%% within %.3f ms",
+					updates, coalesced, errors, elapsed / 1e9, rate(), jitter.mean() / 1e6, jitter.stddev() / 1e6, jitter.max() / 1e6, jitter.p95() / 1e6);
+		}
+	}
+
+	/** the channel */
+	private final int channel;
+	/** the type */
+	private final Type type;
+	/** the wave form */
+	private final Shape shape;
+	/** the unmodulated value */
+	private final double carrier;
+	/** the depth */
+	private final double depth;
+	/** the modulation frequency in Hz */
+	private final double frequency;
+	/** the update rate per second */
+	private final double rate;
+
+	/** true if canceled */
+	private volatile boolean canceled;
+	/** the thread, or null if not started */
+	private Thread thread;
+	/** the clock of the running driver */
+	private volatile Clock clock = Clock.system();
+	/** the start time */
+	private volatile long start;
+	/** the number of updates written */
+	private volatile long updates;
+	/** the number of updates skipped */
+	private volatile long coalesced;
+	/** the number of updates not written */
+	private volatile long errors;
+	/** the lateness of the recent updates */
+	private final long[] lateness = new long[JITTER_WINDOW];
+
+	/**
+	 * Constructor
+	 * @param channel the channel
+	 * @param type the type
+	 * @param shape the wave form
+	 * @param carrier the unmodulated amplitude, frequency or duty cycle
+	 * @param depth the fraction of the amplitude, or the deviation of the frequency or duty cycle
+	 * @param frequency the modulation frequency in Hz, at most half the update rate
+	 * @param rate the update rate per second
+	 */
+	public Modulation(int channel, Type type, Shape shape, double carrier, double depth, double frequency, double rate) {
+		if (!(rate > 0) || !(frequency > 0) || frequency > rate / 2) {
+			throw new IllegalArgumentException("Expected a modulation frequency of at most half the update rate");
+		}
+		this.channel = channel;
+		this.type = type;
+		this.shape = shape;
+		this.carrier = carrier;
+		this.depth = depth;
+		this.frequency = frequency;
+		this.rate = rate;
+	}
+
+	/**
+	 * Compute the parameter values of one period
+	 * @return the values of {@link #TABLE_SIZE} equally spaced phases
+	 */
+	public double[] getValues() {
+		var values = new double[TABLE_SIZE];
+		for (int i = 0; i < values.length; i++) {
+			double m = shape.value((double) i / TABLE_SIZE);
+			values[i] = type == Type.AM ? carrier * (1 + depth * m) : carrier + depth * m;
+		}
+		return values;
+	}
+
+	/**
+	 * Encode the commands of one period
+	 * @param com the driver
+	 * @return the commands of {@link #TABLE_SIZE} equally spaced phases
+	 * @throws IllegalArgumentException if a value is invalid or the link is too slow for the update rate
+	 */
+	String[] encode(AbstractSerialCom com) {
+		var values = getValues();
+		var commands = new String[values.length];
+		int longest = 0;
+		for (int i = 0; i < values.length; i++) {
+			commands[i] = type.parameter.encode(com, channel, Double.toString(values[i]));
+			longest = Math.max(longest, commands[i].length());
+		}
+		double max = com.getBytesPerSecond() / Math.max(1, longest);
+		if (rate > max) {
+			throw new IllegalArgumentException(String.format(Locale.US, "The serial link allows at most %.0f updates/s", max));
+		}
+		return commands;
+	}
+
+	/**
+	 * Stop after the current update
+	 */
+	public void cancel() {
+		canceled = true;
+	}
+
+	/**
+	 * Start in the background
+	 * @param com the driver
+	 * @param duration the time in nanoseconds
+	 * @param virtual true to pace on a virtual thread, sleeping only
+	 * @throws IllegalArgumentException if a value is invalid or the link is too slow for the update rate
+	 */
+	public synchronized void start(AbstractSerialCom com, long duration, boolean virtual) {
+		if (thread != null && thread.isAlive()) {
+			throw new IllegalStateException("Already running");
+		}
+		var commands = encode(com);
+		canceled = false;
+		var builder = virtual ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+		thread = builder.name("modulation-" + channel).start(() -> modulate(com, commands, duration));
+	}
+
+	/**
+	 * Wait for the background run to end
+	 * @param millis the max time to wait
+	 * @return true if not running
+	 * @throws InterruptedException if interrupted
+	 */
+	public boolean await(long millis) throws InterruptedException {
+		Thread t;
+		synchronized (this) {
+			t = thread;
+		}
+		return t == null || t.join(Duration.ofMillis(millis));
+	}
+
+	/**
+	 * Run in the calling thread until the time has passed or canceled
+	 * @param com the driver
+	 * @param duration the time in nanoseconds
+	 * @return the metrics
+	 * @throws IllegalArgumentException if a value is invalid or the link is too slow for the update rate
+	 */
+	public Metrics run(AbstractSerialCom com, long duration) {
+		var commands = encode(com);
+		canceled = false;
+		modulate(com, commands, duration);
+		return getMetrics();
+	}
+
+	/**
+	 * @return the metrics of the current or last run
+	 */
+	public Metrics getMetrics() {
+		long n = updates;
+		long[] recent;
+		synchronized (lateness) {
+			recent = Arrays.copyOf(lateness, (int) Math.min(n, JITTER_WINDOW));
+		}
+		return new Metrics(n, coalesced, errors, clock.nanoTime() - start, Sequencer.Jitter.of(recent, (int) Math.min(errors, Integer.MAX_VALUE)));
+	}
+
+	/**
+	 * Write the updates
+	 * @param com the driver
+	 * @param commands the commands of one period
+	 * @param duration the time in nanoseconds
+	 */
+	private void modulate(AbstractSerialCom com, String[] commands, long duration) {
+		clock = com.getClock();
+		updates = 0;
+		coalesced = 0;
+		errors = 0;
+		start = clock.nanoTime();
+		double cycles = frequency / rate;
+		// the number of lines received in reply to the updates
+		var received = new long[1];
+		for (long k = 0; !canceled; k++) {
+			long due = due(k);
+			if (due >= duration) {
+				break;
+			}
+			if (clock.nanoTime() - start >= due(k + 1)) {
+				// behind, the next update is already due
+				coalesced++;
+				continue;
+			}
+			if (!Sequencer.waitUntil(clock, start + due)) {
+				break;
+			}
+			var command = commands[(int) ((k * cycles) % 1.0 * TABLE_SIZE) % TABLE_SIZE];
+			boolean written = command.isEmpty() || com.locked(() -> {
+				// drop the acknowledges of the previous updates
+				received[0] += drain(com);
+				return com.writeSerial(command);
+			});
+			long late = clock.nanoTime() - start - due;
+			synchronized (lateness) {
+				lateness[(int) (updates % JITTER_WINDOW)] = late;
+				updates++;
+			}
+			if (!written) {
+				errors++;
+			}
+		}
+		long written = updates - errors;
+		// back to the unmodulated value
+		com.locked(() -> {
+			// wait for the acknowledges still on the way, so they are not taken for the one of the value
+			received[0] += drain(com);
+			for (long i = written - received[0]; i > 0 && com.awaitAck(); i--) {
+				// acknowledged
+			}
+			com.serialListener.flush();
+			try {
+				type.parameter.set(com, channel, Double.toString(carrier));
+			} catch (IllegalArgumentException e) {
+				errors++;
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Drop the received lines
+	 * @param com the driver
+	 * @return the number of lines dropped
+	 */
+	private static int drain(AbstractSerialCom com) {
+		int n = 0;
+		for (int i = com.serialListener.size(); i > 0 && com.serialListener.poll(0) != null; i--) {
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * @param k the update
+	 * @return the due time of the update from the start in nanoseconds
+	 */
+	private long due(long k) {
+		return Math.round(k * (TimeUnit.SECONDS.toNanos(1) / rate));
+	}
+}
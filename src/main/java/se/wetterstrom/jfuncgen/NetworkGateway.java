@@ -0,0 +1,463 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * TCP server sharing one device with many clients, such as test scripts
+ * running while the GUI owns the serial port.
+ * <p>
+ * Each client has a virtual thread reading its commands, one per line, and
+ * another one writing the replies, one line per command in command order.
+ * A single dispatcher thread executes the commands on the driver, taking
+ * one command from each client with pending commands in turn, so a client
+ * sending many commands does not delay the others. Each command holds the
+ * port lock of the driver, so it is not interleaved with the requests of
+ * the GUI.
+ * <p>
+ * Parameter reads are answered from a cache while the value is younger than
+ * the max age, so polling clients do not multiply the serial traffic. The
+ * cache is cleared by every command that changes the device state, and a
+ * value is not used after anything else, such as the GUI, wrote to the
+ * device since it was read.
+ * <p>
+ * The protocol is SCPI-like. Mnemonics are case-insensitive and may be
+ * shortened to their first four letters:
+ * <pre>
+ * *IDN?                       jfuncgen,&lt;device&gt;,&lt;model&gt;,&lt;firmware&gt;
+ * [SOURce&lt;n&gt;:]&lt;parameter&gt;?   read a parameter of channel n, default 1
+ * [SOURce&lt;n&gt;:]&lt;parameter&gt; &lt;value&gt;  write a parameter, replies OK
+ * *SAV &lt;n&gt;, *RCL &lt;n&gt;          store and load settings, replies OK
+ * *OPC?                       1
+ * </pre>
+ * The parameters are those of {@link DeviceParameter}. Failed commands are
+ * answered with <code>ERR</code> and a message.
+ */
+public class NetworkGateway implements AutoCloseable {
+
+	/** Default max age of cached values, in milliseconds */
+	public static final long DEFAULT_MAX_AGE = 200;
+	/** Max number of commands of a client waiting to be executed */
+	private static final int MAX_PENDING = 64;
+
+	/** the device */
+	private final Supplier<AbstractSerialCom> device;
+	/** the max age of cached values in nanoseconds */
+	private final long maxAge;
+	/** the lock of the queue of clients */
+	private final ReentrantLock queueLock = new ReentrantLock();
+	/** signalled when a client is queued */
+	private final Condition queued = queueLock.newCondition();
+	/** the clients with pending commands, in turn */
+	private final Queue<Client> turns = new ArrayDeque<>();
+	/** the connected clients */
+	private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+	/** the cached values by parameter and channel, only used by the dispatcher */
+	private final Map<String, Cached> cache = new HashMap<>();
+	/** the device of the cached values */
+	private AbstractSerialCom cachedDevice;
+	/** number of commands executed on the device */
+	private final AtomicLong deviceCommands = new AtomicLong();
+	/** number of reads answered from the cache */
+	private final AtomicLong cacheHits = new AtomicLong();
+	/** the server socket, or null if not started */
+	private volatile ServerSocket server;
+	/** the dispatcher thread */
+	private Thread dispatcher;
+
+	/**
+	 * A cached value
+	 * @param value the value
+	 * @param time the time of the read
+	 * @param writes the write count of the driver before the read
+	 */
+	private record Cached(String value, long time, long writes) {}
+
+	/**
+	 * A command
+	 * @param line the command line
+	 * @param reply the reply
+	 */
+	private record Command(String line, CompletableFuture<String> reply) {}
+
+	/**
+	 * Constructor
+	 * @param device supplies the current device
+	 * @param maxAge the max age of cached values in milliseconds, 0 to not cache
+	 */
+	public NetworkGateway(Supplier<AbstractSerialCom> device, long maxAge) {
+		this.device = device;
+		this.maxAge = TimeUnit.MILLISECONDS.toNanos(maxAge);
+	}
+
+	/**
+	 * Start the gateway configured in {@link Config}, if any, serving the device of the configured type
+	 * @return the gateway, or null if not configured or failed to start
+	 */
+	public static NetworkGateway startConfigured() {
+		int port = Config.getGatewayPort();
+		if (port <= 0) {
+			return null;
+		}
+		var gateway = new NetworkGateway(() -> Config.getDeviceType().getSerialCom(), DEFAULT_MAX_AGE);
+		try {
+			gateway.start(new InetSocketAddress(Config.getGatewayAddress(), port));
+			return gateway;
+		} catch (IOException e) {
+			System.err.println("Failed to start the network gateway on port " + port + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Start listening
+	 * @param address the address, port 0 for any free port
+	 * @return the port
+	 * @throws IOException if failed to listen
+	 */
+	public synchronized int start(InetSocketAddress address) throws IOException {
+		if (server != null) {
+			throw new IllegalStateException("Already started");
+		}
+		var ss = new ServerSocket();
+		ss.setReuseAddress(true);
+		ss.bind(address);
+		server = ss;
+		dispatcher = Thread.ofVirtual().name("gateway-dispatcher").start(this::dispatch);
+		Thread.ofVirtual().name("gateway-accept").start(() -> accept(ss));
+		return ss.getLocalPort();
+	}
+
+	/**
+	 * @return the TCP port, or -1 if not started
+	 */
+	public int getPort() {
+		var ss = server;
+		return ss != null ? ss.getLocalPort() : -1;
+	}
+
+	/**
+	 * @return the number of connected clients
+	 */
+	public int getClientCount() {
+		return clients.size();
+	}
+
+	/**
+	 * @return the number of commands executed on the device
+	 */
+	public long getDeviceCommands() {
+		return deviceCommands.get();
+	}
+
+	/**
+	 * @return the number of reads answered from the cache
+	 */
+	public long getCacheHits() {
+		return cacheHits.get();
+	}
+
+	@Override
+	public synchronized void close() {
+		var ss = server;
+		server = null;
+		if (ss == null) {
+			return;
+		}
+		try {
+			ss.close();
+		} catch (IOException e) {
+			// closing
+		}
+		clients.forEach(Client::close);
+		dispatcher.interrupt();
+	}
+
+	/**
+	 * Accept clients until closed
+	 * @param ss the server socket
+	 */
+	private void accept(ServerSocket ss) {
+		while (!ss.isClosed()) {
+			try {
+				var socket = ss.accept();
+				socket.setTcpNoDelay(true);
+				var client = new Client(socket);
+				clients.add(client);
+				Thread.ofVirtual().name("gateway-" + socket.getRemoteSocketAddress()).start(client::read);
+				Thread.ofVirtual().name("gateway-reply-" + socket.getRemoteSocketAddress()).start(client::write);
+			} catch (IOException e) {
+				// closed
+			}
+		}
+	}
+
+	/**
+	 * Execute the commands of the clients in turn until closed
+	 */
+	private void dispatch() {
+		while (server != null) {
+			Client client;
+			Command cmd;
+			queueLock.lock();
+			try {
+				while (turns.isEmpty()) {
+					queued.await();
+				}
+				client = turns.poll();
+				cmd = client.commands.poll();
+				if (!client.commands.isEmpty()) {
+					turns.add(client);
+				} else {
+					client.queued = false;
+				}
+			} catch (InterruptedException e) {
+				return;
+			} finally {
+				queueLock.unlock();
+			}
+			try {
+				cmd.reply.complete(execute(cmd.line));
+			} catch (RuntimeException e) {
+				cmd.reply.complete("ERR " + (e.getMessage() != null ? e.getMessage() : e.toString()));
+			}
+		}
+	}
+
+	/**
+	 * Queue a command of a client
+	 * @param client the client
+	 * @param cmd the command
+	 */
+	private void submit(Client client, Command cmd) {
+		queueLock.lock();
+		try {
+			client.commands.add(cmd);
+			if (!client.queued) {
+				client.queued = true;
+				turns.add(client);
+				queued.signal();
+			}
+		} finally {
+			queueLock.unlock();
+		}
+	}
+
+	/**
+	 * Execute a command, on the dispatcher thread
+	 * @param line the command line
+	 * @return the reply
+	 * @throws IllegalArgumentException if the command is invalid or failed
+	 */
+	String execute(String line) {
+		var com = device.get();
+		if (com != cachedDevice) {
+			cache.clear();
+			cachedDevice = com;
+		}
+		var cmd = line.trim();
+		int space = cmd.indexOf(' ');
+		var header = (space < 0 ? cmd : cmd.substring(0, space)).toUpperCase(Locale.US);
+		var arg = space < 0 ? "" : cmd.substring(space + 1).trim();
+
+		switch (header) {
+		case "*IDN?":
+			return "jfuncgen," + com.getDeviceType() + "," + read(com, DeviceParameter.MODEL, 1) + "," + read(com, DeviceParameter.FIRMWARE, 1);
+		case "*OPC?":
+			return "1";
+		case "*SAV", "*RCL":
+			int num = Integer.parseInt(arg);
+			cache.clear();
+			deviceCommands.incrementAndGet();
+			return com.locked(() -> {
+				// drop stale acknowledges of the GUI
+				com.serialListener.flush();
+				if (header.equals("*SAV")) {
+					com.saveSettings(num);
+				} else {
+					com.loadSettings(num);
+				}
+				if (!com.isOnline() || !com.awaitAck()) {
+					throw new IllegalArgumentException("Not acknowledged");
+				}
+				return "OK";
+			});
+		default:
+			break;
+		}
+
+		int channel = 1;
+		var mnemonic = header;
+		int colon = mnemonic.indexOf(':');
+		if (colon >= 0) {
+			var source = mnemonic.substring(0, colon);
+			if (!source.startsWith("SOUR")) {
+				throw new IllegalArgumentException("Unknown header: " + header);
+			}
+			var digits = source.replaceFirst("^SOUR(CE)?", "");
+			channel = digits.isEmpty() ? 1 : DeviceParameter.parseChannel(digits);
+			mnemonic = mnemonic.substring(colon + 1);
+		}
+		boolean query = mnemonic.endsWith("?");
+		var param = parameter(query ? mnemonic.substring(0, mnemonic.length() - 1) : mnemonic);
+		if (query) {
+			return read(com, param, channel);
+		}
+		if (arg.isEmpty()) {
+			throw new IllegalArgumentException("Missing value: " + header);
+		}
+		cache.clear();
+		deviceCommands.incrementAndGet();
+		param.set(com, channel, arg);
+		return "OK";
+	}
+
+	/**
+	 * Read a parameter, from the cache if fresh
+	 * @param com the driver
+	 * @param param the parameter
+	 * @param channel the channel
+	 * @return the value
+	 */
+	private String read(AbstractSerialCom com, DeviceParameter param, int channel) {
+		var key = param.channel ? param.key + channel : param.key;
+		var now = com.getClock().nanoTime();
+		var cached = cache.get(key);
+		if (cached != null && now - cached.time < maxAge && cached.writes == com.getWriteCount()) {
+			cacheHits.incrementAndGet();
+			return cached.value;
+		}
+		deviceCommands.incrementAndGet();
+		long writes = com.getWriteCount();
+		var value = com.locked(() -> param.get(com, channel));
+		cache.put(key, new Cached(value, now, writes));
+		return value;
+	}
+
+	/**
+	 * Find the parameter of a mnemonic, the key or at least its first four letters
+	 * @param mnemonic the mnemonic
+	 * @return the parameter
+	 * @throws IllegalArgumentException if not found
+	 */
+	private static DeviceParameter parameter(String mnemonic) {
+		var m = mnemonic.toLowerCase(Locale.US);
+		for (var p : DeviceParameter.values()) {
+			if (p.key.equals(m) || (m.length() >= 4 && p.key.startsWith(m))) {
+				return p;
+			}
+		}
+		throw new IllegalArgumentException("Unknown header: " + mnemonic);
+	}
+
+	/**
+	 * A connected client
+	 */
+	private final class Client {
+		/** the socket */
+		private final Socket socket;
+		/** the commands waiting to be executed, guarded by the queue lock */
+		private final Queue<Command> commands = new ArrayDeque<>();
+		/** the replies in command order */
+		private final BlockingQueue<CompletableFuture<String>> replies = new LinkedBlockingQueue<>();
+		/** limits the number of commands waiting to be executed */
+		private final Semaphore pending = new Semaphore(MAX_PENDING);
+		/** true if waiting for a turn, guarded by the queue lock */
+		private boolean queued;
+
+		/**
+		 * Constructor
+		 * @param socket the socket
+		 */
+		Client(Socket socket) {
+			this.socket = socket;
+		}
+
+		/**
+		 * Read and queue commands until disconnected
+		 */
+		void read() {
+			try (var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1))) {
+				String line;
+				while ((line = in.readLine()) != null) {
+					if (line.isBlank()) {
+						continue;
+					}
+					pending.acquire();
+					var cmd = new Command(line, new CompletableFuture<>());
+					replies.add(cmd.reply);
+					submit(this, cmd);
+				}
+			} catch (IOException e) {
+				// disconnected
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			// end of input, the writer stops after the last reply
+			replies.add(CompletableFuture.completedFuture(null));
+		}
+
+		/**
+		 * Write the replies in command order until disconnected
+		 */
+		void write() {
+			try (var out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.ISO_8859_1))) {
+				while (true) {
+					var reply = replies.take().join();
+					if (reply == null) {
+						break;
+					}
+					pending.release();
+					out.write(reply);
+					out.write('\n');
+					if (replies.isEmpty() || !replies.peek().isDone()) {
+						out.flush();
+					}
+				}
+			} catch (IOException e) {
+				// disconnected
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				close();
+				// unblock the reader
+				pending.release(MAX_PENDING);
+			}
+		}
+
+		/**
+		 * Close the connection
+		 */
+		void close() {
+			clients.remove(this);
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// closing
+			}
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A host side preset: the channel parameters of both channels, kept in a
+ * text file instead of a device memory.
+ * <p>
+ * A preset is captured from the known device state, read in one pass
+ * holding the driver lock, and applied as one {@link DeviceTransaction}
+ * against the known state, so only the parameters that differ are sent
+ * and nothing has to be read back. The file has one
+ * <code>&lt;parameter&gt; &lt;channel&gt; &lt;value&gt;</code> line per
+ * value, as the <code>set</code> command of the command line, and
+ * <code>#</code> comments.
+ */
+public class Preset {
+
+	/**
+	 * A value of the preset
+	 * @param parameter the parameter
+	 * @param channel the channel
+	 * @param value the value as text
+	 */
+	public record Value(DeviceParameter parameter, int channel, String value) {
+		@Override
+		public String toString() {
+			return parameter + " " + channel + " " + value;
+		}
+	}
+
+	/** the values */
+	private final List<Value> values;
+
+	/**
+	 * Constructor
+	 * @param values the values
+	 */
+	public Preset(List<Value> values) {
+		this.values = List.copyOf(values);
+	}
+
+	/**
+	 * Capture the channel parameters of a known device state
+	 * @param state the state, see {@link DeviceTransaction.State#read(AbstractSerialCom)}
+	 * @return the preset of the known values
+	 */
+	public static Preset of(DeviceTransaction.State state) {
+		var values = new ArrayList<Value>();
+		for (int ch = 1; ch <= 2; ch++) {
+			for (var p : DeviceParameter.values()) {
+				var value = p.channel ? state.get(p, ch) : null;
+				if (value != null) {
+					values.add(new Value(p, ch, value));
+				}
+			}
+		}
+		return new Preset(values);
+	}
+
+	/**
+	 * @return the values
+	 */
+	public List<Value> getValues() {
+		return values;
+	}
+
+	/**
+	 * Apply the values that differ from the known state
+	 * @param com the driver
+	 * @param state the known state, updated with the values
+	 * @return the result
+	 * @throws IllegalArgumentException if a value is invalid or not acknowledged
+	 */
+	public DeviceTransaction.Result apply(AbstractSerialCom com, DeviceTransaction.State state) {
+		var tx = new DeviceTransaction();
+		values.forEach(v -> tx.set(v.parameter, v.channel, v.value));
+		return tx.commit(com, state);
+	}
+
+	/**
+	 * Read a preset file
+	 * @param path the file
+	 * @return the preset
+	 * @throws IOException if the file can not be read
+	 * @throws IllegalArgumentException if a line is invalid
+	 */
+	public static Preset read(Path path) throws IOException {
+		var values = new ArrayList<Value>();
+		for (var line : Files.readAllLines(path, StandardCharsets.ISO_8859_1)) {
+			line = line.trim();
+			if (!line.isEmpty() && !line.startsWith("#")) {
+				var fields = line.split("\\s+", 3);
+				if (fields.length < 3) {
+					throw new IllegalArgumentException("Expected parameter, channel and value: " + line);
+				}
+				var p = DeviceParameter.of(fields[0]);
+				if (!p.channel || !p.isWritable()) {
+					throw new IllegalArgumentException("Not a channel parameter: " + fields[0]);
+				}
+				values.add(new Value(p, DeviceParameter.parseChannel(fields[1]), fields[2]));
+			}
+		}
+		return new Preset(values);
+	}
+
+	/**
+	 * Write a preset file
+	 * @param path the file
+	 * @throws IOException if the file can not be written
+	 */
+	public void write(Path path) throws IOException {
+		var lines = new ArrayList<String>();
+		lines.add("# jfuncgen preset");
+		values.forEach(v -> lines.add(v.toString()));
+		Files.write(path, lines, StandardCharsets.ISO_8859_1);
+	}
+}
@@ -0,0 +1,41 @@
+package se.wetterstrom.jfuncgen;
+
+/**
+ * Progress of a long operation, such as an arbitrary wave form transfer.
+ * The GUI shows it in a progress monitor, the command line ignores it.
+ */
+public interface Progress {
+
+	/** Progress that is never canceled and not shown */
+	Progress NONE = new Progress() {
+		@Override
+		public boolean isCanceled() {
+			return false;
+		}
+
+		@Override
+		public void setProgress(int progress) {
+			// not shown
+		}
+
+		@Override
+		public void close() {
+			// not shown
+		}
+	};
+
+	/**
+	 * Check if canceled by the user
+	 * @return true if canceled
+	 */
+	boolean isCanceled();
+
+	/**
+	 * Set progress
+	 * @param progress the progress, 0 to the number of samples
+	 */
+	void setProgress(int progress);
+
+	/** Close, the operation has ended */
+	void close();
+}
@@ -0,0 +1,160 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.Arrays;
+
+/**
+ * Fixed capacity ring of time stamped samples in primitive arrays,
+ * overwriting the oldest sample when full. All methods are thread safe.
+ */
+class SampleRing {
+
+	/** the time stamps in nanoseconds */
+	private final long[] time;
+	/** the values */
+	private final double[] value;
+	/** index of the oldest sample */
+	private int head = 0;
+	/** number of samples */
+	private int size = 0;
+	/** number of samples ever added */
+	private long total = 0;
+
+	/**
+	 * Constructor
+	 * @param capacity max number of samples
+	 */
+	SampleRing(int capacity) {
+		time = new long[Math.max(1, capacity)];
+		value = new double[time.length];
+	}
+
+	/**
+	 * Add a sample, overwriting the oldest if full
+	 * @param t the time stamp in nanoseconds, not before the previous sample
+	 * @param v the value
+	 */
+	public synchronized void add(long t, double v) {
+		int tail = (head + size) % time.length;
+		time[tail] = t;
+		value[tail] = v;
+		if (size < time.length) {
+			size++;
+		} else {
+			head = (head + 1) % time.length;
+		}
+		total++;
+	}
+
+	/**
+	 * @return the number of samples
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * @return the max number of samples
+	 */
+	public int capacity() {
+		return time.length;
+	}
+
+	/**
+	 * @return the number of samples ever added
+	 */
+	public synchronized long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @param i the index, 0 is the oldest sample
+	 * @return the time stamp in nanoseconds
+	 */
+	public synchronized long getTime(int i) {
+		return time[index(i)];
+	}
+
+	/**
+	 * @param i the index, 0 is the oldest sample
+	 * @return the value
+	 */
+	public synchronized double getValue(int i) {
+		return value[index(i)];
+	}
+
+	/**
+	 * Copy the samples, oldest first
+	 * @param t the time stamps, or null
+	 * @param v the values, or null
+	 * @return the number of samples copied, limited by the length of the arrays
+	 */
+	public synchronized int copy(long[] t, double[] v) {
+		int count = Math.min(size, Math.min(t != null ? t.length : size, v != null ? v.length : size));
+		int first = Math.min(count, time.length - head);
+		if (t != null) {
+			System.arraycopy(time, head, t, 0, first);
+			System.arraycopy(time, 0, t, first, count - first);
+		}
+		if (v != null) {
+			System.arraycopy(value, head, v, 0, first);
+			System.arraycopy(value, 0, v, first, count - first);
+		}
+		return count;
+	}
+
+	/**
+	 * Decimate the samples of a time span into columns, the min and max
+	 * value of the samples of each column. NaN values are skipped.
+	 * @param from the start of the span in nanoseconds
+	 * @param to the end of the span in nanoseconds, after from
+	 * @param min the min value of each column, NaN if the column has no samples
+	 * @param max the max value of each column, NaN if the column has no samples
+	 * @return the number of samples in the span
+	 */
+	public synchronized int decimate(long from, long to, double[] min, double[] max) {
+		int columns = Math.min(min.length, max.length);
+		Arrays.fill(min, 0, columns, Double.NaN);
+		Arrays.fill(max, 0, columns, Double.NaN);
+		double scale = (double) columns / (to - from);
+		int count = 0;
+		// newest first, stopping at the first sample before the span
+		for (int i = size - 1; i >= 0; i--) {
+			int k = index(i);
+			long t = time[k];
+			if (t < from) {
+				break;
+			}
+			double v = value[k];
+			if (t >= to || Double.isNaN(v)) {
+				continue;
+			}
+			int c = Math.min(columns - 1, (int) ((t - from) * scale));
+			if (!(min[c] <= v)) {
+				min[c] = v;
+			}
+			if (!(max[c] >= v)) {
+				max[c] = v;
+			}
+			count++;
+		}
+		return count;
+	}
+
+	/** Remove all samples */
+	public synchronized void clear() {
+		head = 0;
+		size = 0;
+		total = 0;
+	}
+
+	/**
+	 * @param i the index from the oldest sample
+	 * @return the index in the arrays
+	 */
+	private int index(int i) {
+		if (i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException(i);
+		}
+		return (head + i) % time.length;
+	}
+}
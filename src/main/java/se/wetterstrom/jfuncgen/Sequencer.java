@@ -0,0 +1,373 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a script of timed device commands.
+ * <p>
+ * Each line of a script is a command, optionally preceded by its time:
+ * <pre>
+ * # comment
+ * set frequency 1 1000
+ * +250ms set amplitude 1 2.5
+ * +250ms set waveform 1 arb3
+ * &#64;2s set output off
+ * </pre>
+ * <code>&#64;time</code> is the time from the start of the script,
+ * <code>+time</code> the time after the previous command and without a time
+ * the command follows the previous command at once. The unit is
+ * <code>us</code>, <code>ms</code> (default) or <code>s</code>. The commands
+ * are <code>set &lt;parameter&gt; [channel] &lt;value&gt;</code>,
+ * <code>get &lt;parameter&gt; [channel]</code>, <code>load &lt;n&gt;</code>,
+ * <code>save &lt;n&gt;</code> and <code>send &lt;raw command&gt;</code>, with
+ * the parameters of {@link DeviceParameter}.
+ * <p>
+ * A command is done when the device has acknowledged or answered it. To
+ * make that happen at the planned time, each command is started early by
+ * the average duration of the previous commands of the same kind. The wait
+ * sleeps on the clock of the driver until shortly before the start time
+ * and then spins. The planned, started and completed time of every command
+ * is recorded.
+ */
+public class Sequencer {
+
+	/** Time before the start to stop sleeping and spin, on the system clock */
+	private static final long SPIN_TIME = TimeUnit.MICROSECONDS.toNanos(500);
+	/** Weight of a new duration in the average duration of a kind of command */
+	private static final double DURATION_WEIGHT = 0.25;
+	/** the time of a command */
+	private static final Pattern TIME = Pattern.compile("([@+])(\\d+(?:\\.\\d*)?)(us|ms|s)?");
+
+	/**
+	 * A step of the script
+	 * @param line the line number
+	 * @param time the planned time from the start in nanoseconds
+	 * @param command the command
+	 * @param kind the kind of command, commands of the same kind are assumed to take the same time
+	 * @param action executes the command, returning the reply or null
+	 */
+	public record Step(int line, long time, String command, String kind, Function<AbstractSerialCom, String> action) {}
+
+	/**
+	 * The execution of a step
+	 * @param step the step
+	 * @param started the time the command was started, from the start in nanoseconds
+	 * @param completed the time the command was done, from the start in nanoseconds
+	 * @param reply the reply, or null if none
+	 * @param error the error message, or null if successful
+	 */
+	public record Result(Step step, long started, long completed, String reply, String error) {
+		/**
+		 * @return the time the command was done after the planned time, in nanoseconds
+		 */
+		public long lateness() {
+			return completed - step.time;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "%4d %10.3f %10.3f %+9.3f ms  %s%s", step.line, step.time / 1e6, completed / 1e6, lateness() / 1e6,
+					step.command, error != null ? "  ERROR " + error : reply != null ? "  -> " + reply : "");
+		}
+	}
+
+	/**
+	 * Statistics of the lateness of the steps
+	 * @param count the number of steps
+	 * @param mean the mean lateness in nanoseconds
+	 * @param stddev the standard deviation of the lateness in nanoseconds
+	 * @param min the min lateness in nanoseconds
+	 * @param max the max lateness in nanoseconds
+	 * @param p95 the 95th percentile of the absolute lateness in nanoseconds
+	 * @param errors the number of failed steps
+	 */
+	public record Jitter(int count, double mean, double stddev, long min, long max, long p95, int errors) {
+		/**
+		 * Compute the statistics
+		 * @param results the results
+		 * @return the statistics
+		 */
+		public static Jitter of(List<Result> results) {
+			var lateness = new long[results.size()];
+			int errors = 0;
+			for (int i = 0; i < lateness.length; i++) {
+				lateness[i] = results.get(i).lateness();
+				if (results.get(i).error != null) {
+					errors++;
+				}
+			}
+			return of(lateness, errors);
+		}
+
+		/**
+		 * Compute the statistics
+		 * @param lateness the lateness of each step in nanoseconds
+		 * @param errors the number of failed steps
+		 * @return the statistics
+		 */
+		public static Jitter of(long[] lateness, int errors) {
+			int n = lateness.length;
+			if (n == 0) {
+				return new Jitter(0, 0, 0, 0, 0, 0, errors);
+			}
+			var abs = new long[n];
+			long min = Long.MAX_VALUE;
+			long max = Long.MIN_VALUE;
+			double sum = 0;
+			double sum2 = 0;
+			for (int i = 0; i < n; i++) {
+				long l = lateness[i];
+				abs[i] = Math.abs(l);
+				min = Math.min(min, l);
+				max = Math.max(max, l);
+				sum += l;
+				sum2 += (double) l * l;
+			}
+			Arrays.sort(abs);
+			double mean = sum / n;
+			double stddev = Math.sqrt(Math.max(0, sum2 / n - mean * mean));
+			return new Jitter(n, mean, stddev, min, max, abs[Math.min(n - 1, (int) Math.ceil(0.95 * n) - 1)], errors);
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "%d steps, %d failed, lateness mean %.3f ms, stddev %.3f ms, min %.3f ms, max %.3f ms, 95%% within %.3f ms",
+					count, errors, mean / 1e6, stddev / 1e6, min / 1e6, max / 1e6, p95 / 1e6);
+		}
+	}
+
+	/** the steps */
+	private final List<Step> steps;
+	/** the average durations by kind of command in nanoseconds */
+	private final Map<String, Double> durations = new HashMap<>();
+	/** true if canceled */
+	private volatile boolean canceled;
+
+	/**
+	 * Constructor
+	 * @param steps the steps, in time order
+	 */
+	public Sequencer(List<Step> steps) {
+		this.steps = List.copyOf(steps);
+	}
+
+	/**
+	 * Load a script
+	 * @param file the file
+	 * @return the sequencer
+	 * @throws IOException if the file can not be read
+	 * @throws IllegalArgumentException if a line is invalid
+	 */
+	public static Sequencer load(Path file) throws IOException {
+		return parse(Files.readAllLines(file, StandardCharsets.ISO_8859_1));
+	}
+
+	/**
+	 * Parse a script
+	 * @param lines the lines
+	 * @return the sequencer
+	 * @throws IllegalArgumentException if a line is invalid
+	 */
+	public static Sequencer parse(List<String> lines) {
+		var steps = new ArrayList<Step>();
+		long time = 0;
+		for (int i = 0; i < lines.size(); i++) {
+			var line = lines.get(i).trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			try {
+				var args = line.split("\\s+");
+				int first = 0;
+				var m = TIME.matcher(args[0]);
+				if (m.matches()) {
+					long t = parseTime(m.group(2), m.group(3));
+					if (m.group(1).equals("@")) {
+						if (t < time) {
+							throw new IllegalArgumentException("Time before the previous command");
+						}
+						time = t;
+					} else {
+						time += t;
+					}
+					first = 1;
+				}
+				steps.add(step(i + 1, time, Arrays.copyOfRange(args, first, args.length)));
+			} catch (RuntimeException e) {
+				throw new IllegalArgumentException("Line " + (i + 1) + ": " + e.getMessage(), e);
+			}
+		}
+		return new Sequencer(steps);
+	}
+
+	/**
+	 * @return the steps
+	 */
+	public List<Step> getSteps() {
+		return steps;
+	}
+
+	/**
+	 * Stop running after the current step
+	 */
+	public void cancel() {
+		canceled = true;
+	}
+
+	/**
+	 * Run the steps. A failed step is recorded and the next step is run.
+	 * @param com the driver
+	 * @return the results of the steps that were run
+	 */
+	public List<Result> run(AbstractSerialCom com) {
+		canceled = false;
+		var clock = com.getClock();
+		var results = new ArrayList<Result>(steps.size());
+		long start = clock.nanoTime();
+		for (var step : steps) {
+			long lead = Math.round(durations.getOrDefault(step.kind, 0.0));
+			if (canceled || !waitUntil(clock, start + step.time - lead)) {
+				break;
+			}
+			long started = clock.nanoTime();
+			String reply = null;
+			String error = null;
+			try {
+				reply = com.locked(() -> step.action.apply(com));
+			} catch (RuntimeException e) {
+				error = e.getMessage() != null ? e.getMessage() : e.toString();
+			}
+			long completed = clock.nanoTime();
+			durations.merge(step.kind, (double) (completed - started), (a, b) -> a + DURATION_WEIGHT * (b - a));
+			results.add(new Result(step, started - start, completed - start, reply, error));
+		}
+		return results;
+	}
+
+	/**
+	 * Wait for a time, sleeping until shortly before it and then spinning on
+	 * the system clock. A virtual thread only sleeps, not to hold its carrier.
+	 * @param clock the clock
+	 * @param time the time
+	 * @return false if interrupted
+	 */
+	static boolean waitUntil(Clock clock, long time) {
+		boolean spin = clock == Clock.system() && !Thread.currentThread().isVirtual();
+		try {
+			long remaining;
+			while ((remaining = time - clock.nanoTime()) > 0) {
+				if (!spin) {
+					clock.sleep(remaining);
+				} else if (remaining > SPIN_TIME) {
+					clock.sleep(remaining - SPIN_TIME);
+				} else {
+					Thread.onSpinWait();
+				}
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Parse a time
+	 * @param value the value
+	 * @param unit us, ms, s or null for ms
+	 * @return the time in nanoseconds
+	 */
+	private static long parseTime(String value, String unit) {
+		double scale = unit == null || unit.equals("ms") ? 1e6 : unit.equals("s") ? 1e9 : 1e3;
+		return Math.round(Double.parseDouble(value) * scale);
+	}
+
+	/**
+	 * Create a step
+	 * @param line the line number
+	 * @param time the planned time
+	 * @param args the command and its arguments
+	 * @return the step
+	 */
+	private static Step step(int line, long time, String[] args) {
+		if (args.length == 0) {
+			throw new IllegalArgumentException("Missing command");
+		}
+		var command = String.join(" ", args);
+		var name = args[0].toLowerCase(Locale.US);
+		switch (name) {
+		case "get", "set": {
+			if (args.length < 2) {
+				throw new IllegalArgumentException("Missing parameter");
+			}
+			var param = DeviceParameter.of(args[1]);
+			int channel = 1;
+			int value = 2;
+			if (param.channel && args.length > (name.equals("get") ? 2 : 3)) {
+				channel = DeviceParameter.parseChannel(args[2]);
+				value = 3;
+			}
+			int ch = channel;
+			var kind = name + " " + param;
+			if (name.equals("get")) {
+				if (!param.isReadable()) {
+					throw new IllegalArgumentException("Write only: " + param);
+				}
+				return new Step(line, time, command, kind, com -> param.get(com, ch));
+			}
+			if (!param.isWritable()) {
+				throw new IllegalArgumentException("Read only: " + param);
+			}
+			if (value >= args.length) {
+				throw new IllegalArgumentException("Missing value");
+			}
+			var v = String.join(" ", Arrays.copyOfRange(args, value, args.length));
+			return new Step(line, time, command, kind, com -> {
+				param.set(com, ch, v);
+				return null;
+			});
+		}
+		case "load", "save": {
+			if (args.length < 2) {
+				throw new IllegalArgumentException("Missing number");
+			}
+			int num = Integer.parseInt(args[1]);
+			return new Step(line, time, command, name, com -> {
+				if (name.equals("load")) {
+					com.loadSettings(num);
+				} else {
+					com.saveSettings(num);
+				}
+				if (!com.isOnline() || !com.awaitAck()) {
+					throw new IllegalArgumentException("Not acknowledged");
+				}
+				return null;
+			});
+		}
+		case "send": {
+			var raw = command.substring(args[0].length()).trim() + "\n";
+			return new Step(line, time, command, "send", com -> {
+				var reply = com.requestReply(raw);
+				if (reply == null) {
+					throw new IllegalArgumentException("No reply");
+				}
+				return reply;
+			});
+		}
+		default:
+			throw new IllegalArgumentException("Unknown command: " + args[0]);
+		}
+	}
+}
@@ -1,13 +1,10 @@
 package se.wetterstrom.jfuncgen;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
-import javax.swing.ProgressMonitor;
-
 import com.fazecast.jSerialComm.SerialPort;
 
 import se.wetterstrom.jfuncgen.AdvancedPanel.MeasureMode;
@@ -70,6 +67,12 @@ public class SerialCom5200 extends AbstractSerialCom{
 		super(new PortSettings(DEFAULT_PORT_NAME, BAUD_RATE, DATA_BITS, PARITY, STOP_BITS, FLOW_CTRL));
 	}
 
+	@Override
+	public boolean awaitAck() {
+		// each :s command is acknowledged with :ok
+		return ":ok".equals(serialListener.poll(1));
+	}
+
 	@Override
 	public double getAmplitude(int channel) {
 		// :r[12]a[0-9]+ - return amplitude (0 - 2000=20.00V)
@@ -81,32 +84,17 @@ public class SerialCom5200 extends AbstractSerialCom{
 	}
 
 	@Override
-	public int[] getArbData(int num, ProgressMonitor pm) {
+	public int[] getArbData(int num, Progress pm) {
 		 // :b[0-f][0-f] - return arbitrary wave form data. Hexadecimal waveform number (0x0 - 0xf) followed by a hexadecimal slice number (0x0 - 0xf).
 		 // There are 16 arbitrary waveforms. Each waveform consists of unsigned 12-bit samples stored as 16 slices with 128 samples in each.
 		 // The arbitrary commands get/set one specified slice in the specified waveform.
 		 // Each sample is an integer 0 to 4096, with 2048 being the zero offset.
 
 		int[] data = new int[SLICE_COUNT * SAMPLES_PER_SLICE];
-		Arrays.fill(data, 0);
 		for (int slice = 0; slice < SLICE_COUNT && !pm.isCanceled(); slice++) {
-			String[] arr = Optional.ofNullable(requestReply(String.format(":b%x%x\n", num & 0xf, slice)))
-					.map(a->a.replaceFirst("^:b[0-9a-f][0-9a-f]", "")).orElse("").split("\\s*,\\s*");
+			decodeArbSlice(requestReply(String.format(":b%x%x\n", num & 0xf, slice)), slice, data);
 			pm.setProgress(slice * SAMPLES_PER_SLICE);
-			for (int i = 0; i< SAMPLES_PER_SLICE; i++) {
-				int v;
-				try {
-					v = i<arr.length ? Integer.parseInt(arr[i]) : 0;
-				} catch (NumberFormatException ex) {
-					v = 0;
-				}
-				data[slice * SAMPLES_PER_SLICE + i] = v;
-			}
-			try {
-				Thread.sleep(ARB_READ_SLICE_DELAY);
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-			}
+			sleep(ARB_READ_SLICE_DELAY);
 		}
 		return data;
 	}
@@ -142,6 +130,17 @@ public class SerialCom5200 extends AbstractSerialCom{
 		return Optional.ofNullable(requestReply(":r0e\n")).map(s->s.replaceFirst("^:r0e\\s*", "")).map(String::trim).map(Integer::parseInt).orElse(0);
 	}
 
+	@Override
+	public double getMeasuredFrequency() {
+		// the counter reading in the current measure mode
+		var s = requestReply(":r0e\n");
+		try {
+			return s != null ? Double.parseDouble(s.replaceFirst("^:r0e\\s*", "").trim()) : Double.NaN;
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
 	@Override
 	public double getDutyCycle(int channel) {
 		// :r[12]d - return duty cycle ":r1d500" (50,0%)
@@ -197,6 +196,16 @@ public class SerialCom5200 extends AbstractSerialCom{
 		return Optional.ofNullable(requestReply(":r1g\n")).map(s->s.replaceAll("^:r(\\d)g\\s*", "$1")).map(String::trim).map(Integer::parseInt).orElse(0);
 	}
 
+	@Override
+	public double getGateTime(int gate) {
+		switch (gate) {
+		case 1: return 10.0;
+		case 2: return 0.01;
+		case 3: return 0.1;
+		default: return 1.0;
+		}
+	}
+
 	@Override
 	public List<IdName> getGateValues() {
 		var list = new ArrayList<IdName>();
@@ -238,6 +247,16 @@ public class SerialCom5200 extends AbstractSerialCom{
 		return Optional.ofNullable(requestReply(":r6b\n")).map(s->s.replaceFirst("^:r6b\\s*", "")).map(String::trim).map(Integer::parseInt).orElse(0);
 	}
 
+	@Override
+	public String identify() {
+		// the model is only trusted if the reply echoes the request
+		var reply = requestReply(":r0c\n");
+		if (reply == null || !reply.startsWith(":r0c") || reply.substring(4).isBlank()) {
+			return null;
+		}
+		return reply.substring(4).trim() + " " + getFirmware();
+	}
+
 	@Override
 	public String getModel() {
 		// :r0c - return mode number ":r0c5225A5040000"
@@ -378,26 +397,52 @@ public class SerialCom5200 extends AbstractSerialCom{
 	}
 
 	@Override
-	public void setArbData(int num, int[] data, ProgressMonitor pm) {
-		var buf = new StringBuilder();
+	public void setArbData(int num, int[] data, Progress pm) {
 		for (int slice = 0; slice < SLICE_COUNT ; slice++) {
-			buf.setLength(0);
-			buf.append(String.format(":a%x%x", num, slice));
-			for (int i = 0; i < SAMPLES_PER_SLICE; i++) {
-				if (i > 0) {
-					buf.append(',');
-				}
-				int x = slice * SAMPLES_PER_SLICE + i;
-				buf.append(x < data.length ? data[x] : 0);
+			writeSerial(encodeArbSlice(num, slice, data));
+			sleep(ARB_WRITE_SLICE_DELAY);
+			pm.setProgress(slice * SAMPLES_PER_SLICE);
+		}
+	}
+
+	/**
+	 * Encode the arbitrary wave form write command of a slice
+	 * @param num the wave form number
+	 * @param slice the slice number
+	 * @param data the wave form data, missing samples are written as 0
+	 * @return the command
+	 */
+	static String encodeArbSlice(int num, int slice, int[] data) {
+		var buf = new StringBuilder(8 + SAMPLES_PER_SLICE * 5);
+		buf.append(":a").append(Character.forDigit(num & 0xf, 16)).append(Character.forDigit(slice & 0xf, 16));
+		for (int i = 0; i < SAMPLES_PER_SLICE; i++) {
+			if (i > 0) {
+				buf.append(',');
 			}
-			buf.append('\n');
+			int x = slice * SAMPLES_PER_SLICE + i;
+			buf.append(x < data.length ? data[x] : 0);
+		}
+		return buf.append('\n').toString();
+	}
+
+	/**
+	 * Decode the reply to an arbitrary wave form read command of a slice.
+	 * Missing or invalid samples are decoded as 0.
+	 * @param reply the reply, e.g. <code>:b12 2048,2050,...</code>, or null
+	 * @param slice the slice number
+	 * @param data the wave form data to decode into
+	 */
+	static void decodeArbSlice(String reply, int slice, int[] data) {
+		String[] arr = Optional.ofNullable(reply)
+				.map(a->a.replaceFirst("^:b[0-9a-f][0-9a-f]", "")).orElse("").split("\\s*,\\s*");
+		for (int i = 0; i< SAMPLES_PER_SLICE; i++) {
+			int v;
 			try {
-				writeSerial(buf.toString());
-				Thread.sleep(ARB_WRITE_SLICE_DELAY);
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
+				v = i<arr.length ? Integer.parseInt(arr[i].trim()) : 0;
+			} catch (NumberFormatException ex) {
+				v = 0;
 			}
-			pm.setProgress(slice * SAMPLES_PER_SLICE);
+			data[slice * SAMPLES_PER_SLICE + i] = v;
 		}
 	}
 
@@ -464,7 +509,7 @@ public class SerialCom5200 extends AbstractSerialCom{
 	@Override
 	public void setOffset(int channel, double offset) {
 		// :s[12]o[0-9]+ set offset
-		formatSerial(":s%do%03d\n", channel, Math.clamp(offset + 120L, 0L, 240L));
+		formatSerial(":s%do%03d\n", channel, Math.clamp(Math.round(offset) + 120L, 0L, 240L));
 	}
 
 	@Override
@@ -5,8 +5,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import javax.swing.ProgressMonitor;
-
 import com.fazecast.jSerialComm.SerialPort;
 
 import se.wetterstrom.jfuncgen.AdvancedPanel.MeasureMode;
@@ -60,7 +58,7 @@ public class SerialCom6900 extends AbstractSerialCom{
 	}
 
 	@Override
-	public int[] getArbData(int num, ProgressMonitor pm) {
+	public int[] getArbData(int num, Progress pm) {
 		// FIXME
 		return new int[0];
 	}
@@ -96,6 +94,11 @@ public class SerialCom6900 extends AbstractSerialCom{
 		return requestReplyInt("RCC\n", 0);
 	}
 
+	@Override
+	public double getMeasuredFrequency() {
+		return requestReplyDouble("RCF\n", Double.NaN);
+	}
+
 	@Override
 	public double getDutyCycle(int channel) {
 		return requestReplyDouble((channel&1) == 0 ? "RFD\n" : "RMD\n", 50.0)/1000.0;
@@ -134,6 +137,15 @@ public class SerialCom6900 extends AbstractSerialCom{
 		return requestReplyInt("RCG\n", 0);
 	}
 
+	@Override
+	public double getGateTime(int gate) {
+		switch (gate) {
+		case 1: return 10.0;
+		case 2: return 100.0;
+		default: return 1.0;
+		}
+	}
+
 	@Override
 	public List<IdName> getGateValues() {
 		var list = new ArrayList<IdName>();
@@ -158,6 +170,16 @@ public class SerialCom6900 extends AbstractSerialCom{
 		return MeasureMode.FREQUENCY;
 	}
 
+	@Override
+	public String identify() {
+		// UMO - model, e.g. FY6900-60M
+		var model = requestReply("UMO\n");
+		if (model == null || !model.startsWith("FY")) {
+			return null;
+		}
+		return model.trim() + " " + getFirmware();
+	}
+
 	@Override
 	public String getModel() {
 		return requestReply("UMO\n");
@@ -279,17 +301,12 @@ public class SerialCom6900 extends AbstractSerialCom{
 	}
 
 	@Override
-	public void setArbData(int num, int[] data, ProgressMonitor pm) {
+	public void setArbData(int num, int[] data, Progress pm) {
 		String res1 = requestReply(String.format("DDS_WAVE%d\n", (num+1) ));
 		if ("W".equals(res1)) {
 			statusConsumer.accept(StatusBar.Status.ONLINE, "OK to write data.");
 
-			byte[] bd = new byte[data.length * 2];
-			for (int i = 0; i < data.length; i++) {
-				int d = Math.clamp(data[i], getArbMin(), getArbMax());
-				bd[i*2] = (byte)(d & 0x7f);
-				bd[i*2+1] = (byte)((d >> 7) & 0xff);
-			}
+			byte[] bd = encodeArbData(data, getArbMin(), getArbMax());
 
 			try {
 				serialListener.setLineBreakWait(false);
@@ -324,6 +341,24 @@ public class SerialCom6900 extends AbstractSerialCom{
 		}
 	}
 
+	/**
+	 * Encode arbitrary wave form data for upload, two bytes per sample with
+	 * the low 7 bits first
+	 * @param data the wave form data
+	 * @param min the minimum sample value
+	 * @param max the maximum sample value
+	 * @return the bytes
+	 */
+	static byte[] encodeArbData(int[] data, int min, int max) {
+		byte[] bd = new byte[data.length * 2];
+		for (int i = 0; i < data.length; i++) {
+			int d = Math.clamp(data[i], min, max);
+			bd[i*2] = (byte)(d & 0x7f);
+			bd[i*2+1] = (byte)((d >> 7) & 0xff);
+		}
+		return bd;
+	}
+
 	@Override
 	public void setAttenuation(int channel, int atten) {
 		// FIXME
@@ -4,8 +4,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import javax.swing.ProgressMonitor;
-
 import com.fazecast.jSerialComm.SerialPort;
 
 import se.wetterstrom.jfuncgen.AdvancedPanel.MeasureMode;
@@ -49,7 +47,7 @@ public class SerialComDummy extends AbstractSerialCom {
 	}
 
 	@Override
-	public int[] getArbData(int num, ProgressMonitor pm) {
+	public int[] getArbData(int num, Progress pm) {
 		return new int[0];
 	}
 
@@ -63,6 +61,16 @@ public class SerialComDummy extends AbstractSerialCom {
 		return 0;
 	}
 
+	@Override
+	public double getMeasuredFrequency() {
+		return Double.NaN;
+	}
+
+	@Override
+	public double getGateTime(int gate) {
+		return 1.0;
+	}
+
 	//
 
 	@Override
@@ -152,7 +160,7 @@ public class SerialComDummy extends AbstractSerialCom {
 	public void setAmplitude(int channel, double amplitude) {/* unused */}
 
 	@Override
-	public void setArbData(int num, int[] data, ProgressMonitor pm) { /* unused */ }
+	public void setArbData(int num, int[] data, Progress pm) { /* unused */ }
 
 	@Override
 	public void setAttenuation(int channel, int atten) {/* unused */}
@@ -193,6 +201,9 @@ public class SerialComDummy extends AbstractSerialCom {
 	@Override
 	public void setPort(SerialPort port) {/* unused */}
 
+	@Override
+	public void setTransport(SerialTransport transport) {/* unused */}
+
 	@Override
 	public void setPowerOut(boolean enable) {/* unused */}
 
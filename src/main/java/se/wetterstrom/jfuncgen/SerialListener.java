@@ -1,17 +1,11 @@
 package se.wetterstrom.jfuncgen;
 
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
-import com.fazecast.jSerialComm.SerialPort;
-import com.fazecast.jSerialComm.SerialPortDataListener;
-import com.fazecast.jSerialComm.SerialPortEvent;
-
 /**
  * <pre style='font-family:sans-serif;'>
  *   JFuncGen - A java GUI for the MHS5200 and FY6900 function generators
@@ -32,29 +26,31 @@ import com.fazecast.jSerialComm.SerialPortEvent;
  *   Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
  * </pre>
  */
-public class SerialListener implements SerialPortDataListener, Runnable {
+public class SerialListener {
+
+	/** Capacity of each consumer queue */
+	private static final int CONSUMER_CAPACITY = 256;
 
-	/** The list of consumers being notified of incoming data */
-	private final List<Consumer<String>> consumers = new ArrayList<>();
-	/** The FIFO queue used to put incoming data from the port. */
-	private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
-	/** The thread reading from the FIFO queue and notifying the listeners */
-	private final Thread runner = new Thread(this);
-	/** Set to false to terminate the listener thread */
-	private boolean runnerEnabled = true;
+	/** The bus notifying consumers of incoming data */
+	private final EventBus<String> dataBus = new EventBus<>("serial-data");
+	/** Set to false to stop receiving */
+	private volatile boolean enabled = true;
 
 	/** the queue of lines */
 	private final BlockingQueue<String> lineQueue = new LinkedBlockingQueue<>();
+	/** the incomplete line */
+	private final StringBuilder buf = new StringBuilder();
 
 	/** break waiting */
-	private boolean lineBreakWait = true;
+	private volatile boolean lineBreakWait = true;
+	/** the clock */
+	private volatile Clock clock = Clock.system();
 
 	/**
 	 * Constructor
 	 */
 	public SerialListener() {
 		super();
-		runner.start();
 	}
 
 
@@ -64,33 +60,81 @@ public class SerialListener implements SerialPortDataListener, Runnable {
 	 * @return the value
 	 */
 	public String poll(long timeOut) {
+		return poll(timeOut, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Poll
+	 * @param timeOut the timeout
+	 * @param unit the unit of the timeout
+	 * @return the value, or null if timed out
+	 */
+	public String poll(long timeOut, TimeUnit unit) {
 		try {
-			return lineQueue.poll(timeOut, TimeUnit.SECONDS);
+			return clock.poll(lineQueue, unit.toNanos(timeOut));
 		} catch (InterruptedException e) {
 		    Thread.currentThread().interrupt();
 			return null;
 		}
 	}
 
-	@Override
-	public int getListeningEvents() {
-		return SerialPort.LISTENING_EVENT_DATA_RECEIVED;
+	/**
+	 * Handle received data
+	 * @param data the received data
+	 */
+	public void received(byte[] data) {
+		if (data != null) {
+			received(data, 0, data.length);
+		}
 	}
 
-	@Override
-	public void serialEvent(SerialPortEvent event) {
-		// Keep this simple. Use the queue.
-		if (runnerEnabled) {
-			queue.add(new String(event.getReceivedData(), StandardCharsets.ISO_8859_1));
+	/**
+	 * Handle received data. Complete lines are queued for {@link #poll(long)}
+	 * directly, while the consumers are notified asynchronously so that a slow
+	 * consumer never delays a reply. The bytes are copied, the caller keeps
+	 * ownership of the array.
+	 * @param data the received data
+	 * @param offset the offset of the first byte
+	 * @param length the number of bytes
+	 */
+	public void received(byte[] data, int offset, int length) {
+		if (enabled && length > 0) {
+			var s = new String(data, offset, length, StandardCharsets.ISO_8859_1);
+			synchronized (buf) {
+				buf.append(s);
+				int start = 0;
+				int end;
+				while ((end = buf.indexOf("\n", start)) >= 0) {
+					addLine(buf.substring(start, end));
+					start = end + 1;
+				}
+				if (!lineBreakWait && start < buf.length()) {
+					addLine(buf.substring(start));
+					start = buf.length();
+				}
+				buf.delete(0, start);
+			}
+			dataBus.publish(s);
 		}
 	}
 
 	/**
-	 * Add consumer
+	 * Queue a line, ignoring empty lines
+	 * @param line the line
+	 */
+	private void addLine(String line) {
+		var cmd = line.trim();
+		if (!cmd.isEmpty()) {
+			lineQueue.add(cmd);
+		}
+	}
+
+	/**
+	 * Add consumer. Data arriving while the consumer is busy is concatenated.
 	 * @param consumer the consumer
 	 */
 	public void addConsumer(Consumer<String> consumer) {
-		consumers.add(consumer);
+		dataBus.subscribe(consumer, CONSUMER_CAPACITY, EventBus.Overflow.COALESCE, String::concat);
 	}
 
 	/**
@@ -98,34 +142,44 @@ public class SerialListener implements SerialPortDataListener, Runnable {
 	 * @param consumer the consumer
 	 */
 	public void removeConsumer(Consumer<String> consumer) {
-		consumers.remove(consumer);
+		dataBus.unsubscribe(consumer);
 	}
 
 	/** remove all aconsumers */
 	public void removeAllConsumers() {
-		consumers.clear();
+		dataBus.unsubscribeAll();
 	}
 
 	/** stop */
 	public void stop() {
-		runnerEnabled = false;
+		enabled = false;
 		flush();
 	}
 
 	/**
 	 * Get queue size
-	 * @return queue size
+	 * @return number of lines waiting to be polled
 	 */
 	public int size() {
-		return queue.size();
+		return lineQueue.size();
 	}
 
 	/** flush queue */
 	public void flush() {
-		queue.clear();
+		synchronized (buf) {
+			buf.setLength(0);
+		}
 		lineQueue.clear();
 	}
 
+	/**
+	 * Set the clock of the poll timeout
+	 * @param clock the clock
+	 */
+	public void setClock(Clock clock) {
+		this.clock = clock;
+	}
+
 	/**
 	 * Set line break wait
 	 * @param lineBreakWait the line break wait
@@ -133,27 +187,4 @@ public class SerialListener implements SerialPortDataListener, Runnable {
 	public void setLineBreakWait(boolean lineBreakWait) {
 		this.lineBreakWait = lineBreakWait;
 	}
-
-	@Override
-	public void run() {
-		var buf = new StringBuilder();
-		while (runnerEnabled) {
-			try {
-				String s = queue.take();
-				if (s != null && !s.isEmpty()) {
-					buf.append(s);
-					if (!lineBreakWait || s.endsWith("\n")) {
-						String cmd = buf.toString().trim();
-						buf.setLength(0);
-						if (!cmd.isEmpty()) {
-							lineQueue.add(cmd);
-						}
-					}
-					consumers.forEach(c -> c.accept(s));
-				}
-			} catch (InterruptedException e) {
-			    Thread.currentThread().interrupt();
-			}
-		}
-	}
 }
@@ -0,0 +1,67 @@
+package se.wetterstrom.jfuncgen;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A byte stream to a device, e.g. a serial port, a TCP connection to a
+ * serial server or an in-process stand-in.
+ * <p>
+ * Reads and writes never block. The caller owns the buffers: a transport
+ * only reads from or writes into a buffer during the call, advances its
+ * position by the number of bytes transferred and never keeps a reference
+ * to it. When data is available the data listener is called, typically on a
+ * thread owned by the transport, and is expected to call {@link #read(ByteBuffer)}
+ * until it returns 0.
+ */
+public interface SerialTransport {
+
+	/**
+	 * Open the transport
+	 * @param settings the serial port settings, ignored by transports without a serial line
+	 * @return true if opened
+	 */
+	boolean open(PortSettings settings);
+
+	/** Close the transport */
+	void close();
+
+	/**
+	 * Check if open
+	 * @return true if open
+	 */
+	boolean isOpen();
+
+	/**
+	 * Read available bytes without blocking
+	 * @param dst the buffer to read into
+	 * @return number of bytes read, 0 if none available, -1 if closed
+	 */
+	int read(ByteBuffer dst);
+
+	/**
+	 * Write bytes without blocking. Bytes not written are left in the buffer.
+	 * @param src the buffer to write from
+	 * @return number of bytes written, 0 if the transport can not take more now, -1 on error
+	 */
+	int write(ByteBuffer src);
+
+	/**
+	 * Set the listener called when data is available
+	 * @param listener the listener, or null for none
+	 */
+	void setDataListener(Runnable listener);
+
+	/**
+	 * Get the name
+	 * @return the name, e.g. the system port name or address
+	 */
+	String getName();
+
+	/**
+	 * Get a description of the transport
+	 * @return the description
+	 */
+	default String getDescription() {
+		return getName();
+	}
+}
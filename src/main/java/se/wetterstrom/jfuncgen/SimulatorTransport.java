@@ -0,0 +1,105 @@
+package se.wetterstrom.jfuncgen;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Transport to a {@link DeviceSimulator}.
+ * <p>
+ * Replies are buffered in a receive buffer of fixed capacity. Like a serial
+ * port, bytes arriving when the buffer is full are lost.
+ */
+public class SimulatorTransport implements SerialTransport {
+
+	/** Name prefix */
+	public static final String PREFIX = "sim://";
+	/** Receive buffer capacity */
+	private static final int CAPACITY = 64 * 1024;
+
+	/** the simulator */
+	private final DeviceSimulator simulator;
+	/** the name */
+	private final String name;
+	/** the receive buffer */
+	private final ByteRing in = new ByteRing(CAPACITY);
+	/** the data listener */
+	private volatile Runnable listener;
+
+	/**
+	 * Constructor
+	 * @param simulator the simulator
+	 * @param name the name, e.g. the simulated device type
+	 */
+	public SimulatorTransport(DeviceSimulator simulator, String name) {
+		this.simulator = simulator;
+		this.name = PREFIX + name;
+	}
+
+	/**
+	 * Get the simulator
+	 * @return the simulator
+	 */
+	public DeviceSimulator getSimulator() {
+		return simulator;
+	}
+
+	@Override
+	public boolean open(PortSettings settings) {
+		in.clear();
+		simulator.open(data -> {
+			in.put(ByteBuffer.wrap(data));
+			var l = listener;
+			if (l != null) {
+				l.run();
+			}
+		});
+		return true;
+	}
+
+	@Override
+	public void close() {
+		simulator.close();
+		in.clear();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return simulator.isOpen();
+	}
+
+	@Override
+	public int read(ByteBuffer dst) {
+		return simulator.isOpen() ? in.get(dst) : -1;
+	}
+
+	@Override
+	public int write(ByteBuffer src) {
+		int n = src.remaining();
+		int count;
+		if (src.hasArray()) {
+			count = simulator.write(src.array(), src.arrayOffset() + src.position(), n);
+		} else {
+			var tmp = new byte[n];
+			src.duplicate().get(tmp);
+			count = simulator.write(tmp, 0, n);
+		}
+		if (count > 0) {
+			src.position(src.position() + count);
+		}
+		return count;
+	}
+
+	@Override
+	public void setDataListener(Runnable listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String getDescription() {
+		return name + " - Simulator";
+	}
+}
@@ -0,0 +1,302 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streaming frequency stability statistics of equally spaced frequency
+ * readings: running mean and variance (Welford) and the overlapping Allan
+ * and modified Allan deviation at octave spaced tau values.
+ * <p>
+ * The readings are decimated in levels, level k holding the means of
+ * blocks of 2<sup>k</sup> readings and the triangular weighted means of
+ * two such blocks, each level computed from the level below. A tau of m
+ * readings is evaluated at the level of m/4 readings, from the last few
+ * values of the level only, so memory grows with the logarithm of the
+ * number of readings and a reading costs constant time on average. The
+ * tau values of 1, 2 and 4 readings use every start position, the longer
+ * tau values every m/4th, which gives the same expected value with nearly
+ * the same confidence.
+ * <p>
+ * The deviations are in the units of the readings, divide by the mean for
+ * fractional frequency. NaN readings are ignored.
+ */
+public class StabilityStatistics {
+
+	/** Number of start positions per tau of the longer tau values */
+	private static final int PHASES = 4;
+
+	/**
+	 * The deviations at a tau
+	 * @param tau the tau in seconds
+	 * @param count the number of terms of the Allan deviation
+	 * @param adev the overlapping Allan deviation, NaN if no terms
+	 * @param mdev the modified Allan deviation, NaN if no terms
+	 */
+	public record Point(double tau, long count, double adev, double mdev) {
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "%12.6g %10d %14.6g %14.6g", tau, count, adev, mdev);
+		}
+	}
+
+	/**
+	 * A decimation level
+	 */
+	private static final class Level {
+		/** the last block means */
+		final double[] block = new double[2 * PHASES];
+		/** the last triangular means */
+		final double[] tri = new double[3 * PHASES];
+		/** the number of block means */
+		long blocks;
+		/** the number of triangular means */
+		long tris;
+		/** the number of start positions of the tau values of the level */
+		final int[] phases;
+		/** the sum of squared Allan differences of each tau */
+		final double[] adevSum;
+		/** the number of Allan differences of each tau */
+		final long[] adevCount;
+		/** the sum of squared modified Allan differences of each tau */
+		final double[] mdevSum;
+		/** the number of modified Allan differences of each tau */
+		final long[] mdevCount;
+
+		/**
+		 * Constructor
+		 * @param phases the number of start positions of each tau value, the tau being phases blocks
+		 */
+		Level(int... phases) {
+			this.phases = phases;
+			adevSum = new double[phases.length];
+			adevCount = new long[phases.length];
+			mdevSum = new double[phases.length];
+			mdevCount = new long[phases.length];
+		}
+
+		/**
+		 * @param i the number of values back, 0 is the newest
+		 * @return the block mean
+		 */
+		double block(int i) {
+			return block[(int) ((blocks - 1 - i) % block.length)];
+		}
+
+		/**
+		 * @param i the number of values back, 0 is the newest
+		 * @return the triangular mean
+		 */
+		double tri(int i) {
+			return tri[(int) ((tris - 1 - i) % tri.length)];
+		}
+	}
+
+	/** the time between readings in seconds */
+	private final double tau0;
+	/** the levels, level k of blocks of 2^k readings */
+	private final List<Level> levels = new ArrayList<>();
+	/** the number of readings */
+	private long count;
+	/** the mean */
+	private double mean;
+	/** the sum of squared differences from the mean */
+	private double m2;
+	/** the min reading */
+	private double min = Double.NaN;
+	/** the max reading */
+	private double max = Double.NaN;
+
+	/**
+	 * Constructor
+	 * @param tau0 the time between readings in seconds
+	 */
+	public StabilityStatistics(double tau0) {
+		this.tau0 = tau0;
+		reset();
+	}
+
+	/**
+	 * Add a reading
+	 * @param v the reading, ignored if NaN
+	 */
+	public synchronized void add(double v) {
+		if (Double.isNaN(v)) {
+			return;
+		}
+		count++;
+		double d = v - mean;
+		mean += d / count;
+		m2 += d * (v - mean);
+		min = count == 1 ? v : Math.min(min, v);
+		max = count == 1 ? v : Math.max(max, v);
+		addBlock(0, v);
+		addTri(0, v);
+	}
+
+	/** Remove all readings */
+	public synchronized void reset() {
+		levels.clear();
+		// tau of 1, 2 and 4 readings at every start position
+		levels.add(new Level(1, 2, PHASES));
+		count = 0;
+		mean = 0;
+		m2 = 0;
+		min = Double.NaN;
+		max = Double.NaN;
+	}
+
+	/**
+	 * @return the time between readings in seconds
+	 */
+	public double getTau0() {
+		return tau0;
+	}
+
+	/**
+	 * @return the number of readings
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the mean, NaN if no readings
+	 */
+	public synchronized double getMean() {
+		return count > 0 ? mean : Double.NaN;
+	}
+
+	/**
+	 * @return the sample variance, NaN if less than 2 readings
+	 */
+	public synchronized double getVariance() {
+		return count > 1 ? m2 / (count - 1) : Double.NaN;
+	}
+
+	/**
+	 * @return the sample standard deviation, NaN if less than 2 readings
+	 */
+	public synchronized double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * @return the min reading, NaN if no readings
+	 */
+	public synchronized double getMin() {
+		return min;
+	}
+
+	/**
+	 * @return the max reading, NaN if no readings
+	 */
+	public synchronized double getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the number of decimation levels
+	 */
+	synchronized int getLevelCount() {
+		return levels.size();
+	}
+
+	/**
+	 * Get the deviations of the tau values having at least one Allan difference
+	 * @return the deviations, in tau order
+	 */
+	public synchronized List<Point> getPoints() {
+		var points = new ArrayList<Point>();
+		for (int k = 0; k < levels.size(); k++) {
+			var level = levels.get(k);
+			for (int j = 0; j < level.phases.length; j++) {
+				if (level.adevCount[j] > 0) {
+					double tau = tau0 * level.phases[j] * (1L << k);
+					double mdev = level.mdevCount[j] > 0 ? Math.sqrt(level.mdevSum[j] / (2 * level.mdevCount[j])) : Double.NaN;
+					points.add(new Point(tau, level.adevCount[j], Math.sqrt(level.adevSum[j] / (2 * level.adevCount[j])), mdev));
+				}
+			}
+		}
+		return points;
+	}
+
+	@Override
+	public synchronized String toString() {
+		var sb = new StringBuilder(String.format(Locale.US, "%d readings, mean %.12g, stddev %.6g, min %.12g, max %.12g%n",
+				count, getMean(), getStandardDeviation(), min, max));
+		sb.append(String.format(Locale.US, "%12s %10s %14s %14s%n", "tau", "terms", "adev", "mdev"));
+		getPoints().forEach(p -> sb.append(p).append(System.lineSeparator()));
+		return sb.toString();
+	}
+
+	/**
+	 * Get a level, adding it if not yet used
+	 * @param k the level
+	 * @return the level
+	 */
+	private Level level(int k) {
+		if (k == levels.size()) {
+			// tau of 4 blocks at 4 start positions
+			levels.add(new Level(PHASES));
+		}
+		return levels.get(k);
+	}
+
+	/**
+	 * Add a block mean to a level, updating the Allan differences of the
+	 * level and passing the mean of each pair of blocks to the next level
+	 * @param k the level
+	 * @param v the mean of the block
+	 */
+	private void addBlock(int k, double v) {
+		var level = level(k);
+		level.block[(int) (level.blocks++ % level.block.length)] = v;
+		for (int j = 0; j < level.phases.length; j++) {
+			int p = level.phases[j];
+			if (level.blocks >= 2L * p) {
+				// the difference of the means of the last p blocks and the p blocks before them
+				double d = 0;
+				for (int i = 0; i < p; i++) {
+					d += level.block(i) - level.block(i + p);
+				}
+				d /= p;
+				level.adevSum[j] += d * d;
+				level.adevCount[j]++;
+			}
+		}
+		if ((level.blocks & 1) == 0) {
+			addBlock(k + 1, (level.block(1) + level.block(0)) / 2);
+		}
+	}
+
+	/**
+	 * Add a triangular mean to a level, updating the modified Allan
+	 * differences of the level and passing the triangular means of twice
+	 * the length to the next level
+	 * @param k the level
+	 * @param v the triangular mean of two blocks
+	 */
+	private void addTri(int k, double v) {
+		var level = level(k);
+		level.tri[(int) (level.tris++ % level.tri.length)] = v;
+		for (int j = 0; j < level.phases.length; j++) {
+			int p = level.phases[j];
+			if (level.tris >= 3L * p - 1) {
+				// the mean of the p means of p blocks starting at each of the p positions is a
+				// triangular weighted mean, differenced with the one p blocks before
+				double d = 0;
+				for (int i = 0; i < 2 * p - 1; i++) {
+					d += (p - Math.abs(p - 1 - i)) * (level.tri(i) - level.tri(i + p));
+				}
+				d /= (double) p * p;
+				level.mdevSum[j] += d * d;
+				level.mdevCount[j]++;
+			}
+		}
+		if (level.tris >= 3 && (level.tris & 1) == 1) {
+			addTri(k + 1, (level.tri(2) + 2 * level.tri(1) + level.tri(0)) / 4);
+		}
+	}
+}
@@ -7,6 +7,7 @@ import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.swing.JButton;
 import javax.swing.JFrame;
@@ -19,6 +20,7 @@ import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.border.BevelBorder;
 import javax.swing.table.DefaultTableModel;
 
@@ -28,6 +30,10 @@ import javax.swing.table.DefaultTableModel;
 public class StatusBar extends JPanel {
 
 	private static final long serialVersionUID = 1L;
+	/** Max number of history entries */
+	private static final int HISTORY_SIZE = 500;
+	/** Min time between updates */
+	private static final int FRAME_MILLIS = 33;
 
 	/** the port status field */
 	private final JTextField portStatus = new JTextField("", 8);
@@ -36,11 +42,21 @@ public class StatusBar extends JPanel {
 	/** Show history button */
 	private final JButton showHist = new JButton("...");
 	/** The history of status */
-	private final List<Pair<Status,String>> history = new ArrayList<>();
+	private final transient StatusHistory history = new StatusHistory(HISTORY_SIZE);
+	/** The history shown in the table, only accessed on the EDT */
+	private transient List<StatusHistory.Entry> historyRows = new ArrayList<>();
+	/** The history version shown in the table */
+	private long historyModCount = -1;
+	/** The history table model */
+	private final StatusHistoryTableModel histModel = new StatusHistoryTableModel();
 	/** The history table */
-	private final JTable histTable = new JTable(new StatusHistoryTableModel());
+	private final JTable histTable = new JTable(histModel);
+	/** The latest status and message not yet shown */
+	private final transient AtomicReference<Pair<Status,String>> pending = new AtomicReference<>();
+	/** Timer showing the pending status */
+	private final Timer updateTimer = new Timer(FRAME_MILLIS, e -> update());
 	/** Current status */
-	private Status status = Status.OFFLINE;
+	private volatile Status status = Status.OFFLINE;
 	/** The parent frame */
 	private JFrame parentFrame;
 
@@ -64,6 +80,9 @@ public class StatusBar extends JPanel {
 		GuiUtils.addToGridBag(1, 0, 1.0, 0.0, GridBagConstraints.HORIZONTAL, gbc, this, message);
 		GuiUtils.addToGridBag(2, 0, 0.0, 0.0, GridBagConstraints.NONE, gbc, this, showHist);
 
+		updateTimer.setRepeats(false);
+		updateTimer.setCoalesce(true);
+
 		initHistoryDialog();
 	}
 
@@ -71,7 +90,7 @@ public class StatusBar extends JPanel {
 
 		var popupMenu = new JPopupMenu();
 		popupMenu.add(new JMenuItem("Clear"))
-			.addActionListener(e -> { history.clear(); histTable.repaint(); });
+			.addActionListener(e -> { history.clear(); updateHistory(); });
         histTable.setComponentPopupMenu(popupMenu);
 
 		var panel = new JPanel(new BorderLayout());
@@ -79,8 +98,10 @@ public class StatusBar extends JPanel {
 		panel.addHierarchyListener(e ->
 			Utils.hierarchyListenerResizer(SwingUtilities.getWindowAncestor(panel)));
 
-		showHist.addActionListener(e ->
-			JOptionPane.showMessageDialog(parentFrame, panel, "History", JOptionPane.PLAIN_MESSAGE));
+		showHist.addActionListener(e -> {
+			updateHistory();
+			JOptionPane.showMessageDialog(parentFrame, panel, "History", JOptionPane.PLAIN_MESSAGE);
+		});
 	}
 
 	/**
@@ -89,32 +110,66 @@ public class StatusBar extends JPanel {
 	 */
 	public void setPortStatus(Status status) {
 		portStatus.setText(status.msg);
-		portStatus.setBackground(status.bg);
-		portStatus.setForeground(status.fg);
+		switch (status) {
+		case OFFLINE:
+			portStatus.setBackground(Color.BLACK);
+			portStatus.setForeground(Color.YELLOW);
+			break;
+		case ERROR:
+			portStatus.setBackground(Color.BLACK);
+			portStatus.setForeground(Color.RED);
+			break;
+		default:
+			portStatus.setBackground(new JLabel().getBackground());
+			portStatus.setForeground(new JLabel().getForeground());
+			break;
+		}
 	}
 
 	/**
-	 * Set message
+	 * Set message. May be called from any thread.
 	 * @param msg the message
 	 */
 	public void setMessage(String msg) {
-		if (!Utils.isEmpty(msg)) {
-			history.add(new Pair<>(status, msg));
-		}
-		message.setText(msg);
+		set(status, msg);
 	}
 
 	/**
-	 * Set status and message
+	 * Set status and message. May be called from any thread, a burst of
+	 * updates is shown as the latest one at most once per frame.
 	 * @param status the status
 	 * @param msg the message
 	 */
 	public void set(Status status, String msg) {
-		if (!Utils.isEmpty(msg) && !status.equals(this.status)) {
-			history.add(new Pair<>(status, msg));
+		if (!Utils.isEmpty(msg)) {
+			history.add(status, msg, System.currentTimeMillis());
+		}
+		this.status = status;
+		if (pending.getAndSet(new Pair<>(status, msg)) == null) {
+			updateTimer.start();
+		}
+	}
+
+	/** Show the pending status, called on the EDT */
+	private void update() {
+		var p = pending.getAndSet(null);
+		if (p != null) {
+			setPortStatus(p.key);
+			message.setText(p.value);
+		}
+		if (histTable.isShowing()) {
+			updateHistory();
+		}
+	}
+
+	/** Update the history table if the history has changed, called on the EDT */
+	private void updateHistory() {
+		long modCount = history.getModCount();
+		if (modCount != historyModCount) {
+			historyModCount = modCount;
+			historyRows = history.snapshot();
+			histModel.fireTableDataChanged();
 		}
-		setPortStatus(status);
-		message.setText(msg);
 	}
 
 	/**
@@ -126,22 +181,18 @@ public class StatusBar extends JPanel {
 	}
 
 	/**
-	 * Status
+	 * Status, also used by the serial layer and therefore without any AWT dependency
 	 */
 	enum Status {
 		/** ONLINE */
-		ONLINE("Online", new JLabel().getBackground(), new JLabel().getForeground()),
+		ONLINE("Online"),
 		/** OFFLINE */
-		OFFLINE("Offline", Color.BLACK, Color.YELLOW),
+		OFFLINE("Offline"),
 		/** ERROR */
-		ERROR("Error", Color.BLACK, Color.RED);
+		ERROR("Error");
 		final String msg;
-		final Color fg;
-		final Color bg;
-		private Status(String msg, Color bg, Color fg) {
+		private Status(String msg) {
 			this.msg = msg;
-			this.bg = bg;
-			this.fg = fg;
 		}
 	}
 
@@ -149,7 +200,7 @@ public class StatusBar extends JPanel {
 	class StatusHistoryTableModel extends DefaultTableModel {
 
 		private static final long serialVersionUID = -2137440798734658602L;
-		private static final String [] HEADERS = { "Status", "Message" };
+		private static final String [] HEADERS = { "Status", "Message", "Count" };
 
 		@Override
 		public String getColumnName(int index) {
@@ -158,7 +209,7 @@ public class StatusBar extends JPanel {
 
 		@Override
 		public int getRowCount() {
-			return history.size();
+			return historyRows.size();
 		}
 
 		@Override
@@ -170,8 +221,9 @@ public class StatusBar extends JPanel {
 		public Object getValueAt(int rowIndex, int columnIndex) {
 			if (rowIndex >= 0 && columnIndex >= 0 && rowIndex < getRowCount() && columnIndex < getColumnCount()) {
 				switch (columnIndex) {
-				case 0: return history.get(rowIndex).key;
-				case 1: return history.get(rowIndex).value;
+				case 0: return historyRows.get(rowIndex).status;
+				case 1: return historyRows.get(rowIndex).message;
+				case 2: return historyRows.get(rowIndex).count;
 				default: return null;
 				}
 			}
@@ -0,0 +1,136 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded history of status messages.
+ * <p>
+ * A fixed capacity ring in order of first occurrence. A message that is
+ * already in the ring only increments its count and last time, so repeated
+ * messages cost neither a new entry nor an eviction. When the ring is full
+ * the oldest entry is overwritten. All methods are thread safe.
+ */
+class StatusHistory {
+
+	/** the ring */
+	private final Entry[] ring;
+	/** index of the entries by status and message */
+	private final Map<String, Entry> index = new HashMap<>();
+	/** index of the oldest entry */
+	private int head = 0;
+	/** number of entries */
+	private int size = 0;
+	/** incremented on every change */
+	private long modCount = 0;
+
+	/**
+	 * Constructor
+	 * @param capacity max number of entries
+	 */
+	StatusHistory(int capacity) {
+		this.ring = new Entry[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Add a message
+	 * @param status the status
+	 * @param message the message
+	 * @param time the time in milliseconds
+	 */
+	public synchronized void add(StatusBar.Status status, String message, long time) {
+		modCount++;
+		var key = key(status, message);
+		var entry = index.get(key);
+		if (entry != null) {
+			entry.count++;
+			entry.last = time;
+			return;
+		}
+		entry = new Entry(status, message, time);
+		if (size == ring.length) {
+			index.remove(key(ring[head].status, ring[head].message));
+			ring[head] = entry;
+			head = (head + 1) % ring.length;
+		} else {
+			ring[(head + size) % ring.length] = entry;
+			size++;
+		}
+		index.put(key, entry);
+	}
+
+	/** Clear the history */
+	public synchronized void clear() {
+		modCount++;
+		Arrays.fill(ring, null);
+		index.clear();
+		head = 0;
+		size = 0;
+	}
+
+	/**
+	 * Get number of entries
+	 * @return number of entries
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Get number of changes, used to detect if the history has changed
+	 * @return number of changes
+	 */
+	public synchronized long getModCount() {
+		return modCount;
+	}
+
+	/**
+	 * Get a copy of the entries
+	 * @return copies of the entries, oldest first
+	 */
+	public synchronized List<Entry> snapshot() {
+		var list = new ArrayList<Entry>(size);
+		for (int i = 0; i < size; i++) {
+			list.add(new Entry(ring[(head + i) % ring.length]));
+		}
+		return list;
+	}
+
+	private static String key(StatusBar.Status status, String message) {
+		return status + "\n" + message;
+	}
+
+	/**
+	 * A history entry
+	 */
+	static class Entry {
+		/** the status */
+		final StatusBar.Status status;
+		/** the message */
+		final String message;
+		/** time of first occurrence */
+		final long first;
+		/** time of last occurrence */
+		long last;
+		/** number of occurrences */
+		int count = 1;
+
+		private Entry(StatusBar.Status status, String message, long time) {
+			this.status = status;
+			this.message = message;
+			this.first = time;
+			this.last = time;
+		}
+
+		private Entry(Entry e) {
+			this.status = e.status;
+			this.message = e.message;
+			this.first = e.first;
+			this.last = e.last;
+			this.count = e.count;
+		}
+	}
+}
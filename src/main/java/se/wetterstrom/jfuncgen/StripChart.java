@@ -0,0 +1,138 @@
+package se.wetterstrom.jfuncgen;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+/**
+ * Live strip chart of the newest samples of a {@link SampleRing}. The time
+ * span is decimated to the min and max value of each pixel column, so a
+ * repaint costs the same however many samples the span holds. The value
+ * axis follows the range of the span.
+ */
+public class StripChart extends JComponent {
+
+	private static final long serialVersionUID = 1L;
+	/** Time between repaints in milliseconds */
+	private static final int FRAME_MILLIS = 100;
+
+	/** the samples */
+	private transient SampleRing samples;
+	/** the time span in nanoseconds */
+	private long span = TimeUnit.SECONDS.toNanos(60);
+	/** the min value of each column */
+	private double[] min = new double[0];
+	/** the max value of each column */
+	private double[] max = new double[0];
+	/** repaints while running */
+	private final Timer repaintTimer = new Timer(FRAME_MILLIS, e -> repaint());
+
+	/** Constructor */
+	public StripChart() {
+		setPreferredSize(new Dimension(200, 80));
+		setBackground(Color.BLACK);
+		setOpaque(true);
+	}
+
+	/**
+	 * Set the samples
+	 * @param samples the samples, or null for none
+	 */
+	void setSamples(SampleRing samples) {
+		this.samples = samples;
+		repaint();
+	}
+
+	/**
+	 * Set the time span
+	 * @param span the time span in nanoseconds
+	 */
+	public void setSpan(long span) {
+		this.span = Math.max(1, span);
+		repaint();
+	}
+
+	/**
+	 * Start or stop repainting now and then
+	 * @param live true to repaint
+	 */
+	public void setLive(boolean live) {
+		if (live) {
+			repaintTimer.start();
+		} else {
+			repaintTimer.stop();
+			repaint();
+		}
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		int w = getWidth();
+		int h = getHeight();
+		g.setColor(getBackground());
+		g.fillRect(0, 0, w, h);
+		var ring = samples;
+		int n = ring != null ? ring.size() : 0;
+		if (n == 0 || w < 2 || h < 2) {
+			return;
+		}
+		if (min.length != w) {
+			min = new double[w];
+			max = new double[w];
+		}
+		long to = ring.getTime(n - 1) + 1;
+		ring.decimate(to - span, to, min, max);
+
+		double lo = Double.POSITIVE_INFINITY;
+		double hi = Double.NEGATIVE_INFINITY;
+		for (int x = 0; x < w; x++) {
+			if (!Double.isNaN(min[x])) {
+				lo = Math.min(lo, min[x]);
+				hi = Math.max(hi, max[x]);
+			}
+		}
+		if (lo > hi) {
+			return;
+		}
+		double range = hi > lo ? hi - lo : Math.max(1.0, Math.abs(hi));
+		double mid = (hi + lo) / 2;
+		double scale = (h - 1) / (range * 1.1);
+
+		g.setColor(Color.GREEN);
+		int lastY = -1;
+		for (int x = 0; x < w; x++) {
+			if (Double.isNaN(min[x])) {
+				continue;
+			}
+			int y0 = (int) Math.round(h / 2.0 - (max[x] - mid) * scale);
+			int y1 = (int) Math.round(h / 2.0 - (min[x] - mid) * scale);
+			// join to the previous column
+			if (lastY >= 0) {
+				y0 = Math.min(y0, lastY);
+				y1 = Math.max(y1, lastY);
+			}
+			g.drawLine(x, y0, x, y1);
+			lastY = (int) Math.round(h / 2.0 - ((min[x] + max[x]) / 2 - mid) * scale);
+		}
+
+		g.setColor(Color.LIGHT_GRAY);
+		var fm = g.getFontMetrics();
+		g.drawString(format(hi), 2, fm.getAscent());
+		g.drawString(format(lo), 2, h - fm.getDescent());
+		var last = format(ring.getValue(n - 1));
+		g.drawString(last, w - fm.stringWidth(last) - 2, fm.getAscent());
+	}
+
+	/**
+	 * @param v the value
+	 * @return the value as text
+	 */
+	private static String format(double v) {
+		return v == Math.rint(v) && Math.abs(v) < 1e15 ? String.format(Locale.US, "%.0f", v) : String.format(Locale.US, "%.6g", v);
+	}
+}
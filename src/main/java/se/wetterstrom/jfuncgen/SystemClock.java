@@ -0,0 +1,60 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link Clock} of the real world. Scheduled tasks run one at a time on
+ * a shared daemon thread and must not block.
+ */
+final class SystemClock implements Clock {
+
+	/** the instance */
+	static final SystemClock INSTANCE = new SystemClock();
+
+	/** the scheduler, created when first used */
+	private ScheduledThreadPoolExecutor scheduler;
+
+	/** Hidden constructor */
+	private SystemClock() {
+		super();
+	}
+
+	@Override
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+
+	@Override
+	public void sleep(long nanos) throws InterruptedException {
+		TimeUnit.NANOSECONDS.sleep(nanos);
+	}
+
+	@Override
+	public <T> T poll(BlockingQueue<T> queue, long nanos) throws InterruptedException {
+		return queue.poll(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public Scheduled schedule(Runnable task, long delay) {
+		var future = getScheduler().schedule(task, delay, TimeUnit.NANOSECONDS);
+		return () -> future.cancel(false);
+	}
+
+	/**
+	 * Get the scheduler
+	 * @return the scheduler
+	 */
+	private synchronized ScheduledThreadPoolExecutor getScheduler() {
+		if (scheduler == null) {
+			scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+				var t = new Thread(r, "jfuncgen-clock");
+				t.setDaemon(true);
+				return t;
+			});
+			scheduler.setRemoveOnCancelPolicy(true);
+		}
+		return scheduler;
+	}
+}
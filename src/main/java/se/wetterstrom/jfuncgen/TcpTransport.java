@@ -0,0 +1,175 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Transport over a TCP connection, e.g. to a serial server such as ser2net
+ * in raw mode. The serial line settings are those of the server.
+ * <p>
+ * The socket channel is non-blocking. A selector thread calls the data
+ * listener when bytes can be read.
+ */
+public class TcpTransport implements SerialTransport {
+
+	/** Name prefix */
+	public static final String PREFIX = "tcp://";
+	/** Connect timeout in milliseconds */
+	private static final int CONNECT_TIMEOUT = 5000;
+
+	/** the host */
+	private final String host;
+	/** the port */
+	private final int port;
+	/** the channel */
+	private volatile SocketChannel channel;
+	/** the selector */
+	private Selector selector;
+	/** the data listener */
+	private volatile Runnable listener;
+
+	/**
+	 * Constructor
+	 * @param host the host
+	 * @param port the TCP port
+	 */
+	public TcpTransport(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * Create a transport from a name like <code>tcp://host:port</code>
+	 * @param name the name
+	 * @return the transport, or null if not a valid name
+	 */
+	public static TcpTransport parse(String name) {
+		if (name == null || !name.startsWith(PREFIX)) {
+			return null;
+		}
+		var address = name.substring(PREFIX.length());
+		int i = address.lastIndexOf(':');
+		if (i <= 0) {
+			return null;
+		}
+		try {
+			return new TcpTransport(address.substring(0, i), Integer.parseInt(address.substring(i + 1)));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public synchronized boolean open(PortSettings settings) {
+		close();
+		try {
+			var ch = SocketChannel.open();
+			ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			ch.socket().connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+			ch.configureBlocking(false);
+			selector = Selector.open();
+			ch.register(selector, SelectionKey.OP_READ);
+			channel = ch;
+			var sel = selector;
+			Thread.ofVirtual().name("tcp-" + host + ":" + port).start(() -> select(ch, sel));
+			return true;
+		} catch (IOException e) {
+			close();
+			return false;
+		}
+	}
+
+	/**
+	 * Wait for data and notify the listener until closed
+	 * @param ch the channel
+	 * @param sel the selector
+	 */
+	private void select(SocketChannel ch, Selector sel) {
+		try {
+			while (ch.isOpen() && sel.isOpen()) {
+				if (sel.select() > 0) {
+					sel.selectedKeys().clear();
+					var l = listener;
+					if (l != null) {
+						l.run();
+					} else {
+						Thread.sleep(10);
+					}
+				}
+			}
+		} catch (IOException | java.nio.channels.ClosedSelectorException e) {
+			// closed
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		try {
+			if (selector != null) {
+				selector.close();
+			}
+			if (channel != null) {
+				channel.close();
+			}
+		} catch (IOException e) {
+			// ignore
+		}
+		selector = null;
+		channel = null;
+	}
+
+	@Override
+	public boolean isOpen() {
+		var ch = channel;
+		return ch != null && ch.isConnected();
+	}
+
+	@Override
+	public int read(ByteBuffer dst) {
+		var ch = channel;
+		if (ch == null) {
+			return -1;
+		}
+		try {
+			int n = ch.read(dst);
+			if (n < 0) {
+				close();
+			}
+			return n;
+		} catch (IOException e) {
+			close();
+			return -1;
+		}
+	}
+
+	@Override
+	public int write(ByteBuffer src) {
+		var ch = channel;
+		if (ch == null) {
+			return -1;
+		}
+		try {
+			return ch.write(src);
+		} catch (IOException e) {
+			close();
+			return -1;
+		}
+	}
+
+	@Override
+	public void setDataListener(Runnable listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public String getName() {
+		return PREFIX + host + ':' + port;
+	}
+}
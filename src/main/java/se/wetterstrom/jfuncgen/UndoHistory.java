@@ -0,0 +1,174 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Undo/redo history of an integer array.
+ * <p>
+ * Each snapshot is a table of fixed size chunks. A new snapshot only copies the
+ * chunks that differ from the previous snapshot and shares the rest, so an edit
+ * touching a few samples costs a few chunks instead of a full array copy.
+ * Undo and redo restore only the chunks that differ between two snapshots.
+ */
+class UndoHistory {
+
+	/** Number of samples per chunk */
+	static final int CHUNK_SIZE = 256;
+
+	/** max number of snapshots */
+	private final int capacity;
+	/** the snapshots, oldest first */
+	private final List<int[][]> snapshots = new ArrayList<>();
+	/** index of the snapshot matching the current data */
+	private int current = -1;
+	/** data size */
+	private int size = 0;
+
+	/**
+	 * Constructor
+	 * @param capacity max number of undo levels
+	 */
+	UndoHistory(int capacity) {
+		this.capacity = Math.max(1, capacity) + 1;
+	}
+
+	/**
+	 * Clear history and use data as the initial snapshot
+	 * @param data the data
+	 */
+	public void reset(int[] data) {
+		snapshots.clear();
+		size = data.length;
+		var chunks = new int[chunkCount(size)][];
+		for (int c = 0; c < chunks.length; c++) {
+			chunks[c] = copyChunk(data, c);
+		}
+		snapshots.add(chunks);
+		current = 0;
+	}
+
+	/**
+	 * Store the data as a new snapshot if it differs from the current snapshot.
+	 * Any redo history is discarded.
+	 * @param data the data
+	 * @return true if a snapshot was added
+	 */
+	public boolean commit(int[] data) {
+		if (current < 0 || data.length != size) {
+			reset(data);
+			return false;
+		}
+		var prev = snapshots.get(current);
+		int[][] next = null;
+		for (int c = 0; c < prev.length; c++) {
+			int from = c * CHUNK_SIZE;
+			int to = Math.min(from + CHUNK_SIZE, size);
+			if (!Arrays.equals(prev[c], 0, prev[c].length, data, from, to)) {
+				if (next == null) {
+					next = prev.clone();
+				}
+				next[c] = copyChunk(data, c);
+			}
+		}
+		if (next == null) {
+			return false;
+		}
+		snapshots.subList(current + 1, snapshots.size()).clear();
+		snapshots.add(next);
+		if (snapshots.size() > capacity) {
+			snapshots.remove(0);
+		}
+		current = snapshots.size() - 1;
+		return true;
+	}
+
+	/**
+	 * Undo. The data must match the current snapshot, i.e. commit pending edits first.
+	 * @param data the data to restore into
+	 * @return true if restored
+	 */
+	public boolean undo(int[] data) {
+		if (!canUndo() || data.length != size) {
+			return false;
+		}
+		restore(snapshots.get(current), snapshots.get(current - 1), data);
+		current--;
+		return true;
+	}
+
+	/**
+	 * Redo
+	 * @param data the data to restore into
+	 * @return true if restored
+	 */
+	public boolean redo(int[] data) {
+		if (!canRedo() || data.length != size) {
+			return false;
+		}
+		restore(snapshots.get(current), snapshots.get(current + 1), data);
+		current++;
+		return true;
+	}
+
+	/**
+	 * Check if undo is possible
+	 * @return true if there is an older snapshot
+	 */
+	public boolean canUndo() {
+		return current > 0;
+	}
+
+	/**
+	 * Check if redo is possible
+	 * @return true if there is a newer snapshot
+	 */
+	public boolean canRedo() {
+		return current >= 0 && current < snapshots.size() - 1;
+	}
+
+	/**
+	 * Get number of stored snapshots
+	 * @return number of snapshots
+	 */
+	public int getSnapshotCount() {
+		return snapshots.size();
+	}
+
+	/**
+	 * Get number of distinct chunks held by all snapshots
+	 * @return number of distinct chunks
+	 */
+	int getStoredChunkCount() {
+		Set<int[]> chunks = Collections.newSetFromMap(new IdentityHashMap<>());
+		snapshots.forEach(s -> chunks.addAll(Arrays.asList(s)));
+		return chunks.size();
+	}
+
+	/**
+	 * Copy the chunks that differ between two snapshots into data
+	 * @param from the snapshot matching data
+	 * @param to the snapshot to restore
+	 * @param data the data
+	 */
+	private static void restore(int[][] from, int[][] to, int[] data) {
+		for (int c = 0; c < to.length; c++) {
+			if (from[c] != to[c]) {
+				System.arraycopy(to[c], 0, data, c * CHUNK_SIZE, to[c].length);
+			}
+		}
+	}
+
+	private int[] copyChunk(int[] data, int chunk) {
+		int from = chunk * CHUNK_SIZE;
+		return Arrays.copyOfRange(data, from, Math.min(from + CHUNK_SIZE, size));
+	}
+
+	private static int chunkCount(int size) {
+		return (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+	}
+}
@@ -9,6 +9,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.text.MessageFormat;
 import java.text.ParseException;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.Scanner;
 import java.util.regex.Pattern;
@@ -170,6 +171,48 @@ public class Utils {
 		return buf.toString();
 	}
 
+	/**
+	 * Get hexdump string of the first bytes, followed by a summary line if
+	 * there are more bytes than the limit.
+	 * @param data the data
+	 * @param limit max number of bytes to dump
+	 * @return string with hexdump of data
+	 */
+	public static String hexDump(byte[] data, int limit) {
+		if (data == null || data.length <= limit) {
+			return hexDump(data);
+		}
+		int shown = Math.max(limit, 0);
+		return hexDump(Arrays.copyOf(data, shown)) + hexDumpSummary(shown, data.length);
+	}
+
+	/**
+	 * Get the summary line appended to a hexdump limited to the shown number of bytes
+	 * @param shown number of bytes dumped
+	 * @param total total number of bytes
+	 * @return the summary line, or an empty string if all bytes are dumped
+	 */
+	public static String hexDumpSummary(int shown, int total) {
+		if (shown >= total) {
+			return "";
+		}
+		return (shown > 0 ? "\n" : "") + "[" + (total - shown) + " more bytes, " + total + " bytes total]";
+	}
+
+	/**
+	 * Get length of the string {@link #hexDump(byte[])} returns for the number of bytes
+	 * @param count the number of bytes
+	 * @return the length of the hexdump string
+	 */
+	public static int hexDumpLength(int count) {
+		if (count <= 0) {
+			return 0;
+		}
+		int lines = (count + 15) / 16;
+		// address and bytes on each line, ascii and line break on all but the last line
+		return lines * 10 + count * 3 + (lines - 1) * 19 + ((count - 1) % 16 > 0 ? 18 : 0);
+	}
+
 	/**
 	 * Get integer as hex string
 	 * @param i the integer
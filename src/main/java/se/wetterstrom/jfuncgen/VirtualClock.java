@@ -0,0 +1,152 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A {@link Clock} where time only moves when a thread sleeps, waits in
+ * {@link #poll(BlockingQueue, long)} or calls {@link #advance(long)}.
+ * <p>
+ * Moving the time runs the scheduled tasks that are due, in time order, on
+ * the thread moving the time. A wait ends as soon as a task has made the
+ * queue non-empty, or else jumps directly to the timeout. Nothing blocks, so
+ * a driver talking to a {@link DeviceSimulator} on the same virtual clock
+ * runs deterministically on one thread, and seconds of delays and timeouts
+ * take microseconds.
+ */
+public class VirtualClock implements Clock {
+
+	/** the scheduled tasks */
+	private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+	/** the current time */
+	private long now;
+	/** the sequence number of the next task */
+	private long sequence = 0;
+
+	/**
+	 * Constructor, starting at time 0
+	 */
+	public VirtualClock() {
+		this(0);
+	}
+
+	/**
+	 * Constructor
+	 * @param start the start time in nanoseconds
+	 */
+	public VirtualClock(long start) {
+		this.now = start;
+	}
+
+	@Override
+	public synchronized long nanoTime() {
+		return now;
+	}
+
+	@Override
+	public void sleep(long nanos) throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		advance(nanos);
+	}
+
+	@Override
+	public <T> T poll(BlockingQueue<T> queue, long nanos) throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		long deadline = deadline(nanos);
+		T head;
+		while ((head = queue.poll()) == null && runNext(deadline)) {
+			// a task may have added to the queue
+		}
+		if (head == null) {
+			moveTo(deadline);
+		}
+		return head;
+	}
+
+	@Override
+	public synchronized Scheduled schedule(Runnable task, long delay) {
+		var t = new Task(deadline(Math.max(0, delay)), sequence++, task);
+		tasks.add(t);
+		return () -> {
+			synchronized (this) {
+				tasks.remove(t);
+			}
+		};
+	}
+
+	/**
+	 * Move the time forward, running the tasks that are due
+	 * @param nanos the time in nanoseconds
+	 */
+	public void advance(long nanos) {
+		long target = deadline(nanos);
+		while (runNext(target)) {
+			// next task
+		}
+		moveTo(target);
+	}
+
+	/**
+	 * Get the number of scheduled tasks
+	 * @return the number of tasks that have not run
+	 */
+	public synchronized int getPendingCount() {
+		return tasks.size();
+	}
+
+	/**
+	 * Run the next task if it is due at the time limit
+	 * @param limit the time limit
+	 * @return true if a task was run
+	 */
+	private boolean runNext(long limit) {
+		Task t;
+		synchronized (this) {
+			t = tasks.peek();
+			if (t == null || t.time > limit) {
+				return false;
+			}
+			tasks.poll();
+			now = Math.max(now, t.time);
+		}
+		t.task.run();
+		return true;
+	}
+
+	/**
+	 * Move the time, never backwards
+	 * @param time the time
+	 */
+	private synchronized void moveTo(long time) {
+		if (time > now) {
+			now = time;
+		}
+	}
+
+	/**
+	 * Get the time after a delay, without overflow
+	 * @param nanos the delay in nanoseconds
+	 * @return the time
+	 */
+	private synchronized long deadline(long nanos) {
+		return Long.MAX_VALUE - now < nanos ? Long.MAX_VALUE : now + nanos;
+	}
+
+	/**
+	 * A scheduled task
+	 * @param time the time to run
+	 * @param sequence the order of scheduling
+	 * @param task the task
+	 */
+	private record Task(long time, long sequence, Runnable task) implements Comparable<Task> {
+		@Override
+		public int compareTo(Task o) {
+			int c = Long.compare(time, o.time);
+			return c != 0 ? c : Long.compare(sequence, o.sequence);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ArbPlaylistTest {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	/** the times of the wave form switches of channel 1 */
+	private final List<Long> switched = new ArrayList<>();
+	/** the wave forms switched to */
+	private final List<String> waveforms = new ArrayList<>();
+
+	private Mhs5200Simulator simulator(VirtualClock clock) {
+		var sim = new Mhs5200Simulator() {
+			@Override
+			protected void execute(String command) {
+				super.execute(command);
+				if (command.startsWith(":s1w")) {
+					switched.add(clock.nanoTime());
+					waveforms.add(command.substring(4));
+				}
+			}
+		};
+		sim.setClock(clock);
+		sim.setLatency(2, 0, TimeUnit.MILLISECONDS);
+		return sim;
+	}
+
+	private static int[] ramp(int n) {
+		var samples = new int[n];
+		for (int i = 0; i < n; i++) {
+			samples[i] = i % 4096;
+		}
+		return samples;
+	}
+
+	@Test
+	public void testSplit() {
+		var segments = ArbPlaylist.split(ramp(5000), 2048, 2048);
+		Assert.assertEquals("segments", 3, segments.length);
+		Assert.assertEquals("first", 2047, segments[0][2047]);
+		Assert.assertEquals("second", 2048, segments[1][0]);
+		Assert.assertEquals("last", 4999 % 4096, segments[2][5000 - 4096 - 1]);
+		Assert.assertEquals("padding", 2048, segments[2][2047]);
+	}
+
+	@Test
+	public void testPrefetch() {
+		var clock = new VirtualClock();
+		var sim = simulator(clock);
+		var com = new SerialCom5200();
+		com.setClock(clock);
+		com.setStatusConsumer((a, b) -> {});
+		com.setSimulator(sim);
+
+		// 5 segments in 3 slots, 5 s each, uploads take 16 slices of 200 ms
+		var segments = ArbPlaylist.split(ramp(5 * 2048), 2048, 2048);
+		var playlist = new ArbPlaylist(1, segments, new int[] { 0, 1, 2 }, 0.2, 1);
+		playlist.setLead(2 * MS);
+		var report = playlist.run(com);
+		Assert.assertEquals("switches " + report, 5, report.switches().size());
+		Assert.assertEquals("uploads", 5, report.uploads());
+		Assert.assertEquals("stalls", 0, report.stalls());
+		Assert.assertTrue("upload time", report.uploadTime() >= 3200 * MS);
+		Assert.assertTrue("jitter " + report, Math.abs(report.jitter().max()) < MS);
+		Assert.assertEquals("waveforms", List.of("100", "101", "102", "100", "101", "000"), waveforms);
+		for (int i = 1; i < switched.size(); i++) {
+			Assert.assertEquals("period " + i, 5000 * MS, switched.get(i) - switched.get(i - 1), MS);
+		}
+		Assert.assertArrayEquals("slot 0", segments[3], sim.getArbData(0));
+		Assert.assertArrayEquals("slot 1", segments[4], sim.getArbData(1));
+		Assert.assertArrayEquals("slot 2", segments[2], sim.getArbData(2));
+		Assert.assertEquals("restored", 0, sim.getChannel(1).getWaveform());
+		com.disconnect();
+	}
+
+	@Test
+	public void testStall() {
+		var clock = new VirtualClock();
+		var com = new SerialCom5200();
+		com.setClock(clock);
+		com.setStatusConsumer((a, b) -> {});
+		com.setSimulator(simulator(clock));
+
+		// 1 s segments, uploads of 3.2 s can not keep up
+		var playlist = new ArbPlaylist(1, ArbPlaylist.split(ramp(4 * 2048), 2048, 2048), new int[] { 3, 4 }, 1, 1);
+		var report = playlist.run(com);
+		Assert.assertEquals("switches", 4, report.switches().size());
+		Assert.assertEquals("stalls", 2, report.stalls());
+		Assert.assertTrue("late", report.switches().get(2).stalled() && report.switches().get(2).lateness() > 2000 * MS);
+		com.disconnect();
+	}
+}
@@ -0,0 +1,108 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import se.wetterstrom.jfuncgen.ConsolePanel.ConsoleStream;
+
+public class ConsolePanelTest {
+
+	@Test
+	public void testDropOldest() throws Exception {
+		var textArea = new JTextArea();
+		var stream = new ConsoleStream(textArea);
+		int half = ConsoleStream.MAX_PENDING / 2;
+		// on the event thread, so the flush timer does not run in between
+		SwingUtilities.invokeAndWait(() -> {
+			stream.append("a".repeat(half));
+			stream.append("b".repeat(half));
+			stream.append("c".repeat(half));
+			stream.flushToTextArea();
+		});
+		Assert.assertEquals("text", "\n[" + half + " characters dropped]\n" + "b".repeat(half) + "c".repeat(half), textArea.getText());
+
+		SwingUtilities.invokeAndWait(() -> {
+			textArea.setText("");
+			stream.append("a".repeat(ConsoleStream.MAX_PENDING));
+			for (int i = 0; i < 3; i++) {
+				write(stream, 'b');
+			}
+			stream.flushToTextArea();
+		});
+		Assert.assertEquals("single characters", "\n[" + ConsoleStream.MAX_PENDING + " characters dropped]\nbbb", textArea.getText());
+	}
+
+	@Test
+	public void testTrimLines() throws Exception {
+		var textArea = new JTextArea();
+		var stream = new ConsoleStream(textArea);
+		SwingUtilities.invokeAndWait(() -> {
+			for (int i = 0; i < 6000; i++) {
+				stream.append("line " + i + "\n");
+			}
+			stream.flushToTextArea();
+		});
+		Assert.assertEquals("lines", ConsoleStream.MAX_LINES, textArea.getLineCount());
+		Assert.assertTrue("oldest dropped", textArea.getText().startsWith("line 1001\n"));
+		Assert.assertTrue("newest kept", textArea.getText().endsWith("line 5999\n"));
+	}
+
+	@Test
+	public void testBatching() throws Exception {
+		var textArea = new JTextArea();
+		var stream = new ConsoleStream(textArea);
+		var inserts = new AtomicInteger();
+		textArea.getDocument().addDocumentListener(new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				inserts.incrementAndGet();
+			}
+
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				// not counted
+			}
+
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+				// not counted
+			}
+		});
+		var expected = new StringBuilder();
+		SwingUtilities.invokeAndWait(() -> {
+			for (int i = 0; i < 10000; i++) {
+				char c = (char) ('a' + i % 26);
+				write(stream, c);
+				expected.append(c);
+			}
+		});
+		// flushed by the timer once the event thread is free
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		var text = new String[1];
+		do {
+			Thread.sleep(10);
+			SwingUtilities.invokeAndWait(() -> text[0] = textArea.getText());
+		} while (text[0].isEmpty() && System.nanoTime() < deadline);
+		Thread.sleep(100);
+		Assert.assertEquals("text", expected.toString(), text[0]);
+		Assert.assertEquals("one flush", 1, inserts.get());
+	}
+
+	private static void write(ConsoleStream stream, int b) {
+		try {
+			stream.write(b);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import se.wetterstrom.jfuncgen.AdvancedPanel.MeasureMode;
+
+public class CounterPollerTest {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private static SerialCom5200 connect(VirtualClock clock) {
+		var com = new SerialCom5200();
+		var sim = new Mhs5200Simulator();
+		com.setClock(clock);
+		sim.setClock(clock);
+		sim.setLatency(2, 0, TimeUnit.MILLISECONDS);
+		sim.setCounterInput(12345);
+		com.setStatusConsumer((a, b) -> {});
+		com.setSimulator(sim);
+		return com;
+	}
+
+	@Test
+	public void testRing() {
+		var ring = new SampleRing(4);
+		for (int i = 0; i < 6; i++) {
+			ring.add(i * 10, i);
+		}
+		Assert.assertEquals("size", 4, ring.size());
+		Assert.assertEquals("total", 6, ring.getTotal());
+		Assert.assertEquals("oldest", 20, ring.getTime(0));
+		Assert.assertEquals("newest", 5.0, ring.getValue(3), 0.0);
+		var t = new long[4];
+		var v = new double[4];
+		Assert.assertEquals("copied", 4, ring.copy(t, v));
+		Assert.assertArrayEquals("times", new long[] { 20, 30, 40, 50 }, t);
+
+		var min = new double[2];
+		var max = new double[2];
+		Assert.assertEquals("in span", 3, ring.decimate(30, 70, min, max));
+		Assert.assertArrayEquals("min", new double[] { 3, 5 }, min, 0.0);
+		Assert.assertArrayEquals("max", new double[] { 4, 5 }, max, 0.0);
+	}
+
+	@Test
+	public void testFrequency() {
+		var clock = new VirtualClock();
+		var com = connect(clock);
+		com.setMeasureMode(MeasureMode.FREQUENCY);
+		com.setGateValue(2);
+		Assert.assertTrue(com.awaitAck() && com.awaitAck());
+
+		// one reading per gate time of 10 ms
+		var poller = new CounterPoller(com, 1000);
+		long count = poller.run(1000 * MS);
+		Assert.assertEquals("interval", 10 * MS, poller.getInterval());
+		Assert.assertTrue("count " + count, count >= 95 && count <= 100);
+		var samples = poller.getSamples();
+		for (int i = 0; i < samples.size(); i++) {
+			Assert.assertEquals("reading " + i, 12345.0, samples.getValue(i), 100.0);
+		}
+		Assert.assertEquals("spacing", 10 * MS, samples.getTime(1) - samples.getTime(0));
+		Assert.assertEquals("statistics", count, poller.getStatistics().getCount());
+		Assert.assertEquals("tau0", 0.01, poller.getStatistics().getTau0(), 0.0);
+		com.disconnect();
+	}
+
+	@Test
+	public void testCounterExport() throws IOException {
+		var clock = new VirtualClock();
+		var com = connect(clock);
+		com.setMeasureMode(MeasureMode.COUNTER);
+		com.setMeasureRunState(1);
+		com.setGateValue(2);
+		Assert.assertTrue(com.awaitAck() && com.awaitAck() && com.awaitAck());
+
+		var file = Files.createTempFile("counter", ".bin");
+		try {
+			// as fast as the link allows, one round trip per reading
+			var poller = new CounterPoller(com, 1000);
+			poller.startExport(file);
+			long count = poller.run(1000 * MS);
+			// flushed once per gate time of 10 ms
+			Assert.assertTrue("flushed while exporting", Files.size(file) >= 8 + 16 * (count - 10));
+			poller.stopExport();
+			Assert.assertEquals("interval", 0, poller.getInterval());
+			Assert.assertTrue("count " + count, count * poller.getRoundTrip() >= 950 * MS);
+			var samples = poller.getSamples();
+			for (int i = 1; i < samples.size(); i++) {
+				Assert.assertTrue("counting " + i, samples.getValue(i) >= samples.getValue(i - 1));
+			}
+
+			var read = new SampleRing(1000);
+			Assert.assertEquals("exported", count, CounterPoller.read(file, read));
+			Assert.assertEquals("value", samples.getValue(samples.size() - 1), read.getValue(read.size() - 1), 0.0);
+			Assert.assertEquals("time", samples.getTime(samples.size() - 1) - samples.getTime(0), read.getTime(read.size() - 1) - read.getTime(0));
+		} finally {
+			Files.delete(file);
+		}
+		com.disconnect();
+	}
+
+	@Test
+	public void testCancel() throws InterruptedException {
+		var com = new SerialCom5200();
+		var sim = new Mhs5200Simulator();
+		sim.setLatency(300, 0, TimeUnit.MILLISECONDS);
+		com.setStatusConsumer((a, b) -> {});
+		com.setSimulator(sim);
+		var poller = new CounterPoller(com, 1000);
+		poller.start();
+		Thread.sleep(50);
+
+		// a reading is on its way, cancel does not wait for it
+		long t0 = System.nanoTime();
+		var old = poller.cancel();
+		Assert.assertTrue("not blocked", System.nanoTime() - t0 < 100 * MS);
+		Assert.assertTrue("reading", old.isAlive());
+		poller.start();
+		Assert.assertTrue("restarted", poller.isRunning());
+		old.join(5000);
+		Assert.assertFalse("canceled thread stopped", old.isAlive());
+		Assert.assertTrue("still polling", poller.isRunning());
+		poller.stop();
+		Assert.assertFalse("stopped", poller.isRunning());
+		com.disconnect();
+	}
+}
@@ -0,0 +1,83 @@
+package se.wetterstrom.jfuncgen;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DeviceProbeTest {
+
+	/** a port without a device */
+	private static SerialTransport silent(String name) {
+		return new SerialTransport() {
+			private boolean open;
+
+			@Override
+			public boolean open(PortSettings settings) {
+				open = true;
+				return true;
+			}
+
+			@Override
+			public void close() {
+				open = false;
+			}
+
+			@Override
+			public boolean isOpen() {
+				return open;
+			}
+
+			@Override
+			public int read(ByteBuffer dst) {
+				return 0;
+			}
+
+			@Override
+			public int write(ByteBuffer src) {
+				int n = src.remaining();
+				src.position(src.limit());
+				return n;
+			}
+
+			@Override
+			public void setDataListener(Runnable listener) {
+				// never data
+			}
+
+			@Override
+			public String getName() {
+				return name;
+			}
+		};
+	}
+
+	@Test
+	public void testProbe() {
+		var ports = new ArrayList<SerialTransport>();
+		for (int i = 0; i < 4; i++) {
+			ports.add(silent("silent" + i));
+		}
+		var fy = new SimulatorTransport(new Fy6900Simulator(), "fy");
+		var mhs = new SimulatorTransport(new Mhs5200Simulator(), "mhs");
+		ports.add(1, fy);
+		ports.add(mhs);
+
+		long start = System.nanoTime();
+		var matches = DeviceProbe.probe(ports, List.of(DeviceType.MHS5200, DeviceType.FY6900), 200);
+		long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+		Assert.assertEquals("matches " + matches, 2, matches.size());
+		Assert.assertSame("fy port", fy, matches.get(0).transport());
+		Assert.assertEquals("fy", DeviceType.FY6900, matches.get(0).type());
+		Assert.assertEquals("fy identity", Fy6900Simulator.MODEL + " " + Fy6900Simulator.FIRMWARE, matches.get(0).identity());
+		Assert.assertSame("mhs port", mhs, matches.get(1).transport());
+		Assert.assertEquals("mhs", DeviceType.MHS5200, matches.get(1).type());
+		Assert.assertEquals("mhs identity", Mhs5200Simulator.MODEL + " " + Mhs5200Simulator.FIRMWARE, matches.get(1).identity());
+		Assert.assertFalse("closed", fy.isOpen() || mhs.isOpen());
+		// two timeouts per silent port, in parallel rather than one after the other
+		Assert.assertTrue("elapsed " + elapsed, elapsed >= 400 && elapsed < 1200);
+	}
+}
@@ -0,0 +1,208 @@
+package se.wetterstrom.jfuncgen;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DeviceSimulatorTest {
+
+	@Test
+	public void testMhs5200Driver() {
+		var com = new SerialCom5200();
+		var sim = new Mhs5200Simulator();
+		com.setSimulator(sim);
+		Assert.assertTrue("online", com.isOnline());
+
+		Assert.assertEquals("model", Mhs5200Simulator.MODEL, com.getModel());
+		com.setFrequency(1, 880.0);
+		Assert.assertEquals("ack", ":ok", com.poll());
+		Assert.assertEquals("frequency", 880.0, com.getFrequency(1), 0.001);
+		com.setAmplitude(2, 3.5);
+		Assert.assertEquals("ack", ":ok", com.poll());
+		Assert.assertEquals("amplitude", 3.5, com.getAmplitude(2), 0.001);
+		com.setOffset(1, -20);
+		Assert.assertEquals("ack", ":ok", com.poll());
+		Assert.assertEquals("offset", -20.0, com.getOffset(1), 0.001);
+		com.setDutyCycle(1, 12.3);
+		Assert.assertEquals("ack", ":ok", com.poll());
+		Assert.assertEquals("duty", 12.3, com.getDutyCycle(1), 0.001);
+		com.setGateValue(3);
+		Assert.assertEquals("ack", ":ok", com.poll());
+		Assert.assertEquals("gate", 3, com.getGateValue());
+
+		Assert.assertEquals("channel 1", 880.0, sim.getChannel(1).getFrequency(), 0.001);
+		Assert.assertEquals("channel 2", 3.5, sim.getChannel(2).getAmplitude(), 0.001);
+
+		var slice = new StringBuilder(":a31");
+		for (int i = 0; i < SerialCom5200.SAMPLES_PER_SLICE; i++) {
+			slice.append(i == 0 ? "" : ",").append(i * 10);
+		}
+		com.writeSerial(slice.append('\n').toString());
+		Assert.assertEquals("ack", ":ok", com.poll());
+		Assert.assertTrue("slice", com.requestReply(":b31\n").startsWith(":b310,10,20,"));
+		Assert.assertEquals("sample", 1270, sim.getArbData(3)[SerialCom5200.SAMPLES_PER_SLICE * 2 - 1]);
+
+		com.disconnect();
+		Assert.assertFalse("online", com.isOnline());
+		Assert.assertFalse("open", sim.isOpen());
+	}
+
+	@Test
+	public void testFy6900Driver() {
+		var com = new SerialCom6900();
+		var sim = new Fy6900Simulator();
+		com.setSimulator(sim);
+
+		Assert.assertEquals("model", Fy6900Simulator.MODEL, com.getModel());
+		com.setFrequency(1, 12345.5);
+		Assert.assertEquals("frequency", 12345.5, com.getFrequency(1), 0.001);
+		Assert.assertEquals("channel", 12345.5, sim.getChannel(1).getFrequency(), 0.001);
+		com.setDutyCycle(1, 25.0);
+		Assert.assertEquals("duty", 25.0, com.getDutyCycle(1), 0.001);
+
+		var data = new int[com.getArbSize()];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = i;
+		}
+		com.setArbData(5, data, Progress.NONE);
+		Assert.assertArrayEquals("arb", data, sim.getArbData(5));
+	}
+
+	@Test
+	public void testCounter() throws InterruptedException {
+		var com = new SerialCom6900();
+		var sim = new Fy6900Simulator();
+		com.setSimulator(sim);
+		sim.setCounterInput(10000.0);
+		com.setResetCounter(0);
+		Thread.sleep(100);
+		int count = com.getCount();
+		Assert.assertTrue("count " + count, count >= 900 && count < 10000);
+		com.setMeasureRunState(0);
+		int paused = com.getCount();
+		Thread.sleep(50);
+		Assert.assertEquals("paused", paused, com.getCount());
+	}
+
+	@Test
+	public void testTiming() throws InterruptedException {
+		var sim = new Mhs5200Simulator();
+		BlockingQueue<byte[]> replies = new LinkedBlockingQueue<>();
+		sim.open(replies::add);
+
+		sim.setLatency(50, 0, TimeUnit.MILLISECONDS);
+		long t0 = System.nanoTime();
+		write(sim, ":r0c\n");
+		Assert.assertEquals("reply", ":r0c" + Mhs5200Simulator.MODEL + "\n", next(replies));
+		Assert.assertTrue("latency", System.nanoTime() - t0 >= TimeUnit.MILLISECONDS.toNanos(50));
+
+		sim.setLatency(0, 0, TimeUnit.MILLISECONDS);
+		sim.setBaudRate(1200);
+		t0 = System.nanoTime();
+		write(sim, ":r0c\n");
+		// (5 + 17) characters of 10 bits at 1200 baud
+		Assert.assertEquals("reply", ":r0c" + Mhs5200Simulator.MODEL + "\n", next(replies));
+		Assert.assertTrue("transfer", System.nanoTime() - t0 >= TimeUnit.MILLISECONDS.toNanos(180));
+		sim.close();
+	}
+
+	@Test
+	public void testFaults() throws InterruptedException {
+		var sim = new Mhs5200Simulator();
+		BlockingQueue<byte[]> replies = new LinkedBlockingQueue<>();
+		sim.open(replies::add);
+		sim.setSeed(1);
+
+		sim.setFault(DeviceSimulator.Fault.DROP, 0.5);
+		for (int i = 0; i < 20; i++) {
+			write(sim, ":r1w\n");
+		}
+		long end = System.currentTimeMillis() + 5000;
+		while ((sim.getCommandCount() < 20 || replies.size() + sim.getFaultCount() < 20)
+				&& System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		long dropped = sim.getFaultCount();
+		Assert.assertTrue("dropped " + dropped, dropped > 0 && dropped < 20);
+		Assert.assertEquals("replies", 20 - dropped, replies.size());
+		replies.clear();
+		sim.setFault(DeviceSimulator.Fault.DROP, 0.0);
+
+		sim.setFault(DeviceSimulator.Fault.CORRUPT, 1.0);
+		write(sim, ":r1w\n");
+		Assert.assertNotEquals("corrupt", ":r1w0\n", next(replies));
+		sim.setFault(DeviceSimulator.Fault.CORRUPT, 0.0);
+
+		sim.setFault(DeviceSimulator.Fault.SPLIT, 1.0);
+		write(sim, ":r1w\n");
+		Assert.assertEquals("split", ":r1w0\n", next(replies) + next(replies));
+		Assert.assertEquals("commands", 22, sim.getCommandCount());
+		Assert.assertEquals("faults", dropped + 2, sim.getFaultCount());
+		sim.close();
+	}
+
+	@Test
+	public void testVirtualArbTransfer() {
+		var clock = new VirtualClock();
+		var com = new SerialCom5200();
+		var sim = new Mhs5200Simulator();
+		com.setClock(clock);
+		sim.setClock(clock);
+		sim.setBaudRate(57600);
+		sim.setLatency(2, 1, TimeUnit.MILLISECONDS);
+		sim.setSeed(1);
+		com.setSimulator(sim);
+
+		var data = new int[com.getArbSize()];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (i * 7) % com.getArbMax();
+		}
+		long t0 = System.nanoTime();
+		com.setArbData(4, data, Progress.NONE);
+		Assert.assertArrayEquals("written", data, sim.getArbData(4));
+		// 16 slices of at least 200 ms each
+		Assert.assertTrue("write time", clock.nanoTime() >= TimeUnit.MILLISECONDS.toNanos(16 * 200));
+
+		long t1 = clock.nanoTime();
+		Assert.assertArrayEquals("read", data, com.getArbData(4, Progress.NONE));
+		Assert.assertTrue("read time", clock.nanoTime() - t1 >= TimeUnit.MILLISECONDS.toNanos(16 * 100));
+		Assert.assertTrue("real time", System.nanoTime() - t0 < TimeUnit.SECONDS.toNanos(2));
+		com.disconnect();
+	}
+
+	@Test
+	public void testVirtualTimeout() {
+		var clock = new VirtualClock();
+		var com = new SerialCom6900();
+		var sim = new Fy6900Simulator();
+		com.setClock(clock);
+		sim.setClock(clock);
+		com.setSimulator(sim);
+		sim.setFault(DeviceSimulator.Fault.DROP, 1.0);
+
+		long t0 = System.nanoTime();
+		Assert.assertNull("no reply", com.getModel());
+		Assert.assertEquals("timeout", TimeUnit.SECONDS.toNanos(10), clock.nanoTime());
+		Assert.assertTrue("real time", System.nanoTime() - t0 < TimeUnit.SECONDS.toNanos(1));
+
+		sim.setFault(DeviceSimulator.Fault.DROP, 0.0);
+		Assert.assertEquals("model", Fy6900Simulator.MODEL, com.getModel());
+		Assert.assertEquals("no timeout", TimeUnit.SECONDS.toNanos(10), clock.nanoTime());
+		com.disconnect();
+	}
+
+	private static void write(DeviceSimulator sim, String str) {
+		var data = str.getBytes(StandardCharsets.ISO_8859_1);
+		Assert.assertEquals("written", data.length, sim.write(data, 0, data.length));
+	}
+
+	private static String next(BlockingQueue<byte[]> replies) throws InterruptedException {
+		var data = replies.poll(5, TimeUnit.SECONDS);
+		Assert.assertNotNull("reply", data);
+		return new String(data, StandardCharsets.ISO_8859_1);
+	}
+}
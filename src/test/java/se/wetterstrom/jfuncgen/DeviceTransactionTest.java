@@ -0,0 +1,63 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DeviceTransactionTest {
+
+	@Test
+	public void testCommit() {
+		var clock = new VirtualClock();
+		var executed = new ArrayList<String>();
+		var sim = new Mhs5200Simulator() {
+			@Override
+			protected void execute(String command) {
+				super.execute(command);
+				executed.add(command);
+			}
+		};
+		sim.setClock(clock);
+		sim.setLatency(2, 0, TimeUnit.MILLISECONDS);
+		var com = new SerialCom5200();
+		com.setClock(clock);
+		com.setStatusConsumer((a, b) -> {});
+		com.setSimulator(sim);
+
+		var state = DeviceTransaction.State.read(com);
+		Assert.assertNotNull("frequency", state.get(DeviceParameter.FREQUENCY, 1));
+		long commands = sim.getCommandCount();
+		executed.clear();
+
+		var tx = new DeviceTransaction()
+				.set(DeviceParameter.AMPLITUDE, 1, "10")
+				.set(DeviceParameter.FREQUENCY, 2, "2000")
+				.set(DeviceParameter.WAVEFORM, 1, "square")
+				.set(DeviceParameter.AMPLITUDE, 2, "0.5")
+				.set(DeviceParameter.FREQUENCY, 1, "1500")
+				.set(DeviceParameter.PHASE, 2, "90")
+				// the known state, rounded by the device
+				.set(DeviceParameter.OFFSET, 1, state.get(DeviceParameter.OFFSET, 1) + "01");
+		var result = tx.commit(com, state);
+		Assert.assertEquals("written", 6, result.written());
+		Assert.assertEquals("skipped", 1, result.skipped());
+		Assert.assertEquals("commands", commands + 6, sim.getCommandCount());
+		// lower first, raise last, the channels next to each other
+		Assert.assertEquals("order", List.of(":s2a50", ":s1w001", ":s1f00150000", ":s2f00200000", ":s2p90", ":s1a1000"), executed);
+		Assert.assertEquals("applied", 2000.0, sim.getChannel(2).getFrequency(), 0.0);
+
+		// nothing changed, nothing written
+		result = tx.commit(com, state);
+		Assert.assertEquals("again", 0, result.written());
+		Assert.assertEquals("again commands", commands + 6, sim.getCommandCount());
+
+		// an invalid value writes nothing
+		var invalid = new DeviceTransaction().set(DeviceParameter.FREQUENCY, 1, "5").set(DeviceParameter.DUTY, 1, "x");
+		Assert.assertThrows("invalid", IllegalArgumentException.class, () -> invalid.commit(com, state));
+		Assert.assertEquals("invalid commands", commands + 6, sim.getCommandCount());
+		com.disconnect();
+	}
+}
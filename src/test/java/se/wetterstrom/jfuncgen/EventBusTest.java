@@ -0,0 +1,140 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EventBusTest {
+
+	@Test
+	public void testDelivery() throws InterruptedException {
+		var bus = new EventBus<Integer>("test");
+		Assert.assertFalse("subscribers", bus.hasSubscribers());
+		List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+		var latch = new CountDownLatch(10);
+		bus.subscribe(i -> {
+			received.add(i);
+			latch.countDown();
+		});
+		Assert.assertTrue("subscribers", bus.hasSubscribers());
+		for (int i = 0; i < 10; i++) {
+			bus.publish(i);
+		}
+		Assert.assertTrue("delivered", latch.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals("order", List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), received);
+		bus.unsubscribeAll();
+		Assert.assertFalse("subscribers", bus.hasSubscribers());
+	}
+
+	@Test
+	public void testDropOldest() throws InterruptedException {
+		var bus = new EventBus<Integer>("test");
+		var blocked = new CountDownLatch(1);
+		var started = new CountDownLatch(1);
+		List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+		var done = new CountDownLatch(4);
+		var sub = bus.subscribe(i -> {
+			started.countDown();
+			await(blocked);
+			received.add(i);
+			done.countDown();
+		}, 3, EventBus.Overflow.DROP_OLDEST, null);
+
+		bus.publish(0);
+		Assert.assertTrue("started", started.await(5, TimeUnit.SECONDS));
+		for (int i = 1; i <= 5; i++) {
+			bus.publish(i);
+		}
+		Assert.assertEquals("dropped", 2, sub.getDropped());
+		blocked.countDown();
+		Assert.assertTrue("delivered", done.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals("newest", List.of(0, 3, 4, 5), received);
+	}
+
+	@Test
+	public void testCoalesce() throws InterruptedException {
+		var bus = new EventBus<String>("test");
+		var blocked = new CountDownLatch(1);
+		var started = new CountDownLatch(1);
+		var sb = new StringBuffer();
+		var sub = bus.subscribe(s -> {
+			started.countDown();
+			await(blocked);
+			sb.append(s);
+		}, 2, EventBus.Overflow.COALESCE, String::concat);
+
+		bus.publish("a");
+		Assert.assertTrue("started", started.await(5, TimeUnit.SECONDS));
+		for (var s : new String[] { "b", "c", "d", "e" }) {
+			bus.publish(s);
+		}
+		Assert.assertEquals("dropped", 0, sub.getDropped());
+		Assert.assertTrue("merged", sub.getMerged() > 0);
+		blocked.countDown();
+		long end = System.currentTimeMillis() + 5000;
+		while (sb.length() < 5 && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals("all data", "abcde", sb.toString());
+	}
+
+	@Test
+	public void testCoalesceOrder() throws InterruptedException {
+		var bus = new EventBus<String>("test");
+		var sb = new StringBuffer();
+		var expected = new StringBuilder();
+		var sub = bus.subscribe(s -> {
+			sb.append(s);
+			Thread.onSpinWait();
+		}, 4, EventBus.Overflow.COALESCE, String::concat);
+		for (int i = 0; i < 5000; i++) {
+			var s = i + ",";
+			expected.append(s);
+			bus.publish(s);
+		}
+		long end = System.currentTimeMillis() + 5000;
+		while (sb.length() < expected.length() && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals("publish order", expected.toString(), sb.toString());
+		Assert.assertEquals("queued", 0, sub.getQueued());
+	}
+
+	@Test
+	public void testUnsubscribe() throws InterruptedException {
+		var bus = new EventBus<Integer>("test");
+		var first = new CountDownLatch(1);
+		List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+		Consumer<Integer> consumer = i -> {
+			received.add(i);
+			first.countDown();
+		};
+		bus.subscribe(consumer);
+		bus.publish(1);
+		Assert.assertTrue("delivered", first.await(5, TimeUnit.SECONDS));
+		Assert.assertTrue("removed", bus.unsubscribe(consumer));
+		Assert.assertFalse("removed", bus.unsubscribe(consumer));
+		bus.publish(2);
+		Thread.sleep(50);
+		Assert.assertEquals("received", List.of(1), received);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCoalesceWithoutMerger() {
+		new EventBus<String>("test").subscribe(s -> {}, 1, EventBus.Overflow.COALESCE, null);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
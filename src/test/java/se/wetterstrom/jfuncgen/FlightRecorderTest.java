@@ -0,0 +1,126 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import se.wetterstrom.jfuncgen.FlightRecorder.Direction;
+import se.wetterstrom.jfuncgen.FlightRecorder.Entry;
+
+public class FlightRecorderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	private static void record(FlightRecorder fr, Direction dir, String s) {
+		var data = bytes(s);
+		fr.record(dir, data, 0, data.length);
+	}
+
+	@Test
+	public void testRing() throws IOException {
+		var file = folder.newFile("test.rec").toPath();
+		// 8 slots
+		try (var fr = new FlightRecorder(file, 64 + 8 * FlightRecorder.SLOT_SIZE)) {
+			Assert.assertEquals("capacity", 8 * FlightRecorder.SLOT_PAYLOAD, fr.getCapacity());
+			record(fr, Direction.TX, "UMO\n");
+			record(fr, Direction.RX, "FY6900-60M\n");
+			fr.event("Connected");
+			var entries = FlightRecorder.read(file);
+			Assert.assertEquals("entries", 3, entries.size());
+			Assert.assertEquals("tx", Direction.TX, entries.get(0).direction());
+			Assert.assertEquals("tx", "UMO\n", entries.get(0).text());
+			Assert.assertEquals("rx", "FY6900-60M\n", entries.get(1).text());
+			Assert.assertEquals("event", "Connected", entries.get(2).text());
+			Assert.assertTrue("time", entries.get(0).time() <= entries.get(1).time());
+
+			// three slots, overwriting the first two entries
+			var big = "x".repeat(2 * FlightRecorder.SLOT_PAYLOAD + 1);
+			record(fr, Direction.TX, big);
+			record(fr, Direction.RX, "1");
+			record(fr, Direction.RX, "2");
+			record(fr, Direction.RX, "3");
+			entries = FlightRecorder.read(file);
+			Assert.assertEquals("entries", List.of("FY6900-60M\n", "Connected", big, "1", "2", "3"), texts(entries));
+
+			record(fr, Direction.RX, "4");
+			record(fr, Direction.RX, "5");
+			entries = FlightRecorder.read(file);
+			Assert.assertEquals("entries", List.of(big, "1", "2", "3", "4", "5"), texts(entries));
+		}
+
+		// continue the same file, overwriting the beginning of the big one so that its continuations are dropped
+		try (var fr = new FlightRecorder(file, 64 + 8 * FlightRecorder.SLOT_SIZE)) {
+			record(fr, Direction.TX, "6");
+			Assert.assertEquals("entries", List.of("1", "2", "3", "4", "5", "6"), texts(FlightRecorder.read(file)));
+		}
+
+		// another size starts over
+		try (var fr = new FlightRecorder(file, 64 + 16 * FlightRecorder.SLOT_SIZE)) {
+			record(fr, Direction.TX, "7");
+			Assert.assertEquals("entries", List.of("7"), texts(FlightRecorder.read(file)));
+		}
+	}
+
+	@Test
+	public void testRecordAndReplay() throws IOException {
+		var file = folder.newFile("session.rec").toPath();
+		var pair = LoopbackTransport.createPair("test");
+		var device = pair[1];
+		device.open(null);
+		var request = ByteBuffer.allocate(64);
+		device.setDataListener(() -> {
+			device.read(request);
+			if (request.position() > 0 && request.get(request.position() - 1) == '\n') {
+				request.clear();
+				device.write(ByteBuffer.wrap(bytes("FY6900-60M\n")));
+			}
+		});
+
+		var com = new SerialCom6900();
+		com.setDeviceType(DeviceType.FY6900);
+		com.setStatusConsumer((a, b) -> {});
+		try (var fr = new FlightRecorder(file, 64 * 1024)) {
+			AbstractSerialCom.setFlightRecorder(fr);
+			com.setTransport(pair[0]);
+			Assert.assertEquals("model", "FY6900-60M", com.getModel());
+			Assert.assertEquals("model", "FY6900-60M", com.getModel());
+			com.disconnect();
+		} finally {
+			AbstractSerialCom.setFlightRecorder(null);
+		}
+
+		var sessions = FlightReplay.sessions(FlightRecorder.read(file));
+		Assert.assertEquals("sessions", 1, sessions.size());
+		var session = sessions.get(0);
+		Assert.assertEquals("entries", List.of(Direction.EVENT, Direction.TX, Direction.RX, Direction.TX, Direction.RX, Direction.EVENT),
+				session.stream().map(Entry::direction).toList());
+
+		var replay = new FlightReplay(session);
+		Assert.assertEquals("device type", DeviceType.FY6900, replay.getDeviceType());
+		var lines = new ArrayList<String>();
+		var replayCom = new SerialCom6900();
+		replayCom.setStatusConsumer((a, b) -> {});
+		var result = replay.replay(replayCom, 0, lines::add);
+		Assert.assertEquals("lines", List.of("FY6900-60M", "FY6900-60M"), lines);
+		Assert.assertEquals("chunks", 4, result.chunks());
+		Assert.assertEquals("written", 8, result.written());
+		Assert.assertEquals("received", 22, result.received());
+		Assert.assertFalse("disconnected", replayCom.isOnline());
+	}
+
+	private static List<String> texts(List<Entry> entries) {
+		return entries.stream().map(Entry::text).toList();
+	}
+}
@@ -0,0 +1,67 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import se.wetterstrom.jfuncgen.FrequencyLock.Mode;
+import se.wetterstrom.jfuncgen.FrequencyLock.State;
+
+public class FrequencyLockTest {
+
+	private static final long S = TimeUnit.SECONDS.toNanos(1);
+
+	private static SerialCom5200 connect(VirtualClock clock, Mhs5200Simulator sim) {
+		var com = new SerialCom5200();
+		com.setClock(clock);
+		sim.setClock(clock);
+		sim.setLatency(2, 0, TimeUnit.MILLISECONDS);
+		com.setStatusConsumer((a, b) -> {});
+		com.setSimulator(sim);
+		com.setFrequency(1, 1000);
+		Assert.assertTrue(com.awaitAck());
+		return com;
+	}
+
+	@Test
+	public void testTrack() {
+		var clock = new VirtualClock();
+		var sim = new Mhs5200Simulator();
+		var com = connect(clock, sim);
+		sim.setCounterInput(12345);
+
+		// gate 1 s, twice the reference
+		var updates = new ArrayList<FrequencyLock.Update>();
+		var report = new FrequencyLock(1, Mode.TRACK, 2.0, FrequencyLock.DEFAULT_KP, FrequencyLock.DEFAULT_KI, 0).run(com, 20 * S, updates::add);
+		Assert.assertEquals("state " + report, State.LOCKED, report.state());
+		Assert.assertEquals("output", 24690.0, sim.getChannel(1).getFrequency(), 0.01);
+		Assert.assertEquals("updates", report.updates(), updates.size());
+		Assert.assertTrue("updates " + report.updates(), report.updates() >= 18);
+		Assert.assertEquals("acquiring", State.ACQUIRING, updates.get(0).state());
+		// a read and a set round trip
+		Assert.assertTrue("latency " + report, report.maxLatency() < TimeUnit.MILLISECONDS.toNanos(10));
+		com.disconnect();
+	}
+
+	@Test
+	public void testHold() {
+		var clock = new VirtualClock();
+		// a generator running 1000 ppm slow, the meter measuring the output
+		var sim = new Mhs5200Simulator() {
+			@Override
+			protected synchronized void setFrequency(int channel, double frequency) {
+				super.setFrequency(channel, frequency * 0.999);
+			}
+		};
+		var com = connect(clock, sim);
+
+		var lock = new FrequencyLock(1, Mode.HOLD, 10000, FrequencyLock.DEFAULT_KP, FrequencyLock.DEFAULT_KI, 0);
+		var report = lock.run(com, 30 * S, null);
+		Assert.assertEquals("state " + report, State.LOCKED, report.state());
+		Assert.assertEquals("measured", 10000, sim.getOutputFrequency(), 1.0);
+		Assert.assertTrue("residual " + report, report.residual() < 5);
+		com.disconnect();
+	}
+}
@@ -0,0 +1,47 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import se.wetterstrom.jfuncgen.HostSweep.Spacing;
+
+public class FrequencyScanTest {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	public void testScan() throws IOException {
+		var clock = new VirtualClock();
+		var com = new SerialCom5200();
+		var sim = new Mhs5200Simulator();
+		com.setClock(clock);
+		sim.setClock(clock);
+		sim.setLatency(2, 0, TimeUnit.MILLISECONDS);
+		com.setStatusConsumer((a, b) -> {});
+		com.setSimulator(sim);
+
+		// the counter measures channel 1, gate 10 ms
+		var scan = new FrequencyScan(1, HostSweep.points(1000, 100900, 1000, Spacing.LINEAR), 5 * MS, 2);
+		Assert.assertEquals("min time", 1000 * 15 * MS, scan.getMinTime(com));
+		long t0 = clock.nanoTime();
+		var table = scan.run(com);
+		long elapsed = clock.nanoTime() - t0;
+
+		Assert.assertEquals("size", 1000, table.size());
+		for (int i = 0; i < table.size(); i++) {
+			Assert.assertEquals("reading " + i, table.getFrequency(i), table.getValue(i), 100.0);
+		}
+		Assert.assertTrue("time " + table.getTime(1), table.getTime(1) - table.getTime(0) >= 15 * MS);
+		// half a round trip per point, not the round trips of the step and the reading
+		Assert.assertTrue("elapsed " + elapsed, elapsed <= scan.getMinTime(com) + 1000 * 2 * MS + 50 * MS);
+
+		var csv = new StringBuilder();
+		table.write(csv);
+		Assert.assertTrue(csv.toString(), csv.toString().startsWith("time,frequency,value\n"));
+		Assert.assertEquals("lines", 1001, csv.toString().lines().count());
+		com.disconnect();
+	}
+}
@@ -0,0 +1,86 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import se.wetterstrom.jfuncgen.HostSweep.Spacing;
+
+public class HostSweepTest {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	public void testPoints() {
+		Assert.assertArrayEquals("linear", new double[] {0, 25, 50, 75, 100}, HostSweep.points(0, 100, 5, Spacing.LINEAR), 1e-9);
+		Assert.assertArrayEquals("log", new double[] {10, 100, 1000, 10000}, HostSweep.points(10, 10000, 4, Spacing.LOG), 1e-6);
+		Assert.assertArrayEquals("down", new double[] {1000, 100, 10}, HostSweep.points(1000, 10, 3, Spacing.LOG), 1e-9);
+		Assert.assertThrows(IllegalArgumentException.class, () -> HostSweep.points(0, 10, 3, Spacing.LOG));
+		Assert.assertThrows(IllegalArgumentException.class, () -> HostSweep.of(DeviceParameter.MODEL, 1, new double[] {1}, MS));
+	}
+
+	@Test
+	public void testEncode() {
+		var com = new SerialCom5200();
+		var sweep = HostSweep.of(DeviceParameter.FREQUENCY, 2, new double[] {1000, 12.5}, MS);
+		Assert.assertArrayEquals("encoded", new String[] {":s2f00100000\n", ":s2f00001250\n"}, sweep.encode(com));
+	}
+
+	@Test
+	public void testRun() {
+		var clock = new VirtualClock();
+		var com = new SerialCom5200();
+		var stall = new long[] {30 * MS};
+		var sim = new Mhs5200Simulator() {
+			@Override
+			public int write(byte[] data, int offset, int length) {
+				// the first write takes three dwell times
+				clock.advance(stall[0]);
+				stall[0] = 0;
+				return super.write(data, offset, length);
+			}
+		};
+		com.setClock(clock);
+		sim.setClock(clock);
+		com.setStatusConsumer((a, b) -> {});
+		com.setSimulator(sim);
+
+		var sweep = HostSweep.of(DeviceParameter.AMPLITUDE, 1, HostSweep.points(1, 10, 10, Spacing.LINEAR), 10 * MS);
+		var report = sweep.run(com);
+		Assert.assertEquals("points", 10, report.points());
+		Assert.assertEquals("coalesced", 2, report.coalesced());
+		Assert.assertEquals("written", 8, report.written());
+		Assert.assertEquals("elapsed", 100 * MS, report.elapsed());
+		Assert.assertEquals("late", 30 * MS, report.jitter().max());
+		Assert.assertEquals("on time", 0, report.jitter().min());
+		Assert.assertEquals("rate", 80.0, report.rate(), 1e-9);
+		Assert.assertEquals("last value", 10.0, com.getAmplitude(1), 1e-9);
+		com.disconnect();
+	}
+
+	@Test
+	public void testDrainAcks() {
+		var clock = new VirtualClock();
+		var com = new SerialCom5200();
+		var sim = new Mhs5200Simulator();
+		com.setClock(clock);
+		sim.setClock(clock);
+		// the acknowledges arrive long after the last point
+		sim.setLatency(50, 0, TimeUnit.MILLISECONDS);
+		com.setStatusConsumer((a, b) -> {});
+		com.setSimulator(sim);
+
+		var sweep = HostSweep.of(DeviceParameter.AMPLITUDE, 1, HostSweep.points(1, 5, 5, Spacing.LINEAR), MS);
+		Assert.assertEquals("written", 5, sweep.run(com).written());
+		Assert.assertEquals("drained", 0, com.serialListener.size());
+
+		DeviceParameter.AMPLITUDE.set(com, 1, "7");
+		clock.advance(TimeUnit.SECONDS.toNanos(1));
+		Assert.assertEquals("no stray acknowledge", 0, com.serialListener.size());
+		Assert.assertEquals("no pending reply", 0, clock.getPendingCount());
+		Assert.assertEquals("amplitude", 7.0, sim.getChannel(1).getAmplitude(), 1e-9);
+		Assert.assertEquals("no acknowledges", 0, com.drainAcks(0));
+		com.disconnect();
+	}
+}
@@ -0,0 +1,55 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JFuncGenCliTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testCommands() throws IOException {
+		var clock = new VirtualClock();
+		var com = new SerialCom5200();
+		var sim = new Mhs5200Simulator();
+		com.setClock(clock);
+		sim.setClock(clock);
+		com.setStatusConsumer((a, b) -> {});
+		com.setSimulator(sim);
+
+		var bytes = new ByteArrayOutputStream();
+		var cli = new JFuncGenCli(com, new PrintStream(bytes, true, StandardCharsets.ISO_8859_1));
+		cli.execute("get model");
+		cli.execute("# comment");
+		cli.execute("set frequency 2 1234.5");
+		cli.execute("get frequency 2");
+		cli.execute("set waveform square");
+		cli.execute("get waveform");
+		cli.execute("set output on");
+		cli.execute("get output");
+		Assert.assertEquals("output", String.join("\n", Mhs5200Simulator.MODEL, "1234.5", "1 Square", "true", ""),
+				bytes.toString(StandardCharsets.ISO_8859_1).replace("\r", ""));
+
+		Assert.assertEquals("unknown", 1, cli.run("get nothing"));
+		Assert.assertEquals("read only", 1, cli.run("set model x"));
+		Assert.assertEquals("bad value", 1, cli.run("set output maybe"));
+
+		var file = folder.newFile("arb.csv").toPath();
+		Files.writeString(file, "0, 100;4095\n5000");
+		cli.execute("arb-upload 3 " + file);
+		cli.execute("arb-download 3 " + file);
+		var lines = Files.readAllLines(file);
+		Assert.assertEquals("size", com.getArbSize(), lines.size());
+		Assert.assertEquals("samples", "[0, 100, 4095, " + com.getArbMax() + ", " + com.getArbOffset() + "]", lines.subList(0, 5).toString());
+		com.disconnect();
+	}
+}
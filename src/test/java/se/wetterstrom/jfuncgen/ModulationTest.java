@@ -0,0 +1,67 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import se.wetterstrom.jfuncgen.Modulation.Shape;
+import se.wetterstrom.jfuncgen.Modulation.Type;
+
+public class ModulationTest {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	public void testValues() {
+		var am = new Modulation(1, Type.AM, Shape.SINE, 2.0, 0.5, 10, 100).getValues();
+		Assert.assertEquals("am", 2.0, am[0], 1e-9);
+		Assert.assertEquals("am peak", 3.0, am[Modulation.TABLE_SIZE / 4], 1e-9);
+		Assert.assertEquals("am trough", 1.0, am[3 * Modulation.TABLE_SIZE / 4], 1e-9);
+		var pwm = new Modulation(1, Type.PWM, Shape.SQUARE, 50, 20, 10, 100).getValues();
+		Assert.assertEquals("pwm high", 70, pwm[0], 1e-9);
+		Assert.assertEquals("pwm low", 30, pwm[Modulation.TABLE_SIZE - 1], 1e-9);
+		Assert.assertThrows("nyquist", IllegalArgumentException.class, () -> new Modulation(1, Type.FM, Shape.SINE, 1000, 100, 60, 100));
+	}
+
+	@Test
+	public void testRun() {
+		var clock = new VirtualClock();
+		var frequencies = new ArrayList<Double>();
+		var sim = new Mhs5200Simulator() {
+			@Override
+			protected synchronized void setFrequency(int channel, double frequency) {
+				super.setFrequency(channel, frequency);
+				frequencies.add(frequency);
+			}
+		};
+		var com = new SerialCom5200();
+		com.setClock(clock);
+		sim.setClock(clock);
+		sim.setLatency(1, 0, TimeUnit.MILLISECONDS);
+		com.setStatusConsumer((a, b) -> {});
+		com.setSimulator(sim);
+
+		// 5 Hz triangle FM of 1 kHz by 100 Hz, 100 updates/s
+		var fm = new Modulation(1, Type.FM, Shape.TRIANGLE, 1000, 100, 5, 100);
+		var metrics = fm.run(com, 1000 * MS);
+		Assert.assertEquals("updates " + metrics, 100, metrics.updates());
+		Assert.assertEquals("coalesced", 0, metrics.coalesced());
+		Assert.assertEquals("errors", 0, metrics.errors());
+		Assert.assertEquals("rate", 100.0, metrics.rate(), 1.0);
+		Assert.assertTrue("jitter " + metrics, metrics.jitter().max() < MS);
+		// the update and the carrier
+		Assert.assertEquals("written", 101, frequencies.size());
+		Assert.assertEquals("peak", 1100.0, frequencies.get(5), 0.01);
+		Assert.assertEquals("period", frequencies.get(3), frequencies.get(23), 0.01);
+		Assert.assertEquals("carrier", 1000.0, sim.getChannel(1).getFrequency(), 0.0);
+		Assert.assertEquals("min", 900.0, frequencies.stream().mapToDouble(Double::doubleValue).min().orElse(0), 0.01);
+		Assert.assertEquals("max", List.of(1100.0), frequencies.stream().filter(f -> f > 1099.99).distinct().toList());
+
+		// more than the 57600 baud link carries
+		Assert.assertThrows("link", IllegalArgumentException.class, () -> new Modulation(1, Type.FM, Shape.SINE, 1000, 100, 10, 1000).run(com, MS));
+		com.disconnect();
+	}
+}
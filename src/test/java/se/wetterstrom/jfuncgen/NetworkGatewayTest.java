@@ -0,0 +1,165 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NetworkGatewayTest {
+
+	private static final class TestClient implements AutoCloseable {
+		final Socket socket;
+		final BufferedReader in;
+		final OutputStream out;
+
+		TestClient(int port) throws IOException {
+			socket = new Socket(InetAddress.getLoopbackAddress(), port);
+			socket.setSoTimeout(10000);
+			in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+			out = socket.getOutputStream();
+		}
+
+		void send(String lines) throws IOException {
+			out.write(lines.getBytes(StandardCharsets.ISO_8859_1));
+			out.flush();
+		}
+
+		String query(String line) throws IOException {
+			send(line + "\n");
+			return in.readLine();
+		}
+
+		@Override
+		public void close() throws IOException {
+			socket.close();
+		}
+	}
+
+	private static NetworkGateway start(AbstractSerialCom com, long maxAge) throws IOException {
+		var gateway = new NetworkGateway(() -> com, maxAge);
+		gateway.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		return gateway;
+	}
+
+	@Test
+	public void testCommands() throws IOException {
+		var clock = new VirtualClock();
+		var com = new SerialCom6900();
+		var sim = new Fy6900Simulator();
+		com.setDeviceType(DeviceType.FY6900);
+		com.setClock(clock);
+		sim.setClock(clock);
+		com.setStatusConsumer((a, b) -> {});
+		com.setSimulator(sim);
+		try (var gateway = start(com, 1000); var client = new TestClient(gateway.getPort())) {
+			Assert.assertEquals("idn", "jfuncgen,FY6900," + Fy6900Simulator.MODEL + ",", client.query("*IDN?").replaceFirst("[^,]*$", ""));
+			Assert.assertEquals("set", "OK", client.query("SOURce2:FREQuency 1234.5"));
+			Assert.assertEquals("get", "1234.5", client.query("sour2:freq?"));
+			Assert.assertEquals("cached", "1234.5", client.query("SOUR2:FREQ?"));
+			Assert.assertEquals("set", "OK", client.query("PHAS 90"));
+			Assert.assertEquals("get", "90.0", client.query("SOURCE1:PHASE?"));
+			Assert.assertTrue("unknown", client.query("VOLT?").startsWith("ERR"));
+			Assert.assertTrue("channel", client.query("SOUR3:FREQ?").startsWith("ERR"));
+			Assert.assertTrue("read only", client.query("MODEL x").startsWith("ERR"));
+			Assert.assertEquals("opc", "1", client.query("*OPC?"));
+
+			// pipelined, the replies in command order
+			client.send("FREQ 100\nFREQ?\nFREQ 200\nFREQ?\n");
+			Assert.assertEquals("pipelined", List.of("OK", "100.0", "OK", "200.0"),
+					List.of(client.in.readLine(), client.in.readLine(), client.in.readLine(), client.in.readLine()));
+		}
+		com.disconnect();
+	}
+
+	@Test
+	public void testCache() throws IOException {
+		var clock = new VirtualClock();
+		var com = new SerialCom6900();
+		var sim = new Fy6900Simulator();
+		com.setClock(clock);
+		sim.setClock(clock);
+		com.setStatusConsumer((a, b) -> {});
+		com.setSimulator(sim);
+		try (var gateway = start(com, NetworkGateway.DEFAULT_MAX_AGE)) {
+			var clients = new ArrayList<TestClient>();
+			for (int i = 0; i < 20; i++) {
+				clients.add(new TestClient(gateway.getPort()));
+			}
+			for (int n = 0; n < 5; n++) {
+				for (var c : clients) {
+					c.send("SOUR1:FREQ?\n");
+				}
+				for (var c : clients) {
+					Assert.assertNotNull("reply", c.in.readLine());
+				}
+			}
+			// no time passes on the idle simulator
+			Assert.assertEquals("device commands", 1, gateway.getDeviceCommands());
+			Assert.assertEquals("cache hits", 99, gateway.getCacheHits());
+			Assert.assertEquals("clients", 20, gateway.getClientCount());
+
+			clock.advance(TimeUnit.MILLISECONDS.toNanos(NetworkGateway.DEFAULT_MAX_AGE));
+			Assert.assertNotNull("reply", clients.get(0).query("SOUR1:FREQ?"));
+			Assert.assertEquals("expired", 2, gateway.getDeviceCommands());
+			for (var c : clients) {
+				c.close();
+			}
+		}
+		com.disconnect();
+	}
+
+	@Test
+	public void testGuiWrites() throws IOException {
+		var clock = new VirtualClock();
+		var com = new SerialCom5200();
+		var sim = new Mhs5200Simulator();
+		com.setClock(clock);
+		sim.setClock(clock);
+		com.setStatusConsumer((a, b) -> {});
+		com.setSimulator(sim);
+		try (var gateway = start(com, 1000); var client = new TestClient(gateway.getPort())) {
+			// the GUI leaves its acknowledge unread
+			com.setFrequency(1, 500);
+			// the acknowledge arrives
+			clock.advance(TimeUnit.MILLISECONDS.toNanos(1));
+			Assert.assertEquals("set", "OK", client.query("FREQ 1000"));
+			Assert.assertEquals("own acknowledge taken", 0, com.serialListener.size());
+			Assert.assertEquals("get", "1000.0", client.query("FREQ?"));
+			com.setFrequency(1, 2000);
+			// the acknowledge arrives
+			clock.advance(TimeUnit.MILLISECONDS.toNanos(1));
+			Assert.assertEquals("not cached after a GUI write", "2000.0", client.query("FREQ?"));
+			Assert.assertEquals("cached", "2000.0", client.query("FREQ?"));
+			Assert.assertEquals("cache hits", 1, gateway.getCacheHits());
+		}
+		com.disconnect();
+	}
+
+	@Test
+	public void testFairness() throws IOException {
+		var com = new SerialCom5200();
+		var sim = new Mhs5200Simulator();
+		sim.setLatency(5, 0, TimeUnit.MILLISECONDS);
+		com.setStatusConsumer((a, b) -> {});
+		com.setSimulator(sim);
+		try (var gateway = start(com, 0); var busy = new TestClient(gateway.getPort()); var other = new TestClient(gateway.getPort())) {
+			busy.send("FREQ 1000\n".repeat(40));
+			Assert.assertEquals("other", "1", other.query("*OPC?"));
+			Assert.assertTrue("not behind the busy client", gateway.getDeviceCommands() < 10);
+			for (int i = 0; i < 40; i++) {
+				Assert.assertEquals("busy", "OK", busy.in.readLine());
+			}
+		}
+		com.disconnect();
+	}
+}
@@ -0,0 +1,61 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PresetTest {
+
+	@Test
+	public void testApply() throws IOException {
+		var clock = new VirtualClock();
+		var sim = new Mhs5200Simulator();
+		sim.setClock(clock);
+		sim.setLatency(2, 0, TimeUnit.MILLISECONDS);
+		var com = new SerialCom5200();
+		com.setClock(clock);
+		com.setStatusConsumer((a, b) -> {});
+		com.setSimulator(sim);
+
+		var state = DeviceTransaction.State.read(com);
+		var file = Files.createTempFile("jfuncgen", ".preset");
+		try {
+			Preset.of(state).write(file);
+			var preset = Preset.read(file);
+			Assert.assertEquals("values", Preset.of(state).getValues(), preset.getValues());
+			Assert.assertEquals("frequency", "frequency 1 1000.0", preset.getValues().get(1).toString());
+
+			new DeviceTransaction().set(DeviceParameter.FREQUENCY, 1, "5000").set(DeviceParameter.DUTY, 2, "20").commit(com, state);
+			long commands = sim.getCommandCount();
+			var result = preset.apply(com, state);
+			Assert.assertEquals("written", 2, result.written());
+			Assert.assertEquals("unchanged", preset.getValues().size() - 2, result.skipped());
+			Assert.assertEquals("commands", commands + 2, sim.getCommandCount());
+			Assert.assertEquals("frequency", 1000.0, sim.getChannel(1).getFrequency(), 0.0);
+			Assert.assertEquals("duty", 50.0, sim.getChannel(2).getDuty(), 0.0);
+		} finally {
+			Files.delete(file);
+		}
+		com.disconnect();
+	}
+
+	@Test
+	public void testReadInvalid() throws IOException {
+		var file = Files.createTempFile("jfuncgen", ".preset");
+		try {
+			Files.writeString(file, "# comment\n\n  frequency 2 1000\n", StandardCharsets.ISO_8859_1);
+			Assert.assertEquals("valid", "[frequency 2 1000]", Preset.read(file).getValues().toString());
+
+			for (var line : new String[] { "frequency 1", "volume 1 10", "gate 1 2", "model 1 x", "frequency 3 1000", "frequency x 1000" }) {
+				Files.writeString(file, "frequency 1 1000\n" + line + "\n", StandardCharsets.ISO_8859_1);
+				Assert.assertThrows(line, IllegalArgumentException.class, () -> Preset.read(file));
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
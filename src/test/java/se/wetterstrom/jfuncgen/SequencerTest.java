@@ -0,0 +1,75 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SequencerTest {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	public void testParse() {
+		var seq = Sequencer.parse(List.of(
+				"# comment",
+				"set frequency 2 1000",
+				"+250ms set amplitude 1 2.5",
+				"",
+				"+1.5 get frequency 2",
+				"@1s set output off",
+				"+100us save 3"));
+		var steps = seq.getSteps();
+		Assert.assertEquals("steps", 5, steps.size());
+		Assert.assertEquals("line", 2, steps.get(0).line());
+		Assert.assertEquals("time", List.of(0L, 250 * MS, 251 * MS + MS / 2, 1000 * MS, 1000 * MS + 100_000),
+				steps.stream().map(Sequencer.Step::time).toList());
+		Assert.assertEquals("kind", "set frequency", steps.get(0).kind());
+
+		for (var bad : List.of("set model x", "get sweep", "set frequency", "frobnicate", "+1ms", "@1s get model\n@0.5s get model")) {
+			try {
+				Sequencer.parse(List.of(bad.split("\n")));
+				Assert.fail(bad);
+			} catch (IllegalArgumentException e) {
+				Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Line "));
+			}
+		}
+	}
+
+	@Test
+	public void testRun() {
+		var clock = new VirtualClock();
+		var com = new SerialCom5200();
+		var sim = new Mhs5200Simulator();
+		com.setClock(clock);
+		sim.setClock(clock);
+		sim.setLatency(5, 0, TimeUnit.MILLISECONDS);
+		com.setStatusConsumer((a, b) -> {});
+		com.setSimulator(sim);
+
+		var seq = Sequencer.parse(List.of(
+				"set frequency 1 1000",
+				"+100ms set frequency 1 2000",
+				"+100ms set frequency 1 3000",
+				"+100ms get frequency 1",
+				"+100ms get frequency 1",
+				"+100ms set waveform 1 nosuch"));
+		var results = seq.run(com);
+		Assert.assertEquals("results", 6, results.size());
+		// the first of a kind is late by its duration, the rest start early to be on time
+		Assert.assertTrue("first late", results.get(0).lateness() >= 5 * MS);
+		Assert.assertEquals("compensated", 0, results.get(1).lateness());
+		Assert.assertEquals("compensated", 0, results.get(2).lateness());
+		Assert.assertTrue("started early", results.get(2).started() < results.get(2).step().time());
+		Assert.assertEquals("reply", "3000.0", results.get(3).reply());
+		Assert.assertEquals("compensated", 0, results.get(4).lateness());
+		Assert.assertNotNull("error", results.get(5).error());
+
+		var jitter = Sequencer.Jitter.of(results);
+		Assert.assertEquals("count", 6, jitter.count());
+		Assert.assertEquals("errors", 1, jitter.errors());
+		Assert.assertEquals("min", 0, jitter.min());
+		com.disconnect();
+	}
+}
@@ -19,6 +19,7 @@ public class SerialCom5200Test {
 		Mockito.when(portMock.isOpen()).thenReturn(true);
 		Mockito.when(portMock.writeBytes(req.getBytes(), req.length(), 0)).thenReturn(req.length());
 		Mockito.when(listenerMock.poll(10)).thenReturn(res);
+		com.setClock(new VirtualClock());
 		com.setPort(portMock);
 		com.setSerialListener(listenerMock);
 
@@ -36,6 +37,7 @@ public class SerialCom5200Test {
 		Mockito.when(portMock.isOpen()).thenReturn(true);
 		Mockito.when(portMock.writeBytes(req.getBytes(), req.length(), 0)).thenReturn(req.length());
 		Mockito.when(listenerMock.poll(10)).thenReturn(res);
+		com.setClock(new VirtualClock());
 		com.setPort(portMock);
 		com.setSerialListener(listenerMock);
 
@@ -53,6 +55,7 @@ public class SerialCom5200Test {
 		Mockito.when(portMock.isOpen()).thenReturn(true);
 		Mockito.when(portMock.writeBytes(req.getBytes(), req.length(), 0)).thenReturn(req.length());
 		Mockito.when(listenerMock.poll(10)).thenReturn(res);
+		com.setClock(new VirtualClock());
 		com.setPort(portMock);
 		com.setSerialListener(listenerMock);
 
@@ -70,6 +73,7 @@ public class SerialCom5200Test {
 		Mockito.when(portMock.isOpen()).thenReturn(true);
 		Mockito.when(portMock.writeBytes(req.getBytes(), req.length(), 0)).thenReturn(req.length());
 		Mockito.when(listenerMock.poll(10)).thenReturn(res);
+		com.setClock(new VirtualClock());
 		com.setPort(portMock);
 		com.setSerialListener(listenerMock);
 
@@ -244,6 +248,7 @@ public class SerialCom5200Test {
 		Mockito.when(portMock.isOpen()).thenReturn(true);
 		Mockito.when(portMock.writeBytes(req.getBytes(), req.length(), 0)).thenReturn(req.length());
 		Mockito.when(listenerMock.poll(10)).thenReturn(res);
+		com.setClock(new VirtualClock());
 		com.setPort(portMock);
 		com.setSerialListener(listenerMock);
 
@@ -255,4 +260,24 @@ public class SerialCom5200Test {
 		Mockito.verify(portMock,  Mockito.times(1)).writeBytes(req.getBytes(), req.length(), 0);
 	}
 
+	@Test
+	public void testArbSlice() {
+		var data = new int[SerialCom5200.SLICE_COUNT * SerialCom5200.SAMPLES_PER_SLICE];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = i * 2;
+		}
+		var cmd = SerialCom5200.encodeArbSlice(10, 2, data);
+		Assert.assertTrue("command", cmd.startsWith(":aa2512,514,"));
+		Assert.assertTrue("command", cmd.endsWith(",766\n"));
+
+		var decoded = new int[data.length];
+		SerialCom5200.decodeArbSlice(":b" + cmd.substring(2).trim(), 2, decoded);
+		for (int i = 0; i < SerialCom5200.SAMPLES_PER_SLICE; i++) {
+			Assert.assertEquals("sample", data[256 + i], decoded[256 + i]);
+		}
+		SerialCom5200.decodeArbSlice(":b12 1,x", 1, decoded);
+		Assert.assertEquals("sample", 1, decoded[128]);
+		Assert.assertEquals("invalid", 0, decoded[129]);
+		Assert.assertEquals("missing", 0, decoded[255]);
+	}
 }
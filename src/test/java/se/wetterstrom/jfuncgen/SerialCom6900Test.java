@@ -25,6 +25,7 @@ public class SerialCom6900Test {
 		Mockito.when(portMock.writeBytes("UVE\n".getBytes(), 4, 0)).thenReturn(4);
 		Mockito.when(listenerMock.poll(10)).thenReturn("2345");
 
+		com.setClock(new VirtualClock());
 		com.setPort(portMock);
 		com.setSerialListener(listenerMock);
 
@@ -44,6 +45,7 @@ public class SerialCom6900Test {
 		Mockito.when(portMock.writeBytes("UMO\n".getBytes(), 4, 0)).thenReturn(4);
 		Mockito.when(listenerMock.poll(10)).thenReturn("JFB");
 
+		com.setClock(new VirtualClock());
 		com.setPort(portMock);
 		com.setSerialListener(listenerMock);
 
@@ -59,9 +61,10 @@ public class SerialCom6900Test {
 		var portMock = Mockito.mock(SerialPort.class);
 
 		Mockito.when(portMock.isOpen()).thenReturn(true);
-		Mockito.when(portMock.writeBytes("UID\n".getBytes(), 4, 0)).thenReturn(4);
+		Mockito.when(portMock.writeBytes("UMO\n".getBytes(), 4, 0)).thenReturn(4);
 		Mockito.when(listenerMock.poll(10)).thenReturn("MDL-B");
 
+		com.setClock(new VirtualClock());
 		com.setPort(portMock);
 		com.setSerialListener(listenerMock);
 
@@ -81,6 +84,7 @@ public class SerialCom6900Test {
 		Mockito.when(portMock.writeBytes("RFA\n".getBytes(), 4, 0)).thenReturn(4);
 		Mockito.when(listenerMock.poll(10)).thenReturn("23.45");
 
+		com.setClock(new VirtualClock());
 		com.setPort(portMock);
 		com.setSerialListener(listenerMock);
 
@@ -96,9 +100,10 @@ public class SerialCom6900Test {
 		var portMock = Mockito.mock(SerialPort.class);
 
 		Mockito.when(portMock.isOpen()).thenReturn(true);
-		Mockito.when(portMock.writeBytes("RMW\n".getBytes(), 5, 0)).thenReturn(5);
+		Mockito.when(portMock.writeBytes("RMW\n".getBytes(), 4, 0)).thenReturn(4);
 		Mockito.when(listenerMock.poll(10)).thenReturn("234");
 
+		com.setClock(new VirtualClock());
 		com.setPort(portMock);
 		com.setSerialListener(listenerMock);
 
@@ -106,4 +111,9 @@ public class SerialCom6900Test {
 		Assert.assertEquals("waveform", 234, res);
 	}
 
+	@Test
+	public void testEncodeArbData() {
+		var bytes = SerialCom6900.encodeArbData(new int[] { 0, 0x3fff, 20000, -1, 0x1234 }, 0, 0x3fff);
+		Assert.assertArrayEquals("bytes", new byte[] { 0, 0, 0x7f, 0x7f, 0x7f, 0x7f, 0, 0, 0x34, 0x24 }, bytes);
+	}
 }
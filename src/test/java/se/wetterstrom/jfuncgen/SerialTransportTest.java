@@ -0,0 +1,200 @@
+package se.wetterstrom.jfuncgen;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SerialTransportTest {
+
+	@Test
+	public void testByteRing() {
+		var ring = new ByteRing(8);
+		var src = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4, 5, 6 });
+		Assert.assertEquals("put", 6, ring.put(src));
+		var dst = ByteBuffer.allocate(4);
+		Assert.assertEquals("get", 4, ring.get(dst));
+		// wraps around
+		src = ByteBuffer.wrap(new byte[] { 7, 8, 9, 10, 11, 12, 13 });
+		Assert.assertEquals("full", 6, ring.put(src));
+		Assert.assertEquals("remaining", 1, src.remaining());
+		dst = ByteBuffer.allocate(10);
+		Assert.assertEquals("get", 8, ring.get(dst));
+		Assert.assertArrayEquals("data", new byte[] { 5, 6, 7, 8, 9, 10, 11, 12, 0, 0 }, dst.array());
+		Assert.assertEquals("empty", 0, ring.size());
+	}
+
+	@Test
+	public void testLoopback() {
+		var pair = LoopbackTransport.createPair("test", 4);
+		var a = pair[0];
+		var b = pair[1];
+		var notified = new int[1];
+		b.setDataListener(() -> notified[0]++);
+		Assert.assertEquals("closed", -1, a.write(ByteBuffer.wrap(new byte[1])));
+		a.open(null);
+		b.open(null);
+
+		var src = ByteBuffer.wrap("hello".getBytes(StandardCharsets.ISO_8859_1));
+		Assert.assertEquals("written", 4, a.write(src));
+		Assert.assertEquals("full", 0, a.write(src));
+		Assert.assertEquals("left in buffer", 1, src.remaining());
+		Assert.assertEquals("notified", 1, notified[0]);
+
+		var dst = ByteBuffer.allocate(16);
+		Assert.assertEquals("read", 4, b.read(dst));
+		Assert.assertEquals("read", 0, b.read(dst));
+		Assert.assertEquals("written", 1, a.write(src));
+		Assert.assertEquals("read", 1, b.read(dst));
+		Assert.assertEquals("data", "hello", new String(dst.array(), 0, dst.position(), StandardCharsets.ISO_8859_1));
+	}
+
+	@Test
+	public void testDriverOnLoopback() {
+		var pair = LoopbackTransport.createPair("test");
+		var device = pair[1];
+		device.open(null);
+		var request = ByteBuffer.allocate(64);
+		device.setDataListener(() -> {
+			device.read(request);
+			if (request.position() > 0 && request.get(request.position() - 1) == '\n') {
+				request.clear();
+				device.write(ByteBuffer.wrap("FY6900-60M\n".getBytes(StandardCharsets.ISO_8859_1)));
+			}
+		});
+
+		var com = new SerialCom6900();
+		com.setTransport(pair[0]);
+		Assert.assertTrue("online", com.isOnline());
+		Assert.assertEquals("model", "FY6900-60M", com.getModel());
+		com.disconnect();
+		Assert.assertFalse("online", com.isOnline());
+	}
+
+	@Test
+	public void testShortWrites() {
+		var transport = new StallingTransport();
+		var com = new SerialCom6900();
+		var clock = new VirtualClock();
+		com.setClock(clock);
+		com.setTransport(transport);
+
+		// a byte every 600 ms takes longer than the write timeout but keeps moving
+		transport.stall = TimeUnit.MILLISECONDS.toNanos(600);
+		transport.clock = clock;
+		Assert.assertTrue("slow write", com.writeSerial("abc\n"));
+		Assert.assertEquals("written", "abc\n", transport.written.toString());
+
+		// two bytes, then no more progress
+		transport.stall = 0;
+		transport.limit = 2;
+		transport.written.setLength(0);
+		Assert.assertFalse("truncated string", com.writeSerial("abcdef\n"));
+		Assert.assertEquals("written", "ab", transport.written.toString());
+		transport.limit = 1;
+		transport.written.setLength(0);
+		Assert.assertFalse("truncated bytes", com.writeSerial(new byte[] { 1, 2, 3 }));
+		Assert.assertEquals("written", 1, transport.written.length());
+	}
+
+	/** transport taking one byte per write, up to a limit, then nothing */
+	private static class StallingTransport implements SerialTransport {
+		/** the bytes written */
+		final StringBuilder written = new StringBuilder();
+		/** the number of bytes taken before stalling */
+		int limit = Integer.MAX_VALUE;
+		/** the clock time between bytes, 0 for none */
+		long stall;
+		/** the clock */
+		VirtualClock clock;
+		/** the clock time of the last byte taken */
+		long last;
+
+		@Override
+		public boolean open(PortSettings settings) {
+			return true;
+		}
+
+		@Override
+		public void close() {
+			// nothing to close
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) {
+			return 0;
+		}
+
+		@Override
+		public int write(ByteBuffer src) {
+			if (written.length() >= limit || stall > 0 && clock.nanoTime() - last < stall) {
+				return 0;
+			}
+			last = stall > 0 ? clock.nanoTime() : 0;
+			written.append((char) src.get());
+			return 1;
+		}
+
+		@Override
+		public void setDataListener(Runnable listener) {
+			// never any data
+		}
+
+		@Override
+		public String getName() {
+			return "stalling";
+		}
+	}
+
+	@Test
+	public void testTcp() throws IOException, InterruptedException {
+		try (var server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			var served = new CountDownLatch(1);
+			Thread.ofVirtual().start(() -> {
+				try (var socket = server.accept()) {
+					var in = socket.getInputStream();
+					var out = socket.getOutputStream();
+					int c;
+					while ((c = in.read()) >= 0) {
+						out.write(c);
+					}
+				} catch (IOException e) {
+					// closed
+				}
+				served.countDown();
+			});
+
+			var tcp = TcpTransport.parse("tcp://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getLocalPort());
+			Assert.assertNotNull("parsed", tcp);
+			var received = new CountDownLatch(1);
+			var dst = ByteBuffer.allocate(64);
+			tcp.setDataListener(() -> {
+				synchronized (dst) {
+					tcp.read(dst);
+					if (dst.position() == 4) {
+						received.countDown();
+					}
+				}
+			});
+			Assert.assertTrue("open", tcp.open(null));
+			Assert.assertEquals("written", 4, tcp.write(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 })));
+			Assert.assertTrue("echo", received.await(5, TimeUnit.SECONDS));
+			tcp.close();
+			Assert.assertFalse("open", tcp.isOpen());
+			Assert.assertTrue("server closed", served.await(5, TimeUnit.SECONDS));
+		}
+		Assert.assertNull("invalid", TcpTransport.parse("tcp://nohost"));
+		Assert.assertNull("invalid", TcpTransport.parse("/dev/ttyUSB0"));
+	}
+}
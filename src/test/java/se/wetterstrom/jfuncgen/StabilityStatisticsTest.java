@@ -0,0 +1,108 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StabilityStatisticsTest {
+
+	/** overlapping Allan variance of tau m, the differences starting every stride readings */
+	private static double avar(double[] y, int m, int stride) {
+		double sum = 0;
+		int n = 0;
+		for (int i = 0; i + 2 * m <= y.length; i += stride) {
+			double d = 0;
+			for (int j = 0; j < m; j++) {
+				d += y[i + m + j] - y[i + j];
+			}
+			d /= m;
+			sum += d * d;
+			n++;
+		}
+		return sum / (2 * n);
+	}
+
+	/** modified Allan variance of tau m, the differences starting every stride readings */
+	private static double mvar(double[] y, int m, int stride) {
+		double sum = 0;
+		int n = 0;
+		for (int i = 0; i + 3 * m - 1 <= y.length; i += stride) {
+			double d = 0;
+			for (int o = 0; o < m; o++) {
+				for (int j = 0; j < m; j++) {
+					d += y[i + o + m + j] - y[i + o + j];
+				}
+			}
+			d /= (double) m * m;
+			sum += d * d;
+			n++;
+		}
+		return sum / (2 * n);
+	}
+
+	private static StabilityStatistics of(double[] y) {
+		var stats = new StabilityStatistics(0.5);
+		for (double v : y) {
+			stats.add(v);
+		}
+		return stats;
+	}
+
+	@Test
+	public void testExact() {
+		var random = new Random(1);
+		var y = new double[1000];
+		double sum = 0;
+		for (int i = 0; i < y.length; i++) {
+			y[i] = 1e7 + random.nextGaussian();
+			sum += y[i];
+		}
+		var stats = of(y);
+		stats.add(Double.NaN);
+		Assert.assertEquals("count", 1000, stats.getCount());
+		Assert.assertEquals("mean", sum / y.length, stats.getMean(), 1e-6);
+		double var = 0;
+		for (double v : y) {
+			var += (v - sum / y.length) * (v - sum / y.length);
+		}
+		Assert.assertEquals("variance", var / (y.length - 1), stats.getVariance(), 1e-6);
+
+		var points = stats.getPoints();
+		for (var p : points) {
+			int m = (int) Math.round(p.tau() / 0.5);
+			int stride = Math.max(1, m / 4);
+			Assert.assertEquals("adev " + m, Math.sqrt(avar(y, m, stride)), p.adev(), 1e-6);
+			Assert.assertEquals("mdev " + m, Math.sqrt(mvar(y, m, stride)), p.mdev(), 1e-6);
+		}
+		Assert.assertEquals("taus", 9, points.size());
+		Assert.assertEquals("tau", 128.0, points.get(8).tau(), 0.0);
+	}
+
+	@Test
+	public void testNoise() {
+		var random = new Random(2);
+		int n = 1 << 18;
+		// white frequency noise: adev falls as tau^-1/2, mdev is adev / sqrt(2)
+		var white = new StabilityStatistics(1.0);
+		// white phase noise: adev falls as tau^-1, mdev as tau^-3/2
+		var phase = new StabilityStatistics(1.0);
+		double x = random.nextGaussian();
+		for (int i = 0; i < n; i++) {
+			white.add(random.nextGaussian());
+			double next = random.nextGaussian();
+			phase.add(next - x);
+			x = next;
+		}
+		Assert.assertTrue("memory", white.getLevelCount() <= 19);
+		var w16 = white.getPoints().get(4);
+		var w256 = white.getPoints().get(8);
+		Assert.assertEquals("tau", 256.0, w256.tau(), 0.0);
+		Assert.assertEquals("white adev", 1 / Math.sqrt(256), w256.adev(), 0.1 / Math.sqrt(256));
+		Assert.assertEquals("white mdev", w16.adev() / Math.sqrt(2), w16.mdev(), 0.1 * w16.adev());
+		var p16 = phase.getPoints().get(4);
+		var p256 = phase.getPoints().get(8);
+		Assert.assertEquals("phase adev slope", -1.0, Math.log(p256.adev() / p16.adev()) / Math.log(16), 0.1);
+		Assert.assertEquals("phase mdev slope", -1.5, Math.log(p256.mdev() / p16.mdev()) / Math.log(16), 0.1);
+	}
+}
@@ -0,0 +1,50 @@
+package se.wetterstrom.jfuncgen;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StatusHistoryTest {
+
+	@Test
+	public void testMergeRepeated() {
+		var history = new StatusHistory(10);
+		for (int i = 0; i < 1000; i++) {
+			history.add(StatusBar.Status.ONLINE, "Write data completed", i);
+			history.add(StatusBar.Status.ONLINE, "Write bytes.length 10", i);
+		}
+		history.add(StatusBar.Status.ERROR, "Write data completed", 1000);
+
+		var entries = history.snapshot();
+		Assert.assertEquals("size", 3, entries.size());
+		Assert.assertEquals("message", "Write data completed", entries.get(0).message);
+		Assert.assertEquals("count", 1000, entries.get(0).count);
+		Assert.assertEquals("first", 0, entries.get(0).first);
+		Assert.assertEquals("last", 999, entries.get(0).last);
+		Assert.assertEquals("count", 1000, entries.get(1).count);
+		Assert.assertEquals("status", StatusBar.Status.ERROR, entries.get(2).status);
+		Assert.assertEquals("count", 1, entries.get(2).count);
+	}
+
+	@Test
+	public void testCapacity() {
+		var history = new StatusHistory(3);
+		for (int i = 0; i < 5; i++) {
+			history.add(StatusBar.Status.ONLINE, "msg" + i, i);
+		}
+		var entries = history.snapshot();
+		Assert.assertEquals("size", 3, entries.size());
+		Assert.assertEquals("oldest", "msg2", entries.get(0).message);
+		Assert.assertEquals("newest", "msg4", entries.get(2).message);
+
+		// evicted messages start over with a new entry
+		history.add(StatusBar.Status.ONLINE, "msg0", 5);
+		entries = history.snapshot();
+		Assert.assertEquals("oldest", "msg3", entries.get(0).message);
+		Assert.assertEquals("count", 1, entries.get(2).count);
+
+		long mod = history.getModCount();
+		history.clear();
+		Assert.assertEquals("size", 0, history.size());
+		Assert.assertNotEquals("modified", mod, history.getModCount());
+	}
+}
@@ -0,0 +1,85 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class UndoHistoryTest {
+
+	@Test
+	public void testUndoRedo() {
+		var data = new int[1000];
+		var history = new UndoHistory(10);
+		history.reset(data);
+		Assert.assertFalse("undo", history.canUndo());
+
+		data[5] = 1;
+		Assert.assertTrue("commit", history.commit(data));
+		data[700] = 2;
+		Assert.assertTrue("commit", history.commit(data));
+		Assert.assertFalse("unchanged", history.commit(data));
+
+		Assert.assertTrue("undo", history.undo(data));
+		Assert.assertEquals("5", 1, data[5]);
+		Assert.assertEquals("700", 0, data[700]);
+		Assert.assertTrue("undo", history.undo(data));
+		Assert.assertEquals("5", 0, data[5]);
+		Assert.assertFalse("undo", history.undo(data));
+
+		Assert.assertTrue("redo", history.redo(data));
+		Assert.assertTrue("redo", history.redo(data));
+		Assert.assertFalse("redo", history.redo(data));
+		Assert.assertEquals("5", 1, data[5]);
+		Assert.assertEquals("700", 2, data[700]);
+	}
+
+	@Test
+	public void testCommitDiscardsRedo() {
+		var data = new int[300];
+		var history = new UndoHistory(10);
+		history.reset(data);
+		data[0] = 1;
+		history.commit(data);
+		history.undo(data);
+		data[299] = 3;
+		history.commit(data);
+		Assert.assertFalse("redo", history.canRedo());
+		history.undo(data);
+		Assert.assertArrayEquals("initial", new int[300], data);
+	}
+
+	@Test
+	public void testCapacity() {
+		var data = new int[10];
+		var history = new UndoHistory(3);
+		history.reset(data);
+		for (int i = 1; i <= 10; i++) {
+			data[0] = i;
+			history.commit(data);
+		}
+		Assert.assertEquals("snapshots", 4, history.getSnapshotCount());
+		while (history.undo(data)) {
+			// undo all
+		}
+		Assert.assertEquals("oldest", 7, data[0]);
+	}
+
+	@Test
+	public void testSharedChunks() {
+		var data = new int[8192];
+		var history = new UndoHistory(500);
+		history.reset(data);
+		for (int i = 0; i < 400; i++) {
+			data[i * 20] = i + 1;
+			history.commit(data);
+		}
+		int chunks = 8192 / UndoHistory.CHUNK_SIZE;
+		Assert.assertEquals("chunks", chunks + 400, history.getStoredChunkCount());
+
+		var expected = Arrays.copyOf(data, data.length);
+		expected[399 * 20] = 0;
+		history.undo(data);
+		Assert.assertArrayEquals("undo", expected, data);
+	}
+}
@@ -66,6 +66,34 @@ public class UtilsTest {
 				Utils.hexDump(new byte[]{1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16,17,18}));
 	}
 
+	@Test
+	public void testHexDumpLength() {
+		for (int n = 0; n < 100; n++) {
+			Assert.assertEquals("length " + n, Utils.hexDump(new byte[n]).length(), Utils.hexDumpLength(n));
+		}
+	}
+
+	@Test
+	public void testHexDumpLimit() {
+		var data = new byte[] {1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16,17,18};
+		Assert.assertEquals("below limit", Utils.hexDump(data), Utils.hexDump(data, 100));
+		Assert.assertEquals("limited",
+				"00000000:  01 02 03 04 05 06 07 08 09 0a 0b 0c 0d 0e 0f 10  ................\n[2 more bytes, 18 bytes total]",
+				Utils.hexDump(data, 16));
+		Assert.assertEquals("zero", "[18 more bytes, 18 bytes total]", Utils.hexDump(data, 0));
+	}
+
+	@Test
+	public void testLazyHexDump() {
+		var data = new byte[16384];
+		for (int limit : new int[] {0, 1, 17, 1024, 20000}) {
+			var dump = new HexDump(data, limit);
+			int length = dump.length();
+			Assert.assertEquals("text " + limit, Utils.hexDump(data, limit), dump.toString());
+			Assert.assertEquals("length " + limit, dump.toString().length(), length);
+		}
+	}
+
 	@Test
 	public void testGetResource() {
 		String s = Utils.getResource("about.html");
@@ -0,0 +1,47 @@
+package se.wetterstrom.jfuncgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VirtualClockTest {
+
+	@Test
+	public void testSchedule() throws InterruptedException {
+		var clock = new VirtualClock();
+		var run = new ArrayList<String>();
+		clock.schedule(() -> run.add("c"), 30);
+		clock.schedule(() -> run.add("a"), 10);
+		clock.schedule(() -> run.add("b"), 10);
+		clock.schedule(() -> run.add("x"), 20).cancel();
+		// a task scheduling a task
+		clock.schedule(() -> clock.schedule(() -> run.add("d:" + clock.nanoTime()), 5), 28);
+		Assert.assertEquals("pending", 4, clock.getPendingCount());
+
+		clock.advance(15);
+		Assert.assertEquals("run", List.of("a", "b"), run);
+		Assert.assertEquals("time", 15, clock.nanoTime());
+		clock.sleep(100);
+		Assert.assertEquals("run", List.of("a", "b", "c", "d:33"), run);
+		Assert.assertEquals("time", 115, clock.nanoTime());
+		Assert.assertEquals("pending", 0, clock.getPendingCount());
+	}
+
+	@Test
+	public void testPoll() throws InterruptedException {
+		var clock = new VirtualClock(1000);
+		BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+		clock.schedule(() -> queue.add("reply"), TimeUnit.MILLISECONDS.toNanos(5));
+		Assert.assertEquals("reply", "reply", clock.poll(queue, TimeUnit.SECONDS.toNanos(1)));
+		Assert.assertEquals("time", 1000 + TimeUnit.MILLISECONDS.toNanos(5), clock.nanoTime());
+		Assert.assertNull("timeout", clock.poll(queue, TimeUnit.SECONDS.toNanos(1)));
+		Assert.assertEquals("time", 1000 + TimeUnit.MILLISECONDS.toNanos(1005), clock.nanoTime());
+		Assert.assertNull("no overflow", clock.poll(queue, Long.MAX_VALUE));
+		Assert.assertEquals("time", Long.MAX_VALUE, clock.nanoTime());
+	}
+}